@@ -0,0 +1,115 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.grigoriliev.jsampler.jlscp.Client;
+import com.grigoriliev.jsampler.jlscp.MidiInstrumentInfo;
+import com.grigoriliev.jsampler.jlscp.SamplerChannel;
+import com.grigoriliev.jsampler.jlscp.ServerInfo;
+
+import com.grigoriliev.jsampler.jlscp.event.VoiceCountEvent;
+import com.grigoriliev.jsampler.jlscp.event.VoiceCountListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the round trip of the LSCP commands issued by the tasks,
+ * using {@link FakeLinuxSampler} as a backend, optionally with injected
+ * latency and a concurrent storm of <code>VOICE_COUNT</code> notifications.
+ * @author Grigor Iliev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ClientRoundTripBenchmark {
+	/** The latency (in milliseconds) injected by the server. */
+	@Param({"0", "1"})
+	public int latency;
+	
+	/** The number of <code>VOICE_COUNT</code> notifications per second. */
+	@Param({"0", "10000"})
+	public int notificationRate;
+	
+	private FakeLinuxSampler server;
+	private FakeLinuxSampler.Storm storm = null;
+	private Client client;
+	
+	@Setup
+	public void
+	setup() throws Exception {
+		server = new FakeLinuxSampler(0);
+		server.addChannels(64);
+		server.addMidiInstrumentMap("Benchmark", 128);
+		server.setLatency(latency, 0);
+		server.start();
+		
+		client = new Client();
+		client.setServerAddress("127.0.0.1");
+		client.setServerPort(server.getPort());
+		client.connect();
+		
+		if(notificationRate > 0) {
+			client.addVoiceCountListener(new VoiceCountListener() {
+				public void
+				voiceCountChanged(VoiceCountEvent e) { }
+			});
+			
+			storm = server.startVoiceCountStorm(notificationRate);
+		}
+	}
+	
+	@TearDown
+	public void
+	tearDown() throws Exception {
+		if(storm != null) storm.stop();
+		client.disconnect();
+		server.stop();
+	}
+	
+	@Benchmark
+	public ServerInfo
+	getServerInfo() throws Exception { return client.getServerInfo(); }
+	
+	@Benchmark
+	public SamplerChannel
+	getSamplerChannelInfo() throws Exception { return client.getSamplerChannelInfo(7); }
+	
+	@Benchmark
+	public MidiInstrumentInfo[]
+	getMidiInstruments() throws Exception { return client.getMidiInstruments(0); }
+}
@@ -0,0 +1,107 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.JSUtils;
+import com.grigoriliev.jsampler.MidiInstrument;
+import com.grigoriliev.jsampler.MidiInstrumentMap;
+import com.grigoriliev.jsampler.view.HeadlessViewConfig;
+
+import com.grigoriliev.jsampler.jlscp.MidiInstrumentEntry;
+import com.grigoriliev.jsampler.jlscp.MidiInstrumentInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the exporting of the MIDI instrument
+ * maps and the session provided by <code>JSUtils</code>.
+ * @author Grigor Iliev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+	/** The total number of instruments in the MIDI instrument maps. */
+	@Param({"1000", "10000"})
+	public int instrumentCount;
+	
+	@Setup
+	public void
+	setup() {
+		if(CC.getViewConfig() == null) CC.setViewConfig(new HeadlessViewConfig());
+		
+		for(MidiInstrumentMap m : CC.getSamplerModel().getMidiInstrumentMaps()) {
+			CC.getSamplerModel().removeMidiInstrumentMapById(m.getMapId());
+		}
+		
+		int mapCount = 4;
+		for(int i = 0; i < mapCount; i++) {
+			MidiInstrumentMap map = new MidiInstrumentMap(i, "Map " + i);
+			for(int j = 0; j < instrumentCount / mapCount; j++) {
+				MidiInstrumentEntry entry = new MidiInstrumentEntry(j / 128, j % 128);
+				MidiInstrumentInfo info = new MidiInstrumentInfo(i, entry);
+				info.setName("Instrument " + j);
+				info.setFilePath("/usr/share/samples/instrument" + j + ".gig");
+				info.setEngine("GIG");
+				map.mapMidiInstrument(entry, new MidiInstrument(info));
+			}
+			
+			CC.getSamplerModel().addMidiInstrumentMap(map);
+		}
+	}
+	
+	@Benchmark
+	public String
+	exportInstrMapsToLscpScript() { return JSUtils.exportInstrMapsToLscpScript(); }
+	
+	@Benchmark
+	public String
+	exportInstrMapsToText() { return JSUtils.exportInstrMapsToText(); }
+	
+	@Benchmark
+	public String
+	exportInstrMapsToHtml() { return JSUtils.exportInstrMapsToHtml(); }
+	
+	@Benchmark
+	public byte[]
+	exportInstrMapsToRGD() { return JSUtils.exportInstrMapsToRGD(); }
+	
+	@Benchmark
+	public String
+	exportSessionToLscpScript() { return JSUtils.exportSessionToLscpScript(); }
+}
@@ -0,0 +1,1249 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand-in for the LinuxSampler LSCP server, which allows
+ * end-to-end throughput tests and benchmarks to run without LinuxSampler.
+ * The server keeps the state of the sampler channels, audio/MIDI devices,
+ * MIDI instrument maps and the instruments database in memory, and implements
+ * the commands used by the <code>Channel</code>, <code>Audio</code>,
+ * <code>Midi</code>, <code>Global</code> and <code>InstrumentsDb</code> tasks.
+ * The behavior can be scripted by registering custom command handlers, synthetic
+ * notification storms can be generated at configurable rates (see
+ * {@link #startStorm}) and latency with jitter can be injected in the responses.
+ * The server accepts connections on the loopback interface only.
+ * @author Grigor Iliev
+ */
+public class FakeLinuxSampler {
+	/** Handles a specific command. */
+	public static interface CommandHandler {
+		/**
+		 * Handles the specified command.
+		 * @param cmd The command (without the line terminator).
+		 * @return The complete response, including the terminating "." of the
+		 * multi-line results, without the line terminator after the last line,
+		 * or <code>null</code> to let the server handle the command.
+		 */
+		public String handle(String cmd);
+	}
+	
+	/** Generates the arguments of the synthetic notifications. */
+	public static interface NotificationGenerator {
+		/**
+		 * Gets the arguments of the next notification.
+		 * @param seq The sequence number of the notification.
+		 */
+		public String next(long seq);
+	}
+	
+	/** A running notification storm. */
+	public class Storm {
+		private final ScheduledFuture<?> future;
+		private final AtomicLong count = new AtomicLong();
+		
+		private
+		Storm(final String event, final int rate, final NotificationGenerator gen) {
+			// Up to 100 ticks per second, so that high rates can be reached
+			final int ticksPerSecond = Math.min(rate, 100);
+			
+			future = getScheduler().scheduleAtFixedRate(new Runnable() {
+				private long tick = 0;
+				
+				public void
+				run() {
+					// the notifications due by the end of this tick (carrying the remainder)
+					tick++;
+					long due = tick * rate / ticksPerSecond;
+					while(count.get() < due) {
+						fireNotification(event, gen.next(count.getAndIncrement()));
+					}
+				}
+			}, 0, 1000000 / ticksPerSecond, TimeUnit.MICROSECONDS);
+		}
+		
+		/** Gets the number of notifications sent so far. */
+		public long
+		getCount() { return count.get(); }
+		
+		/** Stops this notification storm. */
+		public void
+		stop() { future.cancel(false); }
+	}
+	
+	private static class ChannelState {
+		String engine = null;
+		String instrumentFile = null;
+		int instrumentNr = -1;
+		String instrumentName = null;
+		float volume = 1.0f;
+		boolean mute = false;
+		boolean solo = false;
+		int audioDevice = -1;
+		int midiDevice = -1;
+		int midiPort = 0;
+		String midiChannel = "ALL";
+		String midiMap = "NONE";
+		int voiceCount = 0;
+		int streamCount = 0;
+	}
+	
+	private static class DeviceState {
+		final String driver;
+		final TreeMap<String, String> params = new TreeMap<String, String>();
+		
+		DeviceState(String driver) { this.driver = driver; }
+	}
+	
+	private static class MapState {
+		String name;
+		final TreeMap<Integer, String[]> instruments = new TreeMap<Integer, String[]>();
+		
+		MapState(String name) { this.name = name; }
+	}
+	
+	private static final String AUDIO_DRIVER = "JACK";
+	private static final String MIDI_DRIVER = "ALSA";
+	private static final String[] ENGINES = { "GIG", "SF2", "SFZ" };
+	private static final String DATE = "2023-01-01 00:00:00";
+	
+	private final int requestedPort;
+	private ServerSocket serverSocket = null;
+	private Thread acceptThread = null;
+	
+	private final Vector<Connection> connections = new Vector<Connection>();
+	private ScheduledExecutorService scheduler = null;
+	
+	private final Map<String, CommandHandler> handlers = new TreeMap<String, CommandHandler>();
+	
+	private volatile int latency = 0;
+	private volatile int jitter = 0;
+	private final Random random = new Random();
+	
+	private final AtomicLong commandCount = new AtomicLong();
+	private final AtomicLong notificationCount = new AtomicLong();
+	
+	private final TreeMap<Integer, ChannelState> channels = new TreeMap<Integer, ChannelState>();
+	private final TreeMap<Integer, DeviceState> audioDevices = new TreeMap<Integer, DeviceState>();
+	private final TreeMap<Integer, DeviceState> midiDevices = new TreeMap<Integer, DeviceState>();
+	private final TreeMap<Integer, MapState> maps = new TreeMap<Integer, MapState>();
+	
+	/** The instruments database directories, mapped to their descriptions. */
+	private final TreeMap<String, String> dbDirs = new TreeMap<String, String>();
+	
+	/** The instruments database instruments, mapped to their file paths. */
+	private final TreeMap<String, String> dbInstruments = new TreeMap<String, String>();
+	
+	private float volume = 1.0f;
+	private int voiceLimit = 64;
+	private int streamLimit = 90;
+	
+	/**
+	 * Creates a new instance of <code>FakeLinuxSampler</code>.
+	 * @param port The port to listen on, or 0 to use any free port.
+	 */
+	public
+	FakeLinuxSampler(int port) {
+		requestedPort = port;
+		dbDirs.put("/", "");
+	}
+	
+	/**
+	 * Starts accepting connections.
+	 * @throws IOException If the server socket cannot be created.
+	 */
+	public synchronized void
+	start() throws IOException {
+		if(serverSocket != null) return;
+		serverSocket = new ServerSocket(requestedPort, 50, InetAddress.getLoopbackAddress());
+		
+		acceptThread = new Thread("FakeLinuxSampler") {
+			public void
+			run() {
+				try {
+					while(true) {
+						Connection c = new Connection(serverSocket.accept());
+						connections.add(c);
+						c.start();
+					}
+				} catch(IOException x) {
+					// closed
+				}
+			}
+		};
+		
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+	
+	/** Stops the server and closes all connections. */
+	public synchronized void
+	stop() {
+		if(scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		
+		if(serverSocket == null) return;
+		
+		try { serverSocket.close(); }
+		catch(IOException x) { }
+		
+		for(Connection c : connections.toArray(new Connection[0])) c.close();
+		serverSocket = null;
+	}
+	
+	/** Gets the executor of the notification storms, which is recreated after {@link #stop}. */
+	private synchronized ScheduledExecutorService
+	getScheduler() {
+		if(scheduler == null) scheduler = Executors.newScheduledThreadPool(1);
+		return scheduler;
+	}
+	
+	/** Gets the port the server is listening on. */
+	public int
+	getPort() { return serverSocket == null ? requestedPort : serverSocket.getLocalPort(); }
+	
+	/**
+	 * Sets the latency injected before each response.
+	 * @param latency The minimum delay in milliseconds.
+	 * @param jitter The maximum random delay (in milliseconds) added to the latency.
+	 */
+	public void
+	setLatency(int latency, int jitter) {
+		this.latency = latency;
+		this.jitter = jitter;
+	}
+	
+	/**
+	 * Registers a handler for the commands starting with the specified prefix,
+	 * which overrides the default behavior of the server.
+	 * If more than one prefix matches, the longest one is used.
+	 */
+	public synchronized void
+	setCommandHandler(String prefix, CommandHandler handler) {
+		if(handler == null) handlers.remove(prefix);
+		else handlers.put(prefix, handler);
+	}
+	
+	/** Gets the number of commands processed so far. */
+	public long
+	getCommandCount() { return commandCount.get(); }
+	
+	/** Gets the number of notifications sent so far. */
+	public long
+	getNotificationCount() { return notificationCount.get(); }
+	
+	/** Adds the specified number of sampler channels with loaded instruments. */
+	public synchronized void
+	addChannels(int count) {
+		for(int i = 0; i < count; i++) {
+			ChannelState c = new ChannelState();
+			c.engine = ENGINES[0];
+			c.instrumentNr = 0;
+			c.instrumentFile = "/usr/share/samples/instrument" + i + ".gig";
+			c.instrumentName = "Instrument " + i;
+			channels.put(nextId(channels), c);
+		}
+	}
+	
+	/**
+	 * Adds a MIDI instrument map with the specified number of instruments.
+	 * @return The ID of the new map.
+	 */
+	public synchronized int
+	addMidiInstrumentMap(String name, int instrumentCount) {
+		MapState m = new MapState(name);
+		for(int i = 0; i < instrumentCount; i++) {
+			m.instruments.put(i, new String[] {
+				"Instrument " + i, ENGINES[0], "/usr/share/samples/instrument" + i + ".gig",
+				"0", "1.0", "ON_DEMAND"
+			});
+		}
+		
+		int id = nextId(maps);
+		maps.put(id, m);
+		return id;
+	}
+	
+	/**
+	 * Populates the instruments database with synthetic directories and instruments.
+	 * @param dirCount The number of directories in the root directory.
+	 * @param instrumentsPerDir The number of instruments in each directory.
+	 */
+	public synchronized void
+	populateInstrumentsDb(int dirCount, int instrumentsPerDir) {
+		for(int i = 0; i < dirCount; i++) {
+			String dir = "/Library " + i;
+			dbDirs.put(dir, "Synthetic directory " + i);
+			for(int j = 0; j < instrumentsPerDir; j++) {
+				dbInstruments.put(dir + "/Instrument " + j, "/usr/share/samples/lib" + i + "/" + j + ".gig");
+			}
+		}
+	}
+	
+	/**
+	 * Starts sending synthetic notifications of the specified type
+	 * to all clients subscribed for it.
+	 * @param event The event type, e.g. <code>VOICE_COUNT</code>.
+	 * @param rate The number of notifications per second.
+	 * @param gen Generates the arguments of the notifications.
+	 */
+	public Storm
+	startStorm(String event, int rate, NotificationGenerator gen) {
+		if(rate < 1) throw new IllegalArgumentException("rate < 1");
+		return new Storm(event, rate, gen);
+	}
+	
+	/** Starts a storm of <code>CHANNEL_INFO</code> notifications over all channels. */
+	public Storm
+	startChannelInfoStorm(int rate) {
+		return startStorm("CHANNEL_INFO", rate, new NotificationGenerator() {
+			public String
+			next(long seq) { return String.valueOf(getChannelId(seq)); }
+		});
+	}
+	
+	/** Starts a storm of <code>VOICE_COUNT</code> notifications over all channels. */
+	public Storm
+	startVoiceCountStorm(int rate) {
+		return startStorm("VOICE_COUNT", rate, new NotificationGenerator() {
+			public String
+			next(long seq) { return getChannelId(seq) + " " + (seq % 64); }
+		});
+	}
+	
+	/** Starts a storm of <code>CHANNEL_MIDI</code> note on/off notifications over all channels. */
+	public Storm
+	startMidiDataStorm(int rate) {
+		return startStorm("CHANNEL_MIDI", rate, new NotificationGenerator() {
+			public String
+			next(long seq) {
+				String type = seq % 2 == 0 ? "NOTE_ON" : "NOTE_OFF";
+				return getChannelId(seq / 2) + " " + type + " " + (36 + (seq / 2) % 60) + " 100";
+			}
+		});
+	}
+	
+	private synchronized int
+	getChannelId(long seq) {
+		if(channels.isEmpty()) return 0;
+		Integer[] ids = channels.keySet().toArray(new Integer[channels.size()]);
+		return ids[(int)(seq % ids.length)];
+	}
+	
+	/** Sends the specified notification to all clients subscribed for it. */
+	public void
+	fireNotification(String event, String args) {
+		String s = "NOTIFY:" + event + ":" + args;
+		for(Connection c : connections.toArray(new Connection[0])) {
+			if(c.isSubscribed(event) && c.write(s)) notificationCount.incrementAndGet();
+		}
+	}
+	
+	private static int
+	nextId(TreeMap<Integer, ?> m) { return m.isEmpty() ? 0 : m.lastKey() + 1; }
+	
+	private class Connection extends Thread {
+		private final Socket socket;
+		private final OutputStream out;
+		private final HashSet<String> subscriptions = new HashSet<String>();
+		
+		Connection(Socket socket) throws IOException {
+			super("FakeLinuxSampler connection");
+			setDaemon(true);
+			this.socket = socket;
+			out = socket.getOutputStream();
+		}
+		
+		public void
+		run() {
+			try {
+				BufferedReader in = new BufferedReader (
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
+				);
+				
+				for(String s = in.readLine(); s != null; s = in.readLine()) {
+					s = s.trim();
+					if(s.length() == 0 || s.startsWith("#")) continue;
+					if(s.equals("QUIT")) break;
+					
+					commandCount.incrementAndGet();
+					String res = process(s);
+					delay();
+					if(!write(res)) break;
+				}
+			} catch(IOException x) {
+				// disconnected
+			} finally {
+				close();
+			}
+		}
+		
+		private String
+		process(String cmd) {
+			if(cmd.startsWith("SUBSCRIBE ")) {
+				synchronized(subscriptions) { subscriptions.add(cmd.substring(10).trim()); }
+				return "OK";
+			}
+			
+			if(cmd.startsWith("UNSUBSCRIBE ")) {
+				synchronized(subscriptions) { subscriptions.remove(cmd.substring(12).trim()); }
+				return "OK";
+			}
+			
+			CommandHandler h = getHandler(cmd);
+			if(h != null) {
+				String res = h.handle(cmd);
+				if(res != null) return res;
+			}
+			
+			try { return execute(new Command(cmd)); }
+			catch(RuntimeException x) { return "ERR:0:" + x.getMessage(); }
+		}
+		
+		boolean
+		isSubscribed(String event) {
+			synchronized(subscriptions) { return subscriptions.contains(event); }
+		}
+		
+		/** Writes the specified response or notification. */
+		synchronized boolean
+		write(String s) {
+			try {
+				out.write((s + "\r\n").getBytes(StandardCharsets.UTF_8));
+				out.flush();
+				return true;
+			} catch(IOException x) {
+				return false;
+			}
+		}
+		
+		void
+		close() {
+			connections.remove(this);
+			try { socket.close(); }
+			catch(IOException x) { }
+		}
+	}
+	
+	private synchronized CommandHandler
+	getHandler(String cmd) {
+		CommandHandler h = null;
+		int len = -1;
+		for(Map.Entry<String, CommandHandler> e : handlers.entrySet()) {
+			String p = e.getKey();
+			if(cmd.startsWith(p) && p.length() > len) {
+				h = e.getValue();
+				len = p.length();
+			}
+		}
+		
+		return h;
+	}
+	
+	private void
+	delay() {
+		int d = latency;
+		if(jitter > 0) synchronized(random) { d += random.nextInt(jitter + 1); }
+		if(d <= 0) return;
+		
+		try { Thread.sleep(d); }
+		catch(InterruptedException x) { Thread.currentThread().interrupt(); }
+	}
+	
+	/** A tokenized command. The quotes of the quoted tokens are removed. */
+	private static class Command {
+		private final Vector<String> tokens = new Vector<String>();
+		private int pos = 0;
+		
+		Command(String cmd) {
+			StringBuilder sb = new StringBuilder();
+			boolean token = false;
+			char quote = 0;
+			
+			for(int i = 0; i < cmd.length(); i++) {
+				char c = cmd.charAt(i);
+				if(quote != 0) {
+					if(c == quote) {
+						quote = 0;
+					} else if(c == '\\' && i + 1 < cmd.length()) {
+						c = cmd.charAt(++i);
+						if(c == 'x' && i + 2 < cmd.length()) {
+							sb.append((char)Integer.parseInt(cmd.substring(i + 1, i + 3), 16));
+							i += 2;
+						} else {
+							sb.append(c);
+						}
+					} else {
+						sb.append(c);
+					}
+				} else if(c == '\'' || c == '"') {
+					quote = c;
+					token = true;
+				} else if(c == ' ') {
+					if(token) tokens.add(sb.toString());
+					sb.setLength(0);
+					token = false;
+				} else {
+					sb.append(c);
+					token = true;
+				}
+			}
+			
+			if(token) tokens.add(sb.toString());
+		}
+		
+		/** Consumes the next tokens if they are equal to the specified keywords. */
+		boolean
+		is(String... keywords) {
+			if(pos + keywords.length > tokens.size()) return false;
+			for(int i = 0; i < keywords.length; i++) {
+				if(!keywords[i].equals(tokens.get(pos + i))) return false;
+			}
+			
+			pos += keywords.length;
+			return true;
+		}
+		
+		boolean
+		hasNext() { return pos < tokens.size(); }
+		
+		String
+		next() {
+			if(pos >= tokens.size()) throw new IllegalArgumentException("Missing parameter");
+			return tokens.get(pos++);
+		}
+		
+		int
+		nextInt() {
+			try { return Integer.parseInt(next()); }
+			catch(NumberFormatException x) { throw new IllegalArgumentException("Integer expected"); }
+		}
+		
+		/** Consumes the remaining <code>key=value</code> pairs. */
+		TreeMap<String, String>
+		params() {
+			TreeMap<String, String> m = new TreeMap<String, String>();
+			while(hasNext()) {
+				String s = next();
+				int i = s.indexOf('=');
+				if(i > 0) m.put(s.substring(0, i), s.substring(i + 1));
+			}
+			
+			return m;
+		}
+	}
+	
+	private static String
+	quote(String s) {
+		return "'" + s.replace("\\", "\\\\").replace("'", "\\'") + "'";
+	}
+	
+	private static String
+	result(String... lines) {
+		StringBuilder sb = new StringBuilder();
+		for(String s : lines) sb.append(s).append("\r\n");
+		return sb.append(".").toString();
+	}
+	
+	private static String
+	list(Iterable<?> items) {
+		StringBuilder sb = new StringBuilder();
+		for(Object o : items) {
+			if(sb.length() > 0) sb.append(',');
+			sb.append(o);
+		}
+		
+		return sb.toString();
+	}
+	
+	private static String
+	quotedList(Iterable<String> items) {
+		Vector<String> v = new Vector<String>();
+		for(String s : items) v.add(quote(s));
+		return list(v);
+	}
+	
+	private synchronized String
+	execute(Command c) {
+		if(c.is("GET", "SERVER", "INFO")) {
+			return result (
+				"DESCRIPTION: LinuxSampler - fake LSCP server",
+				"VERSION: 2.2.0",
+				"PROTOCOL_VERSION: 1.7",
+				"INSTRUMENTS_DB_SUPPORT: yes"
+			);
+		}
+		
+		if(c.is("GET", "TOTAL_VOICE_COUNT")) return String.valueOf(getTotalVoiceCount());
+		if(c.is("GET", "TOTAL_VOICE_COUNT_MAX")) return String.valueOf(voiceLimit);
+		if(c.is("GET", "TOTAL_STREAM_COUNT")) return "0";
+		if(c.is("GET", "VOLUME")) return String.valueOf(volume);
+		if(c.is("GET", "VOICES")) return String.valueOf(voiceLimit);
+		if(c.is("GET", "STREAMS")) return String.valueOf(streamLimit);
+		
+		if(c.is("SET", "VOLUME")) {
+			volume = Float.parseFloat(c.next());
+			fireNotification("GLOBAL_INFO", "VOLUME " + volume);
+			return "OK";
+		}
+		
+		if(c.is("SET", "VOICES")) {
+			voiceLimit = c.nextInt();
+			fireNotification("GLOBAL_INFO", "VOICES " + voiceLimit);
+			return "OK";
+		}
+		
+		if(c.is("SET", "STREAMS")) {
+			streamLimit = c.nextInt();
+			fireNotification("GLOBAL_INFO", "STREAMS " + streamLimit);
+			return "OK";
+		}
+		
+		if(c.is("RESET")) {
+			if(c.is("CHANNEL")) {
+				getChannel(c.nextInt());
+				return "OK";
+			}
+			
+			channels.clear();
+			fireNotification("CHANNEL_COUNT", "0");
+			return "OK";
+		}
+		
+		if(c.is("GET", "AVAILABLE_ENGINES")) return String.valueOf(ENGINES.length);
+		if(c.is("LIST", "AVAILABLE_ENGINES")) {
+			Vector<String> v = new Vector<String>();
+			for(String s : ENGINES) v.add(s);
+			return quotedList(v);
+		}
+		
+		if(c.is("GET", "ENGINE", "INFO")) {
+			String e = c.next();
+			return result("DESCRIPTION: " + e + " Engine", "VERSION: 1.0");
+		}
+		
+		if(c.is("GET", "AVAILABLE_EFFECTS")) return "0";
+		if(c.is("LIST", "AVAILABLE_EFFECTS")) return "";
+		if(c.is("GET", "EFFECT_INSTANCES")) return "0";
+		if(c.is("LIST", "EFFECT_INSTANCES")) return "";
+		if(c.is("GET", "SEND_EFFECT_CHAINS")) { c.nextInt(); return "0"; }
+		if(c.is("LIST", "SEND_EFFECT_CHAINS")) { c.nextInt(); return ""; }
+		
+		String s = executeChannelCommand(c);
+		if(s == null) s = executeDeviceCommand(c);
+		if(s == null) s = executeMidiInstrumentCommand(c);
+		if(s == null) s = executeDbCommand(c);
+		if(s != null) return s;
+		
+		c.pos = 0;
+		String cmd = c.next();
+		if(cmd.equals("SET")) return "OK";
+		return "ERR:0:Not supported by the fake server";
+	}
+	
+	private int
+	getTotalVoiceCount() {
+		int n = 0;
+		for(ChannelState cs : channels.values()) n += cs.voiceCount;
+		return n;
+	}
+	
+	private ChannelState
+	getChannel(int id) {
+		ChannelState cs = channels.get(id);
+		if(cs == null) throw new IllegalArgumentException("Invalid sampler channel number");
+		return cs;
+	}
+	
+	private String
+	channelChanged(int id) {
+		fireNotification("CHANNEL_INFO", String.valueOf(id));
+		return "OK";
+	}
+	
+	private String
+	executeChannelCommand(Command c) {
+		if(c.is("ADD", "CHANNEL")) {
+			int id = nextId(channels);
+			channels.put(id, new ChannelState());
+			fireNotification("CHANNEL_COUNT", String.valueOf(channels.size()));
+			return "OK[" + id + "]";
+		}
+		
+		if(c.is("REMOVE", "CHANNEL")) {
+			int id = c.nextInt();
+			if(channels.remove(id) == null) {
+				throw new IllegalArgumentException("Invalid sampler channel number");
+			}
+			
+			fireNotification("CHANNEL_COUNT", String.valueOf(channels.size()));
+			return "OK";
+		}
+		
+		if(c.is("GET", "CHANNELS")) return String.valueOf(channels.size());
+		if(c.is("LIST", "CHANNELS")) return list(channels.keySet());
+		
+		if(c.is("GET", "CHANNEL", "INFO")) {
+			ChannelState cs = getChannel(c.nextInt());
+			int chns = cs.audioDevice == -1 ? 0 : 2;
+			return result (
+				"ENGINE_NAME: " + (cs.engine == null ? "NONE" : cs.engine),
+				"VOLUME: " + cs.volume,
+				"AUDIO_OUTPUT_DEVICE: " + (cs.audioDevice == -1 ? "NONE" : cs.audioDevice),
+				"AUDIO_OUTPUT_CHANNELS: " + chns,
+				"AUDIO_OUTPUT_ROUTING: " + (chns == 0 ? "NONE" : "0,1"),
+				"INSTRUMENT_FILE: " + (cs.instrumentFile == null ? "NONE" : cs.instrumentFile),
+				"INSTRUMENT_NR: " + cs.instrumentNr,
+				"INSTRUMENT_NAME: " + (cs.instrumentName == null ? "NONE" : cs.instrumentName),
+				"INSTRUMENT_STATUS: " + (cs.instrumentFile == null ? 0 : 100),
+				"MIDI_INPUT_DEVICE: " + (cs.midiDevice == -1 ? "NONE" : cs.midiDevice),
+				"MIDI_INPUT_PORT: " + cs.midiPort,
+				"MIDI_INPUT_CHANNEL: " + cs.midiChannel,
+				"MIDI_INSTRUMENT_MAP: " + cs.midiMap,
+				"MUTE: " + cs.mute,
+				"SOLO: " + cs.solo
+			);
+		}
+		
+		if(c.is("GET", "CHANNEL", "VOICE_COUNT")) {
+			return String.valueOf(getChannel(c.nextInt()).voiceCount);
+		}
+		
+		if(c.is("GET", "CHANNEL", "STREAM_COUNT")) {
+			return String.valueOf(getChannel(c.nextInt()).streamCount);
+		}
+		
+		if(c.is("GET", "CHANNEL", "BUFFER_FILL")) {
+			c.next();
+			getChannel(c.nextInt());
+			return "NA";
+		}
+		
+		if(c.is("LOAD", "ENGINE")) {
+			String engine = c.next();
+			int id = c.nextInt();
+			getChannel(id).engine = engine;
+			return channelChanged(id);
+		}
+		
+		if(c.is("LOAD", "INSTRUMENT")) {
+			c.is("NON_MODAL");
+			String file = c.next();
+			int nr = c.nextInt();
+			int id = c.nextInt();
+			ChannelState cs = getChannel(id);
+			cs.instrumentFile = file;
+			cs.instrumentNr = nr;
+			cs.instrumentName = file.substring(file.lastIndexOf('/') + 1);
+			return channelChanged(id);
+		}
+		
+		if(c.is("SET", "CHANNEL")) {
+			String prop = c.next();
+			int id = c.nextInt();
+			ChannelState cs = getChannel(id);
+			
+			if(prop.equals("VOLUME")) cs.volume = Float.parseFloat(c.next());
+			else if(prop.equals("MUTE")) cs.mute = c.next().equals("1");
+			else if(prop.equals("SOLO")) cs.solo = c.next().equals("1");
+			else if(prop.equals("AUDIO_OUTPUT_DEVICE")) cs.audioDevice = c.nextInt();
+			else if(prop.equals("MIDI_INPUT_DEVICE")) cs.midiDevice = c.nextInt();
+			else if(prop.equals("MIDI_INPUT_PORT")) cs.midiPort = c.nextInt();
+			else if(prop.equals("MIDI_INPUT_CHANNEL")) cs.midiChannel = c.next();
+			else if(prop.equals("MIDI_INSTRUMENT_MAP")) cs.midiMap = c.next();
+			
+			return channelChanged(id);
+		}
+		
+		if(c.is("SEND", "CHANNEL", "MIDI_DATA")) {
+			String type = c.next();
+			int id = c.nextInt();
+			getChannel(id);
+			fireNotification("CHANNEL_MIDI", id + " " + type + " " + c.next() + " " + c.next());
+			return "OK";
+		}
+		
+		if(c.is("GET", "FX_SENDS")) {
+			getChannel(c.nextInt());
+			return "0";
+		}
+		
+		if(c.is("LIST", "FX_SENDS")) {
+			getChannel(c.nextInt());
+			return "";
+		}
+		
+		return null;
+	}
+	
+	private String
+	executeDeviceCommand(Command c) {
+		if(c.is("GET", "AVAILABLE_AUDIO_OUTPUT_DRIVERS")) return "1";
+		if(c.is("LIST", "AVAILABLE_AUDIO_OUTPUT_DRIVERS")) return AUDIO_DRIVER;
+		if(c.is("GET", "AVAILABLE_MIDI_INPUT_DRIVERS")) return "1";
+		if(c.is("LIST", "AVAILABLE_MIDI_INPUT_DRIVERS")) return MIDI_DRIVER;
+		
+		if(c.is("GET", "AUDIO_OUTPUT_DRIVER", "INFO")) {
+			return result (
+				"DESCRIPTION: " + c.next() + " audio output driver",
+				"VERSION: 1.0",
+				"PARAMETERS: ACTIVE,CHANNELS,SAMPLERATE"
+			);
+		}
+		
+		if(c.is("GET", "MIDI_INPUT_DRIVER", "INFO")) {
+			return result (
+				"DESCRIPTION: " + c.next() + " MIDI input driver",
+				"VERSION: 1.0",
+				"PARAMETERS: ACTIVE,PORTS"
+			);
+		}
+		
+		if(c.is("GET", "AUDIO_OUTPUT_DRIVER_PARAMETER", "INFO")) {
+			c.next();
+			return getParameterInfo(c.next());
+		}
+		
+		if(c.is("GET", "MIDI_INPUT_DRIVER_PARAMETER", "INFO")) {
+			c.next();
+			return getParameterInfo(c.next());
+		}
+		
+		if(c.is("CREATE", "AUDIO_OUTPUT_DEVICE")) {
+			return createDevice(audioDevices, c, "AUDIO_OUTPUT_DEVICE_COUNT", "CHANNELS", "2");
+		}
+		
+		if(c.is("CREATE", "MIDI_INPUT_DEVICE")) {
+			return createDevice(midiDevices, c, "MIDI_INPUT_DEVICE_COUNT", "PORTS", "1");
+		}
+		
+		if(c.is("DESTROY", "AUDIO_OUTPUT_DEVICE")) {
+			if(audioDevices.remove(c.nextInt()) == null) {
+				throw new IllegalArgumentException("There is no audio output device with index");
+			}
+			
+			fireNotification("AUDIO_OUTPUT_DEVICE_COUNT", String.valueOf(audioDevices.size()));
+			return "OK";
+		}
+		
+		if(c.is("DESTROY", "MIDI_INPUT_DEVICE")) {
+			if(midiDevices.remove(c.nextInt()) == null) {
+				throw new IllegalArgumentException("There is no MIDI input device with index");
+			}
+			
+			fireNotification("MIDI_INPUT_DEVICE_COUNT", String.valueOf(midiDevices.size()));
+			return "OK";
+		}
+		
+		if(c.is("GET", "AUDIO_OUTPUT_DEVICES")) return String.valueOf(audioDevices.size());
+		if(c.is("LIST", "AUDIO_OUTPUT_DEVICES")) return list(audioDevices.keySet());
+		if(c.is("GET", "MIDI_INPUT_DEVICES")) return String.valueOf(midiDevices.size());
+		if(c.is("LIST", "MIDI_INPUT_DEVICES")) return list(midiDevices.keySet());
+		
+		if(c.is("GET", "AUDIO_OUTPUT_DEVICE", "INFO")) {
+			return getDeviceInfo(audioDevices.get(c.nextInt()));
+		}
+		
+		if(c.is("GET", "MIDI_INPUT_DEVICE", "INFO")) {
+			return getDeviceInfo(midiDevices.get(c.nextInt()));
+		}
+		
+		if(c.is("GET", "AUDIO_OUTPUT_CHANNEL", "INFO")) {
+			c.nextInt();
+			int chn = c.nextInt();
+			return result("NAME: Channel " + chn, "IS_MIX_CHANNEL: false");
+		}
+		
+		if(c.is("GET", "MIDI_INPUT_PORT", "INFO")) {
+			c.nextInt();
+			int port = c.nextInt();
+			return result("NAME: Port " + port);
+		}
+		
+		if(c.is("SET", "AUDIO_OUTPUT_DEVICE_PARAMETER")) {
+			return setDeviceParameter(audioDevices, c, "AUDIO_OUTPUT_DEVICE_INFO");
+		}
+		
+		if(c.is("SET", "MIDI_INPUT_DEVICE_PARAMETER")) {
+			return setDeviceParameter(midiDevices, c, "MIDI_INPUT_DEVICE_INFO");
+		}
+		
+		return null;
+	}
+	
+	private static String
+	getParameterInfo(String param) {
+		if(param.equals("ACTIVE")) {
+			return result (
+				"TYPE: BOOL", "DESCRIPTION: Enable / disable device", "MANDATORY: false",
+				"FIX: false", "MULTIPLICITY: false", "DEFAULT: true"
+			);
+		}
+		
+		return result (
+			"TYPE: INT", "DESCRIPTION: " + param, "MANDATORY: false",
+			"FIX: false", "MULTIPLICITY: false", "DEFAULT: 1",
+			"RANGE_MIN: 1", "RANGE_MAX: 96000"
+		);
+	}
+	
+	private String
+	createDevice(TreeMap<Integer, DeviceState> devs, Command c, String event, String p, String v) {
+		DeviceState d = new DeviceState(c.next());
+		d.params.put("ACTIVE", "true");
+		d.params.put(p, v);
+		d.params.putAll(c.params());
+		
+		int id = nextId(devs);
+		devs.put(id, d);
+		fireNotification(event, String.valueOf(devs.size()));
+		return "OK[" + id + "]";
+	}
+	
+	private static String
+	getDeviceInfo(DeviceState d) {
+		if(d == null) throw new IllegalArgumentException("There is no device with index");
+		
+		Vector<String> v = new Vector<String>();
+		v.add("DRIVER: " + d.driver);
+		for(Map.Entry<String, String> e : d.params.entrySet()) {
+			v.add(e.getKey() + ": " + e.getValue());
+		}
+		
+		return result(v.toArray(new String[v.size()]));
+	}
+	
+	private String
+	setDeviceParameter(TreeMap<Integer, DeviceState> devs, Command c, String event) {
+		int id = c.nextInt();
+		DeviceState d = devs.get(id);
+		if(d == null) throw new IllegalArgumentException("There is no device with index");
+		d.params.putAll(c.params());
+		fireNotification(event, String.valueOf(id));
+		return "OK";
+	}
+	
+	private MapState
+	getMap(int id) {
+		MapState m = maps.get(id);
+		if(m == null) throw new IllegalArgumentException("Invalid MIDI instrument map");
+		return m;
+	}
+	
+	private String
+	executeMidiInstrumentCommand(Command c) {
+		if(c.is("ADD", "MIDI_INSTRUMENT_MAP")) {
+			int id = nextId(maps);
+			maps.put(id, new MapState(c.hasNext() ? c.next() : "Map " + id));
+			fireNotification("MIDI_INSTRUMENT_MAP_COUNT", String.valueOf(maps.size()));
+			return "OK[" + id + "]";
+		}
+		
+		if(c.is("REMOVE", "MIDI_INSTRUMENT_MAP")) {
+			if(c.is("ALL")) maps.clear();
+			else getMap(c.nextInt());
+			fireNotification("MIDI_INSTRUMENT_MAP_COUNT", String.valueOf(maps.size()));
+			return "OK";
+		}
+		
+		if(c.is("GET", "MIDI_INSTRUMENT_MAPS")) return String.valueOf(maps.size());
+		if(c.is("LIST", "MIDI_INSTRUMENT_MAPS")) return list(maps.keySet());
+		
+		if(c.is("GET", "MIDI_INSTRUMENT_MAP", "INFO")) {
+			int id = c.nextInt();
+			MapState m = getMap(id);
+			return result("NAME: " + m.name, "DEFAULT: " + (id == maps.firstKey()));
+		}
+		
+		if(c.is("SET", "MIDI_INSTRUMENT_MAP", "NAME")) {
+			int id = c.nextInt();
+			getMap(id).name = c.next();
+			fireNotification("MIDI_INSTRUMENT_MAP_INFO", String.valueOf(id));
+			return "OK";
+		}
+		
+		if(c.is("MAP", "MIDI_INSTRUMENT")) {
+			c.is("NON_MODAL");
+			int id = c.nextInt();
+			int bank = c.nextInt();
+			int prog = c.nextInt();
+			String engine = c.next();
+			String file = c.next();
+			String nr = c.next();
+			String vol = c.next();
+			String mode = "DEFAULT";
+			String name = "";
+			if(c.hasNext()) {
+				String s = c.next();
+				if(s.equals("ON_DEMAND") || s.equals("ON_DEMAND_HOLD") || s.equals("PERSISTENT")) {
+					mode = s;
+					if(c.hasNext()) name = c.next();
+				} else {
+					name = s;
+				}
+			}
+			
+			MapState m = getMap(id);
+			int key = bank * 128 + prog;
+			boolean b = m.instruments.put(key, new String[] { name, engine, file, nr, vol, mode }) == null;
+			if(b) fireNotification("MIDI_INSTRUMENT_COUNT", id + " " + m.instruments.size());
+			fireNotification("MIDI_INSTRUMENT_INFO", id + " " + bank + " " + prog);
+			return "OK";
+		}
+		
+		if(c.is("UNMAP", "MIDI_INSTRUMENT")) {
+			int id = c.nextInt();
+			int bank = c.nextInt();
+			int prog = c.nextInt();
+			MapState m = getMap(id);
+			if(m.instruments.remove(bank * 128 + prog) == null) {
+				throw new IllegalArgumentException("Invalid MIDI instrument entry");
+			}
+			
+			fireNotification("MIDI_INSTRUMENT_COUNT", id + " " + m.instruments.size());
+			return "OK";
+		}
+		
+		if(c.is("CLEAR", "MIDI_INSTRUMENTS")) {
+			if(c.is("ALL")) for(MapState m : maps.values()) m.instruments.clear();
+			else getMap(c.nextInt()).instruments.clear();
+			return "OK";
+		}
+		
+		if(c.is("GET", "MIDI_INSTRUMENTS")) {
+			if(c.is("ALL")) {
+				int n = 0;
+				for(MapState m : maps.values()) n += m.instruments.size();
+				return String.valueOf(n);
+			}
+			
+			return String.valueOf(getMap(c.nextInt()).instruments.size());
+		}
+		
+		if(c.is("LIST", "MIDI_INSTRUMENTS")) {
+			TreeMap<Integer, MapState> m = maps;
+			if(!c.is("ALL")) {
+				int id = c.nextInt();
+				m = new TreeMap<Integer, MapState>();
+				m.put(id, getMap(id));
+			}
+			
+			StringBuilder sb = new StringBuilder();
+			for(Map.Entry<Integer, MapState> e : m.entrySet()) {
+				for(int key : e.getValue().instruments.keySet()) {
+					if(sb.length() > 0) sb.append(',');
+					sb.append('{').append(e.getKey()).append(',');
+					sb.append(key / 128).append(',').append(key % 128).append('}');
+				}
+			}
+			
+			return sb.toString();
+		}
+		
+		if(c.is("GET", "MIDI_INSTRUMENT", "INFO")) {
+			MapState m = getMap(c.nextInt());
+			int bank = c.nextInt();
+			int prog = c.nextInt();
+			String[] i = m.instruments.get(bank * 128 + prog);
+			if(i == null) throw new IllegalArgumentException("Invalid MIDI instrument entry");
+			
+			return result (
+				"NAME: " + i[0],
+				"ENGINE_NAME: " + i[1],
+				"INSTRUMENT_FILE: " + i[2],
+				"INSTRUMENT_NR: " + i[3],
+				"INSTRUMENT_NAME: " + i[0],
+				"LOAD_MODE: " + i[5],
+				"VOLUME: " + i[4]
+			);
+		}
+		
+		return null;
+	}
+	
+	private static String
+	getParent(String path) {
+		int i = path.lastIndexOf('/');
+		return i < 1 ? "/" : path.substring(0, i);
+	}
+	
+	private static String
+	getName(String path) { return path.substring(path.lastIndexOf('/') + 1); }
+	
+	/** Gets the entries of the specified map in the specified directory. */
+	private static Vector<String>
+	getDbEntries(TreeMap<String, String> m, String dir, boolean recursive) {
+		if(dir.length() > 1 && dir.endsWith("/")) dir = dir.substring(0, dir.length() - 1);
+		String prefix = dir.equals("/") ? "/" : dir + "/";
+		Vector<String> v = new Vector<String>();
+		
+		for(String s : m.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+			if(s.equals(dir)) continue;
+			if(recursive || s.indexOf('/', prefix.length()) == -1) v.add(s);
+		}
+		
+		return v;
+	}
+	
+	private String
+	getDbDirectory(String dir) {
+		if(dir.length() > 1 && dir.endsWith("/")) dir = dir.substring(0, dir.length() - 1);
+		if(!dbDirs.containsKey(dir)) throw new IllegalArgumentException("Unknown DB directory: " + dir);
+		return dir;
+	}
+	
+	private String
+	executeDbCommand(Command c) {
+		if(c.is("GET", "DB_INSTRUMENT_DIRECTORIES")) {
+			boolean r = c.is("RECURSIVE");
+			return String.valueOf(getDbEntries(dbDirs, getDbDirectory(c.next()), r).size());
+		}
+		
+		if(c.is("LIST", "DB_INSTRUMENT_DIRECTORIES")) {
+			boolean r = c.is("RECURSIVE");
+			Vector<String> v = getDbEntries(dbDirs, getDbDirectory(c.next()), r);
+			if(!r) for(int i = 0; i < v.size(); i++) v.set(i, getName(v.get(i)));
+			return quotedList(v);
+		}
+		
+		if(c.is("GET", "DB_INSTRUMENT_DIRECTORY", "INFO")) {
+			String dir = getDbDirectory(c.next());
+			return result("DESCRIPTION: " + dbDirs.get(dir), "CREATED: " + DATE, "MODIFIED: " + DATE);
+		}
+		
+		if(c.is("GET", "DB_INSTRUMENTS")) {
+			boolean r = c.is("RECURSIVE");
+			return String.valueOf(getDbEntries(dbInstruments, getDbDirectory(c.next()), r).size());
+		}
+		
+		if(c.is("LIST", "DB_INSTRUMENTS")) {
+			boolean r = c.is("RECURSIVE");
+			Vector<String> v = getDbEntries(dbInstruments, getDbDirectory(c.next()), r);
+			if(!r) for(int i = 0; i < v.size(); i++) v.set(i, getName(v.get(i)));
+			return quotedList(v);
+		}
+		
+		if(c.is("GET", "DB_INSTRUMENT", "INFO")) {
+			String path = c.next();
+			String file = dbInstruments.get(path);
+			if(file == null) throw new IllegalArgumentException("Unknown DB instrument: " + path);
+			
+			return result (
+				"INSTRUMENT_FILE: " + file,
+				"INSTRUMENT_NR: 0",
+				"FORMAT_FAMILY: GIG",
+				"FORMAT_VERSION: 3",
+				"SIZE: 1048576",
+				"CREATED: " + DATE,
+				"MODIFIED: " + DATE,
+				"DESCRIPTION: " + getName(path),
+				"IS_DRUM: false",
+				"PRODUCT: Fake Library",
+				"ARTISTS: ",
+				"KEYWORDS: "
+			);
+		}
+		
+		if(c.is("FIND", "DB_INSTRUMENTS") || c.is("FIND", "DB_INSTRUMENT_DIRECTORIES")) {
+			boolean dirs = c.tokens.get(1).equals("DB_INSTRUMENT_DIRECTORIES");
+			boolean r = !c.is("NON_RECURSIVE");
+			String dir = getDbDirectory(c.next());
+			String name = c.params().get("NAME");
+			if(name != null) name = name.replace("*", "").toLowerCase();
+			
+			Vector<String> v = new Vector<String>();
+			for(String s : getDbEntries(dirs ? dbDirs : dbInstruments, dir, r)) {
+				if(name == null || getName(s).toLowerCase().contains(name)) v.add(s);
+			}
+			
+			return quotedList(v);
+		}
+		
+		if(c.is("ADD", "DB_INSTRUMENT_DIRECTORY")) {
+			String dir = c.next();
+			getDbDirectory(getParent(dir));
+			dbDirs.put(dir, "");
+			fireNotification("DB_INSTRUMENT_DIRECTORY_COUNT", quote(getParent(dir)));
+			return "OK";
+		}
+		
+		if(c.is("REMOVE", "DB_INSTRUMENT_DIRECTORY")) {
+			c.is("FORCE");
+			String dir = getDbDirectory(c.next());
+			String prefix = dir + "/";
+			dbDirs.remove(dir);
+			dbDirs.subMap(prefix, prefix + Character.MAX_VALUE).clear();
+			dbInstruments.subMap(prefix, prefix + Character.MAX_VALUE).clear();
+			fireNotification("DB_INSTRUMENT_DIRECTORY_COUNT", quote(getParent(dir)));
+			return "OK";
+		}
+		
+		if(c.is("REMOVE", "DB_INSTRUMENT")) {
+			String path = c.next();
+			if(dbInstruments.remove(path) == null) {
+				throw new IllegalArgumentException("Unknown DB instrument: " + path);
+			}
+			
+			fireNotification("DB_INSTRUMENT_COUNT", quote(getParent(path)));
+			return "OK";
+		}
+		
+		if(c.is("ADD", "DB_INSTRUMENTS")) {
+			return "OK[0]";
+		}
+		
+		if(c.is("GET", "DB_INSTRUMENTS_JOB", "INFO")) {
+			c.nextInt();
+			return result("FILES_TOTAL: 0", "FILES_SCANNED: 0", "SCANNING: NONE", "STATUS: 100");
+		}
+		
+		if(c.is("FIND", "LOST", "DB_INSTRUMENT_FILES")) return "";
+		
+		return null;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.benchmarks;
+
+import java.io.IOException;
+
+import java.util.Properties;
+
+/**
+ * Runs {@link FakeLinuxSampler} as a standalone server, so that JSampler
+ * (or any other LSCP client) can be load tested against it.
+ * Usage: <code>FakeLinuxSamplerMain [option=value ...]</code>, where the options are
+ * <code>port</code>, <code>channels</code>, <code>maps</code>, <code>mapSize</code>,
+ * <code>dbDirs</code>, <code>dbDirSize</code>, <code>latency</code>, <code>jitter</code>,
+ * <code>channelInfoRate</code>, <code>voiceCountRate</code> and <code>midiDataRate</code>.
+ * @author Grigor Iliev
+ */
+public class FakeLinuxSamplerMain {
+	private
+	FakeLinuxSamplerMain() { }
+	
+	public static void
+	main(String[] args) throws IOException, InterruptedException {
+		Properties p = new Properties();
+		for(String s : args) {
+			int i = s.indexOf('=');
+			if(i < 1) {
+				System.err.println("Invalid option: " + s);
+				System.exit(1);
+			}
+			
+			p.setProperty(s.substring(0, i), s.substring(i + 1));
+		}
+		
+		FakeLinuxSampler server = new FakeLinuxSampler(getInt(p, "port", 8888));
+		server.addChannels(getInt(p, "channels", 16));
+		
+		int mapSize = getInt(p, "mapSize", 128);
+		for(int i = getInt(p, "maps", 1); i > 0; i--) {
+			server.addMidiInstrumentMap("Map " + i, mapSize);
+		}
+		
+		server.populateInstrumentsDb(getInt(p, "dbDirs", 10), getInt(p, "dbDirSize", 100));
+		server.setLatency(getInt(p, "latency", 0), getInt(p, "jitter", 0));
+		server.start();
+		
+		int rate = getInt(p, "channelInfoRate", 0);
+		if(rate > 0) server.startChannelInfoStorm(rate);
+		rate = getInt(p, "voiceCountRate", 0);
+		if(rate > 0) server.startVoiceCountStorm(rate);
+		rate = getInt(p, "midiDataRate", 0);
+		if(rate > 0) server.startMidiDataStorm(rate);
+		
+		System.out.println("Listening on 127.0.0.1:" + server.getPort());
+		
+		long commands = 0;
+		long notifications = 0;
+		while(true) {
+			Thread.sleep(5000);
+			long c = server.getCommandCount();
+			long n = server.getNotificationCount();
+			System.out.println (
+				"commands/s: " + (c - commands) / 5 + ", notifications/s: " + (n - notifications) / 5
+			);
+			commands = c;
+			notifications = n;
+		}
+	}
+	
+	private static int
+	getInt(Properties p, String key, int def) {
+		String s = p.getProperty(key);
+		return s == null ? def : Integer.parseInt(s);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.MidiInstrument;
+import com.grigoriliev.jsampler.MidiInstrumentMap;
+import com.grigoriliev.jsampler.view.HeadlessViewConfig;
+
+import com.grigoriliev.jsampler.jlscp.MidiInstrumentEntry;
+import com.grigoriliev.jsampler.jlscp.MidiInstrumentInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the mapping, unmapping and the search
+ * for available entries in <code>MidiInstrumentMap</code>.
+ * @author Grigor Iliev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class MidiInstrumentMapBenchmark {
+	@Param({"1000", "10000", "50000"})
+	public int entryCount;
+	
+	private MidiInstrumentMap map;
+	private int bankCount;
+	private final Random random = new Random(1);
+	
+	@Setup
+	public void
+	setup() {
+		if(CC.getViewConfig() == null) CC.setViewConfig(new HeadlessViewConfig());
+		map = new MidiInstrumentMap(0, "Benchmark");
+		
+		for(int i = 0; i < entryCount; i++) map(i / 128, i % 128);
+		bankCount = (entryCount + 127) / 128;
+		
+		// Leave a free program at the end of the last bank
+		map.unmapMidiInstrument(new MidiInstrumentEntry(bankCount - 1, 127));
+	}
+	
+	private MidiInstrumentEntry
+	map(int bank, int program) {
+		MidiInstrumentEntry entry = new MidiInstrumentEntry(bank, program);
+		MidiInstrumentInfo info = new MidiInstrumentInfo(0, entry);
+		info.setName("Instrument " + bank + "/" + program);
+		map.mapMidiInstrument(entry, new MidiInstrument(info));
+		return entry;
+	}
+	
+	@Benchmark
+	public MidiInstrument
+	mapAndUnmap() {
+		return map.unmapMidiInstrument(map(bankCount + 1, random.nextInt(128)));
+	}
+	
+	@Benchmark
+	public MidiInstrument
+	getMidiInstrument() {
+		return map.getMidiInstrument(random.nextInt(bankCount), random.nextInt(128));
+	}
+	
+	@Benchmark
+	public MidiInstrumentEntry
+	getAvailableEntry() { return map.getAvailableEntry(); }
+	
+	@Benchmark
+	public MidiInstrumentEntry
+	getAvailableEntryInBank() { return map.getAvailableEntry(bankCount - 1); }
+}
@@ -0,0 +1,119 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import java.util.concurrent.TimeUnit;
+
+import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.DOMUtils;
+import com.grigoriliev.jsampler.DefaultOrchestraListModel;
+import com.grigoriliev.jsampler.DefaultOrchestraModel;
+import com.grigoriliev.jsampler.OrchestraInstrument;
+import com.grigoriliev.jsampler.view.HeadlessViewConfig;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the saving and loading of the orchestras in XML format.
+ * @author Grigor Iliev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class OrchestraXmlBenchmark {
+	/** The total number of instruments in the orchestras. */
+	@Param({"100", "1000", "10000"})
+	public int instrumentCount;
+	
+	private DefaultOrchestraListModel orchestras;
+	private byte[] xml;
+	
+	@Setup
+	public void
+	setup() {
+		if(CC.getViewConfig() == null) CC.setViewConfig(new HeadlessViewConfig());
+		orchestras = new DefaultOrchestraListModel();
+		
+		int orchestraCount = 10;
+		for(int i = 0; i < orchestraCount; i++) {
+			DefaultOrchestraModel orchestra = new DefaultOrchestraModel();
+			orchestra.setName("Orchestra " + i);
+			orchestra.setDescription("Description of orchestra " + i);
+			
+			for(int j = 0; j < instrumentCount / orchestraCount; j++) {
+				OrchestraInstrument instr = new OrchestraInstrument();
+				instr.setName("Instrument " + j);
+				instr.setDescription("Description of instrument " + j);
+				instr.setFilePath("/usr/share/samples/orchestra" + i + "/instrument" + j + ".gig");
+				instr.setInstrumentIndex(j % 8);
+				instr.setEngine("GIG");
+				orchestra.addInstrument(instr);
+			}
+			
+			orchestras.addOrchestra(orchestra);
+		}
+		
+		xml = save();
+	}
+	
+	@Benchmark
+	public byte[]
+	save() {
+		Document doc = DOMUtils.createEmptyDocument();
+		Node node = doc.createElement("temp");
+		doc.appendChild(node);
+		orchestras.writeObject(doc, doc.getDocumentElement());
+		doc.replaceChild(node.getFirstChild(), node);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DOMUtils.writeObject(doc, out);
+		return out.toByteArray();
+	}
+	
+	@Benchmark
+	public DefaultOrchestraListModel
+	load() {
+		Document doc = DOMUtils.readObject(new ByteArrayInputStream(xml));
+		DefaultOrchestraListModel l = new DefaultOrchestraListModel();
+		l.readObject(doc.getDocumentElement());
+		return l;
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.DefaultSamplerModel;
+import com.grigoriliev.jsampler.SamplerChannelModel;
+import com.grigoriliev.jsampler.view.HeadlessViewConfig;
+
+import com.grigoriliev.jsampler.jlscp.SamplerChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the sampler channel lookups and the
+ * adding and removing of channels in <code>DefaultSamplerModel</code>.
+ * @author Grigor Iliev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class SamplerModelBenchmark {
+	@Param({"16", "128", "1024"})
+	public int channelCount;
+	
+	private DefaultSamplerModel model;
+	private SamplerChannelModel[] channels;
+	private final Random random = new Random(1);
+	
+	@Setup
+	public void
+	setup() {
+		if(CC.getViewConfig() == null) CC.setViewConfig(new HeadlessViewConfig());
+		model = new DefaultSamplerModel();
+		for(int i = 0; i < channelCount; i++) model.addChannel(createChannel(i));
+		channels = model.getChannels();
+	}
+	
+	private static SamplerChannel
+	createChannel(int id) {
+		SamplerChannel c = new SamplerChannel();
+		c.setChannelId(id);
+		return c;
+	}
+	
+	@Benchmark
+	public SamplerChannelModel
+	getChannelById() { return model.getChannelById(random.nextInt(channelCount)); }
+	
+	@Benchmark
+	public int
+	getChannelIndex() {
+		return model.getChannelIndex(channels[random.nextInt(channelCount)]);
+	}
+	
+	@Benchmark
+	public boolean
+	addAndRemoveChannel() {
+		model.addChannel(createChannel(channelCount));
+		return model.removeChannelById(channelCount);
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+/**
+ * Maps the IDs of the sampler channels, the devices, the effect sends and the
+ * MIDI instrument maps of the default session to the IDs of the same objects
+ * on another backend.
+ * @author Grigor Iliev
+ */
+public interface BackendIdMap {
+	/**
+	 * Gets the ID of the specified sampler channel on the backend
+	 * or -1 if the channel is not created on the backend.
+	 */
+	public int getChannelId(int channelId);
+	
+	/**
+	 * Gets the ID of the specified audio output device on the backend
+	 * or -1 if the device is not created on the backend.
+	 */
+	public int getAudioDeviceId(int deviceId);
+	
+	/**
+	 * Gets the ID of the specified MIDI input device on the backend
+	 * or -1 if the device is not created on the backend.
+	 */
+	public int getMidiDeviceId(int deviceId);
+	
+	/**
+	 * Gets the ID of the specified effect send on the backend
+	 * or -1 if the effect send is not created on the backend.
+	 * @param channelId The ID of the sampler channel in the default session.
+	 * @param fxSendId The ID of the effect send in the default session.
+	 */
+	public int getFxSendId(int channelId, int fxSendId);
+	
+	/**
+	 * Gets the ID of the specified MIDI instrument map on the backend or -1
+	 * if the map is not created on the backend. The negative IDs, which
+	 * denote no map or the default map, are returned unchanged.
+	 */
+	public int getMidiInstrumentMapId(int mapId);
+}
@@ -0,0 +1,132 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+
+package com.grigoriliev.jsampler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+
+
+/**
+ * Captures the standard output and the standard error of the backend process
+ * in a bounded buffer, which keeps the most recent lines for diagnostics.
+ * The streams are drained continuously by daemon threads, so that the backend
+ * never blocks on writing to a full pipe, and the oldest lines are discarded
+ * when the buffer is full. This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class BackendOutput {
+	/** The default maximum number of lines kept in the buffer. */
+	public static final int DEFAULT_MAX_LINES = 500;
+	
+	/** The maximum length of a line, the longer lines are truncated. */
+	public static final int MAX_LINE_LENGTH = 1024;
+	
+	private final ArrayDeque<String> lines = new ArrayDeque<String>();
+	private final int maxLines;
+	private long discardedLines = 0;
+	
+	/**
+	 * Creates a new instance of <code>BackendOutput</code>, which
+	 * captures the output of the specified process.
+	 * @param process The backend process.
+	 */
+	public
+	BackendOutput(Process process) { this(process, DEFAULT_MAX_LINES); }
+	
+	/**
+	 * Creates a new instance of <code>BackendOutput</code>, which
+	 * captures the output of the specified process.
+	 * @param process The backend process.
+	 * @param maxLines The maximum number of lines to keep.
+	 */
+	public
+	BackendOutput(Process process, int maxLines) {
+		this.maxLines = maxLines;
+		
+		startReader(process.getInputStream(), "", "Backend-Stdout-Reader");
+		startReader(process.getErrorStream(), "[stderr] ", "Backend-Stderr-Reader");
+	}
+	
+	private void
+	startReader(final InputStream in, final String prefix, String name) {
+		Thread t = new Thread(name) {
+			public void
+			run() {
+				BufferedReader r = new BufferedReader(new InputStreamReader(in));
+				try {
+					String s;
+					while((s = r.readLine()) != null) add(prefix + s);
+				} catch(IOException x) {
+					CC.getLogger().log(Level.FINE, HF.getErrorMessage(x), x);
+				} finally {
+					try { r.close(); }
+					catch(IOException x) { }
+				}
+			}
+		};
+		
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	private synchronized void
+	add(String line) {
+		if(line.length() > MAX_LINE_LENGTH) line = line.substring(0, MAX_LINE_LENGTH) + "...";
+		lines.addLast(line);
+		
+		while(lines.size() > maxLines) {
+			lines.removeFirst();
+			discardedLines++;
+		}
+	}
+	
+	/** Gets the captured lines, starting with the oldest one. */
+	public synchronized String[]
+	getLines() { return lines.toArray(new String[lines.size()]); }
+	
+	/** Gets the number of lines discarded because the buffer was full. */
+	public synchronized long
+	getDiscardedLineCount() { return discardedLines; }
+	
+	/** Removes all captured lines. */
+	public synchronized void
+	clear() {
+		lines.clear();
+		discardedLines = 0;
+	}
+	
+	/** Returns the captured lines as a multi-line string. */
+	@Override
+	public synchronized String
+	toString() {
+		StringBuilder sb = new StringBuilder();
+		if(discardedLines > 0) sb.append("... (").append(discardedLines).append(" lines discarded)\n");
+		for(String s : lines) sb.append(s).append('\n');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+
+package com.grigoriliev.jsampler;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+
+/**
+ * Provides a lightweight check whether a backend is ready to accept
+ * LSCP commands, using a dedicated short-lived connection.
+ * @author Grigor Iliev
+ */
+public class BackendProbe {
+	/** The default connect and read timeout (in milliseconds) of a probe. */
+	public static final int DEFAULT_TIMEOUT = 1000;
+	
+	private BackendProbe() { }
+	
+	/**
+	 * Determines whether the specified backend accepts LSCP connections
+	 * and responds to a <code>GET SERVER INFO</code> command.
+	 * @param server The backend to probe.
+	 * @param timeout The connect and read timeout (in milliseconds).
+	 */
+	public static boolean
+	isReady(Server server, int timeout) {
+		String host = server.getAddress() == null ? "127.0.0.1" : server.getAddress();
+		Socket sock = new Socket();
+		
+		try {
+			sock.connect(new InetSocketAddress(host, server.getPort()), timeout);
+			sock.setSoTimeout(timeout);
+			
+			OutputStream out = sock.getOutputStream();
+			out.write("GET SERVER INFO\r\n".getBytes("US-ASCII"));
+			out.flush();
+			
+			BufferedReader in;
+			in = new BufferedReader(new InputStreamReader(sock.getInputStream(), "US-ASCII"));
+			return in.readLine() != null;
+		} catch(Exception x) {
+			return false;
+		} finally {
+			try { sock.close(); }
+			catch(Exception x) { }
+		}
+	}
+}
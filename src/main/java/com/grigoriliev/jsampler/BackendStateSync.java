@@ -0,0 +1,523 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.io.IOException;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Vector;
+
+import com.grigoriliev.jsampler.LscpPipeline.Reply;
+
+import com.grigoriliev.jsampler.jlscp.FxSend;
+
+
+/**
+ * Keeps the state of a backend in sync with the state of the default session
+ * incrementally. The first synchronization applies the whole state (starting with
+ * <code>RESET</code>), while the later ones apply only the changed settings: the
+ * <code>SET</code> commands that differ from the ones already applied, the instruments
+ * to load, and the sampler channels added, removed or changed in a way which can't be
+ * applied with <code>SET</code> commands, which are recreated. A change of the
+ * devices, the effects or the MIDI instrument maps is applied by applying the whole
+ * state again.
+ *
+ * <p>The IDs of the sampler channels, the devices, the effect sends and the MIDI
+ * instrument maps created on the backend are taken from the replies of the backend,
+ * so they can be mapped to the IDs of the default session (see {@link BackendIdMap}).
+ * The instruments are loaded in background, so after a synchronization
+ * {@link #isLoaded} should be used to determine whether the backend is ready.
+ * The synchronization is done from a single thread, while the IDs
+ * can be mapped from any thread.</p>
+ * @author Grigor Iliev
+ */
+abstract class BackendStateSync implements BackendIdMap {
+	/** The maximum number of passes of a synchronization. */
+	private static final int MAX_PASSES = 3;
+	
+	private static final String ADD_CHANNEL = "ADD CHANNEL";
+	private static final String CREATE_AUDIO_DEVICE = "CREATE AUDIO_OUTPUT_DEVICE ";
+	private static final String CREATE_MIDI_DEVICE = "CREATE MIDI_INPUT_DEVICE ";
+	private static final String ADD_MIDI_MAP = "ADD MIDI_INSTRUMENT_MAP ";
+	private static final String CREATE_FX_SEND = "CREATE FX_SEND ";
+	
+	private final Server server;
+	
+	/** The global state applied to the backend or <code>null</code> if not applied. */
+	private String globalState = null;
+	
+	/** Maps the IDs of the channels of the default session to the IDs on the backend. */
+	private final HashMap<Integer, Integer> channelIds = new HashMap<Integer, Integer>();
+	
+	/**
+	 * Maps the IDs of the channels of the default session to the settings applied
+	 * to the backend. The channels created on the backend, whose settings are not
+	 * applied yet, are mapped to an empty string.
+	 */
+	private final HashMap<Integer, String> channelStates = new HashMap<Integer, String>();
+	
+	/*
+	 * The maps of the IDs of the default session to the IDs on the backend,
+	 * which are modified with the monitor of this object held.
+	 */
+	private final HashMap<Integer, Integer> audioDeviceIds = new HashMap<Integer, Integer>();
+	private final HashMap<Integer, Integer> midiDeviceIds = new HashMap<Integer, Integer>();
+	private final HashMap<Integer, Integer> midiMapIds = new HashMap<Integer, Integer>();
+	
+	/** Maps the IDs of the channels to the maps of the IDs of their effect sends. */
+	private final HashMap<Integer, HashMap<Integer, Integer>> fxSendIds =
+		new HashMap<Integer, HashMap<Integer, Integer>>();
+	
+	/** Determines whether the MIDI instrument maps are applied with the global state. */
+	private boolean midiMapsApplied = false;
+	
+	private volatile boolean invalidated = false;
+	
+	/** Determines whether instruments are loaded since the last check. */
+	private boolean loadPending = false;
+	
+	/** The state of the default session, exported with the channel IDs on the backend. */
+	private static class State {
+		String global;
+		boolean midiMapsExported;
+		
+		/** The IDs of the channels of the default session in the order of the model. */
+		final Vector<Integer> channels = new Vector<Integer>();
+		
+		/** The settings of the channels, which are created on the backend. */
+		final HashMap<Integer, String> channelStates = new HashMap<Integer, String>();
+		
+		/* The IDs of the devices and the maps in the order of their creation. */
+		final Vector<Integer> audioDevices = new Vector<Integer>();
+		final Vector<Integer> midiDevices = new Vector<Integer>();
+		final Vector<Integer> midiMaps = new Vector<Integer>();
+		
+		/** The IDs of the effect sends of the channels in the order of their creation. */
+		final HashMap<Integer, Vector<Integer>> fxSends = new HashMap<Integer, Vector<Integer>>();
+	}
+	
+	/**
+	 * Creates a new instance of <code>BackendStateSync</code>.
+	 * @param server The backend to keep in sync with the default session.
+	 */
+	BackendStateSync(Server server) { this.server = server; }
+	
+	/** Gets the backend, which is kept in sync with the default session. */
+	public Server
+	getServer() { return server; }
+	
+	/**
+	 * Determines whether the state of the default session can be exported,
+	 * i.e. its backend is connected and its state is retrieved.
+	 * Invoked from the UI thread.
+	 */
+	protected abstract boolean
+	isPrimaryReady();
+	
+	/** Causes the whole state to be applied on the next synchronization. */
+	public void
+	invalidate() { invalidated = true; }
+	
+	@Override
+	public synchronized int
+	getChannelId(int channelId) { return getId(channelIds, channelId); }
+	
+	@Override
+	public synchronized int
+	getAudioDeviceId(int deviceId) { return getId(audioDeviceIds, deviceId); }
+	
+	@Override
+	public synchronized int
+	getMidiDeviceId(int deviceId) { return getId(midiDeviceIds, deviceId); }
+	
+	@Override
+	public synchronized int
+	getFxSendId(int channelId, int fxSendId) {
+		HashMap<Integer, Integer> ids = fxSendIds.get(channelId);
+		return ids == null ? -1 : getId(ids, fxSendId);
+	}
+	
+	/**
+	 * Gets the ID of the specified MIDI instrument map on the backend. The maps
+	 * are expected to have the same IDs on the backend, unless they are applied
+	 * with the global state (see {@link JSPrefs#EXPORT_MIDI_MAPS_TO_SESSION_SCRIPT}).
+	 */
+	@Override
+	public synchronized int
+	getMidiInstrumentMapId(int mapId) {
+		if(mapId < 0 || !midiMapsApplied) return mapId;
+		return getId(midiMapIds, mapId);
+	}
+	
+	private static int
+	getId(HashMap<Integer, Integer> ids, int id) {
+		Integer i = ids.get(id);
+		return i == null ? -1 : i;
+	}
+	
+	/**
+	 * Applies the changes of the state of the default session to the backend.
+	 * @return <code>true</code> if all changes are applied, <code>false</code>
+	 * if the state of the default session can't be exported at the moment.
+	 * @throws Exception If the changes can't be applied.
+	 */
+	public boolean
+	synchronize() throws Exception {
+		LscpPipeline p = openPipeline();
+		
+		try {
+			for(int i = 0; i < MAX_PASSES; i++) {
+				State s = exportState();
+				if(s == null) return false;
+				if(applyState(s, p)) return true;
+			}
+		} finally {
+			p.close();
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Determines whether the instruments loaded by the synchronizations are
+	 * loaded by the backend. The instruments, which failed to load, are logged
+	 * and considered loaded.
+	 * @throws IOException If the state of the channels can't be retrieved.
+	 */
+	public boolean
+	isLoaded() throws IOException {
+		if(!loadPending) return true;
+		
+		LscpPipeline p = openPipeline();
+		
+		try {
+			for(Map.Entry<Integer, String> e : channelStates.entrySet()) {
+				if(!e.getValue().contains("LOAD INSTRUMENT")) continue;
+				
+				int id = channelIds.get(e.getKey());
+				int status = getInstrumentStatus(p.query("GET CHANNEL INFO " + id));
+				if(status >= 0 && status < 100) return false;
+				
+				if(status < 0) {
+					CC.getLogger().info (
+						server.getName() + ": failed to load the instrument of channel " + id
+					);
+				}
+			}
+		} finally {
+			p.close();
+		}
+		
+		loadPending = false;
+		return true;
+	}
+	
+	private static int
+	getInstrumentStatus(String[] channelInfo) {
+		for(String s : channelInfo) {
+			if(!s.startsWith("INSTRUMENT_STATUS:")) continue;
+			
+			try { return Integer.parseInt(s.substring(s.indexOf(':') + 1).trim()); }
+			catch(NumberFormatException x) { return -1; }
+		}
+		
+		return 100;
+	}
+	
+	private LscpPipeline
+	openPipeline() throws IOException {
+		String host = server.getAddress() == null ? "127.0.0.1" : server.getAddress();
+		int timeout = CC.preferences().getIntProperty(JSPrefs.SOCKET_READ_TIMEOUT) * 1000;
+		return new LscpPipeline(host, server.getPort(), timeout);
+	}
+	
+	/** Exports the state of the default session from the UI thread. */
+	private State
+	exportState() throws Exception {
+		final HashMap<Integer, Integer> ids = new HashMap<Integer, Integer>(channelIds);
+		final State[] state = new State[1];
+		
+		CC.runOnUiThreadAndWait(new Runnable() {
+			public void
+			run() {
+				if(!isPrimaryReady()) return;
+				
+				State s = new State();
+				s.global = JSUtils.exportGlobalStateToLscpScript();
+				s.midiMapsExported = CC.preferences().getBoolProperty (
+					JSPrefs.EXPORT_MIDI_MAPS_TO_SESSION_SCRIPT
+				);
+				
+				SamplerModel sm = CC.getDefaultSession().getSamplerModel();
+				for(AudioDeviceModel m : sm.getAudioDevices()) s.audioDevices.add(m.getDeviceId());
+				for(MidiDeviceModel m : sm.getMidiDevices()) s.midiDevices.add(m.getDeviceId());
+				for(MidiInstrumentMap m : sm.getMidiInstrumentMaps()) s.midiMaps.add(m.getMapId());
+				
+				for(SamplerChannelModel m : sm.getChannels()) {
+					s.channels.add(m.getChannelId());
+					
+					Vector<Integer> fxSends = new Vector<Integer>();
+					for(FxSend f : m.getFxSends()) fxSends.add(f.getFxSendId());
+					s.fxSends.put(m.getChannelId(), fxSends);
+					
+					Integer id = ids.get(m.getChannelId());
+					if(id == null) continue;
+					s.channelStates.put(m.getChannelId(), JSUtils.exportChannelStateToLscpScript(m, id));
+				}
+				
+				state[0] = s;
+			}
+		});
+		
+		return state[0];
+	}
+	
+	/**
+	 * Applies the differences between the specified state and the state applied
+	 * to the backend.
+	 * @return <code>true</code> if the state is applied, <code>false</code> if
+	 * channels are created on the backend, whose settings are not applied yet.
+	 */
+	private boolean
+	applyState(State s, LscpPipeline p) throws IOException {
+		Vector<Integer> added = new Vector<Integer>();
+		
+		// the channel and the effect send of each CREATE FX_SEND command sent
+		Vector<int[]> fxSends = new Vector<int[]>();
+		
+		boolean global = addCommands(s, p, added, fxSends);
+		
+		if(p.getCommandCount() == 0) return true;
+		
+		Reply[] replies = p.execute();
+		
+		String err = LscpPipeline.getErrorSummary(replies);
+		if(err != null) CC.getLogger().info(server.getName() + ": " + err);
+		
+		synchronized(this) {
+			int chn = 0, adev = 0, mdev = 0, map = 0, fx = 0;
+			
+			for(Reply r : replies) {
+				String cmd = r.getCommand();
+				if(cmd.startsWith("LOAD INSTRUMENT ")) loadPending = true;
+				
+				if(cmd.equals(ADD_CHANNEL)) {
+					Integer id = added.get(chn++);
+					if(r.isError() || r.getResultIndex() == -1) {
+						throw new IOException(server.getName() + ": " + r.getReply());
+					}
+					
+					channelIds.put(id, r.getResultIndex());
+					channelStates.put(id, "");
+					fxSendIds.remove(id);
+				} else if(cmd.startsWith(CREATE_FX_SEND)) {
+					int[] k = fxSends.get(fx++);
+					putId(fxSendIds.get(k[0]), k[1], r);
+				} else if(global && cmd.startsWith(CREATE_AUDIO_DEVICE)) {
+					putId(audioDeviceIds, get(s.audioDevices, adev++), r);
+				} else if(global && cmd.startsWith(CREATE_MIDI_DEVICE)) {
+					putId(midiDeviceIds, get(s.midiDevices, mdev++), r);
+				} else if(global && cmd.startsWith(ADD_MIDI_MAP)) {
+					putId(midiMapIds, get(s.midiMaps, map++), r);
+				}
+			}
+		}
+		
+		return added.isEmpty();
+	}
+	
+	/**
+	 * Adds to the specified pipeline the commands, which apply the differences
+	 * between the specified state and the state applied to the backend.
+	 * @param added Receives the IDs of the channels to be created.
+	 * @param fxSends Receives the channel and the effect send ID
+	 * of each effect send to be created.
+	 * @return <code>true</code> if the whole global state is applied.
+	 */
+	private synchronized boolean
+	addCommands(State s, LscpPipeline p, Vector<Integer> added, Vector<int[]> fxSends) {
+		if(invalidated || globalState == null) {
+			invalidated = false;
+			globalState = null;
+		}
+		
+		Vector<String> cmds = globalState == null ? null : diff(globalState, s.global, false);
+		boolean global = cmds == null;
+		
+		if(global) {
+			// the channels are removed by the RESET command
+			channelIds.clear();
+			channelStates.clear();
+			fxSendIds.clear();
+			audioDeviceIds.clear();
+			midiDeviceIds.clear();
+			midiMapIds.clear();
+			midiMapsApplied = s.midiMapsExported;
+			cmds = getCommands(s.global);
+		}
+		
+		for(String cmd : cmds) p.add(cmd);
+		globalState = s.global;
+		
+		for(Integer id : new HashSet<Integer>(channelIds.keySet())) {
+			if(s.channels.contains(id)) continue;
+			p.add("REMOVE CHANNEL " + channelIds.remove(id));
+			channelStates.remove(id);
+			fxSendIds.remove(id);
+		}
+		
+		for(Integer id : s.channels) {
+			String applied = channelStates.get(id);
+			String state = s.channelStates.get(id);
+			if(applied == null || state == null || applied.equals(state)) continue;
+			
+			boolean created = applied.length() == 0;
+			cmds = created ? getCommands(state) : diff(applied, state, true);
+			
+			if(cmds == null) {
+				// recreates the channel
+				p.add("REMOVE CHANNEL " + channelIds.remove(id));
+				channelStates.remove(id);
+				fxSendIds.remove(id);
+				continue;
+			}
+			
+			if(created) fxSendIds.put(id, new HashMap<Integer, Integer>());
+			int fx = 0;
+			
+			for(String cmd : cmds) {
+				if(cmd.equals(ADD_CHANNEL)) continue;
+				p.add(cmd);
+				
+				if(created && cmd.startsWith(CREATE_FX_SEND)) {
+					fxSends.add(new int[] { id, get(s.fxSends.get(id), fx++) });
+				}
+			}
+			
+			channelStates.put(id, state);
+		}
+		
+		for(Integer id : s.channels) {
+			if(channelIds.containsKey(id)) continue;
+			p.add(ADD_CHANNEL);
+			added.add(id);
+		}
+		
+		return global;
+	}
+	
+	/** Gets the element at the specified position or -1 if there is no such element. */
+	private static int
+	get(Vector<Integer> v, int i) { return v == null || i >= v.size() ? -1 : v.get(i); }
+	
+	/** Maps the specified ID to the result index of the specified reply, if successful. */
+	private static void
+	putId(HashMap<Integer, Integer> ids, int id, Reply r) {
+		if(ids == null || id == -1 || r.isError() || r.getResultIndex() == -1) return;
+		ids.put(id, r.getResultIndex());
+	}
+	
+	/** Gets the commands of the specified LSCP script. */
+	private static Vector<String>
+	getCommands(String script) {
+		Vector<String> v = new Vector<String>();
+		for(String cmd : script.split("\r?\n")) {
+			cmd = cmd.trim();
+			if(cmd.length() > 0 && !cmd.startsWith("#")) v.add(cmd);
+		}
+		
+		return v;
+	}
+	
+	/**
+	 * Gets the commands, which change the state applied with the commands of
+	 * <code>oldScript</code> to the state of the commands of <code>newScript</code>.
+	 * @param channel Determines whether the scripts are sampler channel settings.
+	 * @return The commands or <code>null</code> if the change
+	 * can't be applied with <code>SET</code> commands.
+	 */
+	private static Vector<String>
+	diff(String oldScript, String newScript, boolean channel) {
+		LinkedHashSet<String> oldCmds = new LinkedHashSet<String>(getCommands(oldScript));
+		LinkedHashSet<String> newCmds = new LinkedHashSet<String>(getCommands(newScript));
+		
+		HashSet<String> newKeys = new HashSet<String>();
+		Vector<String> cmds = new Vector<String>();
+		boolean instrumentChanged = false;
+		
+		for(String cmd : newCmds) {
+			if(oldCmds.contains(cmd)) continue;
+			
+			if(channel && cmd.startsWith("LOAD INSTRUMENT ")) {
+				instrumentChanged = true;
+				cmds.add(cmd);
+				continue;
+			}
+			
+			if(!cmd.startsWith("SET ")) return null;
+			
+			// the routing of the channel is reset when the device is changed
+			if(cmd.startsWith("SET CHANNEL AUDIO_OUTPUT_DEVICE ")) return null;
+			if(cmd.startsWith("SET CHANNEL MIDI_INPUT_DEVICE ")) return null;
+			
+			newKeys.add(getKey(cmd));
+			cmds.add(cmd);
+		}
+		
+		Vector<String> resets = new Vector<String>();
+		
+		for(String cmd : oldCmds) {
+			if(newCmds.contains(cmd)) continue;
+			if(cmd.startsWith("SET ") && newKeys.contains(getKey(cmd))) continue;
+			if(!channel) return null;
+			
+			// replaced by the new instrument
+			if(cmd.startsWith("LOAD INSTRUMENT ") && instrumentChanged) continue;
+			
+			// the settings exported only when they differ from the default one
+			if(cmd.startsWith("SET CHANNEL MUTE ") || cmd.startsWith("SET CHANNEL SOLO ")) {
+				resets.add(getKey(cmd) + " 0");
+			} else if(cmd.startsWith("SET CHANNEL AUDIO_OUTPUT_CHANNEL ")) {
+				String[] s = cmd.split(" ");
+				if(s.length != 6) return null;
+				resets.add(getKey(cmd) + " " + s[4]);
+			} else {
+				return null;
+			}
+		}
+		
+		cmds.addAll(0, resets);
+		return cmds;
+	}
+	
+	/** Gets the part of the specified <code>SET</code> command before the value. */
+	private static String
+	getKey(String cmd) {
+		int i = cmd.indexOf('=');
+		if(i != -1) return cmd.substring(0, i + 1);
+		i = cmd.lastIndexOf(' ');
+		return i == -1 ? cmd : cmd.substring(0, i);
+	}
+}
@@ -21,6 +21,8 @@
 
 package com.grigoriliev.jsampler;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -36,6 +38,8 @@ import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 import java.util.logging.StreamHandler;
 
+import javax.xml.stream.XMLStreamWriter;
+
 import com.grigoriliev.jsampler.event.ListEvent;
 import com.grigoriliev.jsampler.event.OrchestraEvent;
 import com.grigoriliev.jsampler.juife.PDUtils;
@@ -81,19 +85,26 @@ public class CC {
 	private static JSMainFrame mainFrame = null;
 	private static JSProgress progress = null;
 	
-	private final static Client lsClient = new Client();
+	private final static ConnectionManager connectionManager = new ConnectionManager();
+	
+	private final static Client lsClient =
+		connectionManager.getClient(ConnectionManager.TrafficClass.CONTROL);
 	
 	private static String jSamplerHome = null;
 	
-	private final static TaskQueue taskQueue = new TaskQueue();
+	private final static TaskQueue taskQueue =
+		connectionManager.getTaskQueue(ConnectionManager.TrafficClass.CONTROL);
 	private final static Timer timer = new Timer();
 	private static TimerTask progressTimerTask = null;
 	
+	/** The number of the task queues of the default session, which are not idle. */
+	private static int busyQueueCount = 0;
+	
 	private static int connectionFailureCount = 0;
 	
 	static class ProgressTimerTask extends TimerTask {
 		public void run() {
-			PDUtils.runOnUiThread(new Runnable() { public void run() { run0(); } });
+			runOnUiThread(new Runnable() { public void run() { run0(); } });
 		}
 		
 		private void
@@ -123,21 +134,27 @@ public class CC {
 	/**
 	 * Returns the task queue to be used for scheduling tasks
 	 * for execution out of the event-dispatching thread.
+	 * This is the task queue of the session bound to the current thread.
 	 * @return The task queue to be used for scheduling tasks
 	 * for execution out of the event-dispatching thread.
+	 * @see #getSession
 	 */
 	public static synchronized TaskQueue
-	getTaskQueue() { return taskQueue; }
+	getTaskQueue() { return getSession().getTaskQueue(); }
 	
 	/**
 	 * Adds the specified task to the task queue. All task in the
 	 * queue equal to the specified task are removed from the queue.
+	 * @return <code>true</code> if equal tasks were removed from the queue,
+	 * <code>false</code> otherwise.
 	 */
-	public static synchronized void
+	public static synchronized boolean
 	scheduleTask(Task t) {
-		while(getTaskQueue().removeTask(t)) { }
+		boolean b = false;
+		while(getTaskQueue().removeTask(t)) b = true;
 		
 		getTaskQueue().add(t);
+		return b;
 	}
 	
 	/**
@@ -194,6 +211,111 @@ public class CC {
 	public static void
 	setProgressIndicator(JSProgress progress) { CC.progress = progress; }
 	
+	private static UiThreadExecutor uiExecutor = null;
+	
+	/**
+	 * Determines whether JSampler runs headless, without a graphical user interface.
+	 * @see #setUiExecutor
+	 */
+	public static boolean
+	isHeadless() { return uiExecutor != null; }
+	
+	/**
+	 * Gets the executor used as UI thread when JSampler runs headless.
+	 * @return The executor used as UI thread or <code>null</code>
+	 * if the UI thread of the UI toolkit is used.
+	 */
+	public static UiThreadExecutor
+	getUiExecutor() { return uiExecutor; }
+	
+	/**
+	 * Sets the executor to be used as UI thread. Should be invoked
+	 * before the initialization of the application, to run JSampler headless.
+	 * @param executor The executor to be used as UI thread or
+	 * <code>null</code> to use the UI thread of the UI toolkit.
+	 */
+	public static void
+	setUiExecutor(UiThreadExecutor executor) { uiExecutor = executor; }
+	
+	/**
+	 * Schedules the specified task for execution on the UI thread.
+	 * @param r The task to be executed.
+	 */
+	public static void
+	runOnUiThread(Runnable r) {
+		SamplerSession s = SamplerSession.getBoundSession();
+		if(s != null) r = s.bind(r);
+		
+		UiThreadExecutor e = uiExecutor;
+		if(e == null) PDUtils.runOnUiThread(r);
+		else e.execute(r);
+	}
+	
+	/**
+	 * Runs the specified task on the UI thread and waits for its completion.
+	 * @param r The task to be executed.
+	 * @throws Exception If the task has failed or the waiting is interrupted.
+	 */
+	public static void
+	runOnUiThreadAndWait(Runnable r) throws Exception {
+		SamplerSession s = SamplerSession.getBoundSession();
+		if(s != null) r = s.bind(r);
+		
+		UiThreadExecutor e = uiExecutor;
+		if(e == null) PDUtils.runOnUiThreadAndWait(r);
+		else e.executeAndWait(r);
+	}
+	
+	/**
+	 * Returns a listener, which forwards the task queue events to the specified
+	 * listener on the UI thread. The task queue events are delivered on the thread
+	 * of the UI toolkit, so when JSampler runs headless they are passed to the
+	 * headless executor, which is the only thread accessing the models.
+	 * Otherwise the events are forwarded immediately.
+	 * @param l The listener to be notified on the UI thread.
+	 */
+	public static TaskQueueListener
+	uiThreadQueueListener(final TaskQueueListener l) {
+		return new TaskQueueListener() {
+			public void
+			stateChanged(final TaskQueueEvent e) {
+				if(uiExecutor == null) {
+					l.stateChanged(e);
+					return;
+				}
+				
+				runOnUiThread(new Runnable() {
+					public void
+					run() { l.stateChanged(e); }
+				});
+			}
+		};
+	}
+	
+	/**
+	 * Returns a listener, which forwards the task events to the specified
+	 * listener on the UI thread.
+	 * @param l The listener to be notified on the UI thread.
+	 * @see #uiThreadQueueListener
+	 */
+	public static TaskListener
+	uiThreadTaskListener(final TaskListener l) {
+		return new TaskListener() {
+			public void
+			taskPerformed(final TaskEvent e) {
+				if(uiExecutor == null) {
+					l.taskPerformed(e);
+					return;
+				}
+				
+				runOnUiThread(new Runnable() {
+					public void
+					run() { l.taskPerformed(e); }
+				});
+			}
+		};
+	}
+	
 	/**
 	 * Gets the absolute path to the JSampler's home location.
 	 * @return The absolute path to the JSampler's home location
@@ -217,6 +339,7 @@ public class CC {
 	 */
 	protected static void
 	initJSampler() {
+		getStartupTimeline().mark("Class loading");
 		fos = null;
 		setJSamplerHome(Prefs.getJSamplerHome());
 		String s = getJSamplerHome();
@@ -245,90 +368,209 @@ public class CC {
 		}, 1000, 1000);
 		
 		getLogger().fine("CC.jsStarted");
+		getStartupTimeline().mark("Logging");
 		
-		getTaskQueue().addTaskQueueListener(getHandler());
+		// the tasks of all connections are shown in the progress indicator
+		// and the socket errors of the control connection are handled as connection failures
+		TaskQueueListener tql = uiThreadQueueListener(getHandler());
+		for(ConnectionManager.TrafficClass c : ConnectionManager.TrafficClass.values()) {
+			getConnectionManager().getTaskQueue(c).addTaskQueueListener(tql);
+		}
 		
 		getTaskQueue().start();
+		getConnectionManager().start();
+		
+		// the state is retrieved after the notifications are subscribed, so that
+		// no change is missed, and again when the events connection is reestablished
+		getConnectionManager().addEventsConnectedListener(new GenericListener() {
+			public void
+			jobDone(GenericEvent e) { onEventsConnected(); }
+		});
+		getStartupTimeline().mark("Task queue");
+		
+		// the notifications are received through a dedicated connection
+		Client ec = getConnectionManager().getClient(ConnectionManager.TrafficClass.EVENTS);
+		
+		ec.removeChannelCountListener(getHandler());
+		ec.addChannelCountListener(getHandler());
+		
+		ec.removeChannelInfoListener(getHandler());
+		ec.addChannelInfoListener(getHandler());
 		
-		getClient().removeChannelCountListener(getHandler());
-		getClient().addChannelCountListener(getHandler());
+		ec.removeFxSendCountListener(getHandler());
+		ec.addFxSendCountListener(getHandler());
 		
-		getClient().removeChannelInfoListener(getHandler());
-		getClient().addChannelInfoListener(getHandler());
+		ec.removeFxSendInfoListener(getHandler());
+		ec.addFxSendInfoListener(getHandler());
 		
-		getClient().removeFxSendCountListener(getHandler());
-		getClient().addFxSendCountListener(getHandler());
+		ec.removeStreamCountListener(getHandler());
+		ec.addStreamCountListener(getHandler());
 		
-		getClient().removeFxSendInfoListener(getHandler());
-		getClient().addFxSendInfoListener(getHandler());
+		ec.removeVoiceCountListener(getHandler());
+		ec.addVoiceCountListener(getHandler());
 		
-		getClient().removeStreamCountListener(getHandler());
-		getClient().addStreamCountListener(getHandler());
+		ec.removeTotalStreamCountListener(getHandler());
+		ec.addTotalStreamCountListener(getHandler());
 		
-		getClient().removeVoiceCountListener(getHandler());
-		getClient().addVoiceCountListener(getHandler());
+		ec.removeTotalVoiceCountListener(getHandler());
+		ec.addTotalVoiceCountListener(getHandler());
 		
-		getClient().removeTotalStreamCountListener(getHandler());
-		getClient().addTotalStreamCountListener(getHandler());
+		ec.removeAudioDeviceCountListener(audioDeviceCountListener);
+		ec.addAudioDeviceCountListener(audioDeviceCountListener);
 		
-		getClient().removeTotalVoiceCountListener(getHandler());
-		getClient().addTotalVoiceCountListener(getHandler());
+		ec.removeAudioDeviceInfoListener(audioDeviceInfoListener);
+		ec.addAudioDeviceInfoListener(audioDeviceInfoListener);
 		
-		getClient().removeAudioDeviceCountListener(audioDeviceCountListener);
-		getClient().addAudioDeviceCountListener(audioDeviceCountListener);
+		ec.removeMidiDeviceCountListener(midiDeviceCountListener);
+		ec.addMidiDeviceCountListener(midiDeviceCountListener);
 		
-		getClient().removeAudioDeviceInfoListener(audioDeviceInfoListener);
-		getClient().addAudioDeviceInfoListener(audioDeviceInfoListener);
+		ec.removeMidiDeviceInfoListener(midiDeviceInfoListener);
+		ec.addMidiDeviceInfoListener(midiDeviceInfoListener);
 		
-		getClient().removeMidiDeviceCountListener(midiDeviceCountListener);
-		getClient().addMidiDeviceCountListener(midiDeviceCountListener);
+		ec.removeMidiInstrumentMapCountListener(midiInstrMapCountListener);
+		ec.addMidiInstrumentMapCountListener(midiInstrMapCountListener);
 		
-		getClient().removeMidiDeviceInfoListener(midiDeviceInfoListener);
-		getClient().addMidiDeviceInfoListener(midiDeviceInfoListener);
+		ec.removeMidiInstrumentMapInfoListener(midiInstrMapInfoListener);
+		ec.addMidiInstrumentMapInfoListener(midiInstrMapInfoListener);
 		
-		getClient().removeMidiInstrumentMapCountListener(midiInstrMapCountListener);
-		getClient().addMidiInstrumentMapCountListener(midiInstrMapCountListener);
+		ec.removeMidiInstrumentCountListener(getHandler());
+		ec.addMidiInstrumentCountListener(getHandler());
 		
-		getClient().removeMidiInstrumentMapInfoListener(midiInstrMapInfoListener);
-		getClient().addMidiInstrumentMapInfoListener(midiInstrMapInfoListener);
+		ec.removeMidiInstrumentInfoListener(getHandler());
+		ec.addMidiInstrumentInfoListener(getHandler());
 		
-		getClient().removeMidiInstrumentCountListener(getHandler());
-		getClient().addMidiInstrumentCountListener(getHandler());
+		ec.removeGlobalInfoListener(getHandler());
+		ec.addGlobalInfoListener(getHandler());
 		
-		getClient().removeMidiInstrumentInfoListener(getHandler());
-		getClient().addMidiInstrumentInfoListener(getHandler());
+		ec.removeChannelMidiDataListener(getHandler());
+		ec.addChannelMidiDataListener(getHandler());
 		
-		getClient().removeGlobalInfoListener(getHandler());
-		getClient().addGlobalInfoListener(getHandler());
+		ec.removeSendEffectChainCountListener(getHandler());
+		ec.addSendEffectChainCountListener(getHandler());
 		
-		getClient().removeChannelMidiDataListener(getHandler());
-		getClient().addChannelMidiDataListener(getHandler());
+		ec.removeSendEffectChainInfoListener(getHandler());
+		ec.addSendEffectChainInfoListener(getHandler());
 		
-		getClient().removeSendEffectChainCountListener(getHandler());
-		getClient().addSendEffectChainCountListener(getHandler());
+		ec.removeEffectInstanceInfoListener(getHandler());
+		ec.addEffectInstanceInfoListener(getHandler());
 		
-		getClient().removeSendEffectChainInfoListener(getHandler());
-		getClient().addSendEffectChainInfoListener(getHandler());
+		SamplerSession ds = getDefaultSession();
+		InstrumentsDbAdapter dbl = ds.getInstrumentsDbCache().getInstrumentsDbListener();
+		ec.removeInstrumentsDbListener(dbl);
+		ec.addInstrumentsDbListener(dbl);
 		
-		getClient().removeEffectInstanceInfoListener(getHandler());
-		getClient().addEffectInstanceInfoListener(getHandler());
+		dbl = ds.getInstrumentsDbIndex().getInstrumentsDbListener();
+		ec.removeInstrumentsDbListener(dbl);
+		ec.addInstrumentsDbListener(dbl);
+		
+		dbl = ds.getScanJobManager().getInstrumentsDbListener();
+		ec.removeInstrumentsDbListener(dbl);
+		ec.addInstrumentsDbListener(dbl);
+		
+		getStandbyManager().init();
+		getMirrorGroup().init();
 		
 		CC.addConnectionEstablishedListener(new GenericListener() {
 			public void
 			jobDone(GenericEvent e) {
 				connectionFailureCount = 0;
+				getStartupTimeline().finish("Connection");
 			}
 		});
+		
+		getStartupTimeline().mark("LSCP listeners");
 	}
 	
+	private final static StartupTimeline startupTimeline = new StartupTimeline();
+	
+	/**
+	 * Gets the timeline of the application startup, which is logged when
+	 * the first connection to the backend is established. The deferred phases
+	 * ending after that are logged when they end.
+	 */
+	public static StartupTimeline
+	getStartupTimeline() { return startupTimeline; }
+	
 	private final static OrchestraListModel orchestras = new DefaultOrchestraListModel();
 	
+	/** Whether the loading of the orchestras is deferred until first access. */
+	private static boolean orchestrasPending = false;
+	
+	/** The thread loading the deferred orchestras or <code>null</code>. */
+	private static Thread orchestrasLoader = null;
+	
 	/**
 	 * Returns a list containing all available orchestras.
+	 * If the loading of the orchestras is deferred, they are loaded first.
+	 * If they are being loaded by another thread, waits for the loading to finish.
 	 * @return A list containing all available orchestras.
+	 * @see #loadOrchestrasLazily
 	 */
 	public static OrchestraListModel
-	getOrchestras() { return orchestras; }
+	getOrchestras() {
+		ensureOrchestrasLoaded();
+		return orchestras;
+	}
+	
+	/**
+	 * Defers the loading of the orchestras until they are accessed
+	 * or until the UI thread processes the pending events.
+	 * @see #loadOrchestras
+	 */
+	public static void
+	loadOrchestrasLazily() {
+		synchronized(orchestras) { orchestrasPending = true; }
+		
+		runOnUiThread(new Runnable() {
+			public void
+			run() { ensureOrchestrasLoaded(); }
+		});
+	}
+	
+	private static void
+	ensureOrchestrasLoaded() {
+		synchronized(orchestras) {
+			// loadOrchestras() accesses the orchestras through getOrchestras()
+			if(orchestrasLoader == Thread.currentThread()) return;
+			
+			while(orchestrasLoader != null) {
+				try { orchestras.wait(); }
+				catch(InterruptedException x) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			
+			if(!orchestrasPending) return;
+			orchestrasLoader = Thread.currentThread();
+		}
+		
+		try {
+			loadOrchestras();
+			getStartupTimeline().mark("Orchestras");
+		} finally {
+			synchronized(orchestras) {
+				orchestrasPending = false;
+				orchestrasLoader = null;
+				orchestras.notifyAll();
+			}
+		}
+	}
+	
+	private static OrchestraSearchIndex orchestraSearchIndex = null;
+	
+	/**
+	 * Gets the index used to search for instruments in all orchestras.
+	 * The index is created when this method is invoked for the first time.
+	 */
+	public static synchronized OrchestraSearchIndex
+	getOrchestraSearchIndex() {
+		if(orchestraSearchIndex == null) {
+			orchestraSearchIndex = new OrchestraSearchIndex(getOrchestras());
+		}
+		
+		return orchestraSearchIndex;
+	}
 	
 	private final static ServerList servers = new ServerList();
 	
@@ -343,19 +585,172 @@ public class CC {
 		jobDone(GenericEvent e) { saveServerList(); }
 	}
 	
-	private static final 
+	private final static ChannelTemplateList channelTemplates = new ChannelTemplateList();
 	
-	LostFilesModel lostFilesModel = new LostFilesModel();
+	/** Returns the list of channel templates. */
+	public static ChannelTemplateList
+	getChannelTemplates() { return channelTemplates; }
+	
+	private static GenericListener channelTemplatesListener = new GenericListener() {
+		public void
+		jobDone(GenericEvent e) { saveChannelTemplates(); }
+	};
+	
+	private static LostFilesModel lostFilesModel = null;
+	
+	/** Gets the lost files model, which is created when first accessed. */
+	public static synchronized LostFilesModel
+	getLostFilesModel() {
+		if(lostFilesModel == null) lostFilesModel = new LostFilesModel();
+		return lostFilesModel;
+	}
+	
+	/**
+	 * Gets the cache of the instruments database directory and instrument
+	 * information of the session bound to the current thread.
+	 * @return The cache of the instruments database directory and instrument information.
+	 * @see #getSession
+	 */
+	public static InstrumentsDbCache
+	getInstrumentsDbCache() { return getSession().getInstrumentsDbCache(); }
+	
+	/**
+	 * Gets the local search index of the instruments database of the session
+	 * bound to the current thread. The index is maintained only for the
+	 * default session and only if enabled by {@link JSPrefs#INSTRUMENTS_DB_LOCAL_INDEX}.
+	 * @return The local search index of the instruments database.
+	 * @see #getSession
+	 */
+	public static InstrumentsDbIndex
+	getInstrumentsDbIndex() { return getSession().getInstrumentsDbIndex(); }
 	
-	public static LostFilesModel
-	getLostFilesModel() { return lostFilesModel; }
+	private static final TaskMetrics taskMetrics = new TaskMetrics();
+	
+	/**
+	 * Gets the statistics of the executed tasks. The statistics are
+	 * collected only if enabled by {@link JSPrefs#TASK_METRICS}.
+	 * @return The statistics of the executed tasks.
+	 */
+	public static TaskMetrics
+	getTaskMetrics() { return taskMetrics; }
+	
+	private static final NotificationMetrics notificationMetrics = new NotificationMetrics();
+	
+	/**
+	 * Gets the metrics of the notifications received from the backend.
+	 * The metrics are collected only if enabled by
+	 * {@link JSPrefs#NOTIFICATION_METRICS}.
+	 * @return The metrics of the notifications received from the backend.
+	 */
+	public static NotificationMetrics
+	getNotificationMetrics() { return notificationMetrics; }
+	
+	private static final MetricsEndpoint metricsEndpoint = new MetricsEndpoint();
+	
+	/**
+	 * Gets the local HTTP endpoint publishing the notification and task metrics,
+	 * which is started if {@link JSPrefs#METRICS_HTTP_PORT} is set.
+	 */
+	public static MetricsEndpoint
+	getMetricsEndpoint() { return metricsEndpoint; }
+	
+	private static final StandbyManager standbyManager = new StandbyManager();
+	
+	/** Gets the manager of the hot-standby mode. */
+	public static StandbyManager
+	getStandbyManager() { return standbyManager; }
+	
+	private static final MirrorGroup mirrorGroup = new MirrorGroup();
+	
+	/** Gets the group of backends, to which the session state is mirrored. */
+	public static MirrorGroup
+	getMirrorGroup() { return mirrorGroup; }
+	
+	/**
+	 * Gets the manager of the instruments scan jobs of the session bound to the current thread.
+	 * @return The manager of the instruments scan jobs.
+	 * @see #getSession
+	 */
+	public static ScanJobManager
+	getScanJobManager() { return getSession().getScanJobManager(); }
+	
+	private static void
+	initMetrics() {
+		boolean b = preferences().getBoolProperty(JSPrefs.TASK_METRICS);
+		getTaskMetrics().setEnabled(b);
+		if(b) getTaskMetrics().registerMBeans();
+		
+		b = preferences().getBoolProperty(JSPrefs.NOTIFICATION_METRICS);
+		getNotificationMetrics().setEnabled(b);
+		if(b) {
+			TaskMetrics.registerMBean(getNotificationMetrics(), NotificationMetrics.OBJECT_NAME);
+		}
+		
+		int port = preferences().getIntProperty(JSPrefs.METRICS_HTTP_PORT);
+		if(port <= 0) {
+			getMetricsEndpoint().stop();
+			return;
+		}
+		
+		try { getMetricsEndpoint().start(port); }
+		catch(Exception x) { getLogger().log(Level.INFO, "Failed to start metrics endpoint", x); }
+	}
+	
+	/** The server, whose instruments database is currently indexed. */
+	private static Server indexedServer = null;
+	
+	private static File
+	getInstrumentsDbIndexFile(Server srv) {
+		String s = getJSamplerHome();
+		if(s == null) return null;
+		String name = srv.getAddress() + "-" + srv.getPort();
+		name = name.replaceAll("[^A-Za-z0-9.-]", "_");
+		return new File(s + File.separator + "instrumentsdb-" + name + ".idx");
+	}
+	
+	/**
+	 * Loads the local index of the instruments database of the specified
+	 * server from <code>&lt;jsampler_home&gt;/instrumentsdb-&lt;server&gt;.idx</code>.
+	 */
+	private static void
+	loadInstrumentsDbIndex(Server srv) {
+		InstrumentsDbIndex index = getDefaultSession().getInstrumentsDbIndex();
+		boolean b = preferences().getBoolProperty(JSPrefs.INSTRUMENTS_DB_LOCAL_INDEX);
+		index.setEnabled(b);
+		index.clear();
+		indexedServer = b ? srv : null;
+		if(!b) return;
+		
+		File f = getInstrumentsDbIndexFile(srv);
+		if(f == null || !f.isFile()) return;
+		
+		try { index.load(f); }
+		catch(Exception x) {
+			getLogger().log(Level.INFO, HF.getErrorMessage(x), x);
+			index.clear();
+		}
+	}
+	
+	/** Saves the local index of the instruments database, if enabled. */
+	private static void
+	saveInstrumentsDbIndex() {
+		InstrumentsDbIndex index = getDefaultSession().getInstrumentsDbIndex();
+		if(indexedServer == null || !index.isEnabled()) return;
+		
+		File f = getInstrumentsDbIndexFile(indexedServer);
+		if(f == null) return;
+		
+		try { index.save(f); }
+		catch(Exception x) { getLogger().log(Level.INFO, HF.getErrorMessage(x), x); }
+	}
 	
 	/**
 	 * Loads the orchestras described in <code>&lt;jsampler_home&gt;/orchestras.xml</code>.
 	 * If file with name <code>orchestras.xml.bkp</code> exist in the JSampler's home
 	 * directory, this means that the last save has failed. In that case a recovery file
 	 * <code>orchestras.xml.rec</code> is created and a recovery procedure
-	 * will be initiated.
+	 * will be initiated. If <code>orchestras.bin</code> is up to date, only the
+	 * orchestra headers are loaded from it and the instruments are loaded on demand.
 	 */
 	public static void
 	loadOrchestras() {
@@ -367,11 +762,20 @@ public class CC {
 			File f = new File(s + File.separator + "orchestras.xml.bkp");
 			if(f.isFile()) HF.createBackup("orchestras.xml.bkp", "orchestras.xml.rec");
 			
-			FileInputStream fis;
-			fis = new FileInputStream(s + File.separator + "orchestras.xml");
+			File xml = new File(s + File.separator + "orchestras.xml");
+			File bin = new File(s + File.separator + "orchestras.bin");
 			
-			loadOrchestras(fis);
-			fis.close();
+			if(OrchestraSnapshot.read(bin, xml, getOrchestras())) {
+				for(int i = 0; i < getOrchestras().getOrchestraCount(); i++) {
+					getOrchestras().getOrchestra(i).addOrchestraListener(getHandler());
+				}
+			} else {
+				FileInputStream fis = new FileInputStream(xml);
+				boolean b = loadOrchestras(new BufferedInputStream(fis));
+				fis.close();
+				
+				if(b) saveOrchestraSnapshot(OrchestraSnapshot.serialize(getOrchestras()));
+			}
 		} catch(Exception x) {
 			getLogger().log(Level.INFO, HF.getErrorMessage(x), x);
 		}
@@ -380,50 +784,76 @@ public class CC {
 	}
 	
 	
-	private static void
+	private static boolean
 	loadOrchestras(InputStream in) {
-		Document doc = DOMUtils.readObject(in);
-		
-		try { getOrchestras().readObject(doc.getDocumentElement()); }
+		try { getOrchestras().readObject(XMLStreamUtils.createReader(in)); }
 		catch(Exception x) {
 			getViewConfig().showErrorMessage(x, "Loading orchestras: ");
-			return;
+			return false;
 		}
 		
 		for(int i = 0; i < getOrchestras().getOrchestraCount(); i++) {
 			getOrchestras().getOrchestra(i).addOrchestraListener(getHandler());
 		}
+		
+		return true;
+	}
+	
+	/**
+	 * Writes <code>&lt;jsampler_home&gt;/orchestras.bin</code>, which should be
+	 * invoked after <code>orchestras.xml</code> is successfully written.
+	 * @param blocks The serialized instruments of each orchestra.
+	 */
+	private static void
+	saveOrchestraSnapshot(byte[][] blocks) {
+		String s = getJSamplerHome();
+		if(s == null) return;
+		
+		File xml = new File(s + File.separator + "orchestras.xml");
+		File bin = new File(s + File.separator + "orchestras.bin");
+		
+		try { OrchestraSnapshot.write(bin, xml, getOrchestras(), blocks); }
+		catch(Exception x) {
+			getLogger().log(Level.INFO, "Failed to save orchestra snapshot", x);
+			bin.delete();
+		}
 	}
 	
+	/**
+	 * Saves the orchestras. The instruments of the orchestras which are not
+	 * materialized yet are read first, so if any of them cannot be loaded,
+	 * the save is aborted and <code>orchestras.xml</code> is left intact.
+	 */
 	private static void
 	saveOrchestras() {
+		byte[][] blocks;
+		
 		try {
 			String s = getJSamplerHome();
 			if(s == null) return;
 			
+			blocks = OrchestraSnapshot.serialize(getOrchestras());
+			
 			HF.createBackup("orchestras.xml", "orchestras.xml.bkp");
 			
 			FileOutputStream fos2;
 			fos2 = new FileOutputStream(s + File.separator + "orchestras.xml", false);
+			BufferedOutputStream out = new BufferedOutputStream(fos2);
 			
-			Document doc = DOMUtils.createEmptyDocument();
+			XMLStreamWriter w = XMLStreamUtils.createWriter(out);
+			OrchestraSnapshot.writeXml(w, getOrchestras(), blocks);
+			w.writeEndDocument();
+			w.close();
 		
-			Node node = doc.createElement("temp");
-			doc.appendChild(node);
-			
-			getOrchestras().writeObject(doc, doc.getDocumentElement());
-			
-			doc.replaceChild(node.getFirstChild(), node);
-		
-			DOMUtils.writeObject(doc, fos2);
-			
-			fos2.close();
+			out.close();
 			
 			HF.deleteFile("orchestras.xml.bkp");
 		} catch(Exception x) {
 			getViewConfig().showErrorMessage(x, "Saving orchestras: ");
 			return;
 		}
+		
+		saveOrchestraSnapshot(blocks);
 	}
 	
 	/**
@@ -446,7 +876,7 @@ public class CC {
 			FileInputStream fis;
 			fis = new FileInputStream(s + File.separator + "servers.xml");
 			
-			loadServerList(fis);
+			loadServerList(new BufferedInputStream(fis));
 			fis.close();
 		} catch(Exception x) {
 			getLogger().log(Level.INFO, HF.getErrorMessage(x), x);
@@ -467,9 +897,7 @@ public class CC {
 	
 	private static void
 	loadServerList(InputStream in) {
-		Document doc = DOMUtils.readObject(in);
-		
-		try { getServerList().readObject(doc.getDocumentElement()); }
+		try { getServerList().readObject(XMLStreamUtils.createReader(in)); }
 		catch(Exception x) {
 			getViewConfig().showErrorMessage(x, "Loading server list: ");
 			return;
@@ -486,13 +914,83 @@ public class CC {
 			
 			FileOutputStream fos2;
 			fos2 = new FileOutputStream(s + File.separator + "servers.xml", false);
+			BufferedOutputStream out = new BufferedOutputStream(fos2);
+			
+			XMLStreamWriter w = XMLStreamUtils.createWriter(out);
+			getServerList().writeObject(w);
+			w.writeEndDocument();
+			w.close();
+			
+			out.close();
+			
+			HF.deleteFile("servers.xml.bkp");
+		} catch(Exception x) {
+			getViewConfig().showErrorMessage(x, "Saving server list: ");
+			return;
+		}
+	}
+	
+	/**
+	 * Loads the channel templates described in
+	 * <code>&lt;jsampler_home&gt;/channeltemplates.xml</code>.
+	 * If file with name <code>channeltemplates.xml.bkp</code> exist in the JSampler's
+	 * home directory, this means that the last save has failed. In that case a recovery
+	 * file <code>channeltemplates.xml.rec</code> is created and a recovery procedure
+	 * will be initiated.
+	 */
+	public static void
+	loadChannelTemplates() {
+		if(getJSamplerHome() == null) return;
+		
+		try {
+			String s = getJSamplerHome();
+			
+			File f = new File(s + File.separator + "channeltemplates.xml.bkp");
+			if(f.isFile()) {
+				HF.createBackup("channeltemplates.xml.bkp", "channeltemplates.xml.rec");
+			}
+			
+			f = new File(s + File.separator + "channeltemplates.xml");
+			if(f.isFile()) {
+				FileInputStream fis = new FileInputStream(f);
+				loadChannelTemplates(fis);
+				fis.close();
+			}
+		} catch(Exception x) {
+			getLogger().log(Level.INFO, HF.getErrorMessage(x), x);
+		}
+		
+		getChannelTemplates().addChangeListener(channelTemplatesListener);
+	}
+	
+	private static void
+	loadChannelTemplates(InputStream in) {
+		Document doc = DOMUtils.readObject(in);
+		
+		try { getChannelTemplates().readObject(doc.getDocumentElement()); }
+		catch(Exception x) {
+			getViewConfig().showErrorMessage(x, "Loading channel templates: ");
+			return;
+		}
+	}
+	
+	private static void
+	saveChannelTemplates() {
+		try {
+			String s = getJSamplerHome();
+			if(s == null) return;
+			
+			HF.createBackup("channeltemplates.xml", "channeltemplates.xml.bkp");
+			
+			FileOutputStream fos2;
+			fos2 = new FileOutputStream(s + File.separator + "channeltemplates.xml", false);
 			
 			Document doc = DOMUtils.createEmptyDocument();
 		
 			Node node = doc.createElement("temp");
 			doc.appendChild(node);
 			
-			getServerList().writeObject(doc, doc.getDocumentElement());
+			getChannelTemplates().writeObject(doc, doc.getDocumentElement());
 			
 			doc.replaceChild(node.getFirstChild(), node);
 		
@@ -500,9 +998,9 @@ public class CC {
 			
 			fos2.close();
 			
-			HF.deleteFile("servers.xml.bkp");
+			HF.deleteFile("channeltemplates.xml.bkp");
 		} catch(Exception x) {
-			getViewConfig().showErrorMessage(x, "Saving server list: ");
+			getViewConfig().showErrorMessage(x, "Saving channel templates: ");
 			return;
 		}
 	}
@@ -521,8 +1019,21 @@ public class CC {
 	public static void
 	cleanExit(int i) {
 		getLogger().fine("CC.jsEnded");
-		try { getClient().disconnect(); } // FIXME: this might block the EDT
+		saveInstrumentsDbIndex();
+		try { getDefaultSession().getClient().disconnect(); } // FIXME: this might block the EDT
 		catch(Exception x) { x.printStackTrace(); }
+		
+		for(ConnectionManager.TrafficClass c : ConnectionManager.TrafficClass.values()) {
+			if(c == ConnectionManager.TrafficClass.CONTROL) continue;
+			try { getConnectionManager().getClient(c).disconnect(); }
+			catch(Exception x) { getLogger().log(Level.INFO, HF.getErrorMessage(x), x); }
+		}
+		
+		for(SamplerSession s : getSessions()) {
+			try { s.getClient().disconnect(); }
+			catch(Exception x) { getLogger().log(Level.INFO, HF.getErrorMessage(x), x); }
+		}
+		
 		if(backendProcess != null) backendProcess.destroy();
 		backendProcess = null;
 		fireBackendProcessEvent();
@@ -530,11 +1041,22 @@ public class CC {
 	}
 	
 	/**
-	 * Gets the <code>Client</code> object that is used to communicate with the backend.
+	 * Gets the <code>Client</code> object that is used to communicate with the backend
+	 * of the session bound to the current thread. For the default session this is
+	 * the client of the traffic class of the current thread.
 	 * @return The <code>Client</code> object that is used to communicate with the backend.
+	 * @see #getSession
+	 * @see ConnectionManager
 	 */
 	public static Client
-	getClient() { return lsClient; }
+	getClient() {
+		SamplerSession s = getSession();
+		return s.isDefault() ? getConnectionManager().getClient() : s.getClient();
+	}
+	
+	/** Gets the manager of the connections of the default session. */
+	public static ConnectionManager
+	getConnectionManager() { return connectionManager; }
 	
 	private static final Vector<GenericListener> listeners = new Vector<GenericListener>();
 	
@@ -582,14 +1104,126 @@ public class CC {
 		for(GenericListener l : ceListeners) l.jobDone(e);
 	}
 	
-	private static final SamplerModel samplerModel = new DefaultSamplerModel();
+	private static final DefaultSamplerModel samplerModel = new DefaultSamplerModel();
 	
 	/**
-	 * Gets the sampler model.
+	 * Gets the sampler model of the session bound to the current thread.
 	 * @return The sampler model.
+	 * @see #getSession
 	 */
 	public static SamplerModel
-	getSamplerModel() { return samplerModel; }
+	getSamplerModel() { return getSession().getSamplerModel(); }
+	
+	private static final SamplerSession defaultSession =
+		new SamplerSession(lsClient, taskQueue, samplerModel);
+	
+	private static final Vector<SamplerSession> sessions = new Vector<SamplerSession>();
+	
+	private static final Vector<ListListener<SamplerSession>> sessionListeners =
+		new Vector<ListListener<SamplerSession>>();
+	
+	/**
+	 * Gets the session, which is controlled by the user interface.
+	 */
+	public static SamplerSession
+	getDefaultSession() { return defaultSession; }
+	
+	/**
+	 * Gets the session bound to the current thread or the
+	 * default session, if no session is bound to the current thread.
+	 * Code which may run outside the threads bound to a session (like
+	 * the UI thread or a timer thread) should not rely on this method,
+	 * but use the session held by its model or task.
+	 * @see SamplerSession
+	 * @see com.grigoriliev.jsampler.task.EnhancedTask#getSession
+	 */
+	public static SamplerSession
+	getSession() {
+		SamplerSession s = SamplerSession.getBoundSession();
+		return s == null ? defaultSession : s;
+	}
+	
+	/**
+	 * Gets the additional sessions, which are currently open.
+	 * The default session is not included.
+	 */
+	public static SamplerSession[]
+	getSessions() { return sessions.toArray(new SamplerSession[sessions.size()]); }
+	
+	/**
+	 * Opens and connects a new session with the specified backend,
+	 * which is controlled concurrently with the default session.
+	 * @param server The backend to connect to.
+	 * @return The new session.
+	 */
+	public static SamplerSession
+	openSession(Server server) {
+		SamplerSession s = new SamplerSession(server);
+		addClientListeners(s);
+		sessions.add(s);
+		
+		ListEvent<SamplerSession> e = new ListEvent<SamplerSession>(CC.class, s);
+		for(ListListener<SamplerSession> l : sessionListeners) l.entryAdded(e);
+		
+		s.connect();
+		return s;
+	}
+	
+	/**
+	 * Closes the specified session, which was opened with {@link #openSession}.
+	 * @param session The session to close.
+	 */
+	public static void
+	closeSession(SamplerSession session) {
+		if(!sessions.remove(session)) return;
+		session.close();
+		
+		ListEvent<SamplerSession> e = new ListEvent<SamplerSession>(CC.class, session);
+		for(ListListener<SamplerSession> l : sessionListeners) l.entryRemoved(e);
+	}
+	
+	/**
+	 * Registers the specified listener to be notified
+	 * when a session is opened or closed.
+	 */
+	public static void
+	addSessionListener(ListListener<SamplerSession> l) { sessionListeners.add(l); }
+	
+	/** Removes the specified listener. */
+	public static void
+	removeSessionListener(ListListener<SamplerSession> l) { sessionListeners.remove(l); }
+	
+	/**
+	 * Registers to the client of the specified (non-default) session
+	 * listeners, which keep the model of the session in sync with its backend.
+	 */
+	private static void
+	addClientListeners(SamplerSession session) {
+		Client c = session.getClient();
+		EventHandler h = new EventHandler(session);
+		
+		c.addChannelCountListener(h);
+		c.addChannelInfoListener(h);
+		c.addFxSendCountListener(h);
+		c.addFxSendInfoListener(h);
+		c.addStreamCountListener(h);
+		c.addVoiceCountListener(h);
+		c.addTotalStreamCountListener(h);
+		c.addTotalVoiceCountListener(h);
+		c.addAudioDeviceCountListener(new AudioDeviceCountListener(session));
+		c.addAudioDeviceInfoListener(new AudioDeviceInfoListener(session));
+		c.addMidiDeviceCountListener(new MidiDeviceCountListener(session));
+		c.addMidiDeviceInfoListener(new MidiDeviceInfoListener(session));
+		c.addMidiInstrumentMapCountListener(new MidiInstrMapCountListener(session));
+		c.addMidiInstrumentMapInfoListener(new MidiInstrMapInfoListener(session));
+		c.addMidiInstrumentCountListener(h);
+		c.addMidiInstrumentInfoListener(h);
+		c.addGlobalInfoListener(h);
+		c.addChannelMidiDataListener(h);
+		c.addSendEffectChainCountListener(h);
+		c.addSendEffectChainInfoListener(h);
+		c.addEffectInstanceInfoListener(h);
+	}
 	
 	/**
 	 * Connects to LinuxSampler.
@@ -647,105 +1281,33 @@ public class CC {
 		});
 	}
 	
+	/**
+	 * Determines whether the control connection is established, but
+	 * the events connection is not established yet. Accessed from the UI thread.
+	 */
+	private static boolean connectionPending = false;
+	
+	/** Retrieves the backend state when the notifications are subscribed. */
+	private static void
+	onEventsConnected() {
+		getDefaultSession().synchronize();
+		if(!connectionPending) return;
+		connectionPending = false;
+		
+		if(CC.getViewConfig().getInstrumentsDbSupport()) initInstrumentsDbTreeModel();
+		
+		fireConnectionEstablishedEvent();
+	}
+	
 	/**
 	 * This method updates the information about the backend state.
 	 */
 	private static void
-	initSamplerModel(Server srv) {
+	initSamplerModel(final Server srv) {
+		saveInstrumentsDbIndex();
 		setCurrentServer(srv);
 		final SetServerAddress ssa = new SetServerAddress(srv.getAddress(), srv.getPort());
 		
-		final DefaultSamplerModel model = (DefaultSamplerModel)getSamplerModel();
-		
-		final Global.GetServerInfo gsi = new Global.GetServerInfo();
-		gsi.addTaskListener(new TaskListener() {
-			public void
-			taskPerformed(TaskEvent e) {
-				if(gsi.doneWithErrors()) return;
-				
-				model.setServerInfo(gsi.getResult());
-				
-				if(CC.getViewConfig().getInstrumentsDbSupport()) {
-					CC.getViewConfig().initInstrumentsDbTreeModel();
-				}
-			}
-		});
-		
-		final Audio.GetDrivers gaod = new Audio.GetDrivers();
-		gaod.addTaskListener(new TaskListener() {
-			public void
-			taskPerformed(TaskEvent e) {
-				if(!gaod.doneWithErrors())
-					model.setAudioOutputDrivers(gaod.getResult());
-			}
-		});
-		
-		final Global.GetEngines ge = new Global.GetEngines();
-		ge.addTaskListener(new TaskListener() {
-			public void
-			taskPerformed(TaskEvent e) {
-				if(!ge.doneWithErrors()) model.setEngines(ge.getResult());
-			}
-		});
-		
-		final Midi.GetDrivers gmid = new Midi.GetDrivers();
-		gmid.addTaskListener(new TaskListener() {
-			public void
-			taskPerformed(TaskEvent e) {
-				if(!gmid.doneWithErrors())
-					model.setMidiInputDrivers(gmid.getResult());
-			}
-		});
-		
-		final Global.GetVolume gv = new Global.GetVolume();
-		gv.addTaskListener(new TaskListener() {
-			public void
-			taskPerformed(TaskEvent e) {
-				if(!gv.doneWithErrors())
-					model.setVolume(gv.getResult());
-			}
-		});
-		
-		final Midi.GetInstrumentMaps mgim = new Midi.GetInstrumentMaps();
-		mgim.addTaskListener(new TaskListener() {
-			public void
-			taskPerformed(TaskEvent e) {
-				if(mgim.doneWithErrors()) return;
-				model.removeAllMidiInstrumentMaps();
-				
-				for(MidiInstrumentMap map : mgim.getResult()) {
-					model.addMidiInstrumentMap(map);
-				}
-			}
-		});
-		
-		final Global.GetEffects gfx = new Global.GetEffects();
-		gfx.addTaskListener(new TaskListener() {
-			public void
-			taskPerformed(TaskEvent e) {
-				if(!gfx.doneWithErrors()) model.getEffects().setEffects(gfx.getResult());
-			}
-		});
-		
-		final UpdateChannels uc = new UpdateChannels();
-		uc.addTaskListener(new TaskListener() {
-			public void
-			taskPerformed(TaskEvent e) {
-				for(SamplerChannelModel c : model.getChannels()) {
-					if(c.getChannelInfo().getEngine() == null) continue;
-					
-					Channel.GetFxSends gfs = new Channel.GetFxSends();
-					gfs.setChannel(c.getChannelId());
-					gfs.addTaskListener(new GetFxSendsListener());
-					getTaskQueue().add(gfs);
-				}
-				
-				// TODO: This should be done after the fx sends are set
-				//CC.getSamplerModel().setModified(false);
-			}
-		});
-		
-		
 		final Global.Connect cnt = new Global.Connect();
 		boolean b = preferences().getBoolProperty(JSPrefs.LAUNCH_BACKEND_LOCALLY);
 		if(b && srv.isLocal() && backendProcess == null) cnt.setSilent(true);
@@ -757,25 +1319,9 @@ public class CC {
 					return;
 				}
 				
-				// Don't change order!!!
-				getTaskQueue().add(gsi);
-				getTaskQueue().add(gaod);
-				getTaskQueue().add(gmid);
-				getTaskQueue().add(ge);
-				getTaskQueue().add(gv);
-				getTaskQueue().add(mgim);
-				getTaskQueue().add(gfx);
-				getTaskQueue().add(new Midi.UpdateDevices());
-				getTaskQueue().add(new Audio.UpdateDevices());
-				addTask(uc);
-				getTaskQueue().add(new Global.UpdateSendEffectChains());
-				
-				int vl = preferences().getIntProperty(JSPrefs.GLOBAL_VOICE_LIMIT);
-				int sl = preferences().getIntProperty(JSPrefs.GLOBAL_STREAM_LIMIT);
-				
-				getTaskQueue().add(new Global.SetPolyphony(vl, sl));
-				
-				fireConnectionEstablishedEvent();
+				// the state is retrieved when the notifications are subscribed
+				connectionPending = true;
+				getConnectionManager().connect(srv);
 			}
 		});
 		
@@ -788,7 +1334,12 @@ public class CC {
 			}
 		});
 		
+		initMetrics();
+		
 		getSamplerModel().reset();
+		getDefaultSession().getInstrumentsDbCache().clear();
+		loadInstrumentsDbIndex(srv);
+		getDefaultSession().getScanJobManager().reset();
 		getViewConfig().resetInstrumentsDbTreeModel();
 		
 		getTaskQueue().removePendingTasks();
@@ -797,8 +1348,41 @@ public class CC {
 		fireReconnectEvent();
 	}
 	
+	/**
+	 * Initializes the instruments database tree model after the tasks,
+	 * which are already in the task queue (retrieving the initial state
+	 * of the backend), so that it doesn't delay the first paint.
+	 * The initialization is skipped if the server info can't be retrieved.
+	 */
+	private static void
+	initInstrumentsDbTreeModel() {
+		final Global.DummyTask t = new Global.DummyTask();
+		t.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(getSamplerModel().getServerInfo() == null) return;
+				CC.getViewConfig().initInstrumentsDbTreeModel();
+				getStartupTimeline().mark("Instruments DB tree");
+			}
+		});
+		
+		getTaskQueue().add(t);
+	}
+	
+	/**
+	 * Connects to the specified server, which becomes the current server.
+	 * Used to switch to the standby server.
+	 */
+	static void
+	switchToServer(Server srv) {
+		connectionFailureCount = 0;
+		initSamplerModel(srv);
+	}
+	
 	private static void
 	onConnectFailure() {
+		if(getStandbyManager().failover()) return;
+		
 		connectionFailureCount++;
 		if(connectionFailureCount > 50) { // to prevent eventual infinite loop
 			getLogger().warning("Reached maximum number of connection failures");
@@ -807,22 +1391,20 @@ public class CC {
 		
 		try {
 			if(launchBackend()) {
-				int i = preferences().getIntProperty(JSPrefs.BACKEND_LAUNCH_DELAY);
-				if(i < 1) {
-					initSamplerModel(getCurrentServer());
-					return;
-				}
+				int i = preferences().getIntProperty(JSPrefs.BACKEND_LAUNCH_TIMEOUT);
+				LaunchBackend lb = new LaunchBackend (
+					getCurrentServer(), backendProcess, i, getBackendMonitor()
+				);
 				
-				LaunchBackend lb = new LaunchBackend(i, getBackendMonitor());
 				//CC.getTaskQueue().add(lb);
-				new Thread(lb).start();
+				new Thread(lb, "Backend-Launcher").start();
 				return;
 			}
 		} catch(Exception x) {
 			final String s = JSI18n.i18n.getError("CC.failedToLaunchBackend");
 			CC.getLogger().log(Level.INFO, s, x);
 			
-			PDUtils.runOnUiThread(new Runnable() {
+			runOnUiThread(new Runnable() {
 				public void
 				run() { getViewConfig().showErrorMessage(s); }
 			});
@@ -834,7 +1416,7 @@ public class CC {
 	
 	private static void
 	retryToConnect() {
-		PDUtils.runOnUiThread(new Runnable() {
+		runOnUiThread(new Runnable() {
 			public void
 			run() { changeBackend(); }
 		});
@@ -876,10 +1458,18 @@ public class CC {
 	}
 	
 	private static Process backendProcess = null;
+	private static BackendOutput backendOutput = null;
 	
 	public static Process
 	getBackendProcess() { return backendProcess; }
 	
+	/**
+	 * Gets the captured standard output and standard error of the backend
+	 * launched by JSampler, or <code>null</code> if no backend is launched.
+	 */
+	public static BackendOutput
+	getBackendOutput() { return backendOutput; }
+	
 	private static final Object backendMonitor = new Object();
 	
 	public static Object
@@ -890,7 +1480,7 @@ public class CC {
 		if(backendProcess != null) {
 			try {
 				int i = backendProcess.exitValue();
-				getLogger().info("Backend exited with exit value " + i);
+				getLogger().info("Backend exited with exit value " + i + "\n" + backendOutput);
 				backendProcess = null;
 				fireBackendProcessEvent();
 			} catch(IllegalThreadStateException x) { return false; }
@@ -903,6 +1493,7 @@ public class CC {
 		if(s != null && s.isLocal()) {
 			String cmd = preferences().getStringProperty(JSPrefs.BACKEND_LAUNCH_COMMAND);
 			backendProcess = Runtime.getRuntime().exec(cmd);
+			backendOutput = new BackendOutput(backendProcess);
 			fireBackendProcessEvent();
 			return true;
 		}
@@ -910,25 +1501,13 @@ public class CC {
 		return false;
 	}
 	
-	private static class GetFxSendsListener implements TaskListener {
-		public void
-		taskPerformed(TaskEvent e) {
-			Channel.GetFxSends gfs = (Channel.GetFxSends)e.getSource();
-			if(gfs.doneWithErrors()) return;
-			SamplerChannelModel m = getSamplerModel().getChannelById(gfs.getChannel());
-			m.removeAllFxSends();
-			
-			for(FxSend fxs : gfs.getResult()) m.addFxSend(fxs);
-		}
-	}
-	
 	public static void
 	scheduleInTaskQueue(final Runnable r) {
 		Task dummy = new Global.DummyTask();
 		dummy.addTaskListener(new TaskListener() {
 			public void
 			taskPerformed(TaskEvent e) {
-				PDUtils.runOnUiThread(r);
+				runOnUiThread(r);
 			}
 		});
 		
@@ -951,22 +1530,28 @@ public class CC {
 	}
 	
 	
-	private final static EventHandler eventHandler = new EventHandler();
+	private final static EventHandler eventHandler = new EventHandler(null);
 	
 	private static EventHandler
 	getHandler() { return eventHandler; }
 	
-	private static class EventHandler implements ChannelCountListener, ChannelInfoListener,
-		FxSendCountListener, FxSendInfoListener, StreamCountListener, VoiceCountListener,
+	private static class EventHandler extends SessionListener
+		implements ChannelCountListener, ChannelInfoListener, FxSendCountListener,
+		FxSendInfoListener, StreamCountListener, VoiceCountListener,
 		TotalStreamCountListener, TotalVoiceCountListener, TaskQueueListener,
 		OrchestraListener, ListListener<OrchestraModel>, MidiInstrumentCountListener,
 		MidiInstrumentInfoListener, GlobalInfoListener, ChannelMidiDataListener,
 		SendEffectChainCountListener, SendEffectChainInfoListener, EffectInstanceInfoListener {
 		
+		EventHandler(SamplerSession session) { super(session); }
+		
 		/** Invoked when the number of channels has changed. */
 		@Override
 		public void
 		channelCountChanged( ChannelCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.CHANNEL_COUNT);
+			
 			if(e.getChannelCount() == 0) {
 				/*
 				 * This special case is handled because this might be due to
@@ -982,10 +1567,14 @@ public class CC {
 		@Override
 		public void
 		channelInfoChanged(ChannelInfoEvent e) {
+			bind();
 			/*
 			 * Because of the rapid notification flow when instrument is loaded
 			 * we need to do some optimization to decrease the traffic.
 			 */
+			NotificationMetrics nm = getNotificationMetrics();
+			nm.received(NotificationMetrics.Type.CHANNEL_INFO);
+			
 			boolean b = true;
 			Task[] tS = getTaskQueue().getPendingTasks();
 			
@@ -994,7 +1583,10 @@ public class CC {
 				
 				if(t instanceof Channel.UpdateInfo) {
 					Channel.UpdateInfo cui = (Channel.UpdateInfo)t;
-					if(cui.getChannelId() == e.getSamplerChannel()) return;
+					if(cui.getChannelId() == e.getSamplerChannel()) {
+						nm.coalesced(NotificationMetrics.Type.CHANNEL_INFO);
+						return;
+					}
 				} else {
 					b = false;
 					break;
@@ -1005,7 +1597,10 @@ public class CC {
 				Task t = getTaskQueue().getRunningTask();
 				if(t instanceof Channel.UpdateInfo) {
 					Channel.UpdateInfo cui = (Channel.UpdateInfo)t;
-					if(cui.getChannelId() == e.getSamplerChannel()) return;
+					if(cui.getChannelId() == e.getSamplerChannel()) {
+						nm.coalesced(NotificationMetrics.Type.CHANNEL_INFO);
+						return;
+					}
 				}
 			}
 			
@@ -1020,6 +1615,8 @@ public class CC {
 		@Override
 		public void
 		fxSendCountChanged(FxSendCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.FX_SEND_COUNT);
 			getTaskQueue().add(new Channel.UpdateFxSends(e.getChannel()));
 		}
 		
@@ -1029,6 +1626,8 @@ public class CC {
 		@Override
 		public void
 		fxSendInfoChanged(FxSendInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.FX_SEND_INFO);
 			Task t = new Channel.UpdateFxSendInfo(e.getChannel(), e.getFxSend());
 			getTaskQueue().add(t);
 		}
@@ -1040,6 +1639,9 @@ public class CC {
 		@Override
 		public void
 		streamCountChanged(StreamCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.STREAM_COUNT);
+			
 			SamplerChannelModel scm = 
 				getSamplerModel().getChannelById(e.getSamplerChannel());
 			
@@ -1063,6 +1665,9 @@ public class CC {
 		@Override
 		public void
 		voiceCountChanged(VoiceCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.VOICE_COUNT);
+			
 			SamplerChannelModel scm = 
 				getSamplerModel().getChannelById(e.getSamplerChannel());
 			
@@ -1083,6 +1688,8 @@ public class CC {
 		@Override
 		public void
 		totalStreamCountChanged(TotalStreamCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.TOTAL_STREAM_COUNT);
 			getSamplerModel().updateActiveStreamsInfo(e.getTotalStreamCount());
 		}
 		
@@ -1090,20 +1697,32 @@ public class CC {
 		@Override
 		public void
 		totalVoiceCountChanged(TotalVoiceCountEvent e) {
-			scheduleTask(new Global.UpdateTotalVoiceCount());
+			bind();
+			NotificationMetrics nm = getNotificationMetrics();
+			nm.received(NotificationMetrics.Type.TOTAL_VOICE_COUNT);
+			if(scheduleTask(new Global.UpdateTotalVoiceCount())) {
+				nm.coalesced(NotificationMetrics.Type.TOTAL_VOICE_COUNT);
+			}
 		}
 		
 		/** Invoked when the number of MIDI instruments in a MIDI instrument map is changed. */
 		@Override
 		public void
 		instrumentCountChanged(MidiInstrumentCountEvent e) {
-			scheduleTask(new Midi.UpdateInstruments(e.getMapId()));
+			bind();
+			NotificationMetrics nm = getNotificationMetrics();
+			nm.received(NotificationMetrics.Type.MIDI_INSTRUMENT_COUNT);
+			if(scheduleTask(new Midi.UpdateInstruments(e.getMapId()))) {
+				nm.coalesced(NotificationMetrics.Type.MIDI_INSTRUMENT_COUNT);
+			}
 		}
 		
 		/** Invoked when a MIDI instrument in a MIDI instrument map is changed. */
 		@Override
 		public void
 		instrumentInfoChanged(MidiInstrumentInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.MIDI_INSTRUMENT_INFO);
 			Task t = new Midi.UpdateInstrumentInfo (
 				e.getMapId(), e.getMidiBank(), e.getMidiProgram()
 			); 
@@ -1115,16 +1734,24 @@ public class CC {
 		@Override
 		public void
 		volumeChanged(GlobalInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.GLOBAL_INFO);
 			getSamplerModel().setVolume(e.getVolume());
 		}
 		
 		@Override
 		public void
-		voiceLimitChanged(GlobalInfoEvent e) { }
+		voiceLimitChanged(GlobalInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.GLOBAL_INFO);
+		}
 		
 		@Override
 		public void
-		streamLimitChanged(GlobalInfoEvent e) { }
+		streamLimitChanged(GlobalInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.GLOBAL_INFO);
+		}
 		
 		/**
 		 * Invoked to indicate that the state of a task queue is changed.
@@ -1143,13 +1770,21 @@ public class CC {
 				EnhancedTask t = (EnhancedTask)e.getSource();
 				if(t.doneWithErrors() && !t.isSilent()) {
 					if(t.getErrorCode() == t.SOCKET_ERROR) {
-						getMainFrame().handleConnectionFailure();
+						// the bulk and the events connections are reconnected
+						// independently by the connection manager
+						if(t.getTrafficClass() != ConnectionManager.TrafficClass.CONTROL) break;
+
+						StandbyManager sm = getStandbyManager();
+						if(!sm.isFailingOver() && !sm.failover()) {
+							getMainFrame().handleConnectionFailure();
+						}
 					} else if(!t.isStopped()) {
 						showError(t);
 					}
 				}
 				break;
 			case NOT_IDLE:
+				if(busyQueueCount++ > 0) break;
 				if(progressTimerTask != null) {
 					getLogger().warning("progressTimerTask != null - this is a bug!");
 				}
@@ -1157,6 +1792,7 @@ public class CC {
 				timer.schedule(progressTimerTask, 2000);
 				break;
 			case IDLE:
+				if(busyQueueCount > 0 && --busyQueueCount > 0) break;
 				if(progressTimerTask != null) {
 					progressTimerTask.cancel();
 					progressTimerTask = null;
@@ -1168,7 +1804,7 @@ public class CC {
 		
 		private void
 		showError(final Task t) {
-			PDUtils.runOnUiThread(new Runnable() {
+			runOnUiThread(new Runnable() {
 				public void
 				run() {
 					if(t.getErrorDetails() == null) {
@@ -1208,6 +1844,21 @@ public class CC {
 		public void
 		instrumentChanged(OrchestraEvent e) { saveOrchestras(); }
 		
+		/** Invoked when multiple instruments are added to an orchestra. */
+		@Override
+		public void
+		instrumentsAdded(OrchestraEvent e) { saveOrchestras(); }
+		
+		/** Invoked when multiple instruments are removed from an orchestra. */
+		@Override
+		public void
+		instrumentsRemoved(OrchestraEvent e) { saveOrchestras(); }
+		
+		/** Invoked when multiple instruments are moved in an orchestra. */
+		@Override
+		public void
+		instrumentsMoved(OrchestraEvent e) { saveOrchestras(); }
+		
 		/** Invoked when an orchestra is added to the orchestra list. */
 		@Override
 		public void
@@ -1230,8 +1881,11 @@ public class CC {
 		@Override
 		public void
 		midiDataArrived(final ChannelMidiDataEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.CHANNEL_MIDI);
+			
 			try {
-				PDUtils.runOnUiThreadAndWait(new Runnable() {
+				runOnUiThreadAndWait(new Runnable() {
 					public void
 					run() { fireChannelMidiDataEvent(e); }
 				});
@@ -1243,12 +1897,16 @@ public class CC {
 		@Override
 		public void
 		sendEffectChainCountChanged(SendEffectChainCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.SEND_EFFECT_CHAIN_COUNT);
 			getTaskQueue().add(new Audio.UpdateSendEffectChains(e.getAudioDeviceId()));
 		}
 		
 		@Override
 		public void
 		sendEffectChainInfoChanged(SendEffectChainInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.SEND_EFFECT_CHAIN_INFO);
 			if(e.getInstanceCount() == -1) return;
 			
 			getTaskQueue().add (
@@ -1259,7 +1917,38 @@ public class CC {
 		@Override
 		public void
 		effectInstanceInfoChanged(EffectInstanceInfoEvent e) {
-			getTaskQueue().add(new Audio.UpdateEffectInstanceInfo(e.getEffectInstanceId()));
+			bind();
+			NotificationMetrics nm = getNotificationMetrics();
+			nm.received(NotificationMetrics.Type.EFFECT_INSTANCE_INFO);
+			
+			int id = e.getEffectInstanceId();
+			
+			/*
+			 * The notifications caused by the values we send are not refetched.
+			 * The effect instance info is retrieved once the stream becomes idle.
+			 */
+			EffectInstance inst = getSamplerModel().getEffectInstanceById(id);
+			if(inst != null && inst.getParameterStream().isEchoExpected()) {
+				nm.coalesced(NotificationMetrics.Type.EFFECT_INSTANCE_INFO);
+				return;
+			}
+			
+			/*
+			 * Under parameter automation the notifications for the same instance
+			 * come in bursts. A pending update task, which is not started yet,
+			 * will retrieve the latest settings anyway.
+			 */
+			for(Task t : getTaskQueue().getPendingTasks()) {
+				if(!(t instanceof Audio.UpdateEffectInstanceInfo)) continue;
+				
+				Audio.UpdateEffectInstanceInfo u = (Audio.UpdateEffectInstanceInfo)t;
+				if(u.getInstanceId() == id) {
+					nm.coalesced(NotificationMetrics.Type.EFFECT_INSTANCE_INFO);
+					return;
+				}
+			}
+			
+			getTaskQueue().add(new Audio.UpdateEffectInstanceInfo(id));
 		}
 	}
 	
@@ -1274,73 +1963,125 @@ public class CC {
 		((DefaultSamplerChannelModel)chn).fireMidiDataEvent(e);
 	}
 	
+	/**
+	 * Base class of the LSCP listeners, which may be registered to the
+	 * client of a session. The listeners bind the session to the LSCP
+	 * event thread before accessing the task queue or the sampler model.
+	 */
+	private static abstract class SessionListener {
+		/** The session of the client or <code>null</code> for the default session. */
+		private final SamplerSession session;
+		
+		SessionListener(SamplerSession session) { this.session = session; }
+		
+		/** Binds the session of this listener to the current (LSCP event) thread. */
+		protected void
+		bind() { if(session != null) session.bindCurrentThread(); }
+	}
+	
 	private static final AudioDeviceCountListener audioDeviceCountListener = 
-		new AudioDeviceCountListener();
+		new AudioDeviceCountListener(null);
 	
-	private static class AudioDeviceCountListener implements ItemCountListener {
+	private static class AudioDeviceCountListener extends SessionListener
+		implements ItemCountListener {
+		
+		AudioDeviceCountListener(SamplerSession session) { super(session); }
+		
 		/** Invoked when the number of audio output devices has changed. */
 		@Override
 		public void
 		itemCountChanged(ItemCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.AUDIO_OUTPUT_DEVICE_COUNT);
 			getTaskQueue().add(new Audio.UpdateDevices());
 		}
 	}
 	
 	private static final AudioDeviceInfoListener audioDeviceInfoListener = 
-		new AudioDeviceInfoListener();
+		new AudioDeviceInfoListener(null);
 	
-	private static class AudioDeviceInfoListener implements ItemInfoListener {
+	private static class AudioDeviceInfoListener extends SessionListener
+		implements ItemInfoListener {
+		
+		AudioDeviceInfoListener(SamplerSession session) { super(session); }
+		
 		/** Invoked when the audio output device's settings are changed. */
 		@Override
 		public void
 		itemInfoChanged(ItemInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.AUDIO_OUTPUT_DEVICE_INFO);
 			getTaskQueue().add(new Audio.UpdateDeviceInfo(e.getItemID()));
 		}
 	}
 	
 	private static final MidiDeviceCountListener midiDeviceCountListener = 
-		new MidiDeviceCountListener();
+		new MidiDeviceCountListener(null);
 	
-	private static class MidiDeviceCountListener implements ItemCountListener {
+	private static class MidiDeviceCountListener extends SessionListener
+		implements ItemCountListener {
+		
+		MidiDeviceCountListener(SamplerSession session) { super(session); }
+		
 		/** Invoked when the number of MIDI input devices has changed. */
 		public void
 		itemCountChanged(ItemCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.MIDI_INPUT_DEVICE_COUNT);
 			getTaskQueue().add(new Midi.UpdateDevices());
 		}
 	}
 	
 	private static final MidiDeviceInfoListener midiDeviceInfoListener = 
-		new MidiDeviceInfoListener();
+		new MidiDeviceInfoListener(null);
 	
-	private static class MidiDeviceInfoListener implements ItemInfoListener {
+	private static class MidiDeviceInfoListener extends SessionListener
+		implements ItemInfoListener {
+		
+		MidiDeviceInfoListener(SamplerSession session) { super(session); }
+		
 		/** Invoked when the MIDI input device's settings are changed. */
 		@Override
 		public void
 		itemInfoChanged(ItemInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.MIDI_INPUT_DEVICE_INFO);
 			getTaskQueue().add(new Midi.UpdateDeviceInfo(e.getItemID()));
 		}
 	}
 	
 	private static final MidiInstrMapCountListener midiInstrMapCountListener = 
-		new MidiInstrMapCountListener();
+		new MidiInstrMapCountListener(null);
 	
-	private static class MidiInstrMapCountListener implements ItemCountListener {
+	private static class MidiInstrMapCountListener extends SessionListener
+		implements ItemCountListener {
+		
+		MidiInstrMapCountListener(SamplerSession session) { super(session); }
+		
 		/** Invoked when the number of MIDI instrument maps is changed. */
 		@Override
 		public void
 		itemCountChanged(ItemCountEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.MIDI_INSTRUMENT_MAP_COUNT);
 			getTaskQueue().add(new Midi.UpdateInstrumentMaps());
 		}
 	}
 	
 	private static final MidiInstrMapInfoListener midiInstrMapInfoListener = 
-		new MidiInstrMapInfoListener();
+		new MidiInstrMapInfoListener(null);
 	
-	private static class MidiInstrMapInfoListener implements ItemInfoListener {
+	private static class MidiInstrMapInfoListener extends SessionListener
+		implements ItemInfoListener {
+		
+		MidiInstrMapInfoListener(SamplerSession session) { super(session); }
+		
 		/** Invoked when the MIDI instrument map's settings are changed. */
 		@Override
 		public void
 		itemInfoChanged(ItemInfoEvent e) {
+			bind();
+			getNotificationMetrics().received(NotificationMetrics.Type.MIDI_INSTRUMENT_MAP_INFO);
 			getTaskQueue().add(new Midi.UpdateInstrumentMapInfo(e.getItemID()));
 		}
 	}
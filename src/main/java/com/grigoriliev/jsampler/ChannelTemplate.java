@@ -0,0 +1,344 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.Vector;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Describes the settings applied to newly created sampler channels:
+ * engine, MIDI input and audio output routing, MIDI instrument map,
+ * volume, mute/solo state and effect sends.
+ * @see com.grigoriliev.jsampler.task.Channel.AddFromTemplate
+ * @author Grigor Iliev
+ */
+public class ChannelTemplate extends Resource {
+	/** Used as a MIDI instrument map ID to specify that no map should be assigned. */
+	public static final int NO_MAP = -1;
+	
+	/** Used as a MIDI instrument map ID to specify that the default map should be assigned. */
+	public static final int DEFAULT_MAP = -2;
+	
+	/** Used as a MIDI input channel to specify that all MIDI channels should be listened. */
+	public static final int ALL_MIDI_CHANNELS = -1;
+	
+	/** Describes an effect send created for each new channel. */
+	public static class FxSend {
+		private final String name;
+		private final int midiController;
+		private final float level;
+		
+		/**
+		 * Creates a new instance of <code>FxSend</code>.
+		 * @param name The name of the effect send.
+		 * @param midiController The MIDI controller which controls the send level.
+		 * @param level The send level.
+		 */
+		public
+		FxSend(String name, int midiController, float level) {
+			this.name = name;
+			this.midiController = midiController;
+			this.level = level;
+		}
+		
+		/** Gets the name of the effect send. */
+		public String
+		getName() { return name; }
+		
+		/** Gets the MIDI controller which controls the send level. */
+		public int
+		getMidiController() { return midiController; }
+		
+		/** Gets the send level. */
+		public float
+		getLevel() { return level; }
+	}
+	
+	private String engine = null;
+	private int midiInputDevice = -1;
+	private int midiInputPort = 0;
+	private int midiInputChannel = ALL_MIDI_CHANNELS;
+	private int audioOutputDevice = -1;
+	private int midiInstrumentMap = NO_MAP;
+	private float volume = 1.0f;
+	private boolean mute = false;
+	private boolean solo = false;
+	private final Vector<FxSend> fxSends = new Vector<FxSend>();
+	
+	/** Creates a new instance of <code>ChannelTemplate</code>. */
+	public
+	ChannelTemplate() { }
+	
+	/**
+	 * Gets the name of the engine to be loaded,
+	 * or <code>null</code> if no engine should be loaded.
+	 */
+	public String
+	getEngine() { return engine; }
+	
+	/**
+	 * Sets the name of the engine to be loaded.
+	 * @param engine The engine name or <code>null</code> if no engine should be loaded.
+	 */
+	public void
+	setEngine(String engine) {
+		this.engine = engine;
+		fireChangeEvent();
+	}
+	
+	/** Gets the ID of the MIDI input device or -1 if no device should be assigned. */
+	public int
+	getMidiInputDevice() { return midiInputDevice; }
+	
+	/** Gets the MIDI input port. */
+	public int
+	getMidiInputPort() { return midiInputPort; }
+	
+	/** Gets the MIDI input channel or {@link #ALL_MIDI_CHANNELS}. */
+	public int
+	getMidiInputChannel() { return midiInputChannel; }
+	
+	/**
+	 * Sets the MIDI input of the new channels.
+	 * @param device The ID of the MIDI input device or -1 if no device should be assigned.
+	 * @param port The MIDI input port.
+	 * @param channel The MIDI input channel or {@link #ALL_MIDI_CHANNELS}.
+	 */
+	public void
+	setMidiInput(int device, int port, int channel) {
+		midiInputDevice = device;
+		midiInputPort = port;
+		midiInputChannel = channel;
+		fireChangeEvent();
+	}
+	
+	/** Gets the ID of the audio output device or -1 if no device should be assigned. */
+	public int
+	getAudioOutputDevice() { return audioOutputDevice; }
+	
+	/** Sets the ID of the audio output device or -1 if no device should be assigned. */
+	public void
+	setAudioOutputDevice(int device) {
+		audioOutputDevice = device;
+		fireChangeEvent();
+	}
+	
+	/** Gets the ID of the MIDI instrument map, {@link #NO_MAP} or {@link #DEFAULT_MAP}. */
+	public int
+	getMidiInstrumentMap() { return midiInstrumentMap; }
+	
+	/** Sets the ID of the MIDI instrument map, {@link #NO_MAP} or {@link #DEFAULT_MAP}. */
+	public void
+	setMidiInstrumentMap(int mapId) {
+		midiInstrumentMap = mapId;
+		fireChangeEvent();
+	}
+	
+	/** Gets the channel volume. */
+	public float
+	getVolume() { return volume; }
+	
+	/** Sets the channel volume. */
+	public void
+	setVolume(float volume) {
+		this.volume = volume;
+		fireChangeEvent();
+	}
+	
+	/** Determines whether the new channels should be muted. */
+	public boolean
+	isMuted() { return mute; }
+	
+	/** Sets whether the new channels should be muted. */
+	public void
+	setMuted(boolean b) {
+		mute = b;
+		fireChangeEvent();
+	}
+	
+	/** Determines whether the new channels should be solo channels. */
+	public boolean
+	isSoloChannel() { return solo; }
+	
+	/** Sets whether the new channels should be solo channels. */
+	public void
+	setSoloChannel(boolean b) {
+		solo = b;
+		fireChangeEvent();
+	}
+	
+	/** Gets the effect sends to be created for each new channel. */
+	public FxSend[]
+	getFxSends() { return fxSends.toArray(new FxSend[fxSends.size()]); }
+	
+	/** Adds an effect send to be created for each new channel. */
+	public void
+	addFxSend(FxSend fxSend) {
+		fxSends.add(fxSend);
+		fireChangeEvent();
+	}
+	
+	/** Removes all effect sends from this template. */
+	public void
+	removeAllFxSends() {
+		fxSends.removeAllElements();
+		fireChangeEvent();
+	}
+	
+	/**
+	 * Reads and sets the template settings provided by <code>node</code>.
+	 * @param node The node providing the template settings.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the template settings.
+	 */
+	public void
+	readObject(Node node) {
+		if(
+			node.getNodeType() != Node.ELEMENT_NODE ||
+			!(node.getNodeName().equals("template"))
+		) {
+			throw new IllegalArgumentException("Not a channel template node!");
+		}
+		
+		NamedNodeMap nnm = node.getAttributes();
+		Node n = nnm.getNamedItem("name");
+		if(n == null) {
+			throw new IllegalArgumentException("The template name is undefined!");
+		}
+		DOMUtils.validateTextAttr(n);
+		setName(n.getNodeValue());
+		
+		NodeList nl = node.getChildNodes();
+		
+		for(int i = 0; i < nl.getLength(); i++) {
+			node = nl.item(i);
+			if(node.getNodeType() != Node.ELEMENT_NODE) continue;
+			
+			String s = node.getNodeName();
+			if(s.equals("midi-input")) {
+				setMidiInput (
+					getIntAttr(node, "device"),
+					getIntAttr(node, "port"),
+					getIntAttr(node, "channel")
+				);
+				continue;
+			} else if(s.equals("fx-send")) {
+				addFxSend(new FxSend (
+					getAttr(node, "name"),
+					getIntAttr(node, "midi-controller"),
+					Float.parseFloat(getAttr(node, "level"))
+				));
+				continue;
+			}
+			
+			if(!node.hasChildNodes()) continue;
+			DOMUtils.validateTextContent(node);
+			String v = node.getFirstChild().getNodeValue();
+			
+			try {
+				if(s.equals("description")) setDescription(v);
+				else if(s.equals("engine")) setEngine(v);
+				else if(s.equals("audio-output")) setAudioOutputDevice(Integer.parseInt(v));
+				else if(s.equals("midi-instrument-map")) setMidiInstrumentMap(Integer.parseInt(v));
+				else if(s.equals("volume")) setVolume(Float.parseFloat(v));
+				else if(s.equals("mute")) setMuted(Boolean.parseBoolean(v));
+				else if(s.equals("solo")) setSoloChannel(Boolean.parseBoolean(v));
+			} catch(NumberFormatException x) {
+				throw new IllegalArgumentException(s + ": invalid value - " + v);
+			}
+		}
+	}
+	
+	private static String
+	getAttr(Node node, String name) {
+		Node n = node.getAttributes().getNamedItem(name);
+		if(n == null) {
+			throw new IllegalArgumentException(node.getNodeName() + ": missing " + name);
+		}
+		
+		DOMUtils.validateTextAttr(n);
+		return n.getNodeValue();
+	}
+	
+	private static int
+	getIntAttr(Node node, String name) {
+		String s = getAttr(node, name);
+		try { return Integer.parseInt(s); }
+		catch(NumberFormatException x) {
+			throw new IllegalArgumentException(name + ": invalid value - " + s);
+		}
+	}
+	
+	/**
+	 * Writes the settings of this template to the
+	 * specified node of document <code>doc</code>.
+	 * @param doc The document containing <code>node</code>.
+	 * @param node Specifies the node where the settings should be written.
+	 */
+	public void
+	writeObject(Document doc, Node node) {
+		Element el = doc.createElement("template");
+		el.setAttribute("name", getName());
+		node.appendChild(el);
+		
+		node = el;
+		
+		appendTextElement(doc, node, "description", getDescription());
+		if(getEngine() != null) appendTextElement(doc, node, "engine", getEngine());
+		
+		el = doc.createElement("midi-input");
+		el.setAttribute("device", String.valueOf(getMidiInputDevice()));
+		el.setAttribute("port", String.valueOf(getMidiInputPort()));
+		el.setAttribute("channel", String.valueOf(getMidiInputChannel()));
+		node.appendChild(el);
+		
+		appendTextElement(doc, node, "audio-output", String.valueOf(getAudioOutputDevice()));
+		appendTextElement(doc, node, "midi-instrument-map", String.valueOf(getMidiInstrumentMap()));
+		appendTextElement(doc, node, "volume", String.valueOf(getVolume()));
+		appendTextElement(doc, node, "mute", String.valueOf(isMuted()));
+		appendTextElement(doc, node, "solo", String.valueOf(isSoloChannel()));
+		
+		for(FxSend fs : getFxSends()) {
+			el = doc.createElement("fx-send");
+			el.setAttribute("name", fs.getName());
+			el.setAttribute("midi-controller", String.valueOf(fs.getMidiController()));
+			el.setAttribute("level", String.valueOf(fs.getLevel()));
+			node.appendChild(el);
+		}
+	}
+	
+	private static void
+	appendTextElement(Document doc, Node node, String name, String text) {
+		Element el = doc.createElement(name);
+		el.appendChild(doc.createTextNode(text));
+		node.appendChild(el);
+	}
+	
+	@Override
+	public String
+	toString() { return getName(); }
+}
@@ -0,0 +1,186 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.Vector;
+
+import com.grigoriliev.jsampler.juife.event.GenericEvent;
+import com.grigoriliev.jsampler.juife.event.GenericListener;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+
+/**
+ * A list of named channel templates.
+ * @see ChannelTemplate
+ * @author Grigor Iliev
+ */
+public class ChannelTemplateList {
+	private final Vector<ChannelTemplate> templates = new Vector<ChannelTemplate>();
+	private final Vector<GenericListener> listeners = new Vector<GenericListener>();
+	
+	private final GenericListener l = new GenericListener() {
+		public void
+		jobDone(GenericEvent e) { fireChangeEvent(); }
+	};
+	
+	/**
+	 * Creates a new instance of <code>ChannelTemplateList</code>
+	 */
+	public
+	ChannelTemplateList() { }
+	
+	/**
+	 * Registers the specified listener to be notified when the template list is changed.
+	 * @param l The <code>GenericListener</code> to register.
+	 */
+	public void
+	addChangeListener(GenericListener l) { listeners.add(l); }
+	
+	/**
+	 * Removes the specified listener.
+	 * @param l The <code>GenericListener</code> to remove.
+	 */
+	public void
+	removeChangeListener(GenericListener l) { listeners.remove(l); }
+	
+	/**
+	 * Adds the specified template to the list.
+	 */
+	public void
+	addTemplate(ChannelTemplate template) {
+		templates.add(template);
+		template.addChangeListener(l);
+		fireChangeEvent();
+	}
+	
+	/**
+	 * Gets the current number of templates in the list.
+	 * @return The current number of templates in the list.
+	 */
+	public int
+	getTemplateCount() { return templates.size(); }
+	
+	/**
+	 * Gets the template at the specified position.
+	 * @param idx The index of the template to be returned.
+	 * @return The template at the specified position.
+	 */
+	public ChannelTemplate
+	getTemplate(int idx) { return templates.get(idx); }
+	
+	/**
+	 * Gets the template with the specified name.
+	 * @param name The name of the template.
+	 * @return The first template with the specified name or
+	 * <code>null</code> if there is no template with the specified name.
+	 */
+	public ChannelTemplate
+	getTemplate(String name) {
+		for(ChannelTemplate t : templates) {
+			if(t.getName() != null && t.getName().equals(name)) return t;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Removes the specified template from the list.
+	 * @param idx The index of the template to remove.
+	 */
+	public void
+	removeTemplate(int idx) {
+		ChannelTemplate template = templates.get(idx);
+		templates.removeElementAt(idx);
+		template.removeChangeListener(l);
+		fireChangeEvent();
+	}
+	
+	/**
+	 * Removes the specified template from the list.
+	 * @param template The template to remove.
+	 * @return <code>true</code> if the list contained the specified template.
+	 */
+	public boolean
+	removeTemplate(ChannelTemplate template) {
+		boolean b = templates.remove(template);
+		if(b) template.removeChangeListener(l);
+		fireChangeEvent();
+		return b;
+	}
+	
+	/** Notifies listeners that the template list has changed. */
+	protected void
+	fireChangeEvent() {
+		GenericEvent e = new GenericEvent(this);
+		for(GenericListener l : listeners) l.jobDone(e);
+	}
+	
+	/**
+	 * Reads and loads the content provided by <code>node</code> to this template list.
+	 * @param node The node providing the content of this template list.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the content of this template list.
+	 */
+	public void
+	readObject(Node node) {
+		if(
+			node.getNodeType() != Node.ELEMENT_NODE ||
+			!(node.getNodeName().equals("templates"))
+		) {
+			throw new IllegalArgumentException("Not a channel template list node!");
+		}
+		
+		NodeList nl = node.getChildNodes();
+		
+		for(int i = 0; i < nl.getLength(); i++) {
+			node = nl.item(i);
+			if(node.getNodeType() != Node.ELEMENT_NODE) continue;
+			
+			ChannelTemplate t = new ChannelTemplate();
+			t.readObject(node);
+			addTemplate(t);
+		}
+	}
+	
+	/**
+	 * Writes the content of this template list to the
+	 * specified node of document <code>doc</code>.
+	 * @param doc The document containing <code>node</code>.
+	 * @param node Specifies the node where the content of this
+	 * template list should be written.
+	 */
+	public void
+	writeObject(Document doc, Node node) {
+		Element el = doc.createElement("templates");
+		node.appendChild(el);
+		
+		node = el;
+		
+		for(int i = 0; i < getTemplateCount(); i++) {
+			getTemplate(i).writeObject(doc, node);
+		}
+	}
+}
@@ -0,0 +1,445 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+
+package com.grigoriliev.jsampler;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+
+import com.grigoriliev.jsampler.jlscp.Client;
+
+import com.grigoriliev.jsampler.juife.Task;
+import com.grigoriliev.jsampler.juife.TaskQueue;
+
+import com.grigoriliev.jsampler.juife.event.GenericEvent;
+import com.grigoriliev.jsampler.juife.event.GenericListener;
+import com.grigoriliev.jsampler.juife.event.TaskEvent;
+import com.grigoriliev.jsampler.juife.event.TaskListener;
+import com.grigoriliev.jsampler.juife.event.TaskQueueEvent;
+import com.grigoriliev.jsampler.juife.event.TaskQueueListener;
+
+import com.grigoriliev.jsampler.task.EnhancedTask;
+import com.grigoriliev.jsampler.task.Global;
+import com.grigoriliev.jsampler.task.SetServerAddress;
+
+
+/**
+ * Manages the LSCP connections of the default session - a dedicated
+ * connection (with its own client and task queue) for each traffic class,
+ * so that long instruments database operations don't delay the control
+ * commands and the delivery of the notifications sent by the backend.
+ *
+ * <p>The tasks are routed by their traffic class (see
+ * <code>EnhancedTask.getTrafficClass()</code>): the bulk tasks added to the
+ * control task queue are executed in the bulk task queue. To preserve the
+ * order of the commands, a bulk task isn't started before the completion
+ * of the control tasks added before it. The control tasks, however, are not
+ * ordered after the bulk tasks added before them, so that they are not delayed
+ * by the long running operations, unless they depend on the bulk tasks
+ * (see <code>EnhancedTask.setDependsOnBulkTasks()</code>). The tasks obtain
+ * the client of their traffic class with <code>CC.getClient()</code>.</p>
+ *
+ * <p>The control connection is managed by <code>CC</code>, while the bulk
+ * and the event connections are reconnected independently when they fail.</p>
+ * @author Grigor Iliev
+ */
+public class ConnectionManager {
+	/** The traffic classes, each of which uses a dedicated connection. */
+	public static enum TrafficClass {
+		/** The interactive control commands. */
+		CONTROL,
+		
+		/** The long running operations, like the instruments database operations. */
+		BULK,
+		
+		/** The event subscriptions. */
+		EVENTS
+	}
+	
+	private static final ThreadLocal<TrafficClass> boundClass = new ThreadLocal<TrafficClass>();
+	
+	private static final int MAX_RECONNECT_DELAY = 30000;
+	
+	private final Client controlClient = new Client();
+	private final Client bulkClient = new Client();
+	private final Client eventsClient = new Client();
+	
+	private final BarrierTaskQueue bulkQueue = new ConnectionTaskQueue(TrafficClass.BULK);
+	private final TaskQueue eventsQueue = new ConnectionTaskQueue(TrafficClass.EVENTS);
+	private final TaskQueue controlQueue = new ControlTaskQueue();
+	
+	private final Timer timer = new Timer("Connection-Manager-Timer", true);
+	
+	private Server server = null;
+	
+	/** Incremented on each connect, to discard the pending reconnects to the previous server. */
+	private int generation = 0;
+	
+	private final int[] reconnectDelays = new int[TrafficClass.values().length];
+	private final boolean[] reconnectPending = new boolean[TrafficClass.values().length];
+	
+	private final Vector<GenericListener> eventsConnectedListeners = new Vector<GenericListener>();
+	
+	/** Creates a new instance of <code>ConnectionManager</code>. */
+	public
+	ConnectionManager() {
+		bulkQueue.addTaskQueueListener(CC.uiThreadQueueListener(new ErrorHandler(TrafficClass.BULK)));
+		eventsQueue.addTaskQueueListener(CC.uiThreadQueueListener(new ErrorHandler(TrafficClass.EVENTS)));
+	}
+	
+	/**
+	 * Gets the traffic class of the current thread.
+	 * @return The traffic class of the connection task queue running in
+	 * the current thread or {@link TrafficClass#CONTROL} for any other thread.
+	 */
+	public static TrafficClass
+	getTrafficClass() {
+		TrafficClass c = boundClass.get();
+		return c == null ? TrafficClass.CONTROL : c;
+	}
+	
+	/** Gets the client of the traffic class of the current thread. */
+	public Client
+	getClient() { return getClient(getTrafficClass()); }
+	
+	/** Gets the client used for the specified traffic class. */
+	public Client
+	getClient(TrafficClass c) {
+		switch(c) {
+			case BULK: return bulkClient;
+			case EVENTS: return eventsClient;
+			default: return controlClient;
+		}
+	}
+	
+	/** Gets the task queue used for the specified traffic class. */
+	public TaskQueue
+	getTaskQueue(TrafficClass c) {
+		switch(c) {
+			case BULK: return bulkQueue;
+			case EVENTS: return eventsQueue;
+			default: return controlQueue;
+		}
+	}
+	
+	/**
+	 * Starts the task queues of the bulk and the event connections.
+	 * The control task queue is started by <code>CC</code>.
+	 */
+	public void
+	start() {
+		bulkQueue.start();
+		eventsQueue.start();
+	}
+	
+	/**
+	 * Connects the bulk and the event connections to the specified server,
+	 * discarding the pending tasks for the previous server.
+	 * The control connection is established by <code>CC</code>.
+	 */
+	public synchronized void
+	connect(Server server) {
+		this.server = server;
+		generation++;
+		
+		for(int i = 0; i < reconnectDelays.length; i++) {
+			reconnectDelays[i] = 0;
+			reconnectPending[i] = false;
+		}
+		
+		bulkQueue.removePendingTasks();
+		eventsQueue.removePendingTasks();
+		
+		reconnect(TrafficClass.BULK);
+		reconnect(TrafficClass.EVENTS);
+	}
+	
+	/**
+	 * Registers the specified listener to be notified (from the UI thread) when
+	 * the events connection is established, i.e. the notifications are subscribed.
+	 * The notifications sent by the backend while the events connection
+	 * is not established are lost.
+	 */
+	public void
+	addEventsConnectedListener(GenericListener l) { eventsConnectedListeners.add(l); }
+	
+	/** Removes the specified listener. */
+	public void
+	removeEventsConnectedListener(GenericListener l) { eventsConnectedListeners.remove(l); }
+	
+	private void
+	fireEventsConnected() {
+		GenericEvent e = new GenericEvent(this);
+		for(GenericListener l : eventsConnectedListeners) l.jobDone(e);
+	}
+	
+	/**
+	 * Reconnects the connection of the specified traffic class
+	 * to the current server. Does nothing for the control connection,
+	 * which is reconnected by <code>CC</code>.
+	 */
+	public synchronized void
+	reconnect(final TrafficClass c) {
+		if(c == TrafficClass.CONTROL || server == null) return;
+		
+		final TaskQueue q = getTaskQueue(c);
+		final int gen = generation;
+		
+		final Global.Connect cnt = new Global.Connect();
+		cnt.setSilent(true);
+		cnt.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(cnt.doneWithErrors()) scheduleReconnect(c, gen);
+				else if(onConnected(c, gen) && c == TrafficClass.EVENTS) fireEventsConnected();
+			}
+		});
+		
+		int t = CC.preferences().getIntProperty(JSPrefs.SOCKET_READ_TIMEOUT);
+		
+		q.add(new SetServerAddress(server.getAddress(), server.getPort()));
+		q.add(new Global.SetClientReadTimeout(t));
+		q.add(cnt);
+	}
+	
+	/** @return <code>false</code> if the connection is to the previous server. */
+	private synchronized boolean
+	onConnected(TrafficClass c, int gen) {
+		if(gen != generation) return false;
+		reconnectDelays[c.ordinal()] = 0;
+		CC.getLogger().fine("Connected: " + c);
+		return true;
+	}
+	
+	private synchronized void
+	scheduleReconnect(final TrafficClass c, final int gen) {
+		if(gen != generation || reconnectPending[c.ordinal()]) return;
+		reconnectPending[c.ordinal()] = true;
+		
+		int delay = reconnectDelays[c.ordinal()];
+		delay = delay == 0 ? 1000 : Math.min(delay * 2, MAX_RECONNECT_DELAY);
+		reconnectDelays[c.ordinal()] = delay;
+		
+		CC.getLogger().info("Reconnecting " + c + " connection in " + delay + "ms");
+		
+		timer.schedule(new TimerTask() {
+			public void
+			run() {
+				synchronized(ConnectionManager.this) {
+					if(gen != generation) return;
+					reconnectPending[c.ordinal()] = false;
+					reconnect(c);
+				}
+			}
+		}, delay);
+	}
+	
+	/** The tasks executed on the connections of the default session belong to it. */
+	private static void
+	setDefaultSession(Task t) {
+		SamplerSession s = CC.getDefaultSession();
+		// null while CC is being initialized
+		if(s != null && t instanceof EnhancedTask) ((EnhancedTask)t).setSession(s);
+	}
+	
+	/** Notifies the other task queue that the tasks before it are done. */
+	private static class Barrier extends EnhancedTask {
+		private final CountDownLatch latch = new CountDownLatch(1);
+		
+		Barrier() {
+			setSilent(true);
+			setTitle("");
+			setDescription("");
+		}
+		
+		@Override
+		public void
+		exec() { latch.countDown(); }
+		
+		/** Waits the barrier to be reached (or removed from its task queue). */
+		void
+		await() throws InterruptedException { latch.await(); }
+		
+		void
+		release() { latch.countDown(); }
+	}
+	
+	/**
+	 * Waits in a task queue for the tasks added to the other
+	 * task queue before the task, which follows this one.
+	 */
+	private static class AwaitBarrier extends EnhancedTask {
+		private final Barrier barrier;
+		
+		AwaitBarrier(Barrier barrier, TrafficClass trafficClass) {
+			setSilent(true);
+			setTitle("");
+			setDescription("");
+			setTrafficClass(trafficClass);
+			this.barrier = barrier;
+		}
+		
+		@Override
+		public void
+		exec() throws Exception { barrier.await(); }
+	}
+	
+	/** A task queue, which releases the barriers removed from it. */
+	private static class BarrierTaskQueue extends TaskQueue {
+		/** Determines whether a task is running or pending in this queue. */
+		boolean
+		isBusy() { return getRunningTask() != null || getPendingTasks().length > 0; }
+		
+		@Override
+		public boolean
+		removeTask(Task t) {
+			if(t instanceof Barrier) ((Barrier)t).release();
+			return super.removeTask(t);
+		}
+		
+		@Override
+		public void
+		removePendingTasks() {
+			for(Task t : getPendingTasks()) {
+				if(t instanceof Barrier) ((Barrier)t).release();
+			}
+			
+			super.removePendingTasks();
+		}
+	}
+	
+	/**
+	 * The control task queue, which routes the bulk tasks to the bulk task
+	 * queue and orders the control tasks, which depend on the bulk tasks,
+	 * after the bulk tasks added before them.
+	 */
+	private class ControlTaskQueue extends BarrierTaskQueue {
+		@Override
+		public void
+		add(Task t) {
+			setDefaultSession(t);
+			
+			if(isBulkTask(t)) {
+				if(isBusy()) {
+					Barrier b = new Barrier();
+					super.add(b);
+					bulkQueue.add(new AwaitBarrier(b, TrafficClass.BULK));
+				}
+				
+				bulkQueue.add(t);
+				return;
+			}
+			
+			if(dependsOnBulkTasks(t) && bulkQueue.isBusy()) {
+				Barrier b = new Barrier();
+				b.setTrafficClass(TrafficClass.BULK);
+				bulkQueue.add(b);
+				super.add(new AwaitBarrier(b, TrafficClass.CONTROL));
+			}
+			
+			super.add(t);
+		}
+		
+		@Override
+		public boolean
+		removeTask(Task t) {
+			if(isBulkTask(t)) return bulkQueue.removeTask(t);
+			return super.removeTask(t);
+		}
+		
+		private boolean
+		isBulkTask(Task t) {
+			if(!(t instanceof EnhancedTask)) return false;
+			return ((EnhancedTask)t).getTrafficClass() == TrafficClass.BULK;
+		}
+		
+		private boolean
+		dependsOnBulkTasks(Task t) {
+			if(!(t instanceof EnhancedTask)) return false;
+			return ((EnhancedTask)t).getDependsOnBulkTasks();
+		}
+	}
+	
+	/**
+	 * The task queue of a dedicated connection, which binds its
+	 * traffic class to its thread. The tasks added to it are
+	 * assigned the default session.
+	 */
+	private static class ConnectionTaskQueue extends BarrierTaskQueue {
+		private final TrafficClass trafficClass;
+		
+		ConnectionTaskQueue(TrafficClass trafficClass) {
+			this.trafficClass = trafficClass;
+			setName(trafficClass + "-Task-Queue");
+			setDaemon(true);
+		}
+		
+		@Override
+		public void
+		add(Task t) {
+			setDefaultSession(t);
+			super.add(t);
+		}
+		
+		@Override
+		public void
+		run() {
+			boundClass.set(trafficClass);
+			super.run();
+		}
+	}
+	
+	/**
+	 * Reconnects the dedicated connections on socket errors. The errors are
+	 * shown by the task queue listener of <code>CC</code>, which is registered
+	 * to the task queues of all connections. Invoked from the UI thread.
+	 */
+	private class ErrorHandler implements TaskQueueListener {
+		private final TrafficClass trafficClass;
+		
+		ErrorHandler(TrafficClass trafficClass) { this.trafficClass = trafficClass; }
+		
+		@Override
+		public void
+		stateChanged(TaskQueueEvent e) {
+			switch(e.getEventID()) {
+			case TASK_DONE:
+				EnhancedTask t = (EnhancedTask)e.getSource();
+				if(!t.doneWithErrors()) break;
+				
+				if(t.getErrorCode() != EnhancedTask.SOCKET_ERROR) break;
+				
+				// the connect failures are handled by the connect task listener
+				if(t instanceof Global.Connect) break;
+				
+				synchronized(ConnectionManager.this) {
+					scheduleReconnect(trafficClass, generation);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+}
@@ -48,6 +48,15 @@ import org.xml.sax.SAXException;
  * @author Grigor Iliev
  */
 public class DOMUtils {
+	/**
+	 * The factories are created once, since the lookup of the implementation is
+	 * expensive. The access to the factories is synchronized on the factory object.
+	 */
+	private static final DocumentBuilderFactory builderFactory =
+		DocumentBuilderFactory.newInstance();
+	
+	private static final TransformerFactory transformerFactory =
+		TransformerFactory.newInstance();
 	
 	/** Forbits instantiation of this class. */
 	private DOMUtils() { }
@@ -59,17 +68,21 @@ public class DOMUtils {
 	public static Document
 	createEmptyDocument() {
 		Document doc = null;
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		
 		try {
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			doc = builder.newDocument();
+			doc = newDocumentBuilder().newDocument();
 		} catch(ParserConfigurationException x) {
 			throw new RuntimeException("Failed to create new document!", x);
 		}
 		
 		return doc;
 	}
+	
+	private static DocumentBuilder
+	newDocumentBuilder() throws ParserConfigurationException {
+		synchronized(builderFactory) { return builderFactory.newDocumentBuilder(); }
+	}
+	
 	/**
 	 * Parses the input from the specified input stream and
 	 * returns a new document providing the content read from the stream.
@@ -80,11 +93,9 @@ public class DOMUtils {
 	public static Document
 	readObject(InputStream in) {
 		Document doc = null;
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		
 		try {
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			doc = builder.parse(in);
+			doc = newDocumentBuilder().parse(in);
 		} catch(ParserConfigurationException x) {
 			throw new RuntimeException("Parsing failed", x);
 		} catch(SAXException x) {
@@ -107,8 +118,11 @@ public class DOMUtils {
 	public static void
 	writeObject(Document doc, OutputStream out) {
 		try {
-			TransformerFactory factory = TransformerFactory.newInstance();
-			Transformer transformer = factory.newTransformer();
+			Transformer transformer;
+			synchronized(transformerFactory) {
+				transformer = transformerFactory.newTransformer();
+			}
+			
 			DOMSource source = new DOMSource(doc);
 			StreamResult result = new StreamResult(out);
 			transformer.transform(source, result);
@@ -0,0 +1,333 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+import com.grigoriliev.jsampler.event.DbDirectoryListingEvent;
+import com.grigoriliev.jsampler.event.DbDirectoryListingListener;
+import com.grigoriliev.jsampler.juife.Task;
+import com.grigoriliev.jsampler.juife.event.TaskEvent;
+import com.grigoriliev.jsampler.juife.event.TaskListener;
+import com.grigoriliev.jsampler.task.InstrumentsDb;
+
+import com.grigoriliev.jsampler.jlscp.DbDirectoryInfo;
+import com.grigoriliev.jsampler.jlscp.DbInstrumentInfo;
+
+/**
+ * A lazy, paged listing of an instruments database directory.
+ * Only the names of the directories and instruments are retrieved
+ * when the listing is loaded. The information about the entries is
+ * retrieved in pages, when requested by the view for the entries it
+ * actually displays (see {@link #loadDirectories} and {@link #loadInstruments}),
+ * so that large directories don't block the task queue.
+ * All methods of this class should be invoked from the UI thread.
+ * @author Grigor Iliev
+ */
+public class DbDirectoryListingModel {
+	/** The default number of entries retrieved with a single task. */
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	
+	private final String dir;
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	
+	private String[] dirNames = new String[0];
+	private String[] instrNames = new String[0];
+	private DbDirectoryInfo[] dirs = new DbDirectoryInfo[0];
+	private DbInstrumentInfo[] instrs = new DbInstrumentInfo[0];
+	
+	private final BitSet requestedDirPages = new BitSet();
+	private final BitSet requestedInstrPages = new BitSet();
+	
+	/** Used to discard the results of the tasks issued before the last reload. */
+	private int generation = 0;
+	
+	private final Vector<Task> pendingTasks = new Vector<Task>();
+	
+	private final Vector<DbDirectoryListingListener> listeners =
+		new Vector<DbDirectoryListingListener>();
+	
+	/**
+	 * Creates a new instance of <code>DbDirectoryListingModel</code>.
+	 * @param dir The absolute path name of the directory.
+	 */
+	public
+	DbDirectoryListingModel(String dir) { this.dir = dir; }
+	
+	/**
+	 * Registers the specified listener to be notified when
+	 * (a part of) the content of the listing is loaded.
+	 * @param l The <code>DbDirectoryListingListener</code> to register.
+	 */
+	public void
+	addDbDirectoryListingListener(DbDirectoryListingListener l) { listeners.add(l); }
+	
+	/**
+	 * Removes the specified listener.
+	 * @param l The <code>DbDirectoryListingListener</code> to remove.
+	 */
+	public void
+	removeDbDirectoryListingListener(DbDirectoryListingListener l) { listeners.remove(l); }
+	
+	/** Gets the absolute path name of the directory. */
+	public String
+	getDirectoryPath() { return dir; }
+	
+	/** Gets the maximum number of entries retrieved with a single task. */
+	public int
+	getPageSize() { return pageSize; }
+	
+	/**
+	 * Sets the maximum number of entries retrieved with a single task.
+	 * Should be set before the listing is loaded.
+	 */
+	public void
+	setPageSize(int size) {
+		if(size < 1) throw new IllegalArgumentException("size < 1");
+		pageSize = size;
+	}
+	
+	/**
+	 * (Re)loads the names of the directories and instruments.
+	 * All previously loaded information is discarded.
+	 */
+	public void
+	load() {
+		cancelPendingTasks();
+		final int gen = ++generation;
+		
+		final InstrumentsDb.GetDirectoryNames gdn = new InstrumentsDb.GetDirectoryNames(dir);
+		final InstrumentsDb.GetInstrumentNames gin = new InstrumentsDb.GetInstrumentNames(dir);
+		
+		TaskListener l = new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				pendingTasks.remove(e.getSource());
+				if(gen != generation) return;
+				
+				if(e.getSource() == gdn) {
+					if(gdn.doneWithErrors()) return;
+					setDirectoryNames(gdn.getResult());
+				} else {
+					if(gin.doneWithErrors()) return;
+					setInstrumentNames(gin.getResult());
+				}
+				
+				fireNamesLoaded();
+			}
+		};
+		
+		gdn.addTaskListener(l);
+		gin.addTaskListener(l);
+		
+		schedule(gdn);
+		schedule(gin);
+	}
+	
+	/**
+	 * Cancels the loading of the pages, which are still waiting in the
+	 * task queue. Should be invoked when the listing is no longer displayed.
+	 */
+	public void
+	dispose() {
+		cancelPendingTasks();
+		generation++;
+	}
+	
+	private void
+	setDirectoryNames(String[] names) {
+		dirNames = names;
+		dirs = new DbDirectoryInfo[names.length];
+		requestedDirPages.clear();
+	}
+	
+	private void
+	setInstrumentNames(String[] names) {
+		instrNames = names;
+		instrs = new DbInstrumentInfo[names.length];
+		requestedInstrPages.clear();
+	}
+	
+	/** Gets the number of directories in this listing. */
+	public int
+	getDirectoryCount() { return dirNames.length; }
+	
+	/** Gets the name of the directory at the specified position. */
+	public String
+	getDirectoryName(int index) { return dirNames[index]; }
+	
+	/**
+	 * Gets the information about the directory at the specified position.
+	 * @return The information about the directory at the specified position
+	 * or <code>null</code> if it is not loaded yet.
+	 * @see #loadDirectories
+	 */
+	public DbDirectoryInfo
+	getDirectory(int index) { return dirs[index]; }
+	
+	/** Gets the number of instruments in this listing. */
+	public int
+	getInstrumentCount() { return instrNames.length; }
+	
+	/** Gets the name of the instrument at the specified position. */
+	public String
+	getInstrumentName(int index) { return instrNames[index]; }
+	
+	/**
+	 * Gets the information about the instrument at the specified position.
+	 * @return The information about the instrument at the specified position
+	 * or <code>null</code> if it is not loaded yet.
+	 * @see #loadInstruments
+	 */
+	public DbInstrumentInfo
+	getInstrument(int index) { return instrs[index]; }
+	
+	/**
+	 * Ensures that the information about the directories in the specified range
+	 * is loaded or is being loaded. Views should invoke this method with the
+	 * range of the directories currently displayed.
+	 * @param first The index of the first directory in the range.
+	 * @param last The index of the last directory in the range (inclusive).
+	 */
+	public void
+	loadDirectories(int first, int last) {
+		last = Math.min(last, dirNames.length - 1);
+		if(first < 0 || first > last) return;
+		
+		for(int p = first / pageSize; p <= last / pageSize; p++) {
+			if(requestedDirPages.get(p)) continue;
+			requestedDirPages.set(p);
+			loadDirectoryPage(p);
+		}
+	}
+	
+	/**
+	 * Ensures that the information about the instruments in the specified range
+	 * is loaded or is being loaded. Views should invoke this method with the
+	 * range of the instruments currently displayed.
+	 * @param first The index of the first instrument in the range.
+	 * @param last The index of the last instrument in the range (inclusive).
+	 */
+	public void
+	loadInstruments(int first, int last) {
+		last = Math.min(last, instrNames.length - 1);
+		if(first < 0 || first > last) return;
+		
+		for(int p = first / pageSize; p <= last / pageSize; p++) {
+			if(requestedInstrPages.get(p)) continue;
+			requestedInstrPages.set(p);
+			loadInstrumentPage(p);
+		}
+	}
+	
+	private void
+	loadDirectoryPage(final int page) {
+		final int gen = generation;
+		final int first = page * pageSize;
+		final int count = Math.min(pageSize, dirNames.length - first);
+		String[] names = new String[count];
+		System.arraycopy(dirNames, first, names, 0, count);
+		
+		final InstrumentsDb.GetDirectoriesInfo t =
+			new InstrumentsDb.GetDirectoriesInfo(dir, names);
+		
+		t.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				pendingTasks.remove(t);
+				if(gen != generation) return;
+				
+				if(t.doneWithErrors()) {
+					requestedDirPages.clear(page);
+					return;
+				}
+				
+				System.arraycopy(t.getResult(), 0, dirs, first, count);
+				fireDirectoriesLoaded(first, first + count - 1);
+			}
+		});
+		
+		schedule(t);
+	}
+	
+	private void
+	loadInstrumentPage(final int page) {
+		final int gen = generation;
+		final int first = page * pageSize;
+		final int count = Math.min(pageSize, instrNames.length - first);
+		String[] names = new String[count];
+		System.arraycopy(instrNames, first, names, 0, count);
+		
+		final InstrumentsDb.GetInstrumentsInfo t =
+			new InstrumentsDb.GetInstrumentsInfo(dir, names);
+		
+		t.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				pendingTasks.remove(t);
+				if(gen != generation) return;
+				
+				if(t.doneWithErrors()) {
+					requestedInstrPages.clear(page);
+					return;
+				}
+				
+				System.arraycopy(t.getResult(), 0, instrs, first, count);
+				fireInstrumentsLoaded(first, first + count - 1);
+			}
+		});
+		
+		schedule(t);
+	}
+	
+	private void
+	schedule(Task t) {
+		pendingTasks.add(t);
+		CC.getTaskQueue().add(t);
+	}
+	
+	private void
+	cancelPendingTasks() {
+		for(Task t : pendingTasks) CC.getTaskQueue().removeTask(t);
+		pendingTasks.removeAllElements();
+	}
+	
+	private void
+	fireNamesLoaded() {
+		int last = Math.max(dirNames.length, instrNames.length) - 1;
+		DbDirectoryListingEvent e = new DbDirectoryListingEvent(this, 0, last);
+		for(DbDirectoryListingListener l : listeners) l.namesLoaded(e);
+	}
+	
+	private void
+	fireDirectoriesLoaded(int first, int last) {
+		DbDirectoryListingEvent e = new DbDirectoryListingEvent(this, first, last);
+		for(DbDirectoryListingListener l : listeners) l.directoriesLoaded(e);
+	}
+	
+	private void
+	fireInstrumentsLoaded(int first, int last) {
+		DbDirectoryListingEvent e = new DbDirectoryListingEvent(this, first, last);
+		for(DbDirectoryListingListener l : listeners) l.instrumentsLoaded(e);
+	}
+}
@@ -22,9 +22,9 @@
 package com.grigoriliev.jsampler;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import com.grigoriliev.jsampler.event.AudioDeviceListener;
-import com.grigoriliev.jsampler.juife.PDUtils;
 
 import com.grigoriliev.jsampler.event.AudioDeviceEvent;
 
@@ -45,18 +45,39 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	private final ArrayList<AudioDeviceListener> listeners = new ArrayList<AudioDeviceListener>();
 	private final ArrayList<EffectChain> effectChains = new ArrayList<EffectChain>();
 	
+	/** Maps the send effect chain IDs to the positions of the chains in the list. */
+	private final HashMap<Integer, Integer> chainIndexMap = new HashMap<Integer, Integer>();
+	
+	private EffectInstanceRegistry registry = null;
+	
+	private final SamplerSession session;
+	
 	/**
 	 * Creates a new instance of <code>DefaultAudioDeviceModel</code> using the
-	 * specified non-null audio device.
+	 * specified non-null audio device, which belongs to the default session.
 	 * @param audioDevice An <code>AudioOutputDevice</code> instance providing the current
 	 * settings of the audio device which will be represented by this model.
 	 * @throws IllegalArgumentException If <code>audioDevice</code> is <code>null</code>.
 	 */
 	public
 	DefaultAudioDeviceModel(AudioOutputDevice audioDevice) {
+		this(CC.getDefaultSession(), audioDevice);
+	}
+	
+	/**
+	 * Creates a new instance of <code>DefaultAudioDeviceModel</code> using the
+	 * specified non-null audio device.
+	 * @param session The session this model belongs to.
+	 * @param audioDevice An <code>AudioOutputDevice</code> instance providing the current
+	 * settings of the audio device which will be represented by this model.
+	 * @throws IllegalArgumentException If <code>audioDevice</code> is <code>null</code>.
+	 */
+	public
+	DefaultAudioDeviceModel(SamplerSession session, AudioOutputDevice audioDevice) {
 		if(audioDevice == null)
 			throw new IllegalArgumentException("audioDevice must be non null");
 		
+		this.session = session;
 		this.audioDevice = audioDevice;
 	}
 	
@@ -136,7 +157,7 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public void
 	setBackendActive(boolean active) {
-		CC.getTaskQueue().add(new Audio.EnableDevice(getDeviceId(), active));
+		session.getTaskQueue().add(new Audio.EnableDevice(getDeviceId(), active));
 	}
 	
 	/**
@@ -147,7 +168,7 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public void
 	setBackendDeviceParameter(Parameter prm) {
-		CC.getTaskQueue().add(new Audio.SetDeviceParameter(getDeviceId(), prm));
+		session.getTaskQueue().add(new Audio.SetDeviceParameter(getDeviceId(), prm));
 	}
 	
 	/**
@@ -157,7 +178,7 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public void
 	setBackendChannelCount(int channels) {
-		CC.getTaskQueue().add(new Audio.SetChannelCount(getDeviceId(), channels));
+		session.getTaskQueue().add(new Audio.SetChannelCount(getDeviceId(), channels));
 	}
 	
 	/**
@@ -169,7 +190,7 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public void
 	setBackendChannelParameter(int channel, Parameter prm) {
-		CC.getTaskQueue().add(new Audio.SetChannelParameter(getDeviceId(), channel, prm));
+		session.getTaskQueue().add(new Audio.SetChannelParameter(getDeviceId(), channel, prm));
 	}
 	
 	/** Gets the current number of send effect chains. */
@@ -185,12 +206,8 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public EffectChain
 	getSendEffectChainById(int chainId) {
-		for(int i = 0; i < getSendEffectChainCount(); i++) {
-			EffectChain chain = getSendEffectChain(i);
-			if(chain.getChainId() == chainId) return chain;
-		}
-		
-		return null;
+		int i = getSendEffectChainIndex(chainId);
+		return i == -1 ? null : getSendEffectChain(i);
 	}
 	
 	/**
@@ -203,11 +220,8 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public int
 	getSendEffectChainIndex(int chainId) {
-		for(int i = 0; i < getSendEffectChainCount(); i++) {
-			if(getSendEffectChain(i).getChainId() == chainId) return i;
-		}
-		
-		return -1;
+		Integer i = chainIndexMap.get(chainId);
+		return i == null ? -1 : i;
 	}
 	
 	/**
@@ -217,6 +231,8 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	public void
 	addSendEffectChain(EffectChain chain) {
 		effectChains.add(chain);
+		chainIndexMap.put(chain.getChainId(), effectChains.size() - 1);
+		chain.attach(this, registry);
 		fireSendEffectChainAdded(chain);
 	}
 	
@@ -226,19 +242,43 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public void
 	removeSendEffectChain(int chainId) {
+		int i = getSendEffectChainIndex(chainId);
+		if(i == -1) return;
+		
+		EffectChain chain = effectChains.remove(i);
+		updateChainIndexMap();
+		chain.detach();
+		fireSendEffectChainRemoved(chain);
+	}
+	
+	/**
+	 * Sets the registry in which the effect instances of
+	 * the send effect chains of this device should be registered.
+	 * @param registry The registry or <code>null</code> to unregister
+	 * the effect instances of this device.
+	 */
+	void
+	setEffectInstanceRegistry(EffectInstanceRegistry registry) {
+		this.registry = registry;
+		for(EffectChain chain : effectChains) chain.attach(this, registry);
+	}
+	
+	private void
+	updateChainIndexMap() {
+		chainIndexMap.clear();
 		for(int i = 0; i < effectChains.size(); i++) {
-			if(effectChains.get(i).getChainId() == chainId) {
-				fireSendEffectChainRemoved(effectChains.remove(i));
-				return;
-			}
+			chainIndexMap.put(effectChains.get(i).getChainId(), i);
 		}
 	}
 	
 	@Override
 	public void
 	removeAllSendEffectChains() {
+		chainIndexMap.clear();
 		for(int i = effectChains.size() - 1; i >= 0; i--) {
-			fireSendEffectChainRemoved(effectChains.remove(i));
+			EffectChain chain = effectChains.remove(i);
+			chain.detach();
+			fireSendEffectChainRemoved(chain);
 		}
 	}
 	
@@ -249,14 +289,14 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public void
 	addBackendSendEffectChain() {
-		CC.getTaskQueue().add(new Audio.AddSendEffectChain(getDeviceId()));
+		session.getTaskQueue().add(new Audio.AddSendEffectChain(getDeviceId()));
 	}
 	
 	/** Schedules a new task for removing the specified send effect chain. */
 	@Override
 	public void
 	removeBackendSendEffectChain(int chainId) {
-		CC.getTaskQueue().add(new Audio.RemoveSendEffectChain(getDeviceId(), chainId));
+		session.getTaskQueue().add(new Audio.RemoveSendEffectChain(getDeviceId(), chainId));
 	}
 	
 	/**
@@ -266,7 +306,7 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public void
 	addBackendEffectInstances(Effect[] effects, int chainId, int index) {
-		CC.getTaskQueue().add (
+		session.getTaskQueue().add (
 			new Audio.AddNewEffectInstances(effects, getDeviceId(), chainId, index)
 		);
 	}
@@ -278,7 +318,7 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	@Override
 	public void
 	removeBackendEffectInstance(int chainId, int instanceId) {
-		CC.getTaskQueue().add(new Audio.RemoveEffectInstance(getDeviceId(), chainId, instanceId));
+		session.getTaskQueue().add(new Audio.RemoveEffectInstance(getDeviceId(), chainId, instanceId));
 	}
 	
 	/**
@@ -286,7 +326,7 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	 */
 	private void
 	fireSettingsChanged() {
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() {
 				AudioDeviceModel model = DefaultAudioDeviceModel.this;
@@ -301,13 +341,13 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	 */
 	private void
 	fireSettingsChanged(final AudioDeviceEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(AudioDeviceListener l : listeners) l.settingsChanged(e);
 	}
 	
 	private void
 	fireSendEffectChainAdded(final EffectChain chain) {
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() {
 				AudioDeviceModel m = DefaultAudioDeviceModel.this;
@@ -319,13 +359,13 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	/** This method should be invoked from the event-dispatching thread. */
 	private void
 	fireSendEffectChainAdded(final AudioDeviceEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(AudioDeviceListener l : listeners) l.sendEffectChainAdded(e);
 	}
 	
 	private void
 	fireSendEffectChainRemoved(final EffectChain chain) {
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() {
 				AudioDeviceModel m = DefaultAudioDeviceModel.this;
@@ -337,7 +377,7 @@ public class DefaultAudioDeviceModel implements AudioDeviceModel {
 	/** This method should be invoked from the event-dispatching thread. */
 	private void
 	fireSendEffectChainRemoved(final AudioDeviceEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(AudioDeviceListener l : listeners) l.sendEffectChainRemoved(e);
 	}
 }
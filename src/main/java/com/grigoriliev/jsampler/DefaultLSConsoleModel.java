@@ -34,7 +34,6 @@ import java.util.Vector;
 import java.util.logging.Level;
 
 import com.grigoriliev.jsampler.event.LSConsoleEvent;
-import com.grigoriliev.jsampler.juife.PDUtils;
 import com.grigoriliev.jsampler.juife.event.GenericEvent;
 import com.grigoriliev.jsampler.juife.event.GenericListener;
 import com.grigoriliev.jsampler.juife.event.TaskEvent;
@@ -80,16 +79,37 @@ public class DefaultLSConsoleModel implements LSConsoleModel {
 	
 	private final Vector<LSConsoleListener> listeners = new Vector<LSConsoleListener>();
 	
+	/**
+	 * Determines whether the console is connected to the backend. The console
+	 * connection is established when the first command is executed, so that
+	 * it doesn't delay the startup when the LS console isn't used.
+	 */
+	private boolean active = false;
+	
+	/** Determines whether a console connection is being established. */
+	private boolean connecting = false;
+	
+	/** The commands executed before the console connection is established. */
+	private final Vector<String> pendingCommands = new Vector<String>();
+	
 	
 	/** Creates a new instance of <code>DefaultLSConsoleModel</code>. */
 	public
 	DefaultLSConsoleModel() {
 		CC.addReconnectListener(new GenericListener() {
 			public void
-			jobDone(GenericEvent e) { reconnect(); }
+			jobDone(GenericEvent e) { if(active) reconnect(); }
 		});
+	}
+	
+	/** Starts the console thread and connects the console to the backend. */
+	private void
+	activate() {
+		if(active) return;
+		active = true;
 		
 		lsConsoleThread.start();
+		reconnect();
 	}
 	
 	private Socket
@@ -101,6 +121,7 @@ public class DefaultLSConsoleModel implements LSConsoleModel {
 	private void
 	reconnect() {
 		final LSConsoleConnect cnt = new LSConsoleConnect(getSocket());
+		connecting = true;
 		
 		cnt.addTaskListener(new TaskListener() {
 			public void
@@ -119,6 +140,7 @@ public class DefaultLSConsoleModel implements LSConsoleModel {
 	private void
 	changeSocket(Socket sock) {
 		setSocket(sock);
+		connecting = false;
 		
 		try {
 			LscpInputStream in;
@@ -127,6 +149,29 @@ public class DefaultLSConsoleModel implements LSConsoleModel {
 			
 			lsConsoleThread.setInputStream(in);
 		} catch(Exception x) { CC.getLogger().log(Level.INFO, HF.getErrorMessage(x), x); }
+		
+		execPendingCommands();
+	}
+	
+	private void
+	execPendingCommands() {
+		if(pendingCommands.isEmpty()) return;
+		String[] cmds = pendingCommands.toArray(new String[pendingCommands.size()]);
+		pendingCommands.clear();
+		
+		for(String cmd : cmds) {
+			if(isConnected()) {
+				CC.getTaskQueue().add(new LSConsoleExecCommand(cmd));
+			} else {
+				fireResponseReceived(JSI18n.i18n.getMessage("DefaultLSConsoleModel.notConnected"));
+			}
+		}
+	}
+	
+	private boolean
+	isConnected() {
+		return	getSocket() != null && !getSocket().isClosed() && getSocket().isConnected()
+			&& !getSocket().isOutputShutdown() && out != null;
 	}
 	
 	/**
@@ -158,9 +203,10 @@ public class DefaultLSConsoleModel implements LSConsoleModel {
 		currentCmd = "";
 		cmdHistoryIdx = -1;
 		
-		if( getSocket() == null || getSocket().isClosed() || !getSocket().isConnected() 
-			|| getSocket().isOutputShutdown() || out == null ) {
-			
+		if(!active || connecting) {
+			pendingCommands.add(cmd);
+			activate();
+		} else if(!isConnected()) {
 			fireResponseReceived(JSI18n.i18n.getMessage("DefaultLSConsoleModel.notConnected"));
 		} else {
 			CC.getTaskQueue().add(new LSConsoleExecCommand(cmd));
@@ -399,7 +445,7 @@ public class DefaultLSConsoleModel implements LSConsoleModel {
 	 */
 	private void
 	fireResponseReceived(final String response) {
-		PDUtils.runOnUiThread(new Runnable() {
+		CC.runOnUiThread(new Runnable() {
 			public void
 			run() {
 				LSConsoleEvent e = new LSConsoleEvent(this, response);
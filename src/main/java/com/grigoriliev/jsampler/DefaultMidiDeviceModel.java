@@ -25,7 +25,6 @@ import java.util.Vector;
 
 import com.grigoriliev.jsampler.event.MidiDeviceEvent;
 import com.grigoriliev.jsampler.event.MidiDeviceListener;
-import com.grigoriliev.jsampler.juife.PDUtils;
 
 import com.grigoriliev.jsampler.task.Midi;
 
@@ -42,18 +41,34 @@ public class DefaultMidiDeviceModel implements MidiDeviceModel {
 	
 	private final Vector<MidiDeviceListener> listeners = new Vector<MidiDeviceListener>();
 	
+	private final SamplerSession session;
+	
 	/**
 	 * Creates a new instance of <code>DefaultMidiDeviceModel</code> using the
-	 * specified non-null MIDI device.
+	 * specified non-null MIDI device, which belongs to the default session.
 	 * @param midiDevice A <code>MidiInputDevice</code> instance providing the current
 	 * settings of the MIDI device which will be represented by this model.
 	 * @throws IllegalArgumentException If <code>midiDevice</code> is <code>null</code>.
 	 */
 	public
 	DefaultMidiDeviceModel(MidiInputDevice midiDevice) {
+		this(CC.getDefaultSession(), midiDevice);
+	}
+	
+	/**
+	 * Creates a new instance of <code>DefaultMidiDeviceModel</code> using the
+	 * specified non-null MIDI device.
+	 * @param session The session this model belongs to.
+	 * @param midiDevice A <code>MidiInputDevice</code> instance providing the current
+	 * settings of the MIDI device which will be represented by this model.
+	 * @throws IllegalArgumentException If <code>midiDevice</code> is <code>null</code>.
+	 */
+	public
+	DefaultMidiDeviceModel(SamplerSession session, MidiInputDevice midiDevice) {
 		if(midiDevice == null)
 			throw new IllegalArgumentException("midiDevice must be non null");
 		
+		this.session = session;
 		this.midiDevice = midiDevice;
 	}
 	
@@ -133,7 +148,7 @@ public class DefaultMidiDeviceModel implements MidiDeviceModel {
 	@Override
 	public void
 	setBackendActive(boolean active) {
-		CC.getTaskQueue().add(new Midi.EnableDevice(getDeviceId(), active));
+		session.getTaskQueue().add(new Midi.EnableDevice(getDeviceId(), active));
 	}
 	
 	/**
@@ -144,7 +159,7 @@ public class DefaultMidiDeviceModel implements MidiDeviceModel {
 	@Override
 	public void
 	setBackendDeviceParameter(Parameter prm) {
-		CC.getTaskQueue().add(new Midi.SetDeviceParameter(getDeviceId(), prm));
+		session.getTaskQueue().add(new Midi.SetDeviceParameter(getDeviceId(), prm));
 	}
 	
 	/**
@@ -154,7 +169,7 @@ public class DefaultMidiDeviceModel implements MidiDeviceModel {
 	@Override
 	public void
 	setBackendPortCount(int ports) {
-		CC.getTaskQueue().add(new Midi.SetPortCount(getDeviceId(), ports));
+		session.getTaskQueue().add(new Midi.SetPortCount(getDeviceId(), ports));
 	}
 	
 	/**
@@ -166,7 +181,7 @@ public class DefaultMidiDeviceModel implements MidiDeviceModel {
 	@Override
 	public void
 	setBackendPortParameter(int port, Parameter prm) {
-		CC.getTaskQueue().add(new Midi.SetPortParameter(getDeviceId(), port, prm));
+		session.getTaskQueue().add(new Midi.SetPortParameter(getDeviceId(), port, prm));
 	}
 	
 	/**
@@ -174,7 +189,7 @@ public class DefaultMidiDeviceModel implements MidiDeviceModel {
 	 */
 	private void
 	fireSettingsChanged() {
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() {
 				MidiDeviceModel model = DefaultMidiDeviceModel.this;
@@ -189,7 +204,7 @@ public class DefaultMidiDeviceModel implements MidiDeviceModel {
 	 */
 	private void
 	fireSettingsChanged(final MidiDeviceEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(MidiDeviceListener l : listeners) l.settingsChanged(e);
 	}
 }
@@ -26,6 +26,10 @@ import java.util.Vector;
 import com.grigoriliev.jsampler.event.ListEvent;
 import com.grigoriliev.jsampler.event.ListListener;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -284,6 +288,44 @@ public class DefaultOrchestraListModel implements OrchestraListModel {
 		}
 	}
 	
+	/**
+	 * Reads and loads the content of this orchestra list from the specified reader,
+	 * which should be positioned at the start tag of an orchestra list element.
+	 * The reader is positioned at the end tag of the element afterwards.
+	 * @param r The reader providing the content of this orchestra list.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the content of this orchestra list.
+	 * @throws XMLStreamException If the XML is malformed.
+	 */
+	@Override
+	public void
+	readObject(XMLStreamReader r) throws XMLStreamException {
+		XMLStreamUtils.requireStartElement(r, "orchestras", "Not an orchestra list node!");
+		
+		while(XMLStreamUtils.nextChildElement(r)) {
+			OrchestraModel om = new DefaultOrchestraModel();
+			om.readObject(r);
+			addOrchestra(om);
+		}
+	}
+	
+	/**
+	 * Writes the content of this orchestra list to the specified writer.
+	 * @param w The writer where the content of this orchestra list should be written.
+	 * @throws XMLStreamException If an error occurs while writing.
+	 */
+	@Override
+	public void
+	writeObject(XMLStreamWriter w) throws XMLStreamException {
+		w.writeStartElement("orchestras");
+		
+		for(int i = 0; i < getOrchestraCount(); i++) {
+			getOrchestra(i).writeObject(w);
+		}
+		
+		w.writeEndElement();
+	}
+	
 	/** Notifies listeners that an orchestra has been added to the list. */
 	private void
 	fireOrchestraAdded(OrchestraModel orchestraModel) {
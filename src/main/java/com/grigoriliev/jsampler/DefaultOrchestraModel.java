@@ -21,8 +21,13 @@
 
 package com.grigoriliev.jsampler;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Vector;
 
+import java.util.logging.Level;
+
 import com.grigoriliev.jsampler.event.OrchestraAdapter;
 import com.grigoriliev.jsampler.event.OrchestraEvent;
 import com.grigoriliev.jsampler.juife.event.GenericEvent;
@@ -30,6 +35,10 @@ import com.grigoriliev.jsampler.juife.event.GenericListener;
 
 import com.grigoriliev.jsampler.event.OrchestraListener;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -47,14 +56,121 @@ public class DefaultOrchestraModel implements OrchestraModel {
 	
 	private final Vector<OrchestraInstrument> instruments = new Vector<OrchestraInstrument>();
 	
+	/**
+	 * Maps the instruments (by identity) to their positions.
+	 * Built on demand and discarded when the instrument list is changed.
+	 */
+	private IdentityHashMap<OrchestraInstrument, Integer> indexMap = null;
+	
 	private final Vector<OrchestraListener> listeners = new Vector<OrchestraListener>();
 	
+	/**
+	 * Used to materialize the instruments of an orchestra,
+	 * which is created with its header only.
+	 */
+	public static interface InstrumentLoader {
+		/** Loads the instruments of the orchestra. */
+		public OrchestraInstrument[] loadInstruments() throws Exception;
+	}
+	
+	private InstrumentLoader loader = null;
+	private int headerInstrumentCount = 0;
+	private boolean loadFailed = false;
+	
 	/** Creates a new instance of <code>DefaultOrchestraModel</code>. */
 	public
 	DefaultOrchestraModel() {
 		addOrchestraListener(getHandler());
 	}
 	
+	/**
+	 * Creates a new instance of <code>DefaultOrchestraModel</code> providing
+	 * only the header of the orchestra. The instruments are loaded with the
+	 * specified loader when they are accessed for the first time.
+	 * @param name The name of the orchestra.
+	 * @param description The description of the orchestra.
+	 * @param instrumentCount The number of instruments in the orchestra.
+	 * @param loader The loader used to materialize the instruments.
+	 */
+	public
+	DefaultOrchestraModel (
+		String name, String description, int instrumentCount, InstrumentLoader loader
+	) {
+		this();
+		this.name = name;
+		this.description = description;
+		this.headerInstrumentCount = instrumentCount;
+		if(instrumentCount > 0) this.loader = loader;
+	}
+	
+	/**
+	 * Determines whether the instruments of this orchestra are materialized.
+	 * @return <code>false</code> if only the header of this orchestra
+	 * is loaded, <code>true</code> otherwise.
+	 */
+	public synchronized boolean
+	isLoaded() { return loader == null; }
+	
+	/**
+	 * Gets the loader used to materialize the instruments of this orchestra.
+	 * @return The loader or <code>null</code> if the instruments are already materialized.
+	 */
+	synchronized InstrumentLoader
+	getInstrumentLoader() { return loader; }
+	
+	/**
+	 * Replaces the loader of this orchestra, if the instruments are not materialized yet
+	 * and <code>oldLoader</code> is still the current loader. This is used when the
+	 * snapshot, from which the instruments should be loaded, is rewritten.
+	 * A previous failure to load the instruments is discarded.
+	 */
+	synchronized void
+	replaceInstrumentLoader(InstrumentLoader oldLoader, InstrumentLoader newLoader) {
+		if(loader == null || loader != oldLoader) return;
+		loader = newLoader;
+		loadFailed = false;
+	}
+	
+	/**
+	 * Materializes the instruments, if only the header of this orchestra is loaded.
+	 * If the instruments cannot be loaded, the loader is kept, so that they are
+	 * not lost on the next save, and the orchestra appears empty.
+	 * @return <code>true</code> if the instruments are materialized,
+	 * <code>false</code> if the loading has failed.
+	 */
+	private synchronized boolean
+	ensureLoaded() {
+		if(loader == null) return true;
+		if(loadFailed) return false;
+		
+		OrchestraInstrument[] instrs;
+		try { instrs = loader.loadInstruments(); }
+		catch(Exception x) {
+			CC.getLogger().log(Level.WARNING, "Failed to load orchestra: " + getName(), x);
+			loadFailed = true;
+			return false;
+		}
+		
+		loader = null;
+		for(OrchestraInstrument instr : instrs) {
+			instruments.add(instr);
+			instr.addChangeListener(getHandler());
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Materializes the instruments before this orchestra is modified.
+	 * @throws IllegalStateException If the instruments cannot be loaded.
+	 */
+	private void
+	requireLoaded() {
+		if(!ensureLoaded()) {
+			throw new IllegalStateException("Failed to load orchestra: " + getName());
+		}
+	}
+	
 	/**
 	 * Registers the specified listener for receiving event messages.
 	 * @param l The <code>OrchestraListener</code> to register.
@@ -123,7 +239,12 @@ public class DefaultOrchestraModel implements OrchestraModel {
 	 */
 	@Override
 	public int
-	getInstrumentCount() { return instruments.size(); }
+	getInstrumentCount() {
+		synchronized(this) {
+			if(loader != null) return loadFailed ? 0 : headerInstrumentCount;
+		}
+		return instruments.size();
+	}
 	
 	/**
 	 * Gets the instrument at the specified position.
@@ -132,7 +253,10 @@ public class DefaultOrchestraModel implements OrchestraModel {
 	 */
 	@Override
 	public OrchestraInstrument
-	getInstrument(int idx) { return instruments.get(idx); }
+	getInstrument(int idx) {
+		ensureLoaded();
+		return instruments.get(idx);
+	}
 	
 	/**
 	 * Adds the specified instrument to this orchestra.
@@ -156,7 +280,9 @@ public class DefaultOrchestraModel implements OrchestraModel {
 	public void
 	insertInstrument(OrchestraInstrument instr, int idx) {
 		if(instr == null) throw new IllegalArgumentException("instr should be non-null!");
+		requireLoaded();
 		instruments.insertElementAt(instr, idx);
+		indexMap = null;
 		fireInstrumentAdded(instr);
 	}
 	
@@ -167,8 +293,10 @@ public class DefaultOrchestraModel implements OrchestraModel {
 	@Override
 	public void
 	removeInstrument(int idx) {
+		requireLoaded();
 		OrchestraInstrument instr = instruments.get(idx);
 		instruments.removeElementAt(idx);
+		indexMap = null;
 		fireInstrumentRemoved(instr);
 	}
 	
@@ -181,9 +309,13 @@ public class DefaultOrchestraModel implements OrchestraModel {
 	@Override
 	public boolean
 	removeInstrument(OrchestraInstrument instr) {
+		requireLoaded();
 		boolean b = instruments.removeElement(instr);
-		if(b) fireInstrumentRemoved(instr);
-		return b;
+		if(!b) return false;
+		
+		indexMap = null;
+		fireInstrumentRemoved(instr);
+		return true;
 	}
 	
 	/**
@@ -197,12 +329,15 @@ public class DefaultOrchestraModel implements OrchestraModel {
 	public int
 	getInstrumentIndex(OrchestraInstrument instr) {
 		if(instr == null) return -1;
+		ensureLoaded();
 		
-		for(int i = 0; i < getInstrumentCount(); i++) {
-			if(getInstrument(i) == instr) return i;
+		if(indexMap == null) {
+			indexMap = new IdentityHashMap<OrchestraInstrument, Integer>(instruments.size() * 2);
+			for(int i = instruments.size() - 1; i >= 0; i--) indexMap.put(instruments.get(i), i);
 		}
 		
-		return -1;
+		Integer i = indexMap.get(instr);
+		return i == null ? -1 : i;
 	}
 	
 	/**
@@ -281,6 +416,132 @@ public class DefaultOrchestraModel implements OrchestraModel {
 		insertInstrument(instr, getInstrumentCount());
 	}
 	
+	/**
+	 * Adds the specified instruments at the end of this orchestra.
+	 * The listeners are notified with a single event.
+	 * @param instrs The instruments to be added.
+	 * @throws IllegalArgumentException If any of the instruments is <code>null</code>.
+	 */
+	@Override
+	public void
+	addInstruments(Collection<OrchestraInstrument> instrs) {
+		OrchestraInstrument[] a = instrs.toArray(new OrchestraInstrument[instrs.size()]);
+		for(OrchestraInstrument instr : a) {
+			if(instr == null) throw new IllegalArgumentException("instr should be non-null!");
+		}
+		
+		if(a.length == 0) return;
+		
+		requireLoaded();
+		int first = instruments.size();
+		instruments.addAll(Arrays.asList(a));
+		indexMap = null;
+		
+		int[] indices = new int[a.length];
+		for(int i = 0; i < a.length; i++) indices[i] = first + i;
+		fireInstrumentsAdded(a, indices);
+	}
+	
+	/**
+	 * Removes the instruments at the specified positions from this orchestra.
+	 * The listeners are notified with a single event.
+	 * @param indices The positions of the instruments to remove.
+	 * @throws ArrayIndexOutOfBoundsException If any of the indices is invalid.
+	 */
+	@Override
+	public void
+	removeInstruments(int[] indices) {
+		requireLoaded();
+		indices = sortIndices(indices);
+		if(indices.length == 0) return;
+		
+		OrchestraInstrument[] removed = new OrchestraInstrument[indices.length];
+		Vector<OrchestraInstrument> v = new Vector<OrchestraInstrument>(instruments.size());
+		for(int i = 0, j = 0; i < instruments.size(); i++) {
+			if(j < indices.length && indices[j] == i) removed[j++] = instruments.get(i);
+			else v.add(instruments.get(i));
+		}
+		
+		setInstruments(v);
+		fireInstrumentsRemoved(removed, indices);
+	}
+	
+	/**
+	 * Moves the instruments at the specified positions, preserving their
+	 * relative order, so that they are placed before the instrument that is
+	 * currently at position <code>target</code>. The listeners are notified
+	 * with a single event, which provides the new positions of the instruments.
+	 * This method does nothing if the order of the instruments would not change.
+	 * @param indices The positions of the instruments to move.
+	 * @param target The position before which the instruments should be placed,
+	 * or the number of instruments to move them at the bottom.
+	 * @throws ArrayIndexOutOfBoundsException If any of the indices
+	 * or the target position is invalid.
+	 */
+	@Override
+	public void
+	moveInstruments(int[] indices, int target) {
+		requireLoaded();
+		if(target < 0 || target > instruments.size()) {
+			throw new ArrayIndexOutOfBoundsException(target);
+		}
+		
+		indices = sortIndices(indices);
+		if(indices.length == 0) return;
+		
+		OrchestraInstrument[] moved = new OrchestraInstrument[indices.length];
+		Vector<OrchestraInstrument> v = new Vector<OrchestraInstrument>(instruments.size());
+		int pos = target;
+		for(int i = 0, j = 0; i < instruments.size(); i++) {
+			if(j < indices.length && indices[j] == i) {
+				moved[j++] = instruments.get(i);
+				if(i < target) pos--;
+			} else {
+				v.add(instruments.get(i));
+			}
+		}
+		
+		/* The instruments already form a block at the target position */
+		if(indices[0] == pos && indices[indices.length - 1] == pos + indices.length - 1) {
+			return;
+		}
+		
+		v.addAll(pos, Arrays.asList(moved));
+		setInstruments(v);
+		
+		int[] newIndices = new int[moved.length];
+		for(int i = 0; i < moved.length; i++) newIndices[i] = pos + i;
+		fireInstrumentsMoved(moved, newIndices);
+	}
+	
+	/**
+	 * Returns a sorted copy of the specified indices without duplicates.
+	 * @throws ArrayIndexOutOfBoundsException If any of the indices is invalid.
+	 */
+	private int[]
+	sortIndices(int[] indices) {
+		int[] a = indices.clone();
+		Arrays.sort(a);
+		
+		int n = 0;
+		for(int i = 0; i < a.length; i++) {
+			if(a[i] < 0 || a[i] >= instruments.size()) {
+				throw new ArrayIndexOutOfBoundsException(a[i]);
+			}
+			
+			if(n == 0 || a[n - 1] != a[i]) a[n++] = a[i];
+		}
+		
+		return n == a.length ? a : Arrays.copyOf(a, n);
+	}
+	
+	private void
+	setInstruments(Vector<OrchestraInstrument> v) {
+		instruments.clear();
+		instruments.addAll(v);
+		indexMap = null;
+	}
+	
 	/**
 	 * Reads and sets the content of this orchestra provided by <code>node</code>.
 	 * @param node The node providing the content of this orchestra.
@@ -354,6 +615,59 @@ public class DefaultOrchestraModel implements OrchestraModel {
 		}
 	}
 	
+	/**
+	 * Reads and sets the content of this orchestra from the specified reader,
+	 * which should be positioned at the start tag of an orchestra element.
+	 * The reader is positioned at the end tag of the element afterwards.
+	 * @param r The reader providing the content of this orchestra.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the content of this orchestra.
+	 * @throws XMLStreamException If the XML is malformed.
+	 */
+	@Override
+	public void
+	readObject(XMLStreamReader r) throws XMLStreamException {
+		XMLStreamUtils.requireStartElement(r, "orchestra", "Not an orchestra node!");
+		setName(XMLStreamUtils.getRequiredAttribute (
+			r, "name", "The orchestra name is undefined!"
+		));
+		
+		while(XMLStreamUtils.nextChildElement(r)) {
+			String s = r.getLocalName();
+			if(s.equals("description")) {
+				String d = XMLStreamUtils.readText(r);
+				if(d.length() > 0) setDescription(d);
+			} else if(s.equals("instrument")) {
+				OrchestraInstrument instr = new OrchestraInstrument();
+				instr.readObject(r);
+				addInstrument(instr);
+			} else {	// Unknown content
+				CC.getLogger().info ("Unknown field: " + s);
+				XMLStreamUtils.skipElement(r);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the content of this orchestra to the specified writer.
+	 * @param w The writer where the content of this orchestra should be written.
+	 * @throws XMLStreamException If an error occurs while writing.
+	 */
+	@Override
+	public void
+	writeObject(XMLStreamWriter w) throws XMLStreamException {
+		w.writeStartElement("orchestra");
+		w.writeAttribute("name", getName());
+		
+		XMLStreamUtils.writeTextElement(w, "description", getDescription());
+		
+		for(int i = 0; i < getInstrumentCount(); i++) {
+			getInstrument(i).writeObject(w);
+		}
+		
+		w.writeEndElement();
+	}
+	
 	/** Notifies listeners that the name of the orchestra has changed. */
 	private void
 	fireNameChanged() {
@@ -382,6 +696,27 @@ public class DefaultOrchestraModel implements OrchestraModel {
 		for(OrchestraListener l : listeners) l.instrumentRemoved(e);
 	}
 	
+	/** Notifies listeners that multiple instruments have been added to this orchestra. */
+	private void
+	fireInstrumentsAdded(OrchestraInstrument[] instrs, int[] indices) {
+		OrchestraEvent e = new OrchestraEvent(this, instrs, indices);
+		for(OrchestraListener l : listeners) l.instrumentsAdded(e);
+	}
+	
+	/** Notifies listeners that multiple instruments have been removed from this orchestra. */
+	private void
+	fireInstrumentsRemoved(OrchestraInstrument[] instrs, int[] indices) {
+		OrchestraEvent e = new OrchestraEvent(this, instrs, indices);
+		for(OrchestraListener l : listeners) l.instrumentsRemoved(e);
+	}
+	
+	/** Notifies listeners that multiple instruments have been moved. */
+	private void
+	fireInstrumentsMoved(OrchestraInstrument[] instrs, int[] indices) {
+		OrchestraEvent e = new OrchestraEvent(this, instrs, indices);
+		for(OrchestraListener l : listeners) l.instrumentsMoved(e);
+	}
+	
 	/**
 	 * Notifies listeners that the settings of the specified instrument has changed.
 	 * @param instr The instrument whose settings has been changed.
@@ -416,5 +751,28 @@ public class DefaultOrchestraModel implements OrchestraModel {
 		instrumentRemoved(OrchestraEvent e) {
 			e.getInstrument().removeChangeListener(getHandler());
 		}
+		
+		/** Invoked when multiple instruments are added to the orchestra. */
+		@Override
+		public void
+		instrumentsAdded(OrchestraEvent e) {
+			for(OrchestraInstrument instr : e.getInstruments()) {
+				instr.addChangeListener(getHandler());
+			}
+		}
+		
+		/** Invoked when multiple instruments are removed from the orchestra. */
+		@Override
+		public void
+		instrumentsRemoved(OrchestraEvent e) {
+			for(OrchestraInstrument instr : e.getInstruments()) {
+				instr.removeChangeListener(getHandler());
+			}
+		}
+		
+		/** The moved instruments keep their change listeners. */
+		@Override
+		public void
+		instrumentsMoved(OrchestraEvent e) { }
 	}
 }
@@ -23,7 +23,6 @@ package com.grigoriliev.jsampler;
 
 import java.util.Vector;
 
-import com.grigoriliev.jsampler.juife.PDUtils;
 import com.grigoriliev.jsampler.juife.Task;
 import com.grigoriliev.jsampler.juife.event.TaskEvent;
 import com.grigoriliev.jsampler.juife.event.TaskListener;
@@ -59,6 +58,7 @@ import com.grigoriliev.jsampler.jlscp.event.MidiDataListener;
  * @author Grigor Iliev
  */
 public class DefaultSamplerChannelModel implements SamplerChannelModel {
+	private final SamplerSession session;
 	private SamplerChannel channel;
 	private int streamCount = 0;
 	private int voiceCount = 0;
@@ -74,13 +74,26 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	
 	/**
 	 * Creates a new instance of <code>DefaultSamplerChannelModel</code> using the
-	 * specified channel settings.
+	 * specified channel settings, which belongs to the default session.
 	 * @param channel A non-null <code>SamplerChannel</code> instance containing the current
 	 * settings of the channel which will be represented by this sampler channel model.
 	 * @throws IllegalArgumentException If <code>channel</code> is <code>null</code>.
 	 */
 	public DefaultSamplerChannelModel(SamplerChannel channel) {
+		this(CC.getDefaultSession(), channel);
+	}
+	
+	/**
+	 * Creates a new instance of <code>DefaultSamplerChannelModel</code> using the
+	 * specified channel settings.
+	 * @param session The session this sampler channel model belongs to.
+	 * @param channel A non-null <code>SamplerChannel</code> instance containing the current
+	 * settings of the channel which will be represented by this sampler channel model.
+	 * @throws IllegalArgumentException If <code>channel</code> is <code>null</code>.
+	 */
+	public DefaultSamplerChannelModel(SamplerSession session, SamplerChannel channel) {
 		if(channel == null) throw new IllegalArgumentException("channel must be non null");
+		this.session = session;
 		this.channel = channel;
 	}
 	
@@ -235,7 +248,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(loadEngine.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(loadEngine);
+		session.getTaskQueue().add(loadEngine);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -262,7 +275,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(smc.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(smc);
+		session.getTaskQueue().add(smc);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -289,7 +302,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(ssc.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(ssc);
+		session.getTaskQueue().add(ssc);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -315,7 +328,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(scv.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(scv);
+		session.getTaskQueue().add(scv);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -342,7 +355,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(scmid.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(scmid);
+		session.getTaskQueue().add(scmid);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -369,7 +382,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(scmip.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(scmip);
+		session.getTaskQueue().add(scmip);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -397,7 +410,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(scmic.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(scmic);
+		session.getTaskQueue().add(scmic);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -424,7 +437,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(scaod.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(scaod);
+		session.getTaskQueue().add(scaod);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -454,7 +467,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(t.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(t);
+		session.getTaskQueue().add(t);
 	}
 	
 	/**
@@ -482,7 +495,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				if(t.doneWithErrors()) fireSamplerChannelChanged(event);
 			}
 		});
-		CC.getTaskQueue().add(t);
+		session.getTaskQueue().add(t);
 	}
 	
 	/**
@@ -495,7 +508,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	public void
 	loadBackendInstrument(String filename, int InstrIndex) {
 		final Task li = new LoadInstrument(filename, InstrIndex, getChannelId());
-		CC.getTaskQueue().add(li);
+		session.getTaskQueue().add(li);
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -504,7 +517,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	resetBackendChannel() {
-		CC.getTaskQueue().add(new Channel.Reset(getChannelId()));
+		session.getTaskQueue().add(new Channel.Reset(getChannelId()));
 		
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
@@ -513,7 +526,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	duplicateBackendChannel() {
-		CC.getTaskQueue().add(new DuplicateChannels(getChannelInfo()));
+		session.getTaskQueue().add(new DuplicateChannels(getChannelInfo()));
 	}
 	
 	/**
@@ -526,7 +539,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	addBackendFxSend(int midiCtrl) {
-		CC.getTaskQueue().add(new Channel.AddFxSend(getChannelId(), midiCtrl));
+		session.getTaskQueue().add(new Channel.AddFxSend(getChannelId(), midiCtrl));
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
 	
@@ -542,7 +555,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	addBackendFxSend(int midiCtrl, String name) {
-		CC.getTaskQueue().add(new Channel.AddFxSend(getChannelId(), midiCtrl, name));
+		session.getTaskQueue().add(new Channel.AddFxSend(getChannelId(), midiCtrl, name));
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
 	
@@ -564,7 +577,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	removeBackendFxSend(int fxSendId) {
-		CC.getTaskQueue().add(new Channel.RemoveFxSend(getChannelId(), fxSendId));
+		session.getTaskQueue().add(new Channel.RemoveFxSend(getChannelId(), fxSendId));
 	}
 	
 	/**
@@ -688,11 +701,11 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 				 */
 				if(t.doneWithErrors()) {
 					int id = getChannelId();
-					CC.getTaskQueue().add(new UpdateFxSendInfo(id, fxSend));
+					session.getTaskQueue().add(new UpdateFxSendInfo(id, fxSend));
 				}
 			}
 		});
-		CC.getTaskQueue().add(t);
+		session.getTaskQueue().add(t);
 	}
 	
 	/**
@@ -710,7 +723,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 			getChannelId(), fxSend, audioSrc, audioDst
 		);
 		
-		CC.getTaskQueue().add(t);
+		session.getTaskQueue().add(t);
 	}
 	
 	/**
@@ -723,7 +736,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	public void
 	setBackendFxSendMidiController(int fxSend, int midiCtrl) {
 		Task t = new Channel.SetFxSendMidiController(getChannelId(), fxSend, midiCtrl);
-		CC.getTaskQueue().add(t);
+		session.getTaskQueue().add(t);
 	}
 	
 	/**
@@ -735,7 +748,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	setBackendFxSendLevel(int fxSend, float level) {
-		CC.getTaskQueue().add(new Channel.SetFxSendLevel(getChannelId(), fxSend, level));
+		session.getTaskQueue().add(new Channel.SetFxSendLevel(getChannelId(), fxSend, level));
 	}
 	
 	/**
@@ -756,7 +769,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	sendBackendMidiData(MidiDataEvent.Type type, int arg1, int arg2) {
-		CC.getTaskQueue().add(new Channel.SendMidiMsg(getChannelId(), type, arg1, arg2));
+		session.getTaskQueue().add(new Channel.SendMidiMsg(getChannelId(), type, arg1, arg2));
 	}
 	
 	/**
@@ -766,7 +779,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	setBackendFxSendEffect(int fxSend, int chainId, int chainPos) {
-		CC.getTaskQueue().add (
+		session.getTaskQueue().add (
 			new Channel.SetFxSendEffect(getChannelId(), fxSend, chainId, chainPos)
 		);
 	}
@@ -778,7 +791,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	@Override
 	public void
 	removeBackendFxSendEffect(int fxSend) {
-		CC.getTaskQueue().add (
+		session.getTaskQueue().add (
 			new Channel.SetFxSendEffect(getChannelId(), fxSend, -1, -1)
 		);
 	}
@@ -788,7 +801,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	fireSamplerChannelChanged() {
 		final SamplerChannelEvent e = new SamplerChannelEvent(this);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() { fireSamplerChannelChanged(e); }
 		});
@@ -800,7 +813,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	 */
 	protected void
 	fireSamplerChannelChanged(SamplerChannelEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(SamplerChannelListener l : listeners) l.channelChanged(e);
 	}
 	
@@ -809,7 +822,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	fireStreamCountChanged() {
 		final SamplerChannelEvent e = new SamplerChannelEvent(this);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() { fireStreamCountChanged(e); }
 		});
@@ -829,7 +842,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	fireVoiceCountChanged() {
 		final SamplerChannelEvent e = new SamplerChannelEvent(this);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() { fireVoiceCountChanged(e); }
 		});
@@ -851,7 +864,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	fireFxSendAdded(FxSend fxSend) {
 		final EffectSendsEvent e = new EffectSendsEvent(this, fxSend);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() { fireFxSendAdded(e); }
 		});
@@ -863,7 +876,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	 */
 	protected void
 	fireFxSendAdded(EffectSendsEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(EffectSendsListener l : fxListeners) l.effectSendAdded(e);
 	}
 	
@@ -872,7 +885,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	fireFxSendRemoved(FxSend fxSend) {
 		final EffectSendsEvent e = new EffectSendsEvent(this, fxSend);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() { fireFxSendRemoved(e); }
 		});
@@ -884,7 +897,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	 */
 	protected void
 	fireFxSendRemoved(EffectSendsEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(EffectSendsListener l : fxListeners) l.effectSendRemoved(e);
 	}
 	
@@ -893,7 +906,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	fireFxSendUpdated(FxSend fxSend) {
 		final EffectSendsEvent e = new EffectSendsEvent(this, fxSend);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() { fireFxSendUpdated(e); }
 		});
@@ -905,7 +918,7 @@ public class DefaultSamplerChannelModel implements SamplerChannelModel {
 	 */
 	protected void
 	fireFxSendUpdated(EffectSendsEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(EffectSendsListener l : fxListeners) l.effectSendChanged(e);
 	}
 	
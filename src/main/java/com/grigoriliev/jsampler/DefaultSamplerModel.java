@@ -25,7 +25,6 @@ import java.util.Vector;
 
 import java.util.logging.Level;
 
-import com.grigoriliev.jsampler.juife.PDUtils;
 import com.grigoriliev.jsampler.juife.Task;
 import com.grigoriliev.jsampler.juife.event.TaskEvent;
 import com.grigoriliev.jsampler.juife.event.TaskListener;
@@ -71,6 +70,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	private final Vector<MidiInstrumentMap> midiInstrMaps = new Vector<MidiInstrumentMap>();
 	
 	private final EffectList effects = new EffectList();
+	private final EffectInstanceRegistry effectInstanceRegistry = new EffectInstanceRegistry();
 	
 	private final Vector<SamplerListener> listeners = new Vector<SamplerListener>();
 	private final Vector<ListListener<MidiInstrumentMap>> mapsListeners =
@@ -89,6 +89,8 @@ public class DefaultSamplerModel implements SamplerModel {
 	
 	private boolean modified = false;
 	
+	private SamplerSession session = null;
+	
 	
 	/** Creates a new instance of DefaultSamplerModel */
 	public
@@ -96,6 +98,20 @@ public class DefaultSamplerModel implements SamplerModel {
 		addMidiInstrumentMapListListener(getHandler());
 	}
 	
+	/**
+	 * Gets the session this model belongs to, whose task queue is used
+	 * to alter the backend settings.
+	 */
+	public SamplerSession
+	getSession() {
+		// the session of the default model is set during the initialization of CC
+		return session == null ? CC.getDefaultSession() : session;
+	}
+	
+	/** Sets the session this model belongs to. Invoked by the session. */
+	void
+	setSession(SamplerSession session) { this.session = session; }
+	
 	/**
 	 * Registers the specified listener for receiving event messages.
 	 * @param l The <code>SamplerListener</code> to register.
@@ -300,7 +316,8 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	addAudioDevice(AudioOutputDevice device) {
-		DefaultAudioDeviceModel model = new DefaultAudioDeviceModel(device);
+		DefaultAudioDeviceModel model = new DefaultAudioDeviceModel(getSession(), device);
+		model.setEffectInstanceRegistry(effectInstanceRegistry);
 		audioDeviceModels.add(model);
 		fireAudioDeviceAdded(model);
 	}
@@ -318,6 +335,7 @@ public class DefaultSamplerModel implements SamplerModel {
 			AudioDeviceModel m = audioDeviceModels.get(i);
 			if(m.getDeviceId() == deviceId) {
 				audioDeviceModels.remove(i);
+				unregisterEffectInstances(m);
 				fireAudioDeviceRemoved(m);
 				return true;
 			}
@@ -333,7 +351,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	removeBackendAudioDevice(int deviceId) {
-		CC.getTaskQueue().add(new Audio.DestroyDevice(deviceId));
+		getSession().getTaskQueue().add(new Audio.DestroyDevice(deviceId));
 	}
 	
 	/**
@@ -406,7 +424,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	addMidiDevice(MidiInputDevice device) {
-		DefaultMidiDeviceModel model = new DefaultMidiDeviceModel(device);
+		DefaultMidiDeviceModel model = new DefaultMidiDeviceModel(getSession(), device);
 		midiDeviceModels.add(model);
 		fireMidiDeviceAdded(model);
 	}
@@ -419,7 +437,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	addBackendMidiDevice(String driver, Parameter... parameters) {
-		CC.getTaskQueue().add(new Midi.CreateDevice(driver, parameters));
+		getSession().getTaskQueue().add(new Midi.CreateDevice(driver, parameters));
 	}
 	
 	/**
@@ -450,7 +468,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	removeBackendMidiDevice(int deviceId) {
-		CC.getTaskQueue().add(new Midi.DestroyDevice(deviceId));
+		getSession().getTaskQueue().add(new Midi.DestroyDevice(deviceId));
 	}
 	
 	/**
@@ -540,7 +558,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	addBackendMidiInstrumentMap(String name) {
 		if(name == null) throw new IllegalArgumentException("name should be non-null!");
 		
-		CC.getTaskQueue().add(new Midi.AddInstrumentMap(name));
+		getSession().getTaskQueue().add(new Midi.AddInstrumentMap(name));
 	}
 	
 	/**
@@ -597,7 +615,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	removeBackendMidiInstrumentMap(int mapId) {
-		CC.getTaskQueue().add(new Midi.RemoveInstrumentMap(mapId));
+		getSession().getTaskQueue().add(new Midi.RemoveInstrumentMap(mapId));
 	}
 	
 	/**
@@ -620,11 +638,11 @@ public class DefaultSamplerModel implements SamplerModel {
 				 */
 				if(t.doneWithErrors()) {
 					Task t2 = new Midi.UpdateInstrumentMapInfo(mapId);
-					CC.getTaskQueue().add(t2);
+					getSession().getTaskQueue().add(t2);
 				}
 			}
 		});
-		CC.getTaskQueue().add(t);
+		getSession().getTaskQueue().add(t);
 	}
 	
 	/**
@@ -663,7 +681,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	mapBackendMidiInstrument(int mapId, int bank, int program, MidiInstrumentInfo instrInfo) {
-		CC.getTaskQueue().add(new Midi.MapInstrument(mapId, bank, program, instrInfo));
+		getSession().getTaskQueue().add(new Midi.MapInstrument(mapId, bank, program, instrInfo));
 	}
 	
 	/**
@@ -675,7 +693,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	unmapBackendMidiInstrument(int mapId, int bank, int program) {
-		CC.getTaskQueue().add(new Midi.UnmapInstrument(mapId, bank, program));
+		getSession().getTaskQueue().add(new Midi.UnmapInstrument(mapId, bank, program));
 	}
 	
 	/**
@@ -698,20 +716,23 @@ public class DefaultSamplerModel implements SamplerModel {
 	public EffectList
 	getEffects() { return effects; }
 		
+	/**
+	 * Gets the registry providing the location of the effect instances by ID.
+	 */
+	public EffectInstanceRegistry
+	getEffectInstanceRegistry() { return effectInstanceRegistry; }
+	
+	private static void
+	unregisterEffectInstances(AudioDeviceModel m) {
+		if(m instanceof DefaultAudioDeviceModel) {
+			((DefaultAudioDeviceModel)m).setEffectInstanceRegistry(null);
+		}
+	}
+	
 	@Override
 	public EffectInstance
 	getEffectInstanceById(int instanceId) {
-		for(int i = 0; i < getAudioDeviceCount(); i++) {
-			AudioDeviceModel m = getAudioDevice(i);
-			for(int j = 0; j < m.getSendEffectChainCount(); j++) {
-				EffectInstance ei =
-					m.getSendEffectChain(j).getEffectInstanceById(instanceId);
-				
-				if(ei != null) return ei;
-			}
-		}
-		
-		return null;
+		return effectInstanceRegistry.getEffectInstance(instanceId);
 	}
 	
 	@Override
@@ -797,7 +818,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	addBackendChannel() {
-		CC.getTaskQueue().add(new Channel.Add());
+		getSession().getTaskQueue().add(new Channel.Add());
 		// We leave this event to be notified by the LinuxSampler notification system.
 	}
 	
@@ -809,7 +830,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	public void
 	addChannel(SamplerChannel channel) {
 		DefaultSamplerChannelModel model;
-		model = (channel == null) ? null : new DefaultSamplerChannelModel(channel);
+		model = (channel == null) ? null : new DefaultSamplerChannelModel(getSession(), channel);
 		if(model != null) channelModels.add(model);
 		fireSamplerChannelAdded(model);
 	}
@@ -905,7 +926,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	removeBackendChannel(int channelId) {
-		CC.getTaskQueue().add(new Channel.Remove(channelId));
+		getSession().getTaskQueue().add(new Channel.Remove(channelId));
 	}
 	
 	/**
@@ -916,7 +937,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	editBackendInstrument(int channelId) {
-		CC.getTaskQueue().add(new Channel.EditInstrument(channelId));
+		getSession().getTaskQueue().add(new Channel.EditInstrument(channelId));
 	}
 	
 	/**
@@ -1029,7 +1050,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	@Override
 	public void
 	setBackendVolume(float volume) {
-		CC.getTaskQueue().add(new Global.SetVolume(volume));
+		getSession().getTaskQueue().add(new Global.SetVolume(volume));
 	}
 	
 	/**
@@ -1037,7 +1058,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	 */
 	@Override
 	public void
-	resetBackend() { CC.getTaskQueue().add(new Global.ResetSampler()); }
+	resetBackend() { getSession().getTaskQueue().add(new Global.ResetSampler()); }
 	
 	/**
 	 * Updates the current number of active disk streams in the sampler.
@@ -1102,8 +1123,10 @@ public class DefaultSamplerModel implements SamplerModel {
 		for(int i = audioDeviceModels.size() - 1; i >= 0; i--) {
 			AudioDeviceModel m = audioDeviceModels.get(i);
 			audioDeviceModels.remove(i);
+			unregisterEffectInstances(m);
 			fireAudioDeviceRemoved(m);
 		}
+		effectInstanceRegistry.clear();
 		
 		setServerInfo(null);
 		setAudioOutputDrivers(null);
@@ -1131,7 +1154,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireSamplerChannelAdded(SamplerChannelModel channelModel) {
 		final SamplerChannelListEvent e = new SamplerChannelListEvent(this, channelModel);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireSamplerChannelAdded(e); }
 		});
@@ -1156,7 +1179,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireSamplerChannelRemoved(SamplerChannelModel channelModel) {
 		final SamplerChannelListEvent e = new SamplerChannelListEvent(this, channelModel);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireSamplerChannelRemoved(e); }
 		});
@@ -1182,7 +1205,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireMidiDeviceAdded(MidiDeviceModel model) {
 		final MidiDeviceListEvent e = new MidiDeviceListEvent(this, model);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireMidiDeviceAdded(e); }
 		});
@@ -1207,7 +1230,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireMidiDeviceRemoved(MidiDeviceModel model) {
 		final MidiDeviceListEvent e = new MidiDeviceListEvent(this, model);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireMidiDeviceRemoved(e); }
 		});
@@ -1233,7 +1256,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireAudioDeviceAdded(AudioDeviceModel model) {
 		final ListEvent<AudioDeviceModel> e = new ListEvent<AudioDeviceModel>(this, model);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireAudioDeviceAdded(e); }
 		});
@@ -1259,7 +1282,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireAudioDeviceRemoved(AudioDeviceModel model) {
 		final ListEvent<AudioDeviceModel> e = new ListEvent<AudioDeviceModel>(this, model);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireAudioDeviceRemoved(e); }
 		});
@@ -1285,7 +1308,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireMidiInstrumentMapAdded(MidiInstrumentMap map) {
 		final ListEvent<MidiInstrumentMap> e = new ListEvent<MidiInstrumentMap>(this, map);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireMidiInstrumentMapAdded(e); }
 		});
@@ -1306,7 +1329,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireMidiInstrumentMapRemoved(MidiInstrumentMap map) {
 		final ListEvent<MidiInstrumentMap> e = new ListEvent<MidiInstrumentMap>(this, map);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireMidiInstrumentMapRemoved(e); }
 		});
@@ -1326,7 +1349,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireVolumeChanged() {
 		final SamplerEvent e = new SamplerEvent(this);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireVolumeChanged(e); }
 		});
@@ -1349,7 +1372,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireTotalStreamCountChanged() {
 		final SamplerEvent e = new SamplerEvent(this);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireTotalStreamCountChanged(e); }
 		});
@@ -1371,7 +1394,7 @@ public class DefaultSamplerModel implements SamplerModel {
 	fireTotalVoiceCountChanged() {
 		final SamplerEvent e = new SamplerEvent(this);
 			
-		PDUtils.runOnUiThread(new Runnable() {
+		getSession().runOnUiThread(new Runnable() {
 			public void
 			run() { fireTotalVoiceCountChanged(e); }
 		});
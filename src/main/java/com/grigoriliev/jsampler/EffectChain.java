@@ -21,9 +21,10 @@
 package com.grigoriliev.jsampler;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import com.grigoriliev.jsampler.event.EffectChainEvent;
-import com.grigoriliev.jsampler.juife.PDUtils;
 
 import com.grigoriliev.jsampler.event.EffectChainListener;
 import com.grigoriliev.jsampler.jlscp.EffectChainInfo;
@@ -38,10 +39,32 @@ public class EffectChain {
 	private int chainId = -1;
 	private final ArrayList<EffectInstance> effectInstances = new ArrayList<EffectInstance>();
 	
+	/** Maps the effect instance IDs to the positions of the instances in the chain. */
+	private final HashMap<Integer, Integer> indexMap = new HashMap<Integer, Integer>();
+	
 	private final ArrayList<EffectChainListener> listeners = new ArrayList<EffectChainListener>();
 	
+	private AudioDeviceModel audioDevice = null;
+	private EffectInstanceRegistry registry = null;
+	
+	private final SamplerSession session;
+	
+	/**
+	 * Creates a new instance of <code>EffectChain</code>,
+	 * which belongs to the default session.
+	 * @param chain The settings of the effect chain.
+	 */
+	public
+	EffectChain(EffectChainInfo chain) { this(CC.getDefaultSession(), chain); }
+	
+	/**
+	 * Creates a new instance of <code>EffectChain</code>.
+	 * @param session The session this effect chain belongs to.
+	 * @param chain The settings of the effect chain.
+	 */
 	public
-	EffectChain(EffectChainInfo chain) {
+	EffectChain(SamplerSession session, EffectChainInfo chain) {
+		this.session = session;
 		setChainId(chain.getChainId());
 		
 		setEffectInstances(chain);
@@ -73,19 +96,111 @@ public class EffectChain {
 	public void
 	setChainId(int id) { chainId = id; }
 	
+	/**
+	 * Gets the audio device to which this chain is added
+	 * or <code>null</code> if the chain is not added to a device.
+	 */
+	public AudioDeviceModel
+	getAudioDevice() { return audioDevice; }
+	
+	/**
+	 * Invoked when this chain is added to an audio device, to register
+	 * the effect instances of the chain in the specified registry.
+	 */
+	void
+	attach(AudioDeviceModel audioDevice, EffectInstanceRegistry registry) {
+		detach();
+		this.audioDevice = audioDevice;
+		this.registry = registry;
+		if(registry != null) registry.addChain(audioDevice, this);
+	}
+	
+	/**
+	 * Invoked when this chain is removed from its audio device, to unregister
+	 * the effect instances of the chain.
+	 */
+	void
+	detach() {
+		if(registry != null) registry.removeChain(this);
+		audioDevice = null;
+		registry = null;
+	}
+	
 	public EffectInstance[]
 	getEffectInstances() {
 		return effectInstances.toArray(new EffectInstance[0]);
 	}
 	
+	/**
+	 * Updates the effect instance list according to the specified chain info.
+	 * The existing <code>EffectInstance</code> objects are preserved and only
+	 * the inserted, removed and moved instances are notified to the listeners.
+	 * If the list is changed, a single <code>effectInstanceListChanged</code>
+	 * event is fired after the events about the individual instances.
+	 */
 	public void
 	setEffectInstances(EffectChainInfo chain) {
-		effectInstances.clear();
+		HashSet<Integer> newIds = new HashSet<Integer>();
 		for(int i = 0; i < chain.getEffectInstanceCount(); i++) {
-			effectInstances.add(new EffectInstance(chain.getEffectInstance(i)));
+			newIds.add(chain.getEffectInstance(i).getInstanceId());
+		}
+		
+		boolean changed = false;
+		
+		for(int i = effectInstances.size() - 1; i >= 0; i--) {
+			EffectInstance ei = effectInstances.get(i);
+			if(newIds.contains(ei.getInstanceId())) continue;
+			
+			effectInstances.remove(i);
+			if(registry != null) registry.remove(this, ei.getInstanceId());
+			fireEffectInstanceRemoved(ei, i);
+			changed = true;
 		}
+		
+		for(int i = 0; i < chain.getEffectInstanceCount(); i++) {
+			EffectInstanceInfo info = chain.getEffectInstance(i);
+			int id = info.getInstanceId();
+			
+			if(i < effectInstances.size() && effectInstances.get(i).getInstanceId() == id) {
+				effectInstances.get(i).updateInfo(info);
+				continue;
+			}
+			
+			int oldIdx = -1;
+			for(int j = i + 1; j < effectInstances.size(); j++) {
+				if(effectInstances.get(j).getInstanceId() == id) {
+					oldIdx = j;
+					break;
+				}
+			}
+			
+			if(oldIdx != -1) {
+				EffectInstance ei = effectInstances.remove(oldIdx);
+				ei.updateInfo(info);
+				effectInstances.add(i, ei);
+				fireEffectInstanceMoved(ei, i, oldIdx);
+			} else {
+				EffectInstance ei = new EffectInstance(session, info);
+				effectInstances.add(i, ei);
+				if(registry != null) registry.add(audioDevice, this, ei);
+				fireEffectInstanceAdded(ei, i);
+			}
+			
+			changed = true;
+		}
+		
+		if(!changed) return;
+		
+		updateIndexMap();
 		fireEffectInstanceListChanged();
+	}
 		
+	private void
+	updateIndexMap() {
+		indexMap.clear();
+		for(int i = 0; i < effectInstances.size(); i++) {
+			indexMap.put(effectInstances.get(i).getInstanceId(), i);
+		}
 	}
 	
 	public int
@@ -96,12 +211,8 @@ public class EffectChain {
 	
 	public int
 	getIndex(int instanceId) {
-		for(int i = 0; i < effectInstances.size(); i++) {
-			if(effectInstances.get(i).getInstanceId() == instanceId) {
-				return i;
-			}
-		}
-		return -1; 
+		Integer i = indexMap.get(instanceId);
+		return i == null ? -1 : i;
 	}
 	
 	public EffectInstance
@@ -112,10 +223,37 @@ public class EffectChain {
 		return effectInstances.get(idx);
 	}
 	
+	private void
+	fireEffectInstanceAdded(EffectInstance ei, int idx) {
+		final EffectChainEvent e = new EffectChainEvent(this, this, ei, idx, -1);
+		session.runOnUiThread(new Runnable() {
+			public void
+			run() { for(EffectChainListener l : listeners) l.effectInstanceAdded(e); }
+		});
+	}
+	
+	private void
+	fireEffectInstanceRemoved(EffectInstance ei, int idx) {
+		final EffectChainEvent e = new EffectChainEvent(this, this, ei, idx, -1);
+		session.runOnUiThread(new Runnable() {
+			public void
+			run() { for(EffectChainListener l : listeners) l.effectInstanceRemoved(e); }
+		});
+	}
+	
+	private void
+	fireEffectInstanceMoved(EffectInstance ei, int idx, int oldIdx) {
+		final EffectChainEvent e = new EffectChainEvent(this, this, ei, idx, oldIdx);
+		session.runOnUiThread(new Runnable() {
+			public void
+			run() { for(EffectChainListener l : listeners) l.effectInstanceMoved(e); }
+		});
+	}
+	
 	private void
 	fireEffectInstanceListChanged() {
 		final EffectChainEvent e = new EffectChainEvent(this, this);
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() { fireEffectInstanceListChanged(e); }
 		});
@@ -126,7 +264,7 @@ public class EffectChain {
 	 */
 	private void
 	fireEffectInstanceListChanged(EffectChainEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(EffectChainListener l : listeners) l.effectInstanceListChanged(e);
 	}
 }
@@ -22,12 +22,10 @@ package com.grigoriliev.jsampler;
 
 import java.util.ArrayList;
 
-import com.grigoriliev.jsampler.juife.PDUtils;
-
 import com.grigoriliev.jsampler.event.EffectInstanceEvent;
 import com.grigoriliev.jsampler.event.EffectInstanceListener;
-import com.grigoriliev.jsampler.task.Audio;
 import com.grigoriliev.jsampler.jlscp.EffectInstanceInfo;
+import com.grigoriliev.jsampler.jlscp.EffectParameter;
 
 /**
  *
@@ -35,11 +33,28 @@ import com.grigoriliev.jsampler.jlscp.EffectInstanceInfo;
  */
 public class EffectInstance {
 	private EffectInstanceInfo instance;
+	private EffectParameterStream parameterStream = null;
 	
 	private final ArrayList<EffectInstanceListener> listeners = new ArrayList<EffectInstanceListener>();
 	
+	private final SamplerSession session;
+	
+	/**
+	 * Creates a new instance of <code>EffectInstance</code>,
+	 * which belongs to the default session.
+	 * @param instance The settings of the effect instance.
+	 */
+	public
+	EffectInstance(EffectInstanceInfo instance) { this(CC.getDefaultSession(), instance); }
+	
+	/**
+	 * Creates a new instance of <code>EffectInstance</code>.
+	 * @param session The session this effect instance belongs to.
+	 * @param instance The settings of the effect instance.
+	 */
 	public
-	EffectInstance(EffectInstanceInfo instance) {
+	EffectInstance(SamplerSession session, EffectInstanceInfo instance) {
+		this.session = session;
 		this.instance = instance;
 	}
 	
@@ -70,17 +85,46 @@ public class EffectInstance {
 		fireInstanceInfoChanged();
 	}
 	
+	/**
+	 * Replaces the effect instance info without notifying the listeners.
+	 * Used when the info is refreshed as part of an effect chain update,
+	 * since the changes of the instance settings are notified separately.
+	 */
+	void
+	updateInfo(EffectInstanceInfo instance) { this.instance = instance; }
+	
+	/**
+	 * Changes the value of the specified parameter on the backend side.
+	 * The new value is applied to the model immediately and is sent
+	 * to the backend through the parameter stream of this instance.
+	 * @see #getParameterStream
+	 */
 	public void
 	setBackendParameter(int prmIndex, float newValue) {
-		CC.getTaskQueue().add (
-			new Audio.SetEffectInstanceParameter(getInstanceId(), prmIndex, newValue)
-		);
+		for(EffectParameter p : instance.getParameters()) {
+			if(p.getIndex() != prmIndex) continue;
+			p.setValue(newValue);
+			fireInstanceInfoChanged();
+			break;
+		}
+		
+		getParameterStream().setParameter(prmIndex, newValue);
+	}
+	
+	/** Gets the stream used to send the parameter changes of this instance. */
+	public synchronized EffectParameterStream
+	getParameterStream() {
+		if(parameterStream == null) {
+			parameterStream = new EffectParameterStream(session, getInstanceId());
+		}
+		
+		return parameterStream;
 	}
 	
 	public void
 	fireInstanceInfoChanged() {
 		final EffectInstanceEvent e = new EffectInstanceEvent(this, this);
-		PDUtils.runOnUiThread(new Runnable() {
+		session.runOnUiThread(new Runnable() {
 			public void
 			run() { fireInstanceInfoChanged(e); }
 		});
@@ -91,7 +135,7 @@ public class EffectInstance {
 	 */
 	private void
 	fireInstanceInfoChanged(EffectInstanceEvent e) {
-		CC.getSamplerModel().setModified(true);
+		session.getSamplerModel().setModified(true);
 		for(EffectInstanceListener l : listeners) l.effectInstanceChanged(e);
 	}
 }
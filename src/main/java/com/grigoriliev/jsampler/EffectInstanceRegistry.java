@@ -0,0 +1,128 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+
+/**
+ * Maps the effect instance IDs to the audio devices, send effect chains
+ * and effect instances, so that an effect instance can be found without
+ * searching all chains of all audio devices. The registry is maintained
+ * by the audio device models and the effect chains when they are changed.
+ * This class is thread-safe.
+ * @see DefaultSamplerModel#getEffectInstanceRegistry
+ * @author Grigor Iliev
+ */
+public class EffectInstanceRegistry {
+	/** Provides the location of a registered effect instance. */
+	public static class Entry {
+		private final AudioDeviceModel audioDevice;
+		private final EffectChain chain;
+		private final EffectInstance instance;
+		
+		Entry(AudioDeviceModel audioDevice, EffectChain chain, EffectInstance instance) {
+			this.audioDevice = audioDevice;
+			this.chain = chain;
+			this.instance = instance;
+		}
+		
+		/** Gets the audio device to which the effect chain belongs. */
+		public AudioDeviceModel
+		getAudioDevice() { return audioDevice; }
+		
+		/** Gets the send effect chain containing the effect instance. */
+		public EffectChain
+		getEffectChain() { return chain; }
+		
+		/** Gets the effect instance. */
+		public EffectInstance
+		getEffectInstance() { return instance; }
+	}
+	
+	private final HashMap<Integer, Entry> entries = new HashMap<Integer, Entry>();
+	
+	/** Creates a new instance of <code>EffectInstanceRegistry</code>. */
+	public
+	EffectInstanceRegistry() { }
+	
+	/**
+	 * Gets the location of the specified effect instance.
+	 * @param instanceId The numerical ID of the effect instance.
+	 * @return The location of the effect instance or
+	 * <code>null</code> if there is no such instance.
+	 */
+	public synchronized Entry
+	get(int instanceId) { return entries.get(instanceId); }
+	
+	/**
+	 * Gets the effect instance with the specified ID.
+	 * @return The effect instance or <code>null</code> if there is no such instance.
+	 */
+	public EffectInstance
+	getEffectInstance(int instanceId) {
+		Entry e = get(instanceId);
+		return e == null ? null : e.getEffectInstance();
+	}
+	
+	/** Gets the number of registered effect instances. */
+	public synchronized int
+	getEffectInstanceCount() { return entries.size(); }
+	
+	/** Registers the specified effect instance. */
+	synchronized void
+	add(AudioDeviceModel audioDevice, EffectChain chain, EffectInstance instance) {
+		entries.put(instance.getInstanceId(), new Entry(audioDevice, chain, instance));
+	}
+	
+	/**
+	 * Unregisters the specified effect instance,
+	 * if it is registered for the specified chain.
+	 */
+	synchronized void
+	remove(EffectChain chain, int instanceId) {
+		Entry e = entries.get(instanceId);
+		if(e != null && e.getEffectChain() == chain) entries.remove(instanceId);
+	}
+	
+	/** Registers all effect instances in the specified chain. */
+	synchronized void
+	addChain(AudioDeviceModel audioDevice, EffectChain chain) {
+		for(int i = 0; i < chain.getEffectInstanceCount(); i++) {
+			add(audioDevice, chain, chain.getEffectInstance(i));
+		}
+	}
+	
+	/** Unregisters all effect instances in the specified chain. */
+	synchronized void
+	removeChain(EffectChain chain) {
+		Iterator<Entry> it = entries.values().iterator();
+		while(it.hasNext()) {
+			if(it.next().getEffectChain() == chain) it.remove();
+		}
+	}
+	
+	/** Unregisters all effect instances. */
+	public synchronized void
+	clear() { entries.clear(); }
+}
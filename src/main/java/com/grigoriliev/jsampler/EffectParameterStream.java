@@ -0,0 +1,264 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.grigoriliev.jsampler.jlscp.EffectInstanceInfo;
+import com.grigoriliev.jsampler.jlscp.EffectParameter;
+
+import com.grigoriliev.jsampler.juife.TaskQueue;
+import com.grigoriliev.jsampler.juife.event.TaskEvent;
+import com.grigoriliev.jsampler.juife.event.TaskListener;
+
+import com.grigoriliev.jsampler.task.Audio;
+
+
+/**
+ * Streams the parameter changes of an effect instance to the backend
+ * at a limited rate. The changes are accumulated and sent with a single
+ * task at most once per interval (see {@link JSPrefs#EFFECT_PARAMETER_INTERVAL}),
+ * so only the last value of each parameter in the interval is sent.
+ * The effect instance info retrieved after the notifications caused by the
+ * values sent through this stream is matched against the local values by
+ * parameter and value (see {@link #isEcho}), so that only the actual changes
+ * are applied to the model. The notifications received while values are sent
+ * don't cause the effect instance info to be retrieved (see {@link #isEchoExpected});
+ * it is retrieved once, after the stream becomes idle for one interval. If the values can't be sent, the effect instance
+ * info is retrieved again to restore the values of the backend.
+ * This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class EffectParameterStream {
+	private static Timer timer = null;
+	
+	private final SamplerSession session;
+	private final int instanceId;
+	private final LinkedHashMap<Integer, Float> pending = new LinkedHashMap<Integer, Float>();
+	private boolean flushScheduled = false;
+	private long lastFlushTime = 0;
+	
+	/** The time when the last send finished. */
+	private long lastSendDoneTime = 0;
+	
+	/** Whether a notification is received without retrieving the effect instance info. */
+	private boolean refetchSuppressed = false;
+	private boolean refetchScheduled = false;
+	
+	/** The number of the values being sent, per parameter index. */
+	private final HashMap<Integer, Integer> inFlight = new HashMap<Integer, Integer>();
+	
+	/**
+	 * Creates a new instance of <code>EffectParameterStream</code>,
+	 * which sends the parameter values through the default session.
+	 * @param instanceId The numerical ID of the effect instance.
+	 */
+	public
+	EffectParameterStream(int instanceId) { this(CC.getDefaultSession(), instanceId); }
+	
+	/**
+	 * Creates a new instance of <code>EffectParameterStream</code>.
+	 * @param session The session of the effect instance, whose
+	 * task queue is used to send the parameter values.
+	 * @param instanceId The numerical ID of the effect instance.
+	 */
+	public
+	EffectParameterStream(SamplerSession session, int instanceId) {
+		this.session = session;
+		this.instanceId = instanceId;
+	}
+	
+	/** Gets the numerical ID of the effect instance. */
+	public int
+	getInstanceId() { return instanceId; }
+	
+	/**
+	 * Schedules the specified parameter value to be sent to the backend.
+	 * If a value for the same parameter is still waiting to be sent,
+	 * it is replaced with the new one.
+	 * @param prmIndex The index of the parameter.
+	 * @param value The new value of the parameter.
+	 */
+	public synchronized void
+	setParameter(int prmIndex, float value) {
+		pending.put(prmIndex, value);
+		if(flushScheduled) return;
+		
+		flushScheduled = true;
+		long delay = lastFlushTime + getInterval() - System.currentTimeMillis();
+		getTimer().schedule(new TimerTask() {
+			public void
+			run() { flush(); }
+		}, Math.max(0, delay));
+	}
+	
+	/** Sends the pending parameter values to the backend. */
+	public void
+	flush() {
+		final int[] indices;
+		float[] values;
+		
+		synchronized(this) {
+			flushScheduled = false;
+			if(pending.isEmpty()) return;
+			
+			indices = new int[pending.size()];
+			values = new float[pending.size()];
+			int i = 0;
+			for(Map.Entry<Integer, Float> e : pending.entrySet()) {
+				indices[i] = e.getKey();
+				values[i] = e.getValue();
+				i++;
+			}
+			
+			pending.clear();
+			lastFlushTime = System.currentTimeMillis();
+			
+			for(int idx : indices) {
+				Integer n = inFlight.get(idx);
+				inFlight.put(idx, n == null ? 1 : n + 1);
+			}
+		}
+		
+		final TaskQueue q = session.getTaskQueue();
+		final Audio.SetEffectInstanceParameters t =
+			new Audio.SetEffectInstanceParameters(instanceId, indices, values);
+		
+		t.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				synchronized(EffectParameterStream.this) {
+					for(int idx : indices) {
+						Integer n = inFlight.get(idx);
+						if(n == null || n <= 1) inFlight.remove(idx);
+						else inFlight.put(idx, n - 1);
+					}
+					
+					lastSendDoneTime = System.currentTimeMillis();
+				}
+				
+				// restores the values of the backend
+				if(t.doneWithErrors()) q.add(new Audio.UpdateEffectInstanceInfo(instanceId));
+			}
+		});
+		
+		q.add(t);
+	}
+	
+	/**
+	 * Determines whether the effect instance info retrieved from the backend is
+	 * an echo of the values sent through this stream, i.e. whether it matches the
+	 * local info, parameter by parameter. The parameters, whose values are still
+	 * waiting to be sent or are being sent, are skipped.
+	 * @param local The effect instance info of the model.
+	 * @param remote The effect instance info retrieved from the backend.
+	 * @return <code>true</code> if there is no change to apply to the model,
+	 * <code>false</code> otherwise.
+	 */
+	public synchronized boolean
+	isEcho(EffectInstanceInfo local, EffectInstanceInfo remote) {
+		EffectParameter[] lp = local.getParameters();
+		EffectParameter[] rp = remote.getParameters();
+		if(lp.length != rp.length) return false;
+		
+		for(int i = 0; i < rp.length; i++) {
+			int idx = rp[i].getIndex();
+			if(lp[i].getIndex() != idx) return false;
+			if(pending.containsKey(idx) || inFlight.containsKey(idx)) continue;
+			
+			float lv = lp[i].getValue();
+			float rv = rp[i].getValue();
+			if(Math.abs(lv - rv) > 1e-4f * Math.max(1, Math.abs(lv))) return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Determines whether an effect instance info notification is expected to be
+	 * caused by the values sent through this stream, i.e. whether values are still
+	 * waiting to be sent, are being sent or the last send finished within one interval.
+	 * In that case the effect instance info shouldn't be retrieved for the notification.
+	 * Instead, it is retrieved once after the stream becomes idle for one interval,
+	 * so that the changes made by other clients in the meantime are not lost.
+	 * @return <code>true</code> if the notification is expected to be an echo
+	 * of the values sent through this stream, <code>false</code> otherwise.
+	 */
+	public synchronized boolean
+	isEchoExpected() {
+		if(!isBusy()) return false;
+		
+		refetchSuppressed = true;
+		scheduleRefetch();
+		return true;
+	}
+	
+	private boolean
+	isBusy() {
+		if(!pending.isEmpty() || !inFlight.isEmpty()) return true;
+		return System.currentTimeMillis() - lastSendDoneTime < getInterval();
+	}
+	
+	private void
+	scheduleRefetch() {
+		if(refetchScheduled) return;
+		
+		refetchScheduled = true;
+		getTimer().schedule(new TimerTask() {
+			public void
+			run() { refetch(); }
+		}, getInterval());
+	}
+	
+	/** Retrieves the effect instance info if the stream is idle. */
+	private void
+	refetch() {
+		synchronized(this) {
+			refetchScheduled = false;
+			if(!refetchSuppressed) return;
+			if(isBusy()) {
+				scheduleRefetch();
+				return;
+			}
+			
+			refetchSuppressed = false;
+		}
+		
+		session.getTaskQueue().add(new Audio.UpdateEffectInstanceInfo(instanceId));
+	}
+	
+	/** Gets the minimum interval (in milliseconds) between two sends. */
+	private static int
+	getInterval() {
+		return CC.preferences().getIntProperty(JSPrefs.EFFECT_PARAMETER_INTERVAL);
+	}
+	
+	private static synchronized Timer
+	getTimer() {
+		if(timer == null) timer = new Timer("EffectParameterStream", true);
+		return timer;
+	}
+}
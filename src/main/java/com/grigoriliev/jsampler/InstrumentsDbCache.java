@@ -0,0 +1,400 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.grigoriliev.jsampler.jlscp.DbDirectoryInfo;
+import com.grigoriliev.jsampler.jlscp.DbInstrumentInfo;
+
+import com.grigoriliev.jsampler.jlscp.event.InstrumentsDbAdapter;
+import com.grigoriliev.jsampler.jlscp.event.InstrumentsDbEvent;
+
+/**
+ * A least recently used cache of the instruments database directory and
+ * instrument information, as well as of the directory listings, keyed by
+ * the DB path name. The cache is bounded by number of entries and by
+ * (estimated) memory, and is invalidated by the instruments database
+ * notification events of the backend (see {@link #getInstrumentsDbListener}).
+ *
+ * <p>To not cache stale information, retrieved from the backend before an
+ * invalidation and stored after it, the current version of the cache should be
+ * obtained (see {@link #getVersion}) before retrieving the information and passed
+ * when storing it. The information is not stored if its path was invalidated
+ * after the specified version.</p>
+ * This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class InstrumentsDbCache {
+	/** The default maximum number of cached entries. */
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+	
+	/** The default maximum amount of memory (in bytes) to be used by the cache. */
+	public static final long DEFAULT_MAX_MEMORY = 16 * 1024 * 1024;
+	
+	private static final char DIRECTORY = 'D';
+	private static final char INSTRUMENT = 'I';
+	private static final char DIRECTORY_LIST = 'd';
+	private static final char INSTRUMENT_LIST = 'i';
+	
+	/** The maximum number of the invalidations remembered. */
+	private static final int MAX_INVALIDATIONS = 256;
+	
+	private static class Entry {
+		final Object value;
+		final long size;
+		
+		Entry(Object value, long size) {
+			this.value = value;
+			this.size = size;
+		}
+	}
+	
+	private static class Invalidation {
+		final long version;
+		final String path;
+		
+		Invalidation(long version, String path) {
+			this.version = version;
+			this.path = path;
+		}
+	}
+	
+	/** The keys are the DB path names, prefixed with the type of the entry. */
+	private final LinkedHashMap<String, Entry> entries =
+		new LinkedHashMap<String, Entry>(256, 0.75f, true);
+	
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+	private long maxMemory = DEFAULT_MAX_MEMORY;
+	private long memory = 0;
+	
+	/** Incremented on each invalidation. */
+	private long version = 0;
+	
+	/** The recent invalidations, in the order they are made. */
+	private final LinkedList<Invalidation> invalidations = new LinkedList<Invalidation>();
+	
+	/** The information retrieved before this version is not stored. */
+	private long minVersion = 0;
+	
+	private long hitCount = 0;
+	private long missCount = 0;
+	
+	private final InstrumentsDbAdapter dbListener = new EventHandler();
+	
+	/** Creates a new instance of <code>InstrumentsDbCache</code>. */
+	public
+	InstrumentsDbCache() { }
+	
+	/**
+	 * Gets the listener which should be registered to the LSCP client
+	 * to keep this cache in sync with the instruments database.
+	 */
+	public InstrumentsDbAdapter
+	getInstrumentsDbListener() { return dbListener; }
+	
+	/** Gets the maximum number of cached entries. */
+	public synchronized int
+	getMaxEntries() { return maxEntries; }
+	
+	/** Sets the maximum number of cached entries. */
+	public synchronized void
+	setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+		evict();
+	}
+	
+	/** Gets the maximum amount of memory (in bytes) to be used by the cache. */
+	public synchronized long
+	getMaxMemory() { return maxMemory; }
+	
+	/** Sets the maximum amount of memory (in bytes) to be used by the cache. */
+	public synchronized void
+	setMaxMemory(long maxMemory) {
+		this.maxMemory = maxMemory;
+		evict();
+	}
+	
+	/** Gets the number of cached entries. */
+	public synchronized int
+	getEntryCount() { return entries.size(); }
+	
+	/** Gets the estimated amount of memory (in bytes) used by the cache. */
+	public synchronized long
+	getMemoryUsage() { return memory; }
+	
+	/**
+	 * Gets the current version of the cache, which should be obtained before
+	 * retrieving from the backend information to be stored in the cache.
+	 */
+	public synchronized long
+	getVersion() { return version; }
+	
+	/** Gets the number of successful lookups. */
+	public synchronized long
+	getHitCount() { return hitCount; }
+	
+	/** Gets the number of unsuccessful lookups. */
+	public synchronized long
+	getMissCount() { return missCount; }
+	
+	/**
+	 * Gets the cached information about the specified directory.
+	 * @param dir The absolute path name of the directory.
+	 * @return The cached information or <code>null</code> if not cached.
+	 */
+	public DbDirectoryInfo
+	getDirectory(String dir) { return (DbDirectoryInfo)get(DIRECTORY, dir); }
+	
+	/**
+	 * Caches the information about the specified directory.
+	 * @param version The version of the cache obtained before retrieving the information.
+	 */
+	public void
+	putDirectory(String dir, DbDirectoryInfo info, long version) {
+		put(DIRECTORY, dir, info, sizeOf(info), version);
+	}
+	
+	/**
+	 * Gets the cached information about the specified instrument.
+	 * @param instr The absolute path name of the instrument.
+	 * @return The cached information or <code>null</code> if not cached.
+	 */
+	public DbInstrumentInfo
+	getInstrument(String instr) { return (DbInstrumentInfo)get(INSTRUMENT, instr); }
+	
+	/**
+	 * Caches the information about the specified instrument.
+	 * @param version The version of the cache obtained before retrieving the information.
+	 */
+	public void
+	putInstrument(String instr, DbInstrumentInfo info, long version) {
+		put(INSTRUMENT, instr, info, sizeOf(info), version);
+	}
+	
+	/**
+	 * Gets the cached list of directories in the specified directory.
+	 * @param dir The absolute path name of the parent directory.
+	 * @return A copy of the cached list or <code>null</code> if not cached.
+	 */
+	public DbDirectoryInfo[]
+	getDirectories(String dir) {
+		DbDirectoryInfo[] dirs = (DbDirectoryInfo[])get(DIRECTORY_LIST, dir);
+		return dirs == null ? null : dirs.clone();
+	}
+	
+	/**
+	 * Caches the list of directories in the specified directory.
+	 * @param version The version of the cache obtained before retrieving the list.
+	 */
+	public void
+	putDirectories(String dir, DbDirectoryInfo[] dirs, long version) {
+		long size = 64 + 8 * dirs.length;
+		for(DbDirectoryInfo info : dirs) size += sizeOf(info);
+		put(DIRECTORY_LIST, dir, dirs.clone(), size, version);
+	}
+	
+	/**
+	 * Gets the cached list of instruments in the specified directory.
+	 * @param dir The absolute path name of the directory.
+	 * @return A copy of the cached list or <code>null</code> if not cached.
+	 */
+	public DbInstrumentInfo[]
+	getInstruments(String dir) {
+		DbInstrumentInfo[] instrs = (DbInstrumentInfo[])get(INSTRUMENT_LIST, dir);
+		return instrs == null ? null : instrs.clone();
+	}
+	
+	/**
+	 * Caches the list of instruments in the specified directory.
+	 * @param version The version of the cache obtained before retrieving the list.
+	 */
+	public void
+	putInstruments(String dir, DbInstrumentInfo[] instrs, long version) {
+		long size = 64 + 8 * instrs.length;
+		for(DbInstrumentInfo info : instrs) size += sizeOf(info);
+		put(INSTRUMENT_LIST, dir, instrs.clone(), size, version);
+	}
+	
+	/**
+	 * Removes from the cache all information that may be affected by a change
+	 * of the specified directory or instrument: the entry itself, the entries
+	 * of its parent directory and the entries in the subtree of the specified path.
+	 * @param path The absolute path name of a directory or an instrument.
+	 */
+	public synchronized void
+	invalidate(String path) {
+		path = trimPath(path);
+		
+		version++;
+		invalidations.add(new Invalidation(version, path));
+		if(invalidations.size() > MAX_INVALIDATIONS) {
+			minVersion = invalidations.removeFirst().version;
+		}
+		
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<String, Entry> me = it.next();
+			if(isAffected(me.getKey().substring(1), path)) {
+				memory -= me.getValue().size;
+				it.remove();
+			}
+		}
+	}
+	
+	/** Removes all entries from the cache. */
+	public synchronized void
+	clear() {
+		entries.clear();
+		memory = 0;
+		
+		version++;
+		invalidations.clear();
+		minVersion = version;
+	}
+	
+	/** Determines whether the entry of path <code>p</code> is affected by a change of <code>path</code>. */
+	private static boolean
+	isAffected(String p, String path) {
+		if(p.equals(path) || p.equals(getParentPath(path))) return true;
+		return p.startsWith(path.equals("/") ? "/" : path + "/");
+	}
+	
+	/** Determines whether the specified path was invalidated after the specified version. */
+	private boolean
+	isInvalidated(String path, long version) {
+		if(version < minVersion) return true;
+		
+		Iterator<Invalidation> it = invalidations.descendingIterator();
+		while(it.hasNext()) {
+			Invalidation inv = it.next();
+			if(inv.version <= version) break;
+			if(isAffected(path, inv.path)) return true;
+		}
+		
+		return false;
+	}
+	
+	private synchronized Object
+	get(char type, String path) {
+		Entry e = entries.get(type + trimPath(path));
+		if(e == null) {
+			missCount++;
+			return null;
+		}
+		
+		hitCount++;
+		return e.value;
+	}
+	
+	private synchronized void
+	put(char type, String path, Object value, long size, long version) {
+		if(value == null) return;
+		path = trimPath(path);
+		if(isInvalidated(path, version)) return;
+		
+		Entry e = entries.put(type + path, new Entry(value, size));
+		if(e != null) memory -= e.size;
+		memory += size;
+		evict();
+	}
+	
+	private void
+	evict() {
+		Iterator<Entry> it = entries.values().iterator();
+		while(it.hasNext() && (entries.size() > maxEntries || memory > maxMemory)) {
+			memory -= it.next().size;
+			it.remove();
+		}
+	}
+	
+	private static String
+	trimPath(String path) {
+		if(path.length() > 1 && path.endsWith("/")) {
+			return path.substring(0, path.length() - 1);
+		}
+		
+		return path;
+	}
+	
+	private static String
+	getParentPath(String path) {
+		int i = path.lastIndexOf('/');
+		if(i < 1) return "/";
+		return path.substring(0, i);
+	}
+	
+	private static long
+	sizeOf(DbDirectoryInfo info) {
+		if(info == null) return 16;
+		return	128 + sizeOf(info.getName()) +
+			sizeOf(info.getDescription()) + sizeOf(info.getDirectoryPath());
+	}
+	
+	private static long
+	sizeOf(DbInstrumentInfo info) {
+		if(info == null) return 16;
+		return	512 + sizeOf(info.getName()) + sizeOf(info.getDescription()) +
+			sizeOf(info.getFilePath()) + sizeOf(info.getInstrumentPath());
+	}
+	
+	private static long
+	sizeOf(String s) { return s == null ? 0 : 40 + 2 * s.length(); }
+	
+	private class EventHandler extends InstrumentsDbAdapter {
+		/**
+		 * Invoked when the number of instrument
+		 * directories in a specific directory has changed.
+		 */
+		@Override
+		public void
+		directoryCountChanged(InstrumentsDbEvent e) { invalidate(e.getPathName()); }
+		
+		/** Invoked when the settings of an instrument directory are changed. */
+		@Override
+		public void
+		directoryInfoChanged(InstrumentsDbEvent e) { invalidate(e.getPathName()); }
+		
+		/** Invoked when an instrument directory is renamed. */
+		@Override
+		public void
+		directoryNameChanged(InstrumentsDbEvent e) { invalidate(e.getPathName()); }
+		
+		/** Invoked when the number of instruments in a specific directory has changed. */
+		@Override
+		public void
+		instrumentCountChanged(InstrumentsDbEvent e) { invalidate(e.getPathName()); }
+		
+		/** Invoked when the settings of an instrument are changed. */
+		@Override
+		public void
+		instrumentInfoChanged(InstrumentsDbEvent e) { invalidate(e.getPathName()); }
+		
+		/** Invoked when an instrument is renamed. */
+		@Override
+		public void
+		instrumentNameChanged(InstrumentsDbEvent e) { invalidate(e.getPathName()); }
+	}
+}
@@ -0,0 +1,538 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.grigoriliev.jsampler.jlscp.DbDirectoryInfo;
+import com.grigoriliev.jsampler.jlscp.DbInstrumentInfo;
+import com.grigoriliev.jsampler.jlscp.DbSearchQuery;
+
+import com.grigoriliev.jsampler.jlscp.event.InstrumentsDbAdapter;
+import com.grigoriliev.jsampler.jlscp.event.InstrumentsDbEvent;
+
+import com.grigoriliev.jsampler.task.InstrumentsDb;
+
+/**
+ * An optional local inverted index over the instruments database, which answers
+ * prefix and multi-term queries without a round trip to the backend.
+ * The index covers the path names of the directories and the instruments, the name
+ * and description of the directories and the name, description, product, artists
+ * and keywords of the instruments. It is built
+ * incrementally from the directory listings and search results retrieved by
+ * the {@link InstrumentsDb} tasks (or at once with {@link #build}), is kept in sync
+ * by the instruments database notification events (the directories changed
+ * within {@link #REFRESH_DELAY} are listed again once) and can be persisted
+ * in a compact binary format.
+ * This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class InstrumentsDbIndex extends TermIndex<InstrumentsDbIndex.Doc> {
+	private static final int MAGIC = 0x4a534958; // JSIX
+	private static final int VERSION = 1;
+	
+	/**
+	 * The delay (in milliseconds) before listing again a changed directory,
+	 * during which the subsequent changes of the directory are coalesced.
+	 */
+	public static final int REFRESH_DELAY = 500;
+	
+	static class Doc {
+		final boolean directory;
+		final String path;
+		final String[] fields;
+		
+		Doc(boolean directory, String path, String[] fields) {
+			this.directory = directory;
+			this.path = path;
+			this.fields = fields;
+		}
+	}
+	
+	private boolean enabled = false;
+	
+	/** Maps the DB path names to document IDs. */
+	private final TreeMap<String, Integer> paths = new TreeMap<String, Integer>();
+	
+	/** The directories to be listed again. */
+	private final HashSet<String> pendingRefreshes = new HashSet<String>();
+	private Timer refreshTimer = null;
+	
+	private final InstrumentsDbAdapter dbListener = new EventHandler();
+	
+	/** Creates a new instance of <code>InstrumentsDbIndex</code>. */
+	public
+	InstrumentsDbIndex() { }
+	
+	/**
+	 * Gets the listener which should be registered to the LSCP client
+	 * to keep this index in sync with the instruments database.
+	 */
+	public InstrumentsDbAdapter
+	getInstrumentsDbListener() { return dbListener; }
+	
+	/** Determines whether the index is maintained and can be used for searching. */
+	public synchronized boolean
+	isEnabled() { return enabled; }
+	
+	/**
+	 * Sets whether the index should be maintained.
+	 * Disabling the index clears its content.
+	 */
+	public synchronized void
+	setEnabled(boolean b) {
+		enabled = b;
+		if(!b) clear();
+	}
+	
+	/** Gets the number of indexed directories and instruments. */
+	public synchronized int
+	getSize() { return paths.size(); }
+	
+	/** Removes all directories and instruments from the index. */
+	@Override
+	public synchronized void
+	clear() {
+		super.clear();
+		paths.clear();
+	}
+	
+	/** Adds (or updates) the specified directories to the index. */
+	public synchronized void
+	addDirectories(DbDirectoryInfo[] dirs) {
+		if(!enabled || dirs == null) return;
+		
+		for(DbDirectoryInfo d : dirs) {
+			if(d == null) continue;
+			add(new Doc(true, d.getDirectoryPath(), new String[] {
+				d.getName(), d.getDescription()
+			}));
+		}
+	}
+	
+	/** Adds (or updates) the specified instruments to the index. */
+	public synchronized void
+	addInstruments(DbInstrumentInfo[] instrs) {
+		if(!enabled || instrs == null) return;
+		
+		for(DbInstrumentInfo i : instrs) {
+			if(i == null) continue;
+			add(new Doc(false, i.getInstrumentPath(), new String[] {
+				i.getName(), i.getDescription(),
+				i.getProduct(), i.getArtists(), i.getKeywords()
+			}));
+		}
+	}
+	
+	/**
+	 * Replaces the indexed directories in the specified directory with the
+	 * specified listing. The directories, which are not in the listing, are
+	 * removed from the index together with their subtrees.
+	 * @param dir The absolute path name of the parent directory.
+	 * @param dirs The complete list of the directories in <code>dir</code>.
+	 */
+	public synchronized void
+	setDirectories(String dir, DbDirectoryInfo[] dirs) {
+		if(!enabled || dirs == null) return;
+		HashSet<String> set = new HashSet<String>();
+		for(DbDirectoryInfo d : dirs) if(d != null) set.add(d.getDirectoryPath());
+		for(String s : getChildren(dir, true)) if(!set.contains(s)) remove(s);
+		addDirectories(dirs);
+	}
+	
+	/**
+	 * Replaces the indexed instruments in the specified directory with
+	 * the specified listing.
+	 * @param dir The absolute path name of the directory.
+	 * @param instrs The complete list of the instruments in <code>dir</code>.
+	 */
+	public synchronized void
+	setInstruments(String dir, DbInstrumentInfo[] instrs) {
+		if(!enabled || instrs == null) return;
+		HashSet<String> set = new HashSet<String>();
+		for(DbInstrumentInfo i : instrs) if(i != null) set.add(i.getInstrumentPath());
+		for(String s : getChildren(dir, false)) if(!set.contains(s)) remove(s);
+		addInstruments(instrs);
+	}
+	
+	/** Gets the paths of the indexed directories or instruments directly in <code>dir</code>. */
+	private Vector<String>
+	getChildren(String dir, boolean directories) {
+		String prefix = dir.endsWith("/") ? dir : dir + "/";
+		Vector<String> v = new Vector<String>();
+		for(Map.Entry<String, Integer> me : paths.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+			if(me.getKey().indexOf('/', prefix.length()) != -1) continue;
+			if(docs.get(me.getValue()).directory == directories) v.add(me.getKey());
+		}
+		
+		return v;
+	}
+	
+	/**
+	 * Removes the specified directory or instrument, as well
+	 * as all entries in its subtree, from the index.
+	 * @param path The absolute path name of a directory or an instrument.
+	 */
+	public synchronized void
+	remove(String path) {
+		Integer id = paths.remove(path);
+		if(id != null) deleteDocument(id);
+		
+		String subtree = path.endsWith("/") ? path : path + "/";
+		Map<String, Integer> m = paths.subMap(subtree, subtree + Character.MAX_VALUE);
+		for(Integer i : m.values()) deleteDocument(i);
+		m.clear();
+		
+		compactIfNeeded();
+	}
+	
+	/**
+	 * Finds the instruments in the specified directory (and its subdirectories),
+	 * which contain all terms of the specified query, the last term being
+	 * matched as a prefix (as used for type-ahead search).
+	 * @param dir The absolute path name of the directory to search in.
+	 * @param query The search terms separated by spaces.
+	 * @param maxResults The maximum number of results to return.
+	 * @return The absolute path names of the found instruments. The instruments,
+	 * whose names match the query, come first.
+	 */
+	public synchronized String[]
+	findInstruments(String dir, String query, int maxResults) {
+		return find(false, dir, query, maxResults);
+	}
+	
+	/**
+	 * Finds the directories in the specified directory (and its subdirectories),
+	 * which contain all terms of the specified query.
+	 * @param dir The absolute path name of the directory to search in.
+	 * @param query The search terms separated by spaces.
+	 * @param maxResults The maximum number of results to return.
+	 * @return The absolute path names of the found directories.
+	 * @see #findInstruments
+	 */
+	public synchronized String[]
+	findDirectories(String dir, String query, int maxResults) {
+		return find(true, dir, query, maxResults);
+	}
+	
+	private String[]
+	find(boolean directories, String dir, String query, int maxResults) {
+		String[] qTerms = tokenize(query);
+		if(qTerms.length == 0) return new String[0];
+		
+		BitSet result = null;
+		
+		for(int i = 0; i < qTerms.length; i++) {
+			BitSet bs = new BitSet(docs.size());
+			String t = qTerms[i];
+			if(i == qTerms.length - 1) {
+				for(Postings p : terms.subMap(t, t + Character.MAX_VALUE).values()) {
+					for(int j = 0; j < p.size; j++) bs.set(p.items[j]);
+				}
+			} else {
+				Postings p = terms.get(t);
+				if(p != null) for(int j = 0; j < p.size; j++) bs.set(p.items[j]);
+			}
+			
+			if(result == null) result = bs;
+			else result.and(bs);
+			if(result.isEmpty()) return new String[0];
+		}
+		
+		result.andNot(deleted);
+		
+		String scope = dir == null || dir.equals("/") ? "/" : (dir.endsWith("/") ? dir : dir + "/");
+		Vector<String> nameHits = new Vector<String>();
+		Vector<String> otherHits = new Vector<String>();
+		
+		for(int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+			Doc d = docs.get(id);
+			if(d.directory != directories || !d.path.startsWith(scope)) continue;
+			
+			if(matches(d.fields[0], qTerms)) nameHits.add(d.path);
+			else otherHits.add(d.path);
+			
+			if(nameHits.size() >= maxResults) break;
+		}
+		
+		for(String s : otherHits) {
+			if(nameHits.size() >= maxResults) break;
+			nameHits.add(s);
+		}
+		
+		return nameHits.toArray(new String[nameHits.size()]);
+	}
+	
+	/** Determines whether the specified text contains all specified terms. */
+	private static boolean
+	matches(String text, String[] qTerms) {
+		HashSet<String> set = new HashSet<String>(Arrays.asList(tokenize(text)));
+		for(int i = 0; i < qTerms.length; i++) {
+			if(i < qTerms.length - 1) {
+				if(!set.contains(qTerms[i])) return false;
+			} else {
+				boolean b = false;
+				for(String s : set) if(s.startsWith(qTerms[i])) { b = true; break; }
+				if(!b) return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private void
+	add(Doc doc) {
+		if(doc.path == null) return;
+		
+		Integer old = paths.get(doc.path);
+		if(old != null) deleteDocument(old);
+		addDocument(doc);
+	}
+	
+	@Override
+	protected void
+	documentAdded(int id, Doc doc) {
+		paths.put(doc.path, id);
+		indexText(doc.path, id);
+		for(String f : doc.fields) indexText(f, id);
+	}
+	
+	/**
+	 * Builds the index of the whole instruments database
+	 * by retrieving all directories and instruments at once.
+	 * Does nothing if the index is not enabled.
+	 */
+	public void
+	build() {
+		if(!isEnabled()) return;
+		
+		DbSearchQuery query = new DbSearchQuery();
+		query.name = "*";
+		
+		CC.getTaskQueue().add(new InstrumentsDb.FindDirectories("/", query));
+		CC.getTaskQueue().add(new InstrumentsDb.FindInstruments("/", query));
+	}
+	
+	/**
+	 * Saves the index to the specified file.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void
+	save(File f) throws IOException {
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(f));
+		try { writeObject(os); }
+		finally { os.close(); }
+	}
+	
+	/**
+	 * Loads the index from the specified file, replacing the current content.
+	 * @throws IOException If an I/O error occurs or the file is not a valid index.
+	 */
+	public void
+	load(File f) throws IOException {
+		InputStream is = new BufferedInputStream(new FileInputStream(f));
+		try { readObject(is); }
+		finally { is.close(); }
+	}
+	
+	/**
+	 * Writes the content of the index to the specified stream.
+	 * Only the documents are stored; the postings are rebuilt when loading.
+	 */
+	public synchronized void
+	writeObject(OutputStream os) throws IOException {
+		GZIPOutputStream gz = new GZIPOutputStream(os);
+		DataOutputStream out = new DataOutputStream(gz);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(paths.size());
+		
+		for(Integer id : paths.values()) {
+			Doc d = docs.get(id);
+			out.writeBoolean(d.directory);
+			writeString(out, d.path);
+			out.writeByte(d.fields.length);
+			for(String s : d.fields) writeString(out, s);
+		}
+		
+		out.flush();
+		gz.finish();
+	}
+	
+	/** Reads the content of the index from the specified stream. */
+	public synchronized void
+	readObject(InputStream is) throws IOException {
+		DataInputStream in = new DataInputStream(new GZIPInputStream(is));
+		if(in.readInt() != MAGIC) throw new IOException("Not an instruments DB index");
+		if(in.readInt() != VERSION) throw new IOException("Unsupported index version");
+		
+		clear();
+		int count = in.readInt();
+		for(int i = 0; i < count; i++) {
+			boolean dir = in.readBoolean();
+			String path = readString(in);
+			String[] fields = new String[in.readUnsignedByte()];
+			for(int j = 0; j < fields.length; j++) fields[j] = readString(in);
+			add(new Doc(dir, path, fields));
+		}
+	}
+	
+	private static void
+	writeString(DataOutputStream out, String s) throws IOException {
+		if(s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+	
+	private static String
+	readString(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		if(len == -1) return null;
+		byte[] b = new byte[len];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Schedules a refresh of the indexed content of the specified directory
+	 * after {@link #REFRESH_DELAY}, unless a refresh is already scheduled.
+	 */
+	private synchronized void
+	scheduleRefresh(final String dir) {
+		if(!pendingRefreshes.add(dir)) return;
+		
+		if(refreshTimer == null) refreshTimer = new Timer("Instruments-DB-Index-Refresh", true);
+		refreshTimer.schedule(new TimerTask() {
+			public void
+			run() {
+				synchronized(InstrumentsDbIndex.this) { pendingRefreshes.remove(dir); }
+				if(isEnabled()) refreshDirectory(dir);
+			}
+		}, REFRESH_DELAY);
+	}
+	
+	/**
+	 * Refreshes the indexed content of the specified directory.
+	 * The retrieved listings are added to the index by the tasks.
+	 */
+	private void
+	refreshDirectory(String dir) {
+		InstrumentsDb.GetInstruments gi = new InstrumentsDb.GetInstruments(dir);
+		gi.setSilent(true);
+		gi.setTrafficClass(ConnectionManager.TrafficClass.BULK);
+		CC.scheduleTask(gi);
+		
+		InstrumentsDb.GetDrectories gd = new InstrumentsDb.GetDrectories(dir);
+		gd.setSilent(true);
+		gd.setTrafficClass(ConnectionManager.TrafficClass.BULK);
+		CC.scheduleTask(gd);
+	}
+	
+	private static String
+	getParentPath(String path) {
+		int i = path.lastIndexOf('/');
+		if(i < 1) return "/";
+		return path.substring(0, i);
+	}
+	
+	private class EventHandler extends InstrumentsDbAdapter {
+		/**
+		 * Invoked when the number of instrument
+		 * directories in a specific directory has changed.
+		 */
+		@Override
+		public void
+		directoryCountChanged(InstrumentsDbEvent e) { onChange(e.getPathName(), false); }
+		
+		/** Invoked when the settings of an instrument directory are changed. */
+		@Override
+		public void
+		directoryInfoChanged(InstrumentsDbEvent e) { onChange(e.getPathName(), true); }
+		
+		/** Invoked when an instrument directory is renamed. */
+		@Override
+		public void
+		directoryNameChanged(InstrumentsDbEvent e) {
+			if(!isEnabled()) return;
+			remove(e.getPathName());
+			scheduleRefresh(getParentPath(e.getPathName()));
+		}
+		
+		/** Invoked when the number of instruments in a specific directory has changed. */
+		@Override
+		public void
+		instrumentCountChanged(InstrumentsDbEvent e) { onChange(e.getPathName(), false); }
+		
+		/** Invoked when the settings of an instrument are changed. */
+		@Override
+		public void
+		instrumentInfoChanged(InstrumentsDbEvent e) { onChange(e.getPathName(), true); }
+		
+		/** Invoked when an instrument is renamed. */
+		@Override
+		public void
+		instrumentNameChanged(InstrumentsDbEvent e) {
+			if(!isEnabled()) return;
+			remove(e.getPathName());
+			scheduleRefresh(getParentPath(e.getPathName()));
+		}
+		
+		/**
+		 * @param path The path of the changed entry.
+		 * @param entry <code>true</code> if the entry itself is changed,
+		 * <code>false</code> if the content of the directory is changed.
+		 */
+		private void
+		onChange(String path, boolean entry) {
+			if(!isEnabled()) return;
+			scheduleRefresh(entry ? getParentPath(path) : path);
+		}
+	}
+}
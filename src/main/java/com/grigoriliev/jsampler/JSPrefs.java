@@ -125,16 +125,93 @@ public class JSPrefs extends PropertyChangeSupport {
 	public final static String BACKEND_LAUNCH_COMMAND = "backendLaunchCommand";
 	
 	/**
-	 * Property which specifies whether the backend should be launched by jsampler
-	 * if it is not yet started, when trying to connect locally - 127.0.0.1 or localhost.
+	 * Property which specifies the delay (in seconds) before connecting to a launched backend.
+	 * @deprecated The connection is established as soon as the backend is ready.
+	 * Use {@link #BACKEND_LAUNCH_TIMEOUT} to specify the maximum waiting time.
 	 */
+	@Deprecated
 	public final static String BACKEND_LAUNCH_DELAY = "backendLaunchDelay";
 	
+	/**
+	 * Integer property which specifies the maximum time (in seconds)
+	 * to wait for a launched backend to start accepting connections.
+	 */
+	public final static String BACKEND_LAUNCH_TIMEOUT = "backendLaunchTimeout";
+	
+	/**
+	 * Property which specifies whether a local search index of the instruments
+	 * database should be maintained and persisted in the JSampler's home directory.
+	 */
+	public final static String INSTRUMENTS_DB_LOCAL_INDEX = "instrumentsDb.localIndex";
+	
+	/**
+	 * Property which specifies whether the statistics of the executed tasks
+	 * should be collected and exposed as JMX MBeans.
+	 */
+	public final static String TASK_METRICS = "taskMetrics";
+	
+	/**
+	 * Property which specifies whether the metrics of the notifications
+	 * received from the backend should be collected and exposed as JMX MBeans.
+	 */
+	public final static String NOTIFICATION_METRICS = "notificationMetrics";
+	
+	/**
+	 * Integer property which specifies the port of the local HTTP endpoint
+	 * publishing the notification and task metrics as plain text,
+	 * or 0 if the endpoint should not be started.
+	 */
+	public final static String METRICS_HTTP_PORT = "metrics.httpPort";
+	
+	/**
+	 * Integer property which specifies the minimum interval (in milliseconds)
+	 * between two consecutive sends of effect parameter changes to the backend.
+	 */
+	public final static String EFFECT_PARAMETER_INTERVAL = "effectParameterInterval";
+	
 	/**
 	 * Integer property which provides the index of the server to connect on startup.
 	 */
 	public final static String SERVER_INDEX = "serverIndex";
 	
+	/**
+	 * Integer property which provides the index of the standby server in the server
+	 * list, or -1 if the hot-standby mode is disabled.
+	 * @see StandbyManager
+	 */
+	public final static String STANDBY_SERVER_INDEX = "standby.serverIndex";
+	
+	/**
+	 * Integer property which specifies the interval (in milliseconds)
+	 * between two consecutive health checks of the active server.
+	 */
+	public final static String STANDBY_PROBE_INTERVAL = "standby.probeInterval";
+	
+	/**
+	 * Integer property which specifies the number of consecutive failed
+	 * health checks, after which the frontend switches to the standby server.
+	 */
+	public final static String STANDBY_FAILURE_THRESHOLD = "standby.failureThreshold";
+	
+	/**
+	 * Integer property which specifies the minimum interval (in seconds)
+	 * between two consecutive synchronizations of the standby server.
+	 */
+	public final static String STANDBY_SYNC_INTERVAL = "standby.syncInterval";
+	
+	/**
+	 * String property which provides the comma-separated indices of the mirror
+	 * servers in the server list, or an empty string if the mirroring is disabled.
+	 * @see MirrorGroup
+	 */
+	public final static String MIRROR_SERVERS = "mirror.servers";
+	
+	/**
+	 * Integer property which specifies the interval (in seconds) between
+	 * two consecutive checks of the mirror servers for divergence.
+	 */
+	public final static String MIRROR_CHECK_INTERVAL = "mirror.checkInterval";
+	
 	/**
 	 * Property specifying the MIDI bank numbering, whether
 	 * the index of the first MIDI bank is 0 or 1 (zero-based or one-based).
@@ -283,6 +360,7 @@ public class JSPrefs extends PropertyChangeSupport {
 	getDefaultStringValue(String name) {
 		if(BACKEND_LAUNCH_COMMAND.equals(name)) return "linuxsampler";
 		if(RECENT_LSCP_SCRIPTS.equals(name)) return "";
+		if(MIRROR_SERVERS.equals(name)) return "";
 		if(DEFAULT_ENGINE.equals(name)) return "GIG";
 		if(DEFAULT_MIDI_INPUT.equals(name)) return "firstDeviceNextChannel";
 		if(DEFAULT_AUDIO_OUTPUT.equals(name)) return "firstDevice";
@@ -399,9 +477,16 @@ public class JSPrefs extends PropertyChangeSupport {
 		if(GLOBAL_VOICE_LIMIT.equals(name)) return 64;
 		if(GLOBAL_STREAM_LIMIT.equals(name)) return 90;
 		if(SOCKET_READ_TIMEOUT.equals(name)) return 90;
+		if(EFFECT_PARAMETER_INTERVAL.equals(name)) return 40;
 		if(FIRST_MIDI_BANK_NUMBER.equals(name)) return 0;
 		if(FIRST_MIDI_PROGRAM_NUMBER.equals(name)) return 1;
 		if(BACKEND_LAUNCH_DELAY.equals(name)) return 3;
+		if(BACKEND_LAUNCH_TIMEOUT.equals(name)) return 30;
+		if(STANDBY_SERVER_INDEX.equals(name)) return -1;
+		if(STANDBY_PROBE_INTERVAL.equals(name)) return 1000;
+		if(STANDBY_FAILURE_THRESHOLD.equals(name)) return 3;
+		if(STANDBY_SYNC_INTERVAL.equals(name)) return 5;
+		if(MIRROR_CHECK_INTERVAL.equals(name)) return 10;
 		if(DEFAULT_CHANNEL_VOLUME.equals(name)) return 100;
 		if(LS_CONSOLE_HISTSIZE.equals(name)) return 1000;
 		if(RECENT_LSCP_SCRIPTS_SIZE.equals(name)) return 7;
@@ -25,6 +25,9 @@ import java.io.ByteArrayOutputStream;
 
 import java.io.File;
 import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
 import java.util.logging.Level;
 import java.util.zip.GZIPOutputStream;
 
@@ -399,10 +402,99 @@ public class JSUtils {
 		sb.append(JSampler.VERSION).append("\r\n");
 		sb.append("# Date: ").append(new java.util.Date().toString()).append("\r\n\r\n");
 
+		Vector<SamplerChannelModel> channels = new Vector<SamplerChannelModel>();
+		for(Object cp : CC.getMainFrame().getChannelsPaneList()) {
+			for(JSChannel chn : ((JSChannelsPane)cp).getChannels()) {
+				channels.add(CC.getSamplerModel().getChannelById(chn.getChannelId()));
+			}
+		}
+		
+		exportSessionToLscpScript(channels, sb);
+		sb.append(CC.getViewConfig().exportSessionViewConfig());
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Exports the current backend state as LSCP script, without the session view
+	 * configuration and without changing the modified state of the sampler model.
+	 * The sampler channels are exported in the order of the sampler model.
+	 * Should be invoked from the UI thread.
+	 */
+	public static String
+	exportSessionStateToLscpScript() {
+		StringBuffer sb = new StringBuffer();
+		exportSessionToLscpScript(Arrays.asList(CC.getSamplerModel().getChannels()), sb);
+		return sb.toString();
+	}
+	
+	/**
+	 * Exports the current backend state without the sampler channels as LSCP script,
+	 * i.e. the script which resets the sampler, sets the global volume and creates
+	 * the devices, the send effects and (if enabled) the MIDI instrument maps.
+	 * The script expects the IDs of the created devices and effect instances to
+	 * be assigned in ascending order from 0. Should be invoked from the UI thread.
+	 * @see #exportChannelStateToLscpScript
+	 */
+	public static String
+	exportGlobalStateToLscpScript() {
+		Client lscpClient = new Client(true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		lscpClient.setPrintOnlyModeOutputStream(out);
+		
+		StringBuffer sb = new StringBuffer();
+		exportGlobalStateToLscpScript(lscpClient, out, sb);
+		return sb.toString();
+	}
+	
+	/**
+	 * Exports the settings of the specified sampler channel as LSCP script,
+	 * which starts with the <code>ADD CHANNEL</code> command and addresses the
+	 * channel with the specified ID. The devices are addressed by their position
+	 * in the sampler model (see {@link #exportGlobalStateToLscpScript}).
+	 * Should be invoked from the UI thread.
+	 * @param scm The sampler channel to export.
+	 * @param chnId The ID of the channel in the script.
+	 */
+	public static String
+	exportChannelStateToLscpScript(SamplerChannelModel scm, int chnId) {
+		Client lscpClient = new Client(true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		lscpClient.setPrintOnlyModeOutputStream(out);
+		
+		exportChannelToLscpScript(scm.getChannelInfo(), chnId, lscpClient);
+		exportFxSendsToLscpScript(scm, chnId, lscpClient);
+		return out.toString();
+	}
+	
+	private static void
+	exportSessionToLscpScript(List<SamplerChannelModel> channels, StringBuffer sb) {
 		Client lscpClient = new Client(true);
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		lscpClient.setPrintOnlyModeOutputStream(out);
 
+		exportGlobalStateToLscpScript(lscpClient, out, sb);
+
+		int chnId = 0;
+		for(SamplerChannelModel scm : channels) {
+			exportChannelToLscpScript(scm.getChannelInfo(), chnId, lscpClient);
+			sb.append(out.toString());
+			out.reset();
+
+			sb.append("\r\n");
+
+			exportFxSendsToLscpScript(scm, chnId, lscpClient);
+			sb.append(out.toString());
+			out.reset();
+
+			sb.append("\r\n");
+
+			chnId++;
+		}
+	}
+
+	private static void
+	exportGlobalStateToLscpScript(Client lscpClient, ByteArrayOutputStream out, StringBuffer sb) {
 		try {
 			lscpClient.resetSampler();
 			sb.append(out.toString());
@@ -439,31 +531,6 @@ public class JSUtils {
 			out.reset();
 			sb.append("\r\n");
 		}
-
-		int chnId = 0;
-		for(Object cp : CC.getMainFrame().getChannelsPaneList()) {
-			for(JSChannel chn : ((JSChannelsPane)cp).getChannels()) {
-				SamplerChannelModel scm;
-				scm = CC.getSamplerModel().getChannelById(chn.getChannelId());
-				exportChannelToLscpScript(scm.getChannelInfo(), chnId, lscpClient);
-				sb.append(out.toString());
-				out.reset();
-
-				sb.append("\r\n");
-
-				exportFxSendsToLscpScript(scm, chnId, lscpClient);
-				sb.append(out.toString());
-				out.reset();
-
-				sb.append("\r\n");
-
-				chnId++;
-			}
-		}
-
-		sb.append(CC.getViewConfig().exportSessionViewConfig());
-
-		return sb.toString();
 	}
 
 	private static void
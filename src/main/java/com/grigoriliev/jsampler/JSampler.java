@@ -21,10 +21,12 @@
 
 package com.grigoriliev.jsampler;
 
-import com.grigoriliev.jsampler.juife.PDUtils;
 import com.grigoriliev.jsampler.juife.event.GenericEvent;
 import com.grigoriliev.jsampler.juife.event.GenericListener;
 
+import com.grigoriliev.jsampler.view.HeadlessMainFrame;
+import com.grigoriliev.jsampler.view.HeadlessProgress;
+import com.grigoriliev.jsampler.view.HeadlessViewConfig;
 import com.grigoriliev.jsampler.view.JSViews;
 
 /**
@@ -42,15 +44,51 @@ public class JSampler {
 	
 	
 	/**
-	 * The entry point of the application.
+	 * The entry point of the application. JSampler runs headless if the first
+	 * argument is <code>--headless</code> or the system property
+	 * <code>jsampler.headless</code> is <code>true</code>.
+	 * The other arguments are the LSCP scripts to run when connected.
 	 * @param args The command line arguments.
 	 * @see CC#cleanExit
 	 */
 	public static void
 	main(String[] args) {
-		scripts = args;
+		boolean headless = Boolean.getBoolean("jsampler.headless");
+		if(args.length > 0 && args[0].equals("--headless")) {
+			headless = true;
+			String[] a = new String[args.length - 1];
+			System.arraycopy(args, 1, a, 0, a.length);
+			args = a;
+		}
+		
+		scripts = args.length > 0 ? args : null;
+		
+		if(headless) {
+			System.setProperty("java.awt.headless", "true");
+			CC.setUiExecutor(new UiThreadExecutor("JSampler UI"));
+		}
+		
 		CC.initJSampler();
-		initGUI();
+		
+		if(headless) initHeadless();
+		else initGUI();
+	}
+	
+	/**
+	 * Initializes the headless mode, in which the UI hooks are provided by
+	 * headless implementations and no UI toolkit is initialized.
+	 */
+	private static void
+	initHeadless() {
+		CC.runOnUiThread(new Runnable() {
+			public void
+			run() {
+				CC.setViewConfig(new HeadlessViewConfig());
+				CC.setMainFrame(new HeadlessMainFrame());
+				CC.setProgressIndicator(new HeadlessProgress());
+				init();
+			}
+		});
 	}
 
 	/**
@@ -83,8 +121,9 @@ public class JSampler {
 	private static void
 	initGUI() {
 		JSViews.parseManifest();
+		CC.getStartupTimeline().mark("View manifest");
 
-		PDUtils.runOnUiThread(new Runnable() {
+		CC.runOnUiThread(new Runnable() {
 			public void
 			run() { initGUI0(); }
 		});
@@ -93,14 +132,25 @@ public class JSampler {
 	private static void
 	initGUI0() {
 		JSViews.setView(JSViews.getDefaultView());
+		CC.getStartupTimeline().mark("View");
+		init();
+	}
+	
+	private static void
+	init() {
 		if(scripts != null) {
 			CC.addConnectionEstablishedListener(new ConnectionEstablishedListener());
 		}
 		
 		JSUtils.checkJSamplerHome();
-		CC.loadOrchestras();
 		CC.loadServerList();
+		CC.getStartupTimeline().mark("Settings");
+		
+		// Initiate the connection first, because the orchestras and
+		// the channel templates aren't needed until the user accesses them.
 		CC.connect();
+		CC.loadOrchestrasLazily();
+		CC.loadChannelTemplates();
 	}
 	
 	private static class ConnectionEstablishedListener implements GenericListener, Runnable {
@@ -109,7 +159,7 @@ public class JSampler {
 			if(scripts == null) return;
 			for(String s : scripts) CC.getMainFrame().runScript(s);
 			scripts = null;
-			PDUtils.runOnUiThread(this);
+			CC.runOnUiThread(this);
 		}
 		
 		public void
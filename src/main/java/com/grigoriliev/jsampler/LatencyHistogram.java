@@ -0,0 +1,164 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies (or any other non-negative <code>long</code> values)
+ * with logarithmically sized buckets, each divided into 16 linear sub-buckets,
+ * similar to HdrHistogram. The recorded values are kept with a relative error
+ * below 6.25% over the whole <code>long</code> range, in a fixed amount of memory,
+ * and the recording of a value takes constant time.
+ * This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	/** Enough buckets for any non-negative <code>long</code> value. */
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+	
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long totalCount = 0;
+	private long sum = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+	
+	/** Creates a new instance of <code>LatencyHistogram</code>. */
+	public
+	LatencyHistogram() { }
+	
+	private static int
+	getIndex(long value) {
+		if(value < 2 * SUB_BUCKET_COUNT) return (int)value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKET_COUNT + (int)(value >>> shift) - SUB_BUCKET_COUNT;
+	}
+	
+	/** Gets the lowest value which falls in the bucket with the specified index. */
+	private static long
+	getLowestValue(int index) {
+		if(index < 2 * SUB_BUCKET_COUNT) return index;
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		return (long)(index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+	}
+	
+	/** Gets the highest value which falls in the bucket with the specified index. */
+	private static long
+	getHighestValue(int index) {
+		if(index == BUCKET_COUNT - 1) return Long.MAX_VALUE;
+		return getLowestValue(index + 1) - 1;
+	}
+	
+	/**
+	 * Records the specified value.
+	 * Negative values are recorded as zero.
+	 */
+	public synchronized void
+	recordValue(long value) {
+		if(value < 0) value = 0;
+		counts[getIndex(value)]++;
+		totalCount++;
+		sum += value;
+		if(value < min) min = value;
+		if(value > max) max = value;
+	}
+	
+	/** Gets the number of recorded values. */
+	public synchronized long
+	getTotalCount() { return totalCount; }
+	
+	/** Gets the sum of the recorded values. */
+	public synchronized long
+	getSum() { return sum; }
+	
+	/** Gets the smallest recorded value or 0 if no values are recorded. */
+	public synchronized long
+	getMin() { return totalCount == 0 ? 0 : min; }
+	
+	/** Gets the largest recorded value or 0 if no values are recorded. */
+	public synchronized long
+	getMax() { return max; }
+	
+	/** Gets the mean of the recorded values or 0 if no values are recorded. */
+	public synchronized double
+	getMean() { return totalCount == 0 ? 0 : (double)sum / totalCount; }
+	
+	/**
+	 * Gets the value at the specified percentile, i.e. the (approximate) value
+	 * which is greater than or equal to the specified percent of the recorded values.
+	 * @param percentile A number between 0 and 100.
+	 * @return The value at the specified percentile or 0 if no values are recorded.
+	 */
+	public synchronized long
+	getValueAtPercentile(double percentile) {
+		if(totalCount == 0) return 0;
+		
+		double p = Math.min(Math.max(percentile, 0), 100);
+		long n = Math.max(1, (long)Math.ceil(p / 100 * totalCount));
+		long c = 0;
+		
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			c += counts[i];
+			if(c >= n) return Math.min(Math.max(getHighestValue(i), min), max);
+		}
+		
+		return max;
+	}
+	
+	/** Adds the values recorded in the specified histogram to this histogram. */
+	public void
+	add(LatencyHistogram h) {
+		LatencyHistogram copy = h.copy();
+		synchronized(this) {
+			for(int i = 0; i < BUCKET_COUNT; i++) counts[i] += copy.counts[i];
+			totalCount += copy.totalCount;
+			sum += copy.sum;
+			if(copy.totalCount > 0 && copy.min < min) min = copy.min;
+			if(copy.max > max) max = copy.max;
+		}
+	}
+	
+	/** Creates a copy of this histogram. */
+	public synchronized LatencyHistogram
+	copy() {
+		LatencyHistogram h = new LatencyHistogram();
+		System.arraycopy(counts, 0, h.counts, 0, BUCKET_COUNT);
+		h.totalCount = totalCount;
+		h.sum = sum;
+		h.min = min;
+		h.max = max;
+		return h;
+	}
+	
+	/** Removes all recorded values. */
+	public synchronized void
+	reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+}
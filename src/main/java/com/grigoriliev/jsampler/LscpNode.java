@@ -21,6 +21,8 @@
 
 package com.grigoriliev.jsampler;
 
+import java.util.HashMap;
+
 /**
  *
  * @author Grigor Iliev
@@ -30,6 +32,8 @@ public class LscpNode {
 	private LscpNode[] children;
 	private boolean endOfACommand;
 	private boolean hasParameters;
+	private LscpParameter[] parameters = null;
+	private HashMap<String, LscpNode> childIndex = null;
 	
 	/**
 	 * Creates a new instance of <code>LscpNode</code>.
@@ -154,7 +158,28 @@ public class LscpNode {
 	 * @param children The new children nodes of this node.
 	 */
 	public void
-	setChildren(LscpNode[] children) { this.children = children; }
+	setChildren(LscpNode[] children) {
+		this.children = children;
+		childIndex = null;
+	}
+	
+	/**
+	 * Gets the child node with the specified name.
+	 * @param name The name of the child node.
+	 * @return The child node with the specified name or
+	 * <code>null</code> if there is no such child.
+	 */
+	public LscpNode
+	getChild(String name) {
+		HashMap<String, LscpNode> index = childIndex;
+		if(index == null) {
+			index = new HashMap<String, LscpNode>();
+			for(LscpNode n : getChildren()) index.put(n.getName(), n);
+			childIndex = index;
+		}
+		
+		return index.get(name);
+	}
 	
 	/**
 	 * Determines whether this node is last keyword of a command.
@@ -173,4 +198,20 @@ public class LscpNode {
 	 */
 	public boolean
 	hasParameters() { return hasParameters; }
+	
+	/**
+	 * Gets the descriptors of the parameters of the command represented by this path.
+	 * @return The parameter descriptors or <code>null</code>
+	 * if the parameters of this command are not described.
+	 * @see LscpValidator
+	 */
+	public LscpParameter[]
+	getParameters() { return parameters; }
+	
+	/**
+	 * Sets the descriptors of the parameters of the command represented by this path.
+	 * @param parameters The parameter descriptors.
+	 */
+	public void
+	setParameters(LscpParameter... parameters) { this.parameters = parameters; }
 }
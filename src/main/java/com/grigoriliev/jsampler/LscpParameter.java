@@ -0,0 +1,224 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.grigoriliev.jsampler;
+
+/**
+ * Describes a parameter of an LSCP command.
+ * Instances of this class are immutable.
+ * @see LscpNode#getParameters
+ * @author Grigor Iliev
+ */
+public class LscpParameter {
+	/** The type of an LSCP command parameter. */
+	public static enum Type {
+		/** An integer number, like a sampler channel or device ID. */
+		INTEGER("integer"),
+		
+		/** A real number, like a volume or an effect control value. */
+		NUMBER("number"),
+		
+		/** <code>true</code>, <code>false</code>, <code>1</code> or <code>0</code>. */
+		BOOLEAN("boolean"),
+		
+		/** A string enclosed in single or double quotes. */
+		STRING("quoted string"),
+		
+		/** An unquoted word, like a driver or an engine name. */
+		IDENTIFIER("identifier"),
+		
+		/** A list of <code>key=value</code> pairs, which consumes the rest of the command. */
+		KEY_VALUE_LIST("key=value list"),
+		
+		/** An optional keyword, which must be equal to the name of the parameter. */
+		KEYWORD("keyword");
+		
+		private final String description;
+		
+		Type(String description) { this.description = description; }
+		
+		/** Gets a human readable description of this type. */
+		public String
+		getDescription() { return description; }
+	}
+	
+	private final String name;
+	private final Type type;
+	private final boolean optional;
+	private final String[] alternatives;
+	
+	/**
+	 * Creates a new instance of <code>LscpParameter</code>.
+	 * @param name The name of the parameter.
+	 * @param type The type of the parameter.
+	 * @param optional Determines whether the parameter can be omitted.
+	 * @param alternatives Keywords accepted in place of a value of the specified type.
+	 */
+	public
+	LscpParameter(String name, Type type, boolean optional, String... alternatives) {
+		this.name = name;
+		this.type = type;
+		this.optional = optional;
+		this.alternatives = alternatives;
+	}
+	
+	/** Creates a required integer parameter with the specified name. */
+	public static LscpParameter
+	integer(String name) { return new LscpParameter(name, Type.INTEGER, false); }
+	
+	/** Creates a required real number parameter with the specified name. */
+	public static LscpParameter
+	number(String name) { return new LscpParameter(name, Type.NUMBER, false); }
+	
+	/** Creates a required boolean parameter with the specified name. */
+	public static LscpParameter
+	bool(String name) { return new LscpParameter(name, Type.BOOLEAN, false); }
+	
+	/** Creates a required quoted string parameter with the specified name. */
+	public static LscpParameter
+	string(String name) { return new LscpParameter(name, Type.STRING, false); }
+	
+	/** Creates a required identifier parameter with the specified name. */
+	public static LscpParameter
+	identifier(String name) { return new LscpParameter(name, Type.IDENTIFIER, false); }
+	
+	/** Creates a required <code>key=value</code> list with the specified name. */
+	public static LscpParameter
+	keyValueList(String name) { return new LscpParameter(name, Type.KEY_VALUE_LIST, false); }
+	
+	/** Creates an optional keyword parameter. */
+	public static LscpParameter
+	keyword(String keyword) { return new LscpParameter(keyword, Type.KEYWORD, true); }
+	
+	/** Returns an optional copy of this parameter. */
+	public LscpParameter
+	optional() { return new LscpParameter(name, type, true, alternatives); }
+	
+	/**
+	 * Returns a copy of this parameter, which also accepts
+	 * the specified keywords in place of a value.
+	 */
+	public LscpParameter
+	or(String... keywords) { return new LscpParameter(name, type, optional, keywords); }
+	
+	/** Gets the name of this parameter. */
+	public String
+	getName() { return name; }
+	
+	/** Gets the type of this parameter. */
+	public Type
+	getType() { return type; }
+	
+	/** Determines whether this parameter can be omitted. */
+	public boolean
+	isOptional() { return optional; }
+	
+	/** Gets the keywords accepted in place of a value of this parameter's type. */
+	public String[]
+	getAlternatives() { return alternatives; }
+	
+	/**
+	 * Determines whether the specified token is a valid value for this parameter.
+	 * @param token The token exactly as it appears in the command,
+	 * including the enclosing quotes of the quoted strings.
+	 */
+	public boolean
+	accepts(String token) {
+		for(String s : alternatives) {
+			if(s.equals(token)) return true;
+		}
+		
+		switch(type) {
+		case INTEGER: return isInteger(token);
+		case NUMBER: return isNumber(token);
+		case BOOLEAN: return isBoolean(token);
+		case STRING: return isQuoted(token);
+		case IDENTIFIER: return isIdentifier(token);
+		case KEY_VALUE_LIST: return isKeyValue(token);
+		case KEYWORD: return name.equals(token);
+		}
+		
+		return false;
+	}
+	
+	private static boolean
+	isInteger(String s) {
+		int i = s.length() > 1 && s.charAt(0) == '-' ? 1 : 0;
+		if(i == s.length()) return false;
+		
+		for(; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c < '0' || c > '9') return false;
+		}
+		
+		return true;
+	}
+	
+	private static boolean
+	isNumber(String s) {
+		if(isInteger(s)) return true;
+		
+		char c = s.charAt(0);
+		if(!(c >= '0' && c <= '9') && c != '-' && c != '.') return false;
+		
+		try { Double.parseDouble(s); }
+		catch(NumberFormatException x) { return false; }
+		
+		return true;
+	}
+	
+	private static boolean
+	isBoolean(String s) {
+		return	s.equals("1") || s.equals("0") ||
+			s.equalsIgnoreCase("true") || s.equalsIgnoreCase("false");
+	}
+	
+	private static boolean
+	isQuoted(String s) {
+		if(s.length() < 2) return false;
+		char c = s.charAt(0);
+		return (c == '\'' || c == '"') && s.charAt(s.length() - 1) == c;
+	}
+	
+	private static boolean
+	isIdentifier(String s) {
+		if(s.length() == 0) return false;
+		char c = s.charAt(0);
+		if(c == '\'' || c == '"') return false;
+		return s.indexOf('=') == -1;
+	}
+	
+	private static boolean
+	isKeyValue(String s) {
+		int i = s.indexOf('=');
+		if(i < 1 || i == s.length() - 1) return false;
+		char c = s.charAt(0);
+		return c != '\'' && c != '"';
+	}
+	
+	/** Returns a textual representation of this parameter, like <code>[&lt;name&gt;]</code>. */
+	@Override
+	public String
+	toString() {
+		String s = type == Type.KEYWORD ? name : "<" + name + ">";
+		return optional ? "[" + s + "]" : s;
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Vector;
+
+import com.grigoriliev.jsampler.jlscp.Client;
+
+/**
+ * Sends batches of LSCP commands over a dedicated connection to the backend,
+ * without waiting for the reply of a command before sending the next one,
+ * so that a batch of N commands takes about one round trip instead of N.
+ * The commands are added either as text (see {@link #add}) or by invoking the
+ * methods of the print-only client returned by {@link #getCommandWriter}, and
+ * are sent when {@link #execute} is invoked. The backend executes the commands
+ * of a connection in order, so a command may depend on the effect of a previous
+ * command in the same batch. Only commands with a single line reply (like
+ * <code>ADD</code>, <code>SET</code>, <code>LOAD</code>, <code>MAP</code>, etc.)
+ * can be pipelined. Instances of this class are not thread-safe.
+ * @author Grigor Iliev
+ */
+public class LscpPipeline implements Closeable {
+	/** The maximum number of commands sent before the replies are read. */
+	private static final int WINDOW_SIZE = 256;
+	
+	/** The reply to a pipelined command. */
+	public static class Reply {
+		private final String command;
+		private final String reply;
+		
+		Reply(String command, String reply) {
+			this.command = command;
+			this.reply = reply;
+		}
+		
+		/** Gets the command this reply is for. */
+		public String
+		getCommand() { return command; }
+		
+		/** Gets the reply as received from the backend. */
+		public String
+		getReply() { return reply; }
+		
+		/** Determines whether the command failed. */
+		public boolean
+		isError() { return reply.startsWith("ERR"); }
+		
+		/** Determines whether the command succeeded with a warning. */
+		public boolean
+		isWarning() { return reply.startsWith("WRN"); }
+		
+		/**
+		 * Gets the numerical result of the command (e.g. the ID of the
+		 * created sampler channel), or -1 if the reply contains no result.
+		 */
+		public int
+		getResultIndex() {
+			int i = reply.indexOf('[');
+			int j = reply.indexOf(']');
+			if(i == -1 || j < i) return -1;
+			
+			try { return Integer.parseInt(reply.substring(i + 1, j)); }
+			catch(NumberFormatException x) { return -1; }
+		}
+		
+		/** Gets the error or warning message, or <code>null</code> if there is none. */
+		public String
+		getMessage() {
+			if(!isError() && !isWarning()) return null;
+			int i = reply.indexOf(':');
+			i = i == -1 ? -1 : reply.indexOf(':', i + 1);
+			return i == -1 ? reply : reply.substring(i + 1);
+		}
+		
+		@Override
+		public String
+		toString() { return command + " -> " + reply; }
+	}
+	
+	private final Socket socket;
+	private final BufferedReader in;
+	private final OutputStream out;
+	
+	private final ByteArrayOutputStream writerOut = new ByteArrayOutputStream();
+	private Client writer = null;
+	
+	private final Vector<String> commands = new Vector<String>();
+	
+	/**
+	 * Creates a new pipeline to the backend of the session bound to the
+	 * current thread, i.e. the session of the running task.
+	 * @throws IOException If the connection cannot be established.
+	 * @see CC#getSession
+	 */
+	public
+	LscpPipeline() throws IOException { this(CC.getSession().getServer()); }
+	
+	/**
+	 * Creates a new pipeline to the specified server, using the socket
+	 * read timeout from the preferences.
+	 * @throws IOException If the connection cannot be established.
+	 */
+	public
+	LscpPipeline(Server server) throws IOException {
+		this (
+			getAddress(server),
+			server.getPort(),
+			CC.preferences().getIntProperty(JSPrefs.SOCKET_READ_TIMEOUT) * 1000
+		);
+	}
+	
+	/**
+	 * Creates a new pipeline to the specified server.
+	 * @param address The address of the server.
+	 * @param port The LSCP port of the server.
+	 * @param timeout The connect and read timeout in milliseconds.
+	 * @throws IOException If the connection cannot be established.
+	 */
+	public
+	LscpPipeline(String address, int port, int timeout) throws IOException {
+		socket = new Socket();
+		socket.connect(new InetSocketAddress(address, port), timeout);
+		socket.setSoTimeout(timeout);
+		socket.setTcpNoDelay(true);
+		
+		in = new BufferedReader (
+			new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
+		);
+		out = socket.getOutputStream();
+	}
+	
+	private static String
+	getAddress(Server server) throws IOException {
+		if(server == null) throw new IOException("Not connected to a server");
+		return server.getAddress() == null ? "127.0.0.1" : server.getAddress();
+	}
+	
+	/**
+	 * Gets a print-only client, whose methods add the corresponding LSCP
+	 * commands to this pipeline instead of executing them. The return
+	 * values of the methods of the print-only client are meaningless.
+	 */
+	public Client
+	getCommandWriter() {
+		if(writer == null) {
+			writer = new Client(true);
+			writer.setPrintOnlyModeOutputStream(writerOut);
+		}
+		
+		return writer;
+	}
+	
+	/** Adds the specified LSCP command to this pipeline. */
+	public void
+	add(String command) {
+		flushCommandWriter();
+		commands.add(command);
+	}
+	
+	/** Gets the number of commands waiting to be executed. */
+	public int
+	getCommandCount() {
+		flushCommandWriter();
+		return commands.size();
+	}
+	
+	/** Moves the commands written by the print-only client to the pipeline. */
+	private void
+	flushCommandWriter() {
+		if(writerOut.size() == 0) return;
+		String s = new String(writerOut.toByteArray(), StandardCharsets.UTF_8);
+		writerOut.reset();
+		
+		for(String cmd : s.split("\r?\n")) {
+			if(cmd.trim().length() > 0) commands.add(cmd);
+		}
+	}
+	
+	/**
+	 * Sends all commands added to this pipeline and waits for their replies.
+	 * @return The replies, in the order the commands were added.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public Reply[]
+	execute() throws IOException {
+		flushCommandWriter();
+		String[] cmds = commands.toArray(new String[commands.size()]);
+		commands.removeAllElements();
+		
+		Reply[] replies = new Reply[cmds.length];
+		
+		for(int i = 0; i < cmds.length; i += WINDOW_SIZE) {
+			int end = Math.min(cmds.length, i + WINDOW_SIZE);
+			
+			StringBuilder sb = new StringBuilder();
+			for(int j = i; j < end; j++) sb.append(cmds[j]).append("\r\n");
+			out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			
+			for(int j = i; j < end; j++) replies[j] = new Reply(cmds[j], readReply());
+		}
+		
+		return replies;
+	}
+	
+	/**
+	 * Sends the specified query (like <code>GET CHANNEL INFO</code>), whose result
+	 * consists of multiple lines, and waits for the result. The query is not
+	 * pipelined and the commands added to this pipeline are not sent.
+	 * @return The lines of the result, without the terminating line.
+	 * @throws IOException If an I/O error occurs or the query failed.
+	 */
+	public String[]
+	query(String command) throws IOException {
+		out.write((command + "\r\n").getBytes(StandardCharsets.UTF_8));
+		out.flush();
+		
+		String s = readReply();
+		if(s.startsWith("ERR")) throw new IOException(command + ": " + s);
+		
+		Vector<String> lines = new Vector<String>();
+		for(; !s.equals("."); s = readReply()) lines.add(s);
+		return lines.toArray(new String[lines.size()]);
+	}
+	
+	private String
+	readReply() throws IOException {
+		while(true) {
+			String s = in.readLine();
+			if(s == null) throw new IOException("Connection closed by the backend");
+			if(!s.startsWith("NOTIFY:")) return s;
+		}
+	}
+	
+	/**
+	 * Gets a summary of the failed commands in the specified replies.
+	 * @return A summary of the failed commands, or
+	 * <code>null</code> if all commands succeeded.
+	 */
+	public static String
+	getErrorSummary(Reply[] replies) {
+		int errors = 0;
+		Reply first = null;
+		for(Reply r : replies) {
+			if(!r.isError()) continue;
+			if(first == null) first = r;
+			errors++;
+		}
+		
+		if(errors == 0) return null;
+		
+		String s = first.getCommand() + ": " + first.getMessage();
+		if(errors == 1) return s;
+		return s + " (" + errors + " of " + replies.length + " commands failed)";
+	}
+	
+	/** Closes the connection to the backend. */
+	@Override
+	public void
+	close() throws IOException {
+		try {
+			out.write("QUIT\r\n".getBytes(StandardCharsets.UTF_8));
+			out.flush();
+		} catch(IOException x) {
+			// the connection is closed anyway
+		} finally {
+			socket.close();
+		}
+	}
+}
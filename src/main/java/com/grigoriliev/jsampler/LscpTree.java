@@ -31,7 +31,9 @@ public class LscpTree {
 	static {
 		LscpNode add = new LscpNode("ADD");
 		LscpNode append = new LscpNode("APPEND");
-		LscpNode clear = new LscpNode("CLEAR", new LscpNode("MIDI_INSTRUMENTS", true, false));
+		LscpNode clear = new LscpNode (
+			"CLEAR", new LscpNode("MIDI_INSTRUMENTS", new LscpNode("ALL", true, false), true)
+		);
 		LscpNode copy = new LscpNode("COPY");
 		LscpNode create = new LscpNode("CREATE");
 		LscpNode destroy = new LscpNode("DESTROY");
@@ -375,6 +377,205 @@ public class LscpTree {
 		nodes[28] = new LscpNode("TOTAL_VOICE_COUNT", true, false);
 		nodes[29] = new LscpNode("VOICE_COUNT", true, false);
 		unsubscribe.setChildren(nodes);
+		
+		initParameters();
+	}
+	
+	/** Describes the parameters of the commands. */
+	private static void
+	initParameters() {
+		LscpParameter chn = LscpParameter.integer("sampler-channel");
+		LscpParameter dev = LscpParameter.integer("device-id");
+		LscpParameter map = LscpParameter.integer("map");
+		LscpParameter chain = LscpParameter.integer("effect-chain");
+		LscpParameter fx = LscpParameter.integer("fx-send-id");
+		LscpParameter dbDir = LscpParameter.string("db-dir");
+		LscpParameter dbInstr = LscpParameter.string("db-instr");
+		LscpParameter file = LscpParameter.string("filename");
+		LscpParameter driver = LscpParameter.identifier("driver");
+		LscpParameter param = LscpParameter.identifier("param");
+		LscpParameter kv = LscpParameter.keyValueList("key=value");
+		LscpParameter recursive = LscpParameter.keyword("RECURSIVE");
+		
+		setParameters("ADD DB_INSTRUMENT_DIRECTORY", dbDir);
+		LscpParameter[] addInstr = {
+			dbDir, file, LscpParameter.integer("instr-index").optional()
+		};
+		setParameters("ADD DB_INSTRUMENTS", addInstr);
+		setParameters("ADD DB_INSTRUMENTS NON_MODAL", addInstr);
+		LscpParameter[] scan = {
+			LscpParameter.keyword("FILE_AS_DIR"), dbDir, LscpParameter.string("fs-dir")
+		};
+		for(String mode : new String[] { "FLAT", "NON_RECURSIVE", "RECURSIVE" }) {
+			setParameters("ADD DB_INSTRUMENTS " + mode, scan);
+			setParameters("ADD DB_INSTRUMENTS NON_MODAL " + mode, scan);
+		}
+		setParameters("ADD MIDI_INSTRUMENT_MAP", LscpParameter.string("name").optional());
+		setParameters("ADD SEND_EFFECT_CHAIN", dev);
+		
+		LscpParameter instance = LscpParameter.integer("effect-instance");
+		setParameters("APPEND SEND_EFFECT_CHAIN EFFECT", dev, chain, instance);
+		setParameters("CLEAR MIDI_INSTRUMENTS", map);
+		
+		setParameters("COPY DB_INSTRUMENT", dbInstr, dbDir);
+		setParameters("COPY DB_INSTRUMENT_DIRECTORY", dbDir, dbDir);
+		
+		setParameters("CREATE AUDIO_OUTPUT_DEVICE", driver, kv.optional());
+		setParameters (
+			"CREATE EFFECT_INSTANCE",
+			LscpParameter.identifier("effect"),
+			LscpParameter.string("module").optional(),
+			LscpParameter.string("effect-name").optional()
+		);
+		setParameters (
+			"CREATE FX_SEND",
+			chn, LscpParameter.integer("midi-ctrl"), LscpParameter.string("name").optional()
+		);
+		setParameters("CREATE MIDI_INPUT_DEVICE", driver, kv.optional());
+		
+		setParameters("DESTROY AUDIO_OUTPUT_DEVICE", dev);
+		setParameters("DESTROY EFFECT_INSTANCE", instance);
+		setParameters("DESTROY FX_SEND", chn, fx);
+		setParameters("DESTROY MIDI_INPUT_DEVICE", dev);
+		
+		setParameters("EDIT CHANNEL INSTRUMENT", chn);
+		
+		LscpParameter criteria = LscpParameter.keyValueList("criteria");
+		setParameters("FIND DB_INSTRUMENT_DIRECTORIES", dbDir, criteria);
+		setParameters("FIND DB_INSTRUMENT_DIRECTORIES NON_RECURSIVE", dbDir, criteria);
+		setParameters("FIND DB_INSTRUMENTS", dbDir, criteria);
+		setParameters("FIND DB_INSTRUMENTS NON_RECURSIVE", dbDir, criteria);
+		
+		LscpParameter audioChn = LscpParameter.integer("audio-channel");
+		LscpParameter port = LscpParameter.integer("port");
+		LscpParameter ctrl = LscpParameter.integer("input-control");
+		setParameters("GET AUDIO_OUTPUT_CHANNEL INFO", dev, audioChn);
+		setParameters("GET AUDIO_OUTPUT_CHANNEL_PARAMETER INFO", dev, audioChn, param);
+		setParameters("GET AUDIO_OUTPUT_DEVICE INFO", dev);
+		setParameters("GET AUDIO_OUTPUT_DRIVER INFO", driver);
+		setParameters("GET AUDIO_OUTPUT_DRIVER_PARAMETER INFO", driver, param, kv.optional());
+		setParameters("GET CHANNEL BUFFER_FILL BYTES", chn);
+		setParameters("GET CHANNEL BUFFER_FILL PERCENTAGE", chn);
+		setParameters("GET CHANNEL INFO", chn);
+		setParameters("GET CHANNEL STREAM_COUNT", chn);
+		setParameters("GET CHANNEL VOICE_COUNT", chn);
+		setParameters("GET DB_INSTRUMENT INFO", dbInstr);
+		setParameters("GET DB_INSTRUMENT_DIRECTORIES", recursive, dbDir);
+		setParameters("GET DB_INSTRUMENT_DIRECTORY INFO", dbDir);
+		setParameters("GET DB_INSTRUMENTS", recursive, dbDir);
+		setParameters("GET DB_INSTRUMENTS_JOB INFO", LscpParameter.integer("job-id"));
+		setParameters("GET EFFECT INFO", LscpParameter.integer("effect-index"));
+		setParameters("GET EFFECT_INSTANCE INFO", instance);
+		setParameters("GET EFFECT_INSTANCE_INPUT_CONTROL INFO", instance, ctrl);
+		setParameters("GET ENGINE INFO", LscpParameter.identifier("engine-name"));
+		setParameters("GET FILE INSTRUMENT INFO", file, LscpParameter.integer("instr-index"));
+		setParameters("GET FILE INSTRUMENTS", file);
+		setParameters("GET FX_SEND INFO", chn, fx);
+		setParameters("GET FX_SENDS", chn);
+		setParameters("GET MIDI_INPUT_DEVICE INFO", dev);
+		setParameters("GET MIDI_INPUT_DRIVER INFO", driver);
+		setParameters("GET MIDI_INPUT_DRIVER_PARAMETER INFO", driver, param, kv.optional());
+		setParameters("GET MIDI_INPUT_PORT INFO", dev, port);
+		setParameters("GET MIDI_INPUT_PORT_PARAMETER INFO", dev, port, param);
+		LscpParameter bank = LscpParameter.integer("midi-bank");
+		LscpParameter prog = LscpParameter.integer("midi-prog");
+		setParameters("GET MIDI_INSTRUMENT INFO", map, bank, prog);
+		setParameters("GET MIDI_INSTRUMENT_MAP INFO", map);
+		setParameters("GET MIDI_INSTRUMENTS", map);
+		setParameters("GET SEND_EFFECT_CHAIN INFO", dev, chain);
+		setParameters("GET SEND_EFFECT_CHAINS", dev);
+		
+		LscpParameter pos = LscpParameter.integer("chain-pos");
+		setParameters("INSERT SEND_EFFECT_CHAIN EFFECT", dev, chain, pos, instance);
+		
+		setParameters("LIST DB_INSTRUMENT_DIRECTORIES", recursive, dbDir);
+		setParameters("LIST DB_INSTRUMENTS", recursive, dbDir);
+		setParameters("LIST FILE INSTRUMENTS", file);
+		setParameters("LIST FX_SENDS", chn);
+		setParameters("LIST MIDI_INSTRUMENTS", map.or("ALL"));
+		setParameters("LIST SEND_EFFECT_CHAINS", dev);
+		
+		LscpParameter engine = LscpParameter.identifier("engine-name");
+		setParameters("LOAD ENGINE", engine, chn);
+		LscpParameter index = LscpParameter.integer("instr-index");
+		setParameters("LOAD INSTRUMENT", file, index, chn);
+		setParameters("LOAD INSTRUMENT NON_MODAL", file, index, chn);
+		
+		setParameters (
+			"MAP MIDI_INSTRUMENT",
+			LscpParameter.keyword("NON_MODAL"), map, bank, prog, engine, file, index,
+			LscpParameter.number("volume"),
+			LscpParameter.identifier("instr-load-mode").optional(),
+			LscpParameter.string("entry-name").optional()
+		);
+		
+		setParameters("MOVE DB_INSTRUMENT", dbInstr, dbDir);
+		setParameters("MOVE DB_INSTRUMENT_DIRECTORY", dbDir, dbDir);
+		
+		setParameters("REMOVE CHANNEL", chn);
+		setParameters("REMOVE DB_INSTRUMENT", dbInstr);
+		setParameters("REMOVE DB_INSTRUMENT_DIRECTORY", dbDir);
+		setParameters("REMOVE DB_INSTRUMENT_DIRECTORY FORCE", dbDir);
+		setParameters("REMOVE FX_SEND EFFECT", chn, fx);
+		setParameters("REMOVE MIDI_INSTRUMENT_MAP", map);
+		setParameters("REMOVE SEND_EFFECT_CHAIN", dev, chain);
+		setParameters("REMOVE SEND_EFFECT_CHAIN EFFECT", dev, chain, pos);
+		
+		setParameters("RESET CHANNEL", chn);
+		
+		setParameters (
+			"SEND CHANNEL MIDI_DATA",
+			LscpParameter.identifier("midi-msg"), chn,
+			LscpParameter.integer("arg1"), LscpParameter.integer("arg2")
+		);
+		
+		setParameters("SET AUDIO_OUTPUT_CHANNEL_PARAMETER", dev, audioChn, kv);
+		setParameters("SET AUDIO_OUTPUT_DEVICE_PARAMETER", dev, kv);
+		setParameters("SET CHANNEL AUDIO_OUTPUT_CHANNEL", chn, audioChn, audioChn);
+		setParameters("SET CHANNEL AUDIO_OUTPUT_DEVICE", chn, dev);
+		setParameters("SET CHANNEL AUDIO_OUTPUT_TYPE", chn, driver);
+		LscpParameter midiChn = LscpParameter.integer("midi-chan").or("ALL");
+		setParameters("SET CHANNEL MIDI_INPUT", chn, dev, port, midiChn);
+		setParameters("SET CHANNEL MIDI_INPUT_CHANNEL", chn, midiChn);
+		setParameters("SET CHANNEL MIDI_INPUT_DEVICE", chn, dev);
+		setParameters("SET CHANNEL MIDI_INPUT_PORT", chn, port);
+		setParameters("SET CHANNEL MIDI_INPUT_TYPE", chn, driver);
+		setParameters("SET CHANNEL MIDI_INSTRUMENT_MAP", chn, map.or("NONE", "DEFAULT"));
+		setParameters("SET CHANNEL MUTE", chn, LscpParameter.bool("mute"));
+		setParameters("SET CHANNEL SOLO", chn, LscpParameter.bool("solo"));
+		setParameters("SET CHANNEL VOLUME", chn, LscpParameter.number("volume"));
+		LscpParameter desc = LscpParameter.string("desc");
+		LscpParameter name = LscpParameter.string("name");
+		setParameters("SET DB_INSTRUMENT DESCRIPTION", dbInstr, desc);
+		setParameters("SET DB_INSTRUMENT FILE_PATH", file, file);
+		setParameters("SET DB_INSTRUMENT NAME", dbInstr, name);
+		setParameters("SET DB_INSTRUMENT_DIRECTORY DESCRIPTION", dbDir, desc);
+		setParameters("SET DB_INSTRUMENT_DIRECTORY NAME", dbDir, name);
+		setParameters("SET ECHO", LscpParameter.bool("value"));
+		setParameters (
+			"SET EFFECT_INSTANCE_INPUT_CONTROL VALUE",
+			instance, ctrl, LscpParameter.number("value")
+		);
+		setParameters("SET FX_SEND AUDIO_OUTPUT_CHANNEL", chn, fx, audioChn, audioChn);
+		setParameters("SET FX_SEND EFFECT", chn, fx, chain, pos);
+		setParameters("SET FX_SEND LEVEL", chn, fx, LscpParameter.number("volume"));
+		setParameters("SET FX_SEND MIDI_CONTROLLER", chn, fx, LscpParameter.integer("midi-ctrl"));
+		setParameters("SET FX_SEND NAME", chn, fx, name);
+		setParameters("SET MIDI_INPUT_DEVICE_PARAMETER", dev, kv);
+		setParameters("SET MIDI_INPUT_PORT_PARAMETER", dev, port, kv);
+		setParameters("SET MIDI_INSTRUMENT_MAP NAME", map, name);
+		setParameters("SET STREAMS", LscpParameter.integer("max-streams"));
+		setParameters("SET VOICES", LscpParameter.integer("max-voices"));
+		setParameters("SET VOLUME", LscpParameter.number("volume"));
+		
+		setParameters("UNMAP MIDI_INSTRUMENT", map, bank, prog);
+	}
+	
+	private static void
+	setParameters(String cmd, LscpParameter... parameters) {
+		LscpNode node = rootNode;
+		for(String s : cmd.split(" ")) node = node.getChild(s);
+		node.setParameters(parameters);
 	}
 	
 	/** Forbits the instantiation of this class. */
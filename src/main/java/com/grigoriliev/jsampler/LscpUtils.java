@@ -67,13 +67,7 @@ public class LscpUtils {
 	}
 	
 	private static LscpNode
-	checkCommand(String s, LscpNode node) {
-		for(LscpNode n : node.getChildren()) {
-			if(n.getName().equals(s)) return n;
-		}
-		
-		return null;
-	}
+	checkCommand(String s, LscpNode node) { return node.getChild(s); }
 	
 	private static boolean
 	checkPartialCommand(String s, LscpNode node) {
@@ -0,0 +1,292 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import java.util.Vector;
+
+
+/**
+ * Checks the syntax of LSCP commands and scripts locally, using the keywords
+ * from {@link LscpTree} and the parameter descriptors of the command nodes,
+ * so that malformed commands are found before they are sent to the backend.
+ * Commands, whose parameters are not described, are checked by keywords only.
+ * Instances of this class are not thread-safe.
+ * @author Grigor Iliev
+ */
+public class LscpValidator {
+	/** Describes a syntax error found in an LSCP command. */
+	public static class SyntaxError {
+		private final int line;
+		private final int column;
+		private final String message;
+		
+		/**
+		 * Creates a new instance of <code>SyntaxError</code>.
+		 * @param line The line number (starting from 1).
+		 * @param column The column number (starting from 1).
+		 * @param message The error message.
+		 */
+		public
+		SyntaxError(int line, int column, String message) {
+			this.line = line;
+			this.column = column;
+			this.message = message;
+		}
+		
+		/** Gets the line number (starting from 1) where the error is found. */
+		public int
+		getLine() { return line; }
+		
+		/** Gets the column number (starting from 1) where the error is found. */
+		public int
+		getColumn() { return column; }
+		
+		/** Gets the error message. */
+		public String
+		getMessage() { return message; }
+		
+		@Override
+		public String
+		toString() { return line + ":" + column + ": " + message; }
+	}
+	
+	/** Used to handle the errors found while validating a script. */
+	public static interface ErrorHandler {
+		/** Invoked when a syntax error is found. */
+		public void syntaxError(SyntaxError e);
+	}
+	
+	private String[] tokens = new String[16];
+	private int[] columns = new int[16];
+	private int tokenCount = 0;
+	
+	/** Creates a new instance of <code>LscpValidator</code>. */
+	public
+	LscpValidator() { }
+	
+	/**
+	 * Checks the syntax of all commands in the specified script.
+	 * @param in The script to be checked.
+	 * @return All syntax errors found in the script (at most one per line).
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public static SyntaxError[]
+	validateScript(Reader in) throws IOException {
+		final Vector<SyntaxError> v = new Vector<SyntaxError>();
+		new LscpValidator().validate(in, new ErrorHandler() {
+			public void
+			syntaxError(SyntaxError e) { v.add(e); }
+		});
+		
+		return v.toArray(new SyntaxError[v.size()]);
+	}
+	
+	/**
+	 * Checks the syntax of all commands read from the specified stream
+	 * and notifies the specified handler for each invalid command.
+	 * The script is processed line by line, without being loaded in the memory.
+	 * @param in The script to be checked.
+	 * @param handler The handler to be notified for the errors.
+	 * @return The number of invalid commands.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public int
+	validate(Reader in, ErrorHandler handler) throws IOException {
+		BufferedReader br = in instanceof BufferedReader ?
+			(BufferedReader)in : new BufferedReader(in);
+		
+		int errors = 0;
+		int lineNumber = 0;
+		
+		for(String s = br.readLine(); s != null; s = br.readLine()) {
+			lineNumber++;
+			SyntaxError e = validate(s, lineNumber);
+			if(e == null) continue;
+			errors++;
+			if(handler != null) handler.syntaxError(e);
+		}
+		
+		return errors;
+	}
+	
+	/**
+	 * Checks the syntax of the specified command.
+	 * @param cmd The command to be checked.
+	 * @return The syntax error found in the command or
+	 * <code>null</code> if the command is valid.
+	 */
+	public SyntaxError
+	validate(String cmd) { return validate(cmd, 1); }
+	
+	/**
+	 * Checks the syntax of the specified command.
+	 * @param cmd The command to be checked.
+	 * @param line The line number to be used when reporting errors.
+	 * @return The syntax error found in the command or
+	 * <code>null</code> if the command is valid, empty or a comment.
+	 */
+	public SyntaxError
+	validate(String cmd, int line) {
+		SyntaxError err = tokenize(cmd, line);
+		if(err != null) return err;
+		if(tokenCount == 0) return null;
+		
+		int endColumn = cmd.length() + 1;
+		LscpNode node = LscpTree.getRoot();
+		int i = 0;
+		
+		for(; i < tokenCount; i++) {
+			LscpNode n = node.getChild(tokens[i]);
+			if(n == null) break;
+			node = n;
+		}
+		
+		if(i == 0) {
+			return new SyntaxError(line, columns[0], "Unknown command: " + tokens[0]);
+		}
+		
+		if(!node.isEndOfACommand()) {
+			if(i == tokenCount) {
+				return new SyntaxError(line, endColumn, "Incomplete command");
+			}
+			
+			return new SyntaxError(line, columns[i], "Unknown keyword: " + tokens[i]);
+		}
+		
+		if(!node.hasParameters()) {
+			if(i == tokenCount) return null;
+			return new SyntaxError(line, columns[i], "Unexpected parameter: " + tokens[i]);
+		}
+		
+		LscpParameter[] params = node.getParameters();
+		if(params == null) return null;
+		
+		return checkParameters(params, i, line, endColumn);
+	}
+	
+	private SyntaxError
+	checkParameters(LscpParameter[] params, int i, int line, int endColumn) {
+		for(LscpParameter p : params) {
+			if(i == tokenCount) {
+				if(p.isOptional()) continue;
+				return new SyntaxError(line, endColumn, "Missing parameter " + describe(p));
+			}
+			
+			if(p.getType() == LscpParameter.Type.KEY_VALUE_LIST) {
+				for(; i < tokenCount; i++) {
+					if(!p.accepts(tokens[i])) {
+						return new SyntaxError (
+							line, columns[i], "Expected " + describe(p) + ": " + tokens[i]
+						);
+					}
+				}
+				
+				break;
+			}
+			
+			if(p.accepts(tokens[i])) {
+				i++;
+			} else if(!p.isOptional()) {
+				return new SyntaxError (
+					line, columns[i], "Expected " + describe(p) + ": " + tokens[i]
+				);
+			}
+		}
+		
+		if(i < tokenCount) {
+			return new SyntaxError(line, columns[i], "Unexpected parameter: " + tokens[i]);
+		}
+		
+		return null;
+	}
+	
+	private static String
+	describe(LscpParameter p) {
+		return p.toString() + " (" + p.getType().getDescription() + ")";
+	}
+	
+	/**
+	 * Splits the specified command into tokens. The quoted strings
+	 * (including the quoted values of <code>key=value</code> pairs) are
+	 * kept as a single token together with the enclosing quotes.
+	 */
+	private SyntaxError
+	tokenize(String cmd, int line) {
+		tokenCount = 0;
+		int len = cmd.length();
+		int i = 0;
+		
+		while(i < len && Character.isWhitespace(cmd.charAt(i))) i++;
+		if(i < len && cmd.charAt(i) == '#') return null;
+		
+		while(i < len) {
+			int start = i;
+			
+			while(i < len) {
+				char c = cmd.charAt(i);
+				if(c == ' ' || c == '\t') break;
+				
+				if(c == '\'' || c == '"') {
+					int quote = i;
+					for(i++; i < len; i++) {
+						char c2 = cmd.charAt(i);
+						if(c2 == '\\') i++;
+						else if(c2 == c) break;
+					}
+					
+					if(i >= len) {
+						return new SyntaxError(line, quote + 1, "Unterminated string");
+					}
+				}
+				
+				i++;
+			}
+			
+			addToken(cmd.substring(start, i), start + 1);
+			
+			while(i < len && Character.isWhitespace(cmd.charAt(i))) i++;
+		}
+		
+		return null;
+	}
+	
+	private void
+	addToken(String token, int column) {
+		if(tokenCount == tokens.length) {
+			String[] t = new String[tokenCount * 2];
+			System.arraycopy(tokens, 0, t, 0, tokenCount);
+			tokens = t;
+			
+			int[] c = new int[tokenCount * 2];
+			System.arraycopy(columns, 0, c, 0, tokenCount);
+			columns = c;
+		}
+		
+		tokens[tokenCount] = token;
+		columns[tokenCount] = column;
+		tokenCount++;
+	}
+}
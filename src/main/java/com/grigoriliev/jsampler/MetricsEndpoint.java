@@ -0,0 +1,182 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Locale;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A minimal HTTP endpoint, which publishes the notification and task metrics
+ * as plain text (in the Prometheus text exposition format) at
+ * <code>http://127.0.0.1:&lt;port&gt;/metrics</code>.
+ * The endpoint accepts connections on the loopback interface only.
+ * @see JSPrefs#METRICS_HTTP_PORT
+ * @author Grigor Iliev
+ */
+public class MetricsEndpoint {
+	private HttpServer server = null;
+	
+	/** Creates a new instance of <code>MetricsEndpoint</code>. */
+	public
+	MetricsEndpoint() { }
+	
+	/**
+	 * Starts the endpoint on the specified port. If the endpoint is
+	 * already started on another port, it is restarted.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public synchronized void
+	start(int port) throws IOException {
+		if(server != null) {
+			if(server.getAddress().getPort() == port) return;
+			stop();
+		}
+		
+		InetSocketAddress addr = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+		server = HttpServer.create(addr, 0);
+		server.createContext("/metrics", new HttpHandler() {
+			public void
+			handle(HttpExchange e) throws IOException {
+				byte[] b = getMetricsText().getBytes(StandardCharsets.UTF_8);
+				e.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+				e.sendResponseHeaders(200, b.length);
+				OutputStream out = e.getResponseBody();
+				out.write(b);
+				out.close();
+			}
+		});
+		
+		// The default executor handles the requests in the dispatcher thread
+		server.start();
+	}
+	
+	/** Stops the endpoint. */
+	public synchronized void
+	stop() {
+		if(server == null) return;
+		server.stop(0);
+		server = null;
+	}
+	
+	/** Determines whether the endpoint is started. */
+	public synchronized boolean
+	isStarted() { return server != null; }
+	
+	/** Gets the current notification and task metrics in the Prometheus text format. */
+	public static String
+	getMetricsText() {
+		StringBuilder sb = new StringBuilder();
+		NotificationMetrics nm = CC.getNotificationMetrics();
+		
+		sb.append("# TYPE jsampler_notifications_received_total counter\n");
+		for(NotificationMetrics.Type t : NotificationMetrics.Type.values()) {
+			append(sb, "jsampler_notifications_received_total", "type", t.name(), nm.getReceivedCount(t));
+		}
+		
+		sb.append("# TYPE jsampler_notifications_coalesced_total counter\n");
+		for(NotificationMetrics.Type t : NotificationMetrics.Type.values()) {
+			append(sb, "jsampler_notifications_coalesced_total", "type", t.name(), nm.getCoalescedCount(t));
+		}
+		
+		sb.append("# TYPE jsampler_notifications_per_second gauge\n");
+		for(NotificationMetrics.Type t : NotificationMetrics.Type.values()) {
+			append(sb, "jsampler_notifications_per_second", "type", t.name(), nm.getRate(t));
+		}
+		
+		sb.append("# TYPE jsampler_task_queue_length gauge\n");
+		append(sb, "jsampler_task_queue_length", null, null, nm.getTaskQueueLength());
+		sb.append("# TYPE jsampler_task_queue_length_max gauge\n");
+		append(sb, "jsampler_task_queue_length_max", null, null, nm.getMaxTaskQueueLength());
+		sb.append("# TYPE jsampler_ui_lag_milliseconds gauge\n");
+		append(sb, "jsampler_ui_lag_milliseconds", null, null, nm.getUiLag());
+		sb.append("# TYPE jsampler_ui_lag_milliseconds_max gauge\n");
+		append(sb, "jsampler_ui_lag_milliseconds_max", null, null, nm.getMaxUiLag());
+		
+		TaskStatistics[] stats = CC.getTaskMetrics().getStatistics();
+		if(stats.length == 0) return sb.toString();
+		
+		sb.append("# TYPE jsampler_task_executions_total counter\n");
+		for(TaskStatistics s : stats) {
+			append(sb, "jsampler_task_executions_total", "task", s.getTaskClass(), s.getExecutionCount());
+		}
+		
+		sb.append("# TYPE jsampler_task_errors_total counter\n");
+		for(TaskStatistics s : stats) {
+			append(sb, "jsampler_task_errors_total", "task", s.getTaskClass(), s.getErrorCount());
+		}
+		
+		sb.append("# TYPE jsampler_task_round_trips_total counter\n");
+		for(TaskStatistics s : stats) {
+			append(sb, "jsampler_task_round_trips_total", "task", s.getTaskClass(), s.getRoundTrips());
+		}
+		
+		sb.append("# TYPE jsampler_task_queue_time_microseconds summary\n");
+		for(TaskStatistics s : stats) {
+			appendSummary(sb, "jsampler_task_queue_time_microseconds", s, s.getQueueTimeHistogram());
+		}
+		
+		sb.append("# TYPE jsampler_task_execution_time_microseconds summary\n");
+		for(TaskStatistics s : stats) {
+			appendSummary (
+				sb, "jsampler_task_execution_time_microseconds", s, s.getExecutionTimeHistogram()
+			);
+		}
+		
+		return sb.toString();
+	}
+	
+	private static void
+	appendSummary(StringBuilder sb, String name, TaskStatistics s, LatencyHistogram h) {
+		String task = "task=\"" + s.getTaskClass() + "\"";
+		for(double q : new double[] { 0.5, 0.9, 0.99 }) {
+			sb.append(name).append('{').append(task).append(",quantile=\"").append(q).append("\"} ");
+			sb.append(h.getValueAtPercentile(q * 100) / 1000).append('\n');
+		}
+		
+		sb.append(name).append("_sum{").append(task).append("} ");
+		sb.append(h.getSum() / 1000).append('\n');
+		
+		sb.append(name).append("_count{").append(task).append("} ");
+		sb.append(h.getTotalCount()).append('\n');
+	}
+	
+	private static void
+	append(StringBuilder sb, String name, String label, String value, Object n) {
+		sb.append(name);
+		if(label != null) sb.append('{').append(label).append("=\"").append(value).append("\"}");
+		sb.append(' ');
+		if(n instanceof Double) sb.append(String.format(Locale.ROOT, "%.2f", n));
+		else sb.append(n);
+		sb.append('\n');
+	}
+}
@@ -25,7 +25,6 @@ import java.util.Vector;
 
 import com.grigoriliev.jsampler.event.MidiInstrumentEvent;
 import com.grigoriliev.jsampler.event.MidiInstrumentListener;
-import com.grigoriliev.jsampler.juife.PDUtils;
 
 import com.grigoriliev.jsampler.jlscp.MidiInstrumentInfo;
 
@@ -153,7 +152,7 @@ public class MidiInstrument {
 	fireInfoChanged() {
 		final MidiInstrumentEvent e = new MidiInstrumentEvent(this);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		CC.runOnUiThread(new Runnable() {
 			public void
 			run() { fireInfoChanged(e); }
 		});
@@ -26,7 +26,6 @@ import java.util.Vector;
 
 import com.grigoriliev.jsampler.event.MidiInstrumentMapEvent;
 import com.grigoriliev.jsampler.event.MidiInstrumentMapListener;
-import com.grigoriliev.jsampler.juife.PDUtils;
 
 import com.grigoriliev.jsampler.jlscp.MidiInstrumentEntry;
 import com.grigoriliev.jsampler.jlscp.MidiInstrumentMapInfo;
@@ -288,7 +287,7 @@ public class MidiInstrumentMap {
 	fireNameChanged() {
 		final MidiInstrumentMapEvent e = new MidiInstrumentMapEvent(this);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		CC.runOnUiThread(new Runnable() {
 			public void
 			run() { fireNameChanged(e); }
 		});
@@ -310,7 +309,7 @@ public class MidiInstrumentMap {
 		final MidiInstrumentMapEvent e =
 			new MidiInstrumentMapEvent(this, entry, instrument);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		CC.runOnUiThread(new Runnable() {
 			public void
 			run() { fireInstrumentAdded(e); }
 		});
@@ -334,7 +333,7 @@ public class MidiInstrumentMap {
 		final MidiInstrumentMapEvent e =
 			new MidiInstrumentMapEvent(this, entry, instrument);
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		CC.runOnUiThread(new Runnable() {
 			public void
 			run() { fireInstrumentRemoved(e); }
 		});
@@ -0,0 +1,567 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+
+package com.grigoriliev.jsampler;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.Vector;
+import java.util.logging.Level;
+
+import com.grigoriliev.jsampler.juife.TaskQueue;
+
+import com.grigoriliev.jsampler.juife.event.GenericEvent;
+import com.grigoriliev.jsampler.juife.event.GenericListener;
+import com.grigoriliev.jsampler.juife.event.TaskEvent;
+import com.grigoriliev.jsampler.juife.event.TaskListener;
+
+import com.grigoriliev.jsampler.ConnectionManager.TrafficClass;
+
+import com.grigoriliev.jsampler.task.Audio;
+import com.grigoriliev.jsampler.task.Channel;
+import com.grigoriliev.jsampler.task.EnhancedTask;
+import com.grigoriliev.jsampler.task.Midi;
+import com.grigoriliev.jsampler.task.MirroredTask;
+
+
+/**
+ * Mirrors the session state to a group of backends (specified by
+ * {@link JSPrefs#MIRROR_SERVERS}), each of which is controlled by
+ * its own {@link SamplerSession}.
+ *
+ * <p>For each mutating task of the mirrored types (see {@link #addMirroredTask}),
+ * successfully executed by the default session, a new task making the same change
+ * is added to the task queue of each mirror, so that the mirrors are updated
+ * concurrently. Each mirror keeps a log of the tasks not acknowledged yet, which
+ * is replayed when the connection to a lagging mirror is established again.
+ * When the log overflows or when a task addresses an object not created on the
+ * mirror yet, the changes of the state of the default session are applied to the
+ * mirror (see {@link BackendStateSync}). When a mirror rejects a task or when the
+ * periodic comparison of the states (exported as LSCP scripts) shows that a mirror
+ * has diverged, the whole state is applied again.</p>
+ *
+ * <p>The tasks address the channels and the devices by ID, which are
+ * translated to the IDs on the mirror, taken from the replies of the mirror
+ * during the resynchronization. The tasks not mirrored (adding and removing
+ * channels, for example) are propagated by the resynchronization.</p>
+ * @author Grigor Iliev
+ */
+public class MirrorGroup {
+	/** The maximum number of unacknowledged tasks kept for a mirror. */
+	private static final int MAX_LOG_SIZE = 1000;
+	
+	/**
+	 * The number of consecutive state mismatches, after which the mirror
+	 * is considered diverged (the notifications may be still in transit).
+	 */
+	private static final int MISMATCH_THRESHOLD = 2;
+	
+	private final Vector<Class<? extends EnhancedTask>> mirroredTasks =
+		new Vector<Class<? extends EnhancedTask>>();
+	
+	private final Vector<Mirror> mirrors = new Vector<Mirror>();
+	
+	private Timer timer = null;
+	
+	/** Determines whether the active server is connected and its state is retrieved. */
+	private boolean primaryConnected = false;
+	
+	/** Creates a new instance of <code>MirrorGroup</code>. */
+	public
+	MirrorGroup() {
+		addMirroredTask(Channel.SetVolume.class);
+		addMirroredTask(Channel.SetMute.class);
+		addMirroredTask(Channel.SetSolo.class);
+		addMirroredTask(Channel.LoadEngine.class);
+		addMirroredTask(Channel.LoadInstrument.class);
+		addMirroredTask(Channel.SetMidiInputChannel.class);
+		addMirroredTask(Channel.SetMidiInputDevice.class);
+		addMirroredTask(Channel.SetMidiInputPort.class);
+		addMirroredTask(Channel.SetAudioOutputDevice.class);
+		addMirroredTask(Channel.SetAudioOutputChannel.class);
+		addMirroredTask(Channel.SetMidiInstrumentMap.class);
+		addMirroredTask(Channel.SetFxSendName.class);
+		addMirroredTask(Channel.SetFxSendLevel.class);
+		addMirroredTask(Channel.SetFxSendMidiController.class);
+		
+		addMirroredTask(Audio.EnableDevice.class);
+		addMirroredTask(Audio.SetDeviceParameter.class);
+		addMirroredTask(Audio.SetChannelCount.class);
+		addMirroredTask(Audio.SetChannelParameter.class);
+		
+		addMirroredTask(Midi.EnableDevice.class);
+		addMirroredTask(Midi.SetDeviceParameter.class);
+		addMirroredTask(Midi.SetPortCount.class);
+		addMirroredTask(Midi.SetPortParameter.class);
+	}
+	
+	/**
+	 * Registers the connection listeners, which start the mirroring.
+	 * Should be invoked once, when the application is initialized.
+	 */
+	void
+	init() {
+		CC.addReconnectListener(new GenericListener() {
+			public void
+			jobDone(GenericEvent e) { setPrimaryConnected(false); }
+		});
+		
+		CC.addConnectionEstablishedListener(new GenericListener() {
+			public void
+			jobDone(GenericEvent e) {
+				setPrimaryConnected(true);
+				start();
+			}
+		});
+	}
+	
+	/**
+	 * Adds the specified task type to the mirrored ones. The tasks of this type
+	 * should create the tasks, which make their changes on the mirrors
+	 * (see {@link EnhancedTask#createMirrorTask}).
+	 */
+	public void
+	addMirroredTask(Class<? extends EnhancedTask> c) {
+		if(!mirroredTasks.contains(c)) mirroredTasks.add(c);
+	}
+	
+	/** Removes the specified task type from the mirrored ones. */
+	public void
+	removeMirroredTask(Class<? extends EnhancedTask> c) { mirroredTasks.remove(c); }
+	
+	/** Determines whether the tasks of the specified type are mirrored. */
+	public boolean
+	isMirroredTask(Class<?> c) { return mirroredTasks.contains(c); }
+	
+	/** Determines whether the mirroring is enabled. */
+	public boolean
+	isEnabled() { return !getConfiguredServers().isEmpty(); }
+	
+	/** Gets the mirrors of the group. */
+	public Mirror[]
+	getMirrors() { return mirrors.toArray(new Mirror[mirrors.size()]); }
+	
+	private synchronized void
+	setPrimaryConnected(boolean b) { primaryConnected = b; }
+	
+	private synchronized boolean
+	isPrimaryConnected() { return primaryConnected; }
+	
+	/** Gets the mirror servers, excluding the active server. */
+	private Vector<Server>
+	getConfiguredServers() {
+		Vector<Server> v = new Vector<Server>();
+		String s = CC.preferences().getStringProperty(JSPrefs.MIRROR_SERVERS);
+		if(s == null) return v;
+		
+		for(String idx : s.split(",")) {
+			idx = idx.trim();
+			if(idx.length() == 0) continue;
+			
+			int i;
+			try { i = Integer.parseInt(idx); }
+			catch(NumberFormatException x) {
+				CC.getLogger().info("Invalid mirror server index: " + idx);
+				continue;
+			}
+			
+			if(i < 0 || i >= CC.getServerList().getServerCount()) continue;
+			
+			Server srv = CC.getServerList().getServer(i);
+			if(srv != CC.getCurrentServer() && !v.contains(srv)) v.add(srv);
+		}
+		
+		return v;
+	}
+	
+	/**
+	 * Opens the sessions with the mirrors and starts the periodic checks,
+	 * if the mirroring is enabled. Should be invoked from the UI thread.
+	 */
+	public synchronized void
+	start() {
+		if(timer != null || !isEnabled()) return;
+		
+		for(Server s : getConfiguredServers()) mirrors.add(new Mirror(CC.openSession(s)));
+		
+		int interval = CC.preferences().getIntProperty(JSPrefs.MIRROR_CHECK_INTERVAL);
+		interval = Math.max(interval, 1) * 1000;
+		
+		timer = new Timer("Mirror-Group", true);
+		timer.schedule(new TimerTask() {
+			public void
+			run() { check(); }
+		}, interval, interval);
+	}
+	
+	/** Stops the mirroring and closes the sessions with the mirrors. */
+	public synchronized void
+	stop() {
+		if(timer == null) return;
+		timer.cancel();
+		timer = null;
+		
+		for(Mirror m : getMirrors()) CC.closeSession(m.getSession());
+		mirrors.removeAllElements();
+	}
+	
+	/**
+	 * Invoked when the specified task is successfully executed.
+	 * If the task is executed by the control connection of the default session and
+	 * its type is mirrored, the task is added to the task queues of the mirrors.
+	 */
+	public void
+	taskExecuted(EnhancedTask t) {
+		if(mirrors.isEmpty() || t instanceof MirroredTask) return;
+		if(t.getTrafficClass() != TrafficClass.CONTROL) return;
+		if(ConnectionManager.getTrafficClass() != TrafficClass.CONTROL) return;
+		
+		if(!t.getSession().isDefault()) return;
+		if(!isMirroredTask(t.getClass())) return;
+		
+		for(Mirror m : getMirrors()) m.add(t);
+	}
+	
+	private void
+	check() {
+		if(!isPrimaryConnected()) return;
+		
+		for(Mirror m : getMirrors()) {
+			try { m.check(); }
+			catch(Exception x) { CC.getLogger().log(Level.INFO, HF.getErrorMessage(x), x); }
+		}
+	}
+	
+	/**
+	 * Exports the state of the active server, unless it is still being retrieved.
+	 * Invoked from the UI thread.
+	 */
+	private String
+	getPrimaryState() {
+		if(!isPrimaryConnected() || !isIdle(CC.getDefaultSession())) return null;
+		return JSUtils.exportSessionStateToLscpScript();
+	}
+	
+	private static boolean
+	isIdle(SamplerSession s) {
+		TaskQueue q = s.getTaskQueue();
+		return q.getRunningTask() == null && q.getPendingTasks().length == 0;
+	}
+	
+	/** A backend, to which the session state is mirrored. */
+	public class Mirror {
+		private final SamplerSession session;
+		
+		/** The tasks not acknowledged by the mirror yet. */
+		private final LinkedList<EnhancedTask> log = new LinkedList<EnhancedTask>();
+		
+		/** Determines whether the tasks are only logged, to be replayed later. */
+		private boolean lagging = true;
+		
+		/** The mirror is resynchronized when it is connected for the first time. */
+		private boolean resyncPending = true;
+		
+		private boolean divergent = false;
+		private int mismatches = 0;
+		
+		private long sentCount = 0;
+		private long ackedCount = 0;
+		private long failedCount = 0;
+		private int resyncCount = 0;
+		
+		private final TaskListener ackListener = new AckListener();
+		
+		/** Applies the state of the active server and maps its IDs to the IDs of this mirror. */
+		private final BackendStateSync sync;
+		
+		Mirror(SamplerSession session) {
+			this.session = session;
+			
+			sync = new BackendStateSync(session.getServer()) {
+				protected boolean
+				isPrimaryReady() {
+					if(!isPrimaryConnected() || !isIdle(CC.getDefaultSession())) return false;
+					
+					// the tasks executed so far are included in the exported state
+					synchronized(Mirror.this) {
+						log.clear();
+						lagging = true;
+					}
+					
+					return true;
+				}
+			};
+			
+			session.addConnectionEstablishedListener(new GenericListener() {
+				public void
+				jobDone(GenericEvent e) { onConnected(); }
+			});
+		}
+		
+		/** Gets the session with this mirror. */
+		public SamplerSession
+		getSession() { return session; }
+		
+		/** Gets the backend of this mirror. */
+		public Server
+		getServer() { return session.getServer(); }
+		
+		/** Gets the number of the tasks not acknowledged by this mirror yet. */
+		public synchronized int
+		getPendingCount() { return log.size(); }
+		
+		/** Gets the number of the tasks sent to this mirror, including the replayed ones. */
+		public synchronized long
+		getSentCount() { return sentCount; }
+		
+		/** Gets the number of the tasks acknowledged by this mirror. */
+		public synchronized long
+		getAckedCount() { return ackedCount; }
+		
+		/** Gets the number of the tasks rejected by this mirror. */
+		public synchronized long
+		getFailedCount() { return failedCount; }
+		
+		/** Gets the number of the resynchronizations of this mirror. */
+		public synchronized int
+		getResyncCount() { return resyncCount; }
+		
+		/** Determines whether this mirror is disconnected or waits to be resynchronized. */
+		public synchronized boolean
+		isLagging() { return lagging; }
+		
+		/** Determines whether the last state comparison showed that this mirror has diverged. */
+		public synchronized boolean
+		isDivergent() { return divergent; }
+		
+		/** Determines whether all tasks are acknowledged by this mirror. */
+		public synchronized boolean
+		isInSync() { return !lagging && !resyncPending && !divergent && log.isEmpty(); }
+		
+		private synchronized boolean
+		isResyncPending() { return resyncPending; }
+		
+		private synchronized void
+		add(EnhancedTask t) {
+			if(log.size() >= MAX_LOG_SIZE) {
+				// the tasks can't be replayed anymore
+				if(!resyncPending) CC.getLogger().info("Mirror log overflow: " + session);
+				log.clear();
+				resyncPending = true;
+				lagging = true;
+			}
+			
+			log.add(t);
+			
+			if(!lagging && !session.isConnected()) lagging = true;
+			if(!lagging) send(t);
+		}
+		
+		/**
+		 * Adds to the task queue of the mirror a new task, which makes the change of
+		 * the specified task. Should be invoked with the monitor of this mirror held.
+		 * @return <code>false</code> if the task addresses an object not created on
+		 * the mirror yet, in which case the mirror is resynchronized.
+		 */
+		private boolean
+		send(EnhancedTask t) {
+			EnhancedTask mirrorTask = t.createMirrorTask(sync);
+			
+			if(mirrorTask == null) {
+				// the changes are applied by the resynchronization
+				if(!resyncPending) {
+					CC.getLogger().info(session + ": " + t.getDescription() + " not mirrored");
+				}
+				log.clear();
+				resyncPending = true;
+				lagging = true;
+				return false;
+			}
+			
+			MirroredTask mt = new MirroredTask(t, mirrorTask);
+			mt.addTaskListener(ackListener);
+			sentCount++;
+			session.getTaskQueue().add(mt);
+			return true;
+		}
+		
+		/** Removes the specified task from the log. */
+		private boolean
+		removeFromLog(EnhancedTask t) {
+			Iterator<EnhancedTask> it = log.iterator();
+			while(it.hasNext()) {
+				if(it.next() == t) {
+					it.remove();
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		/** Replays the logged tasks (invoked from the UI thread). */
+		private void
+		onConnected() {
+			int n = 0;
+			
+			synchronized(this) {
+				// the mirror is resynchronized by the timer
+				if(resyncPending) return;
+				
+				lagging = false;
+				for(EnhancedTask t : log.toArray(new EnhancedTask[log.size()])) {
+					if(!send(t)) break;
+					n++;
+				}
+			}
+			
+			if(n > 0) CC.getLogger().info(session + ": " + n + " tasks replayed");
+		}
+		
+		/** Invoked periodically from the timer thread. */
+		private void
+		check() throws Exception {
+			if(session.isClosed()) return;
+			
+			if(!session.isConnected()) {
+				synchronized(this) { lagging = true; }
+				
+				if(BackendProbe.isReady(getServer(), BackendProbe.DEFAULT_TIMEOUT)) {
+					session.connect();
+				}
+				
+				return;
+			}
+			
+			if(isResyncPending()) resync();
+			else compare();
+		}
+		
+		/** Compares the state of this mirror with the state of the active server. */
+		private void
+		compare() throws Exception {
+			// 0 - not compared, 1 - equal, 2 - different
+			final int[] result = new int[1];
+			
+			CC.runOnUiThreadAndWait(new Runnable() {
+				public void
+				run() {
+					synchronized(Mirror.this) { if(lagging || !log.isEmpty()) return; }
+					if(!isIdle(session)) return;
+					
+					String primary = getPrimaryState();
+					if(primary == null) return;
+					
+					final String[] mirror = new String[1];
+					session.run(new Runnable() {
+						public void
+						run() { mirror[0] = JSUtils.exportSessionStateToLscpScript(); }
+					});
+					
+					result[0] = primary.equals(mirror[0]) ? 1 : 2;
+				}
+			});
+			
+			if(result[0] == 0) return;
+			
+			synchronized(this) {
+				if(result[0] == 1) {
+					mismatches = 0;
+					divergent = false;
+					return;
+				}
+				
+				if(++mismatches < MISMATCH_THRESHOLD) return;
+				
+				divergent = true;
+				resyncPending = true;
+				lagging = true;
+			}
+			
+			CC.getLogger().warning(session + " has diverged");
+			sync.invalidate();
+			resync();
+		}
+		
+		/** Applies the changes of the state of the active server to this mirror. */
+		private void
+		resync() throws Exception {
+			try {
+				// the state of the active server can't be exported at the moment
+				if(!sync.synchronize()) return;
+			} catch(Exception x) {
+				sync.invalidate();
+				CC.getLogger().info (
+					"Failed to synchronize " + session + ": " + HF.getErrorMessage(x)
+				);
+				return;
+			}
+			
+			synchronized(this) {
+				resyncPending = false;
+				divergent = false;
+				mismatches = 0;
+				resyncCount++;
+			}
+			
+			CC.getLogger().info(session + " synchronized");
+			
+			// retrieves the new state and replays the tasks executed meanwhile
+			session.connect();
+		}
+		
+		/** Tracks the acknowledgements (invoked from the UI thread). */
+		private class AckListener implements TaskListener {
+			public void
+			taskPerformed(TaskEvent e) {
+				MirroredTask mt = (MirroredTask)e.getSource();
+				
+				synchronized(Mirror.this) {
+					if(!mt.doneWithErrors()) {
+						if(removeFromLog(mt.getTask())) ackedCount++;
+						return;
+					}
+					
+					// the task is replayed when the connection is established again
+					if(mt.getErrorCode() == EnhancedTask.SOCKET_ERROR) {
+						lagging = true;
+						return;
+					}
+					
+					failedCount++;
+					removeFromLog(mt.getTask());
+					
+					// the state of the mirror is unknown
+					sync.invalidate();
+					
+					if(resyncPending) return;
+					resyncPending = true;
+					lagging = true;
+				}
+				
+				CC.getLogger().info(session + ": " + mt.getErrorMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Collects the metrics of the notifications received from the backend: the
+ * number of received notifications and the rate per notification type, the
+ * number of notifications coalesced with pending updates, the length of the
+ * task queue and the lag of the UI thread. The rates, the task queue length
+ * and the UI lag are sampled once per second while the metrics are enabled
+ * (see {@link JSPrefs#NOTIFICATION_METRICS}). When disabled, counting a
+ * notification costs a single volatile read.
+ * This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class NotificationMetrics implements NotificationMetricsMXBean {
+	/** The JMX object name of the notification metrics. */
+	public static final String OBJECT_NAME = "com.grigoriliev.jsampler:type=NotificationMetrics";
+	
+	/** The type of a backend notification. */
+	public static enum Type {
+		CHANNEL_COUNT,
+		CHANNEL_INFO,
+		VOICE_COUNT,
+		STREAM_COUNT,
+		TOTAL_VOICE_COUNT,
+		TOTAL_STREAM_COUNT,
+		CHANNEL_MIDI,
+		FX_SEND_COUNT,
+		FX_SEND_INFO,
+		SEND_EFFECT_CHAIN_COUNT,
+		SEND_EFFECT_CHAIN_INFO,
+		EFFECT_INSTANCE_INFO,
+		MIDI_INSTRUMENT_COUNT,
+		MIDI_INSTRUMENT_INFO,
+		MIDI_INSTRUMENT_MAP_COUNT,
+		MIDI_INSTRUMENT_MAP_INFO,
+		AUDIO_OUTPUT_DEVICE_COUNT,
+		AUDIO_OUTPUT_DEVICE_INFO,
+		MIDI_INPUT_DEVICE_COUNT,
+		MIDI_INPUT_DEVICE_INFO,
+		GLOBAL_INFO
+	}
+	
+	private static final Type[] TYPES = Type.values();
+	
+	/** The weight of the last sample in the exponentially weighted rates. */
+	private static final double RATE_WEIGHT = 0.5;
+	
+	private volatile boolean enabled = false;
+	
+	private final AtomicLongArray received = new AtomicLongArray(TYPES.length);
+	private final AtomicLongArray coalesced = new AtomicLongArray(TYPES.length);
+	
+	private final long[] lastReceived = new long[TYPES.length];
+	private final double[] rates = new double[TYPES.length];
+	private long lastSampleTime = 0;
+	
+	private int taskQueueLength = 0;
+	private int maxTaskQueueLength = 0;
+	private volatile long uiLag = 0;
+	private volatile long maxUiLag = 0;
+	private volatile boolean probePending = false;
+	private long probeTime = 0;
+	
+	private Timer timer = null;
+	
+	/** Creates a new instance of <code>NotificationMetrics</code>. */
+	public
+	NotificationMetrics() { }
+	
+	@Override
+	public boolean
+	isEnabled() { return enabled; }
+	
+	@Override
+	public synchronized void
+	setEnabled(boolean b) {
+		if(enabled == b) return;
+		enabled = b;
+		
+		if(b) {
+			lastSampleTime = System.nanoTime();
+			for(int i = 0; i < TYPES.length; i++) lastReceived[i] = received.get(i);
+			
+			timer = new Timer("NotificationMetrics", true);
+			timer.schedule(new TimerTask() {
+				public void
+				run() { sample(); }
+			}, 1000, 1000);
+		} else {
+			timer.cancel();
+			timer = null;
+		}
+	}
+	
+	/** Invoked when a notification of the specified type is received. */
+	public void
+	received(Type type) {
+		if(enabled) received.incrementAndGet(type.ordinal());
+	}
+	
+	/**
+	 * Invoked when a notification of the specified type is coalesced
+	 * with a pending update instead of scheduling a new task.
+	 */
+	public void
+	coalesced(Type type) {
+		if(enabled) coalesced.incrementAndGet(type.ordinal());
+	}
+	
+	/** Gets the number of received notifications of the specified type. */
+	public long
+	getReceivedCount(Type type) { return received.get(type.ordinal()); }
+	
+	/** Gets the number of coalesced notifications of the specified type. */
+	public long
+	getCoalescedCount(Type type) { return coalesced.get(type.ordinal()); }
+	
+	/** Gets the number of received notifications of the specified type per second. */
+	public synchronized double
+	getRate(Type type) { return rates[type.ordinal()]; }
+	
+	@Override
+	public Map<String, Long>
+	getReceivedCounts() {
+		Map<String, Long> m = new TreeMap<String, Long>();
+		for(Type t : TYPES) m.put(t.name(), getReceivedCount(t));
+		return m;
+	}
+	
+	@Override
+	public Map<String, Long>
+	getCoalescedCounts() {
+		Map<String, Long> m = new TreeMap<String, Long>();
+		for(Type t : TYPES) m.put(t.name(), getCoalescedCount(t));
+		return m;
+	}
+	
+	@Override
+	public synchronized Map<String, Double>
+	getRates() {
+		Map<String, Double> m = new TreeMap<String, Double>();
+		for(Type t : TYPES) m.put(t.name(), rates[t.ordinal()]);
+		return m;
+	}
+	
+	@Override
+	public long
+	getTotalReceivedCount() {
+		long n = 0;
+		for(int i = 0; i < TYPES.length; i++) n += received.get(i);
+		return n;
+	}
+	
+	@Override
+	public synchronized double
+	getTotalRate() {
+		double d = 0;
+		for(double r : rates) d += r;
+		return d;
+	}
+	
+	@Override
+	public synchronized int
+	getTaskQueueLength() { return taskQueueLength; }
+	
+	@Override
+	public synchronized int
+	getMaxTaskQueueLength() { return maxTaskQueueLength; }
+	
+	@Override
+	public long
+	getUiLag() { return uiLag; }
+	
+	@Override
+	public long
+	getMaxUiLag() { return maxUiLag; }
+	
+	@Override
+	public synchronized void
+	reset() {
+		for(int i = 0; i < TYPES.length; i++) {
+			received.set(i, 0);
+			coalesced.set(i, 0);
+			lastReceived[i] = 0;
+			rates[i] = 0;
+		}
+		
+		taskQueueLength = 0;
+		maxTaskQueueLength = 0;
+		uiLag = 0;
+		maxUiLag = 0;
+	}
+	
+	/** Updates the rates, the task queue length and the UI lag. */
+	private synchronized void
+	sample() {
+		long now = System.nanoTime();
+		double seconds = (now - lastSampleTime) / 1e9;
+		lastSampleTime = now;
+		if(seconds <= 0) return;
+		
+		for(int i = 0; i < TYPES.length; i++) {
+			long n = received.get(i);
+			double r = (n - lastReceived[i]) / seconds;
+			lastReceived[i] = n;
+			rates[i] = RATE_WEIGHT * r + (1 - RATE_WEIGHT) * rates[i];
+		}
+		
+		taskQueueLength = CC.getTaskQueue().getPendingTasks().length;
+		maxTaskQueueLength = Math.max(maxTaskQueueLength, taskQueueLength);
+		
+		// Don't flood the UI thread with probes when it is stuck
+		if(probePending) {
+			uiLag = Math.max(uiLag, (now - probeTime) / 1000000);
+			if(uiLag > maxUiLag) maxUiLag = uiLag;
+			return;
+		}
+		
+		probePending = true;
+		probeTime = now;
+		
+		final long t = now;
+		CC.runOnUiThread(new Runnable() {
+			public void
+			run() {
+				uiLag = (System.nanoTime() - t) / 1000000;
+				if(uiLag > maxUiLag) maxUiLag = uiLag;
+				probePending = false;
+			}
+		});
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.Map;
+
+/**
+ * The management interface of the backend notification metrics.
+ * @see NotificationMetrics
+ * @author Grigor Iliev
+ */
+public interface NotificationMetricsMXBean {
+	/** Determines whether the notification metrics are collected. */
+	public boolean isEnabled();
+	
+	/** Sets whether the notification metrics should be collected. */
+	public void setEnabled(boolean b);
+	
+	/** Gets the number of received notifications per notification type. */
+	public Map<String, Long> getReceivedCounts();
+	
+	/**
+	 * Gets the number of notifications per notification type, which were
+	 * coalesced with a pending update instead of scheduling a new task.
+	 */
+	public Map<String, Long> getCoalescedCounts();
+	
+	/** Gets the number of received notifications per second per notification type. */
+	public Map<String, Double> getRates();
+	
+	/** Gets the total number of received notifications. */
+	public long getTotalReceivedCount();
+	
+	/** Gets the total number of received notifications per second. */
+	public double getTotalRate();
+	
+	/** Gets the number of tasks waiting in the task queue at the last sampling. */
+	public int getTaskQueueLength();
+	
+	/** Gets the largest sampled number of tasks waiting in the task queue. */
+	public int getMaxTaskQueueLength();
+	
+	/**
+	 * Gets the time (in milliseconds) it took the last probe posted to the UI
+	 * thread to be executed, which shows how far behind the UI is.
+	 */
+	public long getUiLag();
+	
+	/** Gets the largest measured UI lag in milliseconds. */
+	public long getMaxUiLag();
+	
+	/** Discards all collected metrics. */
+	public void reset();
+}
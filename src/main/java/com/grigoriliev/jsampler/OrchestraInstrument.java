@@ -21,6 +21,10 @@
 
 package com.grigoriliev.jsampler;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -262,4 +266,62 @@ public class OrchestraInstrument extends Resource implements com.grigoriliev.jsa
 			node.appendChild(el);
 		}
 	}
+	
+	/**
+	 * Reads and sets the instrument properties from the specified reader,
+	 * which should be positioned at the start tag of an instrument element.
+	 * The reader is positioned at the end tag of the element afterwards.
+	 * @param r The reader providing the instrument properties.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the instrument properties.
+	 * @throws XMLStreamException If the XML is malformed.
+	 */
+	public void
+	readObject(XMLStreamReader r) throws XMLStreamException {
+		XMLStreamUtils.requireStartElement(r, "instrument", "Not an instrument node!");
+		setName(XMLStreamUtils.getRequiredAttribute (
+			r, "name", "The instrument name is undefined!"
+		));
+		
+		while(XMLStreamUtils.nextChildElement(r)) {
+			String s = r.getLocalName();
+			if(s.equals("description")) {
+				String d = XMLStreamUtils.readText(r);
+				if(d.length() > 0) setDescription(d);
+			} else if(s.equals("path")) {
+				setFilePath(XMLStreamUtils.readText(r));
+			} else if(s.equals("instrument-index")) {
+				try { setInstrumentIndex(Integer.parseInt(XMLStreamUtils.readText(r))); }
+				catch(NumberFormatException x) {
+					throw new IllegalArgumentException("Not a number");
+				}
+			} else if(s.equals("engine")) {
+				setEngine(XMLStreamUtils.readText(r));
+			} else {	// Unknown content
+				CC.getLogger().info ("Unknown field: " + s);
+				XMLStreamUtils.skipElement(r);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the instrument properties to the specified writer.
+	 * @param w The writer where the instrument properties should be written.
+	 * @throws XMLStreamException If an error occurs while writing.
+	 */
+	public void
+	writeObject(XMLStreamWriter w) throws XMLStreamException {
+		w.writeStartElement("instrument");
+		w.writeAttribute("name", getName());
+		
+		XMLStreamUtils.writeTextElement(w, "description", getDescription());
+		XMLStreamUtils.writeTextElement(w, "path", getFilePath());
+		XMLStreamUtils.writeTextElement (
+			w, "instrument-index", String.valueOf(getInstrumentIndex())
+		);
+		
+		if(getEngine() != null) XMLStreamUtils.writeTextElement(w, "engine", getEngine());
+		
+		w.writeEndElement();
+	}
 }
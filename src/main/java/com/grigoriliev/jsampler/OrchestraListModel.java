@@ -23,6 +23,10 @@ package com.grigoriliev.jsampler;
 
 import com.grigoriliev.jsampler.event.ListListener;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
@@ -151,4 +155,21 @@ public interface OrchestraListModel {
 	 * list should be written.
 	 */
 	public void writeObject(Document doc, Node node);
+	
+	/**
+	 * Reads and loads the content of this orchestra list from the specified reader,
+	 * which should be positioned at the start tag of an orchestra list element.
+	 * @param r The reader providing the content of this orchestra list.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the content of this orchestra list.
+	 * @throws XMLStreamException If the XML is malformed.
+	 */
+	public void readObject(XMLStreamReader r) throws XMLStreamException;
+	
+	/**
+	 * Writes the content of this orchestra list to the specified writer.
+	 * @param w The writer where the content of this orchestra list should be written.
+	 * @throws XMLStreamException If an error occurs while writing.
+	 */
+	public void writeObject(XMLStreamWriter w) throws XMLStreamException;
 }
@@ -21,8 +21,14 @@
 
 package com.grigoriliev.jsampler;
 
+import java.util.Collection;
+
 import com.grigoriliev.jsampler.event.OrchestraListener;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
@@ -155,6 +161,34 @@ public interface OrchestraModel {
 	 */
 	public void moveInstrumentAtBottom(OrchestraInstrument instr);
 	
+	/**
+	 * Adds the specified instruments at the end of this orchestra.
+	 * The listeners are notified with a single event.
+	 * @param instrs The instruments to be added.
+	 * @throws IllegalArgumentException If any of the instruments is <code>null</code>.
+	 */
+	public void addInstruments(Collection<OrchestraInstrument> instrs);
+	
+	/**
+	 * Removes the instruments at the specified positions from this orchestra.
+	 * The listeners are notified with a single event.
+	 * @param indices The positions of the instruments to remove.
+	 * @throws ArrayIndexOutOfBoundsException If any of the indices is invalid.
+	 */
+	public void removeInstruments(int[] indices);
+	
+	/**
+	 * Moves the instruments at the specified positions, preserving their
+	 * relative order, so that they are placed before the instrument that is
+	 * currently at position <code>target</code>. The listeners are notified
+	 * with a single event.
+	 * @param indices The positions of the instruments to move.
+	 * @param target The position before which the instruments should be placed,
+	 * or the number of instruments to move them at the bottom.
+	 * @throws ArrayIndexOutOfBoundsException If any of the indices is invalid.
+	 */
+	public void moveInstruments(int[] indices, int target);
+	
 	/**
 	 * Reads and sets the content of this orchestra provided by <code>node</code>.
 	 * @param node The node providing the content of this orchestra.
@@ -171,4 +205,21 @@ public interface OrchestraModel {
 	 * should be written.
 	 */
 	public void writeObject(Document doc, Node node);
+	
+	/**
+	 * Reads and sets the content of this orchestra from the specified reader,
+	 * which should be positioned at the start tag of an orchestra element.
+	 * @param r The reader providing the content of this orchestra.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the content of this orchestra.
+	 * @throws XMLStreamException If the XML is malformed.
+	 */
+	public void readObject(XMLStreamReader r) throws XMLStreamException;
+	
+	/**
+	 * Writes the content of this orchestra to the specified writer.
+	 * @param w The writer where the content of this orchestra should be written.
+	 * @throws XMLStreamException If an error occurs while writing.
+	 */
+	public void writeObject(XMLStreamWriter w) throws XMLStreamException;
 }
@@ -0,0 +1,596 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.grigoriliev.jsampler.event.ListEvent;
+import com.grigoriliev.jsampler.event.ListListener;
+import com.grigoriliev.jsampler.event.OrchestraAdapter;
+import com.grigoriliev.jsampler.event.OrchestraEvent;
+
+
+/**
+ * An in-memory index over the names, descriptions, file paths and engines of the
+ * instruments in all orchestras of an orchestra list, which supports prefix,
+ * substring and fuzzy (edit distance) search with ranked results.
+ * The index is kept in sync by the orchestra list and orchestra events.
+ * The orchestras, whose instruments are not loaded yet, are indexed
+ * when the first search is made.
+ * <p>
+ * Prefix matches are looked up in a sorted term dictionary and substring matches
+ * in a trigram index over the distinct terms. Fuzzy matching scans the distinct
+ * terms of similar length, skipping those with too different characters,
+ * and is used only for query terms with too few direct matches.
+ * The scores are accumulated only for the documents found by the query terms,
+ * so the cost of a search depends on the number of matches rather than
+ * on the number of indexed instruments.
+ * </p>
+ * This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class OrchestraSearchIndex extends TermIndex<OrchestraSearchIndex.Doc> {
+	/** Describes an instrument found by {@link #search}. */
+	public static class Result {
+		private final OrchestraModel orchestra;
+		private final OrchestraInstrument instrument;
+		private final int score;
+		
+		Result(OrchestraModel orchestra, OrchestraInstrument instrument, int score) {
+			this.orchestra = orchestra;
+			this.instrument = instrument;
+			this.score = score;
+		}
+		
+		/** Gets the orchestra containing the found instrument. */
+		public OrchestraModel
+		getOrchestra() { return orchestra; }
+		
+		/** Gets the found instrument. */
+		public OrchestraInstrument
+		getInstrument() { return instrument; }
+		
+		/** Gets the relevance of this result. Higher values mean better matches. */
+		public int
+		getScore() { return score; }
+		
+		@Override
+		public String
+		toString() { return orchestra.getName() + ": " + instrument.getName(); }
+	}
+	
+	private static final int NAME = 0;
+	private static final int DESCRIPTION = 1;
+	private static final int PATH = 2;
+	private static final int ENGINE = 3;
+	
+	/** The weights of the fields, indexed by field. */
+	private static final int[] WEIGHTS = { 8, 3, 2, 1 };
+	
+	private static final int EXACT = 4;
+	private static final int PREFIX = 3;
+	private static final int SUBSTRING = 2;
+	private static final int FUZZY = 1;
+	
+	static class Doc {
+		final OrchestraModel orchestra;
+		final OrchestraInstrument instrument;
+		final String name;
+		
+		Doc(OrchestraModel orchestra, OrchestraInstrument instrument) {
+			this.orchestra = orchestra;
+			this.instrument = instrument;
+			String s = instrument.getName();
+			name = s == null ? "" : s.toLowerCase();
+		}
+	}
+	
+	private final OrchestraListModel orchestras;
+	
+	private final IdentityHashMap<OrchestraInstrument, Integer> ids =
+		new IdentityHashMap<OrchestraInstrument, Integer>();
+	
+	/**
+	 * The distinct terms ordered by length, cached for scanning.
+	 * <code>null</code> if out of date.
+	 */
+	private String[] vocabulary = null;
+	private Postings[] vocabularyPostings = null;
+	private long[] vocabularyMasks = null;
+	
+	/** The vocabulary ID of the first term with length greater or equal to the index. */
+	private int[] lengthOffsets = null;
+	
+	/** Maps the trigrams to the (vocabulary) IDs of the terms containing them. */
+	private final HashMap<Long, Postings> trigrams = new HashMap<Long, Postings>();
+	
+	/** The orchestras, whose instruments are not indexed yet. */
+	private final IdentityHashMap<OrchestraModel, Boolean> pending =
+		new IdentityHashMap<OrchestraModel, Boolean>();
+	
+	/**
+	 * The best score of each document for the current query term.
+	 * All elements are zero between the query terms.
+	 */
+	private int[] best = new int[0];
+	
+	/** The IDs of the documents with non-zero score in <code>best</code>. */
+	private int[] touched = new int[0];
+	private int touchedCount = 0;
+	
+	/** Scratch arrays used by fuzzy matching. */
+	private int[] distPrev = new int[0];
+	private int[] distCur = new int[0];
+	
+	private final Handler handler = new Handler();
+	
+	/**
+	 * Creates a new index over the instruments in the specified orchestra list.
+	 * @param orchestras The orchestra list to be indexed.
+	 */
+	public
+	OrchestraSearchIndex(OrchestraListModel orchestras) {
+		this.orchestras = orchestras;
+		orchestras.addOrchestraListListener(handler);
+		
+		for(int i = 0; i < orchestras.getOrchestraCount(); i++) {
+			addOrchestra(orchestras.getOrchestra(i));
+		}
+	}
+	
+	/** Unregisters this index from the orchestra list and the orchestras. */
+	public synchronized void
+	dispose() {
+		orchestras.removeOrchestraListListener(handler);
+		for(int i = 0; i < orchestras.getOrchestraCount(); i++) {
+			orchestras.getOrchestra(i).removeOrchestraListener(handler);
+		}
+		
+		pending.clear();
+		clear();
+	}
+	
+	/** Gets the number of indexed instruments. */
+	public synchronized int
+	getSize() {
+		indexPending();
+		return ids.size();
+	}
+	
+	/**
+	 * Finds the instruments matching all terms of the specified query.
+	 * A query term matches an instrument if a term in its name, description,
+	 * file path or engine is equal to, starts with or contains the query term,
+	 * or (for terms with four or more characters) is within a small edit distance
+	 * from it. The results are ranked by the kind of the match and by the field,
+	 * matches in the instrument name being ranked highest.
+	 * @param query The search terms separated by spaces.
+	 * @param maxResults The maximum number of results to return.
+	 * @return The found instruments, the best matches first.
+	 */
+	public synchronized Result[]
+	search(String query, int maxResults) {
+		String[] qTerms = tokenize(query);
+		if(qTerms.length == 0 || maxResults < 1) return new Result[0];
+		
+		indexPending();
+		updateVocabulary();
+		
+		if(best.length < docs.size()) {
+			best = new int[docs.size()];
+			touched = new int[docs.size()];
+		}
+		
+		/* The documents matching all query terms so far and their total scores */
+		int[] candidates = null;
+		int[] total = null;
+		int count = 0;
+		
+		for(String t : qTerms) {
+			collect(t, maxResults);
+			
+			if(candidates == null) {
+				candidates = Arrays.copyOf(touched, touchedCount);
+				total = new int[touchedCount];
+				for(int i = 0; i < touchedCount; i++) total[i] = best[touched[i]];
+				count = touchedCount;
+			} else {
+				int n = 0;
+				for(int i = 0; i < count; i++) {
+					int s = best[candidates[i]];
+					if(s == 0) continue;
+					candidates[n] = candidates[i];
+					total[n++] = total[i] + s;
+				}
+				count = n;
+			}
+			
+			for(int i = 0; i < touchedCount; i++) best[touched[i]] = 0;
+			touchedCount = 0;
+			if(count == 0) return new Result[0];
+		}
+		
+		String q = query.trim().toLowerCase();
+		
+		/* Keeps the best results, the worst of them at the head of the queue. */
+		PriorityQueue<Result> queue =
+			new PriorityQueue<Result>(maxResults + 1, Collections.reverseOrder(RANKING));
+		
+		for(int i = 0; i < count; i++) {
+			if(deleted.get(candidates[i])) continue;
+			Doc d = docs.get(candidates[i]);
+			int score = total[i];
+			if(d.name.equals(q)) score += 100;
+			else if(d.name.startsWith(q)) score += 50;
+			
+			if(queue.size() == maxResults) {
+				Result worst = queue.peek();
+				if(compare(score, d.instrument, worst.score, worst.instrument) >= 0) continue;
+			}
+			
+			queue.add(new Result(d.orchestra, d.instrument, score));
+			if(queue.size() > maxResults) queue.poll();
+		}
+		
+		Result[] results = queue.toArray(new Result[queue.size()]);
+		Arrays.sort(results, RANKING);
+		return results;
+	}
+	
+	/** Orders the results by score, then by name (shorter names first). */
+	private static final Comparator<Result> RANKING = new Comparator<Result>() {
+		public int
+		compare(Result r1, Result r2) {
+			return OrchestraSearchIndex.compare(r1.score, r1.instrument, r2.score, r2.instrument);
+		}
+	};
+	
+	/**
+	 * Compares two matches in the order of {@link #RANKING}, without
+	 * creating results for the documents which don't get in the top results.
+	 */
+	private static int
+	compare(int s1, OrchestraInstrument i1, int s2, OrchestraInstrument i2) {
+		if(s1 != s2) return s2 - s1;
+		String n1 = i1.getName(), n2 = i2.getName();
+		if(n1 == null || n2 == null) return n1 == n2 ? 0 : (n1 == null ? 1 : -1);
+		if(n1.length() != n2.length()) return n1.length() - n2.length();
+		return n1.compareToIgnoreCase(n2);
+	}
+	
+	/**
+	 * Stores in <code>best</code> the best score of each document for the
+	 * specified query term and the IDs of the found documents in <code>touched</code>.
+	 * Exact and prefix matches are looked up in the dictionary, substring matches
+	 * (for terms with three or more characters) in the trigram index. Fuzzy matches
+	 * are looked up only if the term has less than <code>maxResults</code> direct
+	 * matches, and only the terms with similar length and similar characters
+	 * are compared with the query term.
+	 */
+	private void
+	collect(String t, int maxResults) {
+		int matches = 0;
+		for(Map.Entry<String, Postings> me : terms.subMap(t, t + Character.MAX_VALUE).entrySet()) {
+			int level = me.getKey().length() == t.length() ? EXACT : PREFIX;
+			matches += score(me.getValue(), level);
+		}
+		
+		if(t.length() >= 3) {
+			for(int v : findSubstringTerms(t)) {
+				matches += score(vocabularyPostings[v], SUBSTRING);
+			}
+		}
+		
+		int maxEdits = t.length() < 4 ? 0 : (t.length() < 8 ? 1 : 2);
+		if(maxEdits == 0 || matches >= maxResults) return;
+		
+		long mask = charMask(t);
+		int from = lengthOffset(t.length() - maxEdits);
+		int to = lengthOffset(t.length() + maxEdits + 1);
+		for(int v = from; v < to; v++) {
+			String term = vocabulary[v];
+			if(Long.bitCount(mask ^ vocabularyMasks[v]) > 2 * maxEdits) continue;
+			if(term.indexOf(t) != -1) continue;
+			if(isWithinDistance(t, term, maxEdits)) score(vocabularyPostings[v], FUZZY);
+		}
+	}
+	
+	/**
+	 * Gets the vocabulary IDs of the terms, which contain the specified
+	 * term (at least three characters long), but don't start with it.
+	 */
+	private int[]
+	findSubstringTerms(String t) {
+		Postings smallest = null;
+		for(int i = 0; i + 3 <= t.length(); i++) {
+			Postings p = trigrams.get(trigram(t, i));
+			if(p == null) return new int[0];
+			if(smallest == null || p.size < smallest.size) smallest = p;
+		}
+		
+		int[] ids = new int[smallest.size];
+		int n = 0;
+		for(int i = 0; i < smallest.size; i++) {
+			String term = vocabulary[smallest.items[i]];
+			if(!term.startsWith(t) && term.indexOf(t) != -1) ids[n++] = smallest.items[i];
+		}
+		
+		return Arrays.copyOf(ids, n);
+	}
+	
+	private int
+	lengthOffset(int length) {
+		if(length < 0) return 0;
+		if(length >= lengthOffsets.length) return vocabulary.length;
+		return lengthOffsets[length];
+	}
+	
+	/** Rebuilds the cached vocabulary and the trigram index, if out of date. */
+	private void
+	updateVocabulary() {
+		if(vocabulary != null) return;
+		
+		int maxLength = 0;
+		for(String term : terms.keySet()) maxLength = Math.max(maxLength, term.length());
+		
+		/* Counting sort of the terms by length */
+		lengthOffsets = new int[maxLength + 2];
+		for(String term : terms.keySet()) lengthOffsets[term.length() + 1]++;
+		for(int i = 1; i < lengthOffsets.length; i++) lengthOffsets[i] += lengthOffsets[i - 1];
+		
+		vocabulary = new String[terms.size()];
+		vocabularyPostings = new Postings[terms.size()];
+		vocabularyMasks = new long[terms.size()];
+		int[] next = lengthOffsets.clone();
+		for(Map.Entry<String, Postings> me : terms.entrySet()) {
+			int v = next[me.getKey().length()]++;
+			vocabulary[v] = me.getKey();
+			vocabularyPostings[v] = me.getValue();
+			vocabularyMasks[v] = charMask(me.getKey());
+		}
+		
+		trigrams.clear();
+		for(int v = 0; v < vocabulary.length; v++) {
+			String term = vocabulary[v];
+			for(int i = 0; i + 3 <= term.length(); i++) {
+				Long key = trigram(term, i);
+				Postings p = trigrams.get(key);
+				if(p == null) {
+					p = new Postings();
+					trigrams.put(key, p);
+				}
+				p.add(v);
+			}
+		}
+	}
+	
+	private static Long
+	trigram(String s, int i) {
+		return ((long)s.charAt(i) << 32) | ((long)s.charAt(i + 1) << 16) | s.charAt(i + 2);
+	}
+	
+	/** @return The number of postings. */
+	private int
+	score(Postings p, int level) {
+		for(int i = 0; i < p.size; i++) {
+			int id = p.items[i] >>> 2;
+			int s = level * WEIGHTS[p.items[i] & 3];
+			if(best[id] == 0) touched[touchedCount++] = id;
+			if(s > best[id]) best[id] = s;
+		}
+		
+		return p.size;
+	}
+	
+	/**
+	 * Gets the set of the characters in the specified term, hashed to 64 bits.
+	 * Each edit adds or removes at most two characters from the set, so terms
+	 * whose sets differ in more than twice the allowed edits are skipped
+	 * without computing the edit distance.
+	 */
+	private static long
+	charMask(String term) {
+		long mask = 0;
+		for(int i = 0; i < term.length(); i++) mask |= 1L << (term.charAt(i) & 63);
+		return mask;
+	}
+	
+	/**
+	 * Determines whether the Levenshtein distance between the specified
+	 * strings is not greater than <code>max</code>.
+	 */
+	private boolean
+	isWithinDistance(String s1, String s2, int max) {
+		int n = s1.length(), m = s2.length();
+		if(Math.abs(n - m) > max) return false;
+		
+		if(distPrev.length <= m) {
+			distPrev = new int[m + 1];
+			distCur = new int[m + 1];
+		}
+		
+		int[] prev = distPrev;
+		int[] cur = distCur;
+		for(int j = 0; j <= m; j++) prev[j] = j;
+		
+		for(int i = 1; i <= n; i++) {
+			cur[0] = i;
+			int rowMin = i;
+			char c = s1.charAt(i - 1);
+			for(int j = 1; j <= m; j++) {
+				int cost = c == s2.charAt(j - 1) ? 0 : 1;
+				cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+				if(cur[j] < rowMin) rowMin = cur[j];
+			}
+			
+			if(rowMin > max) return false;
+			int[] tmp = prev; prev = cur; cur = tmp;
+		}
+		
+		return prev[m] <= max;
+	}
+	
+	private synchronized void
+	addOrchestra(OrchestraModel orchestra) {
+		orchestra.addOrchestraListener(handler);
+		pending.put(orchestra, Boolean.TRUE);
+	}
+	
+	private synchronized void
+	removeOrchestra(OrchestraModel orchestra) {
+		orchestra.removeOrchestraListener(handler);
+		if(pending.remove(orchestra) != null) return;
+		
+		for(int i = 0; i < docs.size(); i++) {
+			if(!deleted.get(i) && docs.get(i).orchestra == orchestra) {
+				remove(docs.get(i).instrument);
+			}
+		}
+		
+		compactIfNeeded();
+	}
+	
+	/** Indexes the instruments of the orchestras added since the last search. */
+	private void
+	indexPending() {
+		if(pending.isEmpty()) return;
+		
+		for(OrchestraModel om : pending.keySet()) {
+			for(int i = 0; i < om.getInstrumentCount(); i++) add(om, om.getInstrument(i));
+		}
+		
+		pending.clear();
+	}
+	
+	private void
+	add(OrchestraModel orchestra, OrchestraInstrument instr) {
+		remove(instr);
+		addDocument(new Doc(orchestra, instr));
+	}
+	
+	/**
+	 * Indexes the fields of the instrument. Each posting is
+	 * the document ID shifted left by two bits, ORed with the field.
+	 */
+	@Override
+	protected void
+	documentAdded(int id, Doc doc) {
+		OrchestraInstrument instr = doc.instrument;
+		ids.put(instr, id);
+		
+		indexText(instr.getName(), id << 2 | NAME);
+		indexText(instr.getDescription(), id << 2 | DESCRIPTION);
+		indexText(instr.getFilePath(), id << 2 | PATH);
+		indexText(instr.getEngine(), id << 2 | ENGINE);
+	}
+	
+	@Override
+	protected void
+	termsChanged() { vocabulary = null; }
+	
+	private void
+	remove(OrchestraInstrument instr) {
+		Integer id = ids.remove(instr);
+		if(id != null) deleteDocument(id);
+	}
+	
+	@Override
+	protected void
+	clear() {
+		super.clear();
+		ids.clear();
+		vocabulary = null;
+		vocabularyPostings = null;
+		vocabularyMasks = null;
+		lengthOffsets = null;
+		trigrams.clear();
+	}
+	
+	private class Handler extends OrchestraAdapter implements ListListener<OrchestraModel> {
+		/** Invoked when a new orchestra is added to the list. */
+		@Override
+		public void
+		entryAdded(ListEvent<OrchestraModel> e) { addOrchestra(e.getEntry()); }
+		
+		/** Invoked when an orchestra is removed from the list. */
+		@Override
+		public void
+		entryRemoved(ListEvent<OrchestraModel> e) { removeOrchestra(e.getEntry()); }
+		
+		/** Invoked when an instrument is added to an orchestra. */
+		@Override
+		public void
+		instrumentAdded(OrchestraEvent e) {
+			synchronized(OrchestraSearchIndex.this) {
+				OrchestraModel om = (OrchestraModel)e.getSource();
+				if(!pending.containsKey(om)) add(om, e.getInstrument());
+			}
+		}
+		
+		/** Invoked when an instrument is removed from an orchestra. */
+		@Override
+		public void
+		instrumentRemoved(OrchestraEvent e) {
+			synchronized(OrchestraSearchIndex.this) {
+				remove(e.getInstrument());
+				compactIfNeeded();
+			}
+		}
+		
+		/** Invoked when multiple instruments are added to an orchestra. */
+		@Override
+		public void
+		instrumentsAdded(OrchestraEvent e) {
+			synchronized(OrchestraSearchIndex.this) {
+				OrchestraModel om = (OrchestraModel)e.getSource();
+				if(pending.containsKey(om)) return;
+				for(OrchestraInstrument instr : e.getInstruments()) add(om, instr);
+			}
+		}
+		
+		/** Invoked when multiple instruments are removed from an orchestra. */
+		@Override
+		public void
+		instrumentsRemoved(OrchestraEvent e) {
+			synchronized(OrchestraSearchIndex.this) {
+				for(OrchestraInstrument instr : e.getInstruments()) remove(instr);
+				compactIfNeeded();
+			}
+		}
+		
+		/** Invoked when the settings of an instrument are changed. */
+		@Override
+		public void
+		instrumentChanged(OrchestraEvent e) {
+			synchronized(OrchestraSearchIndex.this) {
+				OrchestraModel om = (OrchestraModel)e.getSource();
+				if(!pending.containsKey(om)) add(om, e.getInstrument());
+			}
+		}
+	}
+}
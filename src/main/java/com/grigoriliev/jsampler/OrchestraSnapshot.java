@@ -0,0 +1,432 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Vector;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+
+/**
+ * A compact binary snapshot of the orchestras, which is written next to
+ * <code>orchestras.xml</code> and allows the orchestras to be loaded as headers
+ * (name, description and number of instruments), while the instruments of each
+ * orchestra are materialized on first access. The XML file stays the source of
+ * truth: the snapshot is used only if it was written for the current version of
+ * the XML file (same length and modification time).
+ * <p>
+ * Format: magic, version, snapshot ID, XML length, XML modification time,
+ * number of orchestras,
+ * a table with the header, offset and length of each orchestra, followed by
+ * the instrument blocks. Strings are stored as length-prefixed UTF-8.
+ * </p><p>
+ * When the orchestras are saved, the instrument blocks of the orchestras
+ * which were never accessed are copied from the previous snapshot,
+ * so that saving does not materialize them.
+ * </p>
+ * @author Grigor Iliev
+ */
+public class OrchestraSnapshot {
+	private static final int MAGIC = 0x4A534F53; // JSOS
+	private static final int VERSION = 1;
+	
+	/** Forbids instantiation of this class. */
+	private OrchestraSnapshot() { }
+	
+	/**
+	 * Loads the orchestra headers from the specified snapshot and adds them
+	 * to the specified orchestra list. Nothing is added if the snapshot
+	 * is missing, invalid or out of date.
+	 * @param snapshot The snapshot file.
+	 * @param xml The XML file, from which the snapshot was written.
+	 * @param list The orchestra list to which the orchestras should be added.
+	 * @return <code>true</code> if the orchestras are loaded from the snapshot,
+	 * <code>false</code> otherwise.
+	 */
+	public static boolean
+	read(File snapshot, File xml, OrchestraListModel list) {
+		if(!snapshot.isFile() || !xml.isFile()) return false;
+		
+		Vector<OrchestraModel> orchestras = new Vector<OrchestraModel>();
+		
+		try(DataInputStream in = new DataInputStream (
+			new BufferedInputStream(new FileInputStream(snapshot))
+		)) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) return false;
+			long id = in.readLong();
+			if(in.readLong() != xml.length() || in.readLong() != xml.lastModified()) {
+				return false;
+			}
+			
+			int count = in.readInt();
+			for(int i = 0; i < count; i++) {
+				String name = readString(in);
+				String desc = readString(in);
+				int instrCount = in.readInt();
+				long offset = in.readLong();
+				int length = in.readInt();
+				
+				Loader l = new Loader(snapshot, id, offset, length, xml, i);
+				orchestras.add(new DefaultOrchestraModel(name, desc, instrCount, l));
+			}
+		} catch(IOException x) {
+			CC.getLogger().info("Invalid orchestra snapshot: " + HF.getErrorMessage(x));
+			return false;
+		}
+		
+		for(OrchestraModel om : orchestras) list.addOrchestra(om);
+		return true;
+	}
+	
+	/**
+	 * Serializes the instruments of each orchestra in the specified list.
+	 * The instruments of the orchestras, which are not materialized yet,
+	 * are copied from the snapshot (or loaded from the XML file if the snapshot
+	 * has changed), without being materialized. This method should be invoked
+	 * before <code>orchestras.xml</code> is overwritten.
+	 * @param list The orchestra list.
+	 * @return The serialized instruments of each orchestra.
+	 * @throws Exception If the instruments of an orchestra cannot be loaded,
+	 * in which case the orchestras should not be saved.
+	 */
+	public static byte[][]
+	serialize(OrchestraListModel list) throws Exception {
+		byte[][] blocks = new byte[list.getOrchestraCount()][];
+		
+		for(int i = 0; i < blocks.length; i++) {
+			OrchestraModel om = list.getOrchestra(i);
+			DefaultOrchestraModel.InstrumentLoader l = null;
+			if(om instanceof DefaultOrchestraModel) {
+				l = ((DefaultOrchestraModel)om).getInstrumentLoader();
+			}
+			
+			if(l instanceof Loader) {
+				blocks[i] = ((Loader)l).readBlock();
+			} else if(l != null) {
+				blocks[i] = toBlock(l.loadInstruments());
+			} else {
+				OrchestraInstrument[] instrs = new OrchestraInstrument[om.getInstrumentCount()];
+				for(int j = 0; j < instrs.length; j++) instrs[j] = om.getInstrument(j);
+				blocks[i] = toBlock(instrs);
+			}
+		}
+		
+		return blocks;
+	}
+	
+	/**
+	 * Writes the specified orchestra list to the specified writer. The orchestras,
+	 * which are not materialized yet, are written from the specified blocks.
+	 * @param w The writer where the orchestra list should be written.
+	 * @param list The orchestra list.
+	 * @param blocks The serialized instruments, returned by {@link #serialize}.
+	 * @throws XMLStreamException If an error occurs while writing.
+	 * @throws IOException If a block is invalid.
+	 */
+	public static void
+	writeXml(XMLStreamWriter w, OrchestraListModel list, byte[][] blocks)
+					throws XMLStreamException, IOException {
+		
+		w.writeStartElement("orchestras");
+		
+		for(int i = 0; i < list.getOrchestraCount(); i++) {
+			OrchestraModel om = list.getOrchestra(i);
+			if(!isPending(om)) {
+				om.writeObject(w);
+				continue;
+			}
+			
+			w.writeStartElement("orchestra");
+			w.writeAttribute("name", om.getName());
+			XMLStreamUtils.writeTextElement(w, "description", om.getDescription());
+			
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(blocks[i]));
+			while(in.available() > 0) readInstrument(in).writeObject(w);
+			
+			w.writeEndElement();
+		}
+		
+		w.writeEndElement();
+	}
+	
+	/**
+	 * Writes a snapshot of the specified orchestra list. The snapshot is written
+	 * to a temporary file first, which then replaces the specified file.
+	 * The orchestras, which are not materialized yet, are rebound to the new snapshot
+	 * (or to the XML file if the snapshot cannot be written).
+	 * @param snapshot The snapshot file.
+	 * @param xml The XML file, to which the orchestra list is already written.
+	 * @param list The orchestra list.
+	 * @param blocks The serialized instruments, returned by {@link #serialize}.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public static void
+	write(File snapshot, File xml, OrchestraListModel list, byte[][] blocks)
+							throws IOException {
+		
+		int count = list.getOrchestraCount();
+		long id = System.currentTimeMillis() ^ System.nanoTime();
+		long[] offsets = new long[count];
+		
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(baos);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeLong(id);
+		header.writeLong(xml.length());
+		header.writeLong(xml.lastModified());
+		header.writeInt(count);
+		
+		int tableSize = 0;
+		for(int i = 0; i < count; i++) {
+			OrchestraModel om = list.getOrchestra(i);
+			tableSize += stringSize(om.getName()) + stringSize(om.getDescription()) + 16;
+		}
+		
+		long offset = header.size() + tableSize;
+		for(int i = 0; i < count; i++) {
+			OrchestraModel om = list.getOrchestra(i);
+			writeString(header, om.getName());
+			writeString(header, om.getDescription());
+			header.writeInt(isPending(om) ? countInstruments(blocks[i]) : om.getInstrumentCount());
+			header.writeLong(offset);
+			header.writeInt(blocks[i].length);
+			offsets[i] = offset;
+			offset += blocks[i].length;
+		}
+		header.flush();
+		
+		boolean written = false;
+		try {
+			File tmp = new File(snapshot.getPath() + ".tmp");
+			try(BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+				baos.writeTo(out);
+				for(byte[] block : blocks) out.write(block);
+			}
+			
+			if(snapshot.exists() && !snapshot.delete()) {
+				tmp.delete();
+				throw new IOException("Failed to replace " + snapshot);
+			}
+			
+			if(!tmp.renameTo(snapshot)) throw new IOException("Failed to create " + snapshot);
+			written = true;
+		} finally {
+			for(int i = 0; i < count; i++) {
+				if(!isPending(list.getOrchestra(i))) continue;
+				DefaultOrchestraModel om = (DefaultOrchestraModel)list.getOrchestra(i);
+				om.replaceInstrumentLoader (
+					om.getInstrumentLoader(), written ?
+					new Loader(snapshot, id, offsets[i], blocks[i].length, xml, i) :
+					new Loader(null, 0, 0, 0, xml, i)
+				);
+			}
+		}
+	}
+	
+	/**
+	 * Determines whether the instruments of the specified orchestra
+	 * are not materialized yet.
+	 */
+	private static boolean
+	isPending(OrchestraModel om) {
+		if(!(om instanceof DefaultOrchestraModel)) return false;
+		return ((DefaultOrchestraModel)om).getInstrumentLoader() != null;
+	}
+	
+	/** Gets the number of instruments in the specified block, without decoding them. */
+	private static int
+	countInstruments(byte[] block) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+		int count = 0;
+		for(; in.available() > 0; count++) {
+			for(int i = 0; i < 3; i++) skipString(in);
+			in.readInt();
+			skipString(in);
+		}
+		
+		return count;
+	}
+	
+	private static byte[]
+	toBlock(OrchestraInstrument[] instrs) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		for(OrchestraInstrument instr : instrs) writeInstrument(out, instr);
+		out.flush();
+		return baos.toByteArray();
+	}
+	
+	/**
+	 * Loads the instruments of an orchestra from the snapshot or,
+	 * if the snapshot is missing, changed or invalid, from the XML file.
+	 */
+	private static class Loader implements DefaultOrchestraModel.InstrumentLoader {
+		private final File snapshot;
+		private final long id;
+		private final long offset;
+		private final int length;
+		private final File xml;
+		private final int index;
+		
+		/**
+		 * @param snapshot The snapshot file or <code>null</code>
+		 * to load the instruments from the XML file.
+		 */
+		Loader(File snapshot, long id, long offset, int length, File xml, int index) {
+			this.snapshot = snapshot;
+			this.id = id;
+			this.offset = offset;
+			this.length = length;
+			this.xml = xml;
+			this.index = index;
+		}
+		
+		@Override
+		public OrchestraInstrument[]
+		loadInstruments() throws Exception {
+			Vector<OrchestraInstrument> v = new Vector<OrchestraInstrument>();
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(readBlock()));
+			while(in.available() > 0) v.add(readInstrument(in));
+			
+			return v.toArray(new OrchestraInstrument[v.size()]);
+		}
+		
+		/** Reads the serialized instruments without materializing them. */
+		byte[]
+		readBlock() throws IOException, XMLStreamException {
+			if(snapshot == null || !snapshot.isFile()) return toBlock(loadFromXml());
+			
+			byte[] block = new byte[length];
+			try(RandomAccessFile f = new RandomAccessFile(snapshot, "r")) {
+				/* The snapshot has been replaced since the headers were loaded. */
+				f.seek(8);
+				if(f.readLong() != id) return toBlock(loadFromXml());
+				
+				f.seek(offset);
+				f.readFully(block);
+			} catch(IOException x) {
+				CC.getLogger().info("Invalid orchestra snapshot: " + HF.getErrorMessage(x));
+				return toBlock(loadFromXml());
+			}
+			
+			return block;
+		}
+		
+		private OrchestraInstrument[]
+		loadFromXml() throws IOException, XMLStreamException {
+			CC.getLogger().info("Orchestra snapshot changed, loading from " + xml);
+			
+			try(InputStream in = new BufferedInputStream(new FileInputStream(xml))) {
+				XMLStreamReader r = XMLStreamUtils.createReader(in);
+				for(int i = 0; XMLStreamUtils.nextChildElement(r); i++) {
+					if(i < index) {
+						XMLStreamUtils.skipElement(r);
+						continue;
+					}
+					
+					DefaultOrchestraModel om = new DefaultOrchestraModel();
+					om.readObject(r);
+					OrchestraInstrument[] instrs = new OrchestraInstrument[om.getInstrumentCount()];
+					for(int j = 0; j < instrs.length; j++) instrs[j] = om.getInstrument(j);
+					return instrs;
+				}
+			}
+			
+			throw new IOException("Orchestra not found: " + index);
+		}
+	}
+	
+	private static void
+	writeInstrument(DataOutput out, OrchestraInstrument instr) throws IOException {
+		writeString(out, instr.getName());
+		writeString(out, instr.getDescription());
+		writeString(out, instr.getFilePath());
+		out.writeInt(instr.getInstrumentIndex());
+		writeString(out, instr.getEngine());
+	}
+	
+	private static OrchestraInstrument
+	readInstrument(DataInput in) throws IOException {
+		OrchestraInstrument instr = new OrchestraInstrument();
+		instr.setName(readString(in));
+		instr.setDescription(readString(in));
+		instr.setFilePath(readString(in));
+		instr.setInstrumentIndex(in.readInt());
+		instr.setEngine(readString(in));
+		return instr;
+	}
+	
+	private static int
+	stringSize(String s) {
+		return 4 + (s == null ? 0 : s.getBytes(StandardCharsets.UTF_8).length);
+	}
+	
+	private static void
+	writeString(DataOutput out, String s) throws IOException {
+		if(s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+	
+	private static void
+	skipString(DataInput in) throws IOException {
+		int len = in.readInt();
+		if(len < -1) throw new IOException("Invalid string length: " + len);
+		if(len > 0) in.skipBytes(len);
+	}
+	
+	private static String
+	readString(DataInput in) throws IOException {
+		int len = in.readInt();
+		if(len == -1) return null;
+		if(len < 0) throw new IOException("Invalid string length: " + len);
+		
+		byte[] b = new byte[len];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,486 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+
+package com.grigoriliev.jsampler;
+
+import java.util.Vector;
+import java.util.logging.Level;
+
+import com.grigoriliev.jsampler.jlscp.Client;
+import com.grigoriliev.jsampler.jlscp.FxSend;
+
+import com.grigoriliev.jsampler.juife.Task;
+import com.grigoriliev.jsampler.juife.TaskQueue;
+
+import com.grigoriliev.jsampler.juife.event.GenericEvent;
+import com.grigoriliev.jsampler.juife.event.GenericListener;
+import com.grigoriliev.jsampler.juife.event.TaskEvent;
+import com.grigoriliev.jsampler.juife.event.TaskListener;
+import com.grigoriliev.jsampler.juife.event.TaskQueueEvent;
+import com.grigoriliev.jsampler.juife.event.TaskQueueListener;
+
+import com.grigoriliev.jsampler.task.Audio;
+import com.grigoriliev.jsampler.task.Channel;
+import com.grigoriliev.jsampler.task.EnhancedTask;
+import com.grigoriliev.jsampler.task.Global;
+import com.grigoriliev.jsampler.task.Midi;
+import com.grigoriliev.jsampler.task.SetServerAddress;
+import com.grigoriliev.jsampler.task.UpdateChannels;
+
+
+/**
+ * A session with a LinuxSampler instance, which owns its own LSCP client,
+ * task queue and sampler model. The default session is the one controlled
+ * by the user interface; additional sessions are opened with
+ * {@link CC#openSession} to monitor and control other backends concurrently.
+ *
+ * <p>The models, the tasks and the parameter streams hold the session they
+ * belong to: the sampler model of a session and the models created by it
+ * use the task queue of their session, and each task is assigned the session
+ * of the task queue it is added to (see <code>EnhancedTask.getSession()</code>).
+ * A task is executed, and its listeners are notified, with its session bound to
+ * the current thread, so that <code>CC.getClient()</code>, <code>CC.getTaskQueue()</code>
+ * and <code>CC.getSamplerModel()</code> return the ones of that session
+ * (see {@link CC#getSession}). The LSCP event thread of a session is also bound
+ * to the session. Any other code, which uses <code>CC</code> on behalf of a
+ * non-default session, should be executed with {@link #run}.</p>
+ * @author Grigor Iliev
+ */
+public class SamplerSession {
+	private static final ThreadLocal<SamplerSession> boundSession =
+		new ThreadLocal<SamplerSession>();
+	
+	private final Server server;
+	private final Client client;
+	private final TaskQueue taskQueue;
+	private final DefaultSamplerModel samplerModel;
+	private final boolean defaultSession;
+	
+	private final InstrumentsDbCache instrumentsDbCache = new InstrumentsDbCache();
+	private final InstrumentsDbIndex instrumentsDbIndex = new InstrumentsDbIndex();
+	private final ScanJobManager scanJobManager = new ScanJobManager(this);
+	
+	private boolean connected = false;
+	private boolean closed = false;
+	
+	private final Vector<GenericListener> ceListeners = new Vector<GenericListener>();
+	
+	/**
+	 * Creates the default session, which uses the
+	 * specified client, task queue and sampler model.
+	 */
+	SamplerSession(Client client, TaskQueue taskQueue, DefaultSamplerModel samplerModel) {
+		this.server = null;
+		this.client = client;
+		this.taskQueue = taskQueue;
+		this.samplerModel = samplerModel;
+		this.defaultSession = true;
+		
+		samplerModel.setSession(this);
+	}
+	
+	/**
+	 * Creates a new session with the specified backend.
+	 * The session is connected with {@link #connect}.
+	 * @param server The backend to connect to.
+	 */
+	SamplerSession(Server server) {
+		this.server = server;
+		this.client = new Client();
+		this.taskQueue = new SessionTaskQueue();
+		this.samplerModel = new DefaultSamplerModel();
+		this.defaultSession = false;
+		
+		samplerModel.setSession(this);
+		
+		// the local index is maintained only for the default session
+		client.addInstrumentsDbListener(instrumentsDbCache.getInstrumentsDbListener());
+		client.addInstrumentsDbListener(scanJobManager.getInstrumentsDbListener());
+		
+		taskQueue.addTaskQueueListener(CC.uiThreadQueueListener(new ErrorHandler()));
+		taskQueue.start();
+	}
+	
+	/**
+	 * Gets the session bound to the current thread.
+	 * @return The session bound to the current thread or
+	 * <code>null</code> if no session is bound to the current thread.
+	 */
+	static SamplerSession
+	getBoundSession() { return boundSession.get(); }
+	
+	/**
+	 * Binds this session to the current thread. Used by the threads which
+	 * are owned by this session, like the LSCP event thread of the client.
+	 */
+	void
+	bindCurrentThread() { boundSession.set(this); }
+	
+	/**
+	 * Runs the specified task in the current thread with this session bound to it,
+	 * so that the task queue, the client and the sampler model retrieved
+	 * through <code>CC</code> are the ones of this session.
+	 * @param r The task to run.
+	 */
+	public void
+	run(Runnable r) {
+		SamplerSession s = boundSession.get();
+		boundSession.set(this);
+		try { r.run(); }
+		finally { boundSession.set(s); }
+	}
+	
+	/**
+	 * Returns a task which runs the specified task with this session bound.
+	 * @see #run
+	 */
+	public Runnable
+	bind(final Runnable r) {
+		return new Runnable() {
+			public void
+			run() { SamplerSession.this.run(r); }
+		};
+	}
+	
+	/**
+	 * Schedules the specified task for execution on the UI
+	 * thread with this session bound to the UI thread.
+	 * @see CC#runOnUiThread
+	 */
+	public void
+	runOnUiThread(Runnable r) { CC.runOnUiThread(bind(r)); }
+	
+	/** Determines whether this is the default session. */
+	public boolean
+	isDefault() { return defaultSession; }
+	
+	/**
+	 * Gets the backend of this session.
+	 * @return The backend of this session or <code>null</code> if
+	 * this is the default session and it is not connected yet.
+	 */
+	public Server
+	getServer() { return defaultSession ? CC.getCurrentServer() : server; }
+	
+	/** Gets the LSCP client of this session. */
+	public Client
+	getClient() { return client; }
+	
+	/** Gets the task queue of this session. */
+	public TaskQueue
+	getTaskQueue() { return taskQueue; }
+	
+	/** Gets the model of the backend of this session. */
+	public SamplerModel
+	getSamplerModel() { return samplerModel; }
+	
+	/** Gets the cache of the instruments database of the backend of this session. */
+	public InstrumentsDbCache
+	getInstrumentsDbCache() { return instrumentsDbCache; }
+	
+	/**
+	 * Gets the local search index of the instruments database of the backend of
+	 * this session, which is maintained only for the default session (if enabled).
+	 */
+	public InstrumentsDbIndex
+	getInstrumentsDbIndex() { return instrumentsDbIndex; }
+	
+	/** Gets the manager of the instruments scan jobs of this session. */
+	public ScanJobManager
+	getScanJobManager() { return scanJobManager; }
+	
+	/**
+	 * Determines whether the connection to the backend is established.
+	 * Note that for the default session this is determined by the
+	 * connection listeners of <code>CC</code>.
+	 */
+	public synchronized boolean
+	isConnected() { return connected; }
+	
+	private synchronized void
+	setConnected(boolean b) { connected = b; }
+	
+	/** Determines whether this session is closed. */
+	public synchronized boolean
+	isClosed() { return closed; }
+	
+	/**
+	 * Registers the specified listener to be notified (from
+	 * the UI thread) when the connection of this session is established.
+	 */
+	public void
+	addConnectionEstablishedListener(GenericListener l) { ceListeners.add(l); }
+	
+	/** Removes the specified listener. */
+	public void
+	removeConnectionEstablishedListener(GenericListener l) { ceListeners.remove(l); }
+	
+	private void
+	fireConnectionEstablishedEvent() {
+		GenericEvent e = new GenericEvent(this);
+		for(GenericListener l : ceListeners) l.jobDone(e);
+	}
+	
+	/**
+	 * Connects this session to its backend and retrieves the backend state.
+	 * The connection is done asynchronously in the task queue of this session.
+	 * Note that the default session is connected with <code>CC.reconnect()</code>.
+	 */
+	public void
+	connect() {
+		if(defaultSession) throw new IllegalStateException("The default session is managed by CC");
+		if(isClosed()) return;
+		
+		final SetServerAddress ssa = new SetServerAddress(server.getAddress(), server.getPort());
+		final Global.Connect cnt = new Global.Connect();
+		
+		cnt.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(cnt.doneWithErrors()) {
+					CC.getLogger().info("Failed to connect to " + server.getName());
+					return;
+				}
+				
+				setConnected(true);
+				
+				// the database of the previous connection may be changed
+				instrumentsDbCache.clear();
+				scanJobManager.reset();
+				
+				synchronize();
+				fireConnectionEstablishedEvent();
+			}
+		});
+		
+		ssa.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) { taskQueue.add(cnt); }
+		});
+		
+		setConnected(false);
+		samplerModel.reset();
+		taskQueue.removePendingTasks();
+		taskQueue.add(ssa);
+	}
+	
+	/**
+	 * Closes the connection of this session and stops its task queue.
+	 * The default session can't be closed.
+	 */
+	public void
+	close() {
+		if(defaultSession) throw new IllegalStateException("The default session can't be closed");
+		
+		synchronized(this) {
+			if(closed) return;
+			closed = true;
+			connected = false;
+		}
+		
+		taskQueue.removePendingTasks();
+		taskQueue.add(new Global.Disconnect());
+		taskQueue.add(new EnhancedTask() {
+			@Override
+			public void
+			exec() { taskQueue.interrupt(); }
+		});
+	}
+	
+	/**
+	 * Adds to the task queue of this session the tasks, which retrieve
+	 * the backend state. Should be invoked when the connection is established.
+	 */
+	void
+	synchronize() {
+		final DefaultSamplerModel model = samplerModel;
+		
+		final Global.GetServerInfo gsi = new Global.GetServerInfo();
+		gsi.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(!gsi.doneWithErrors()) model.setServerInfo(gsi.getResult());
+			}
+		});
+		
+		final Audio.GetDrivers gaod = new Audio.GetDrivers();
+		gaod.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(!gaod.doneWithErrors())
+					model.setAudioOutputDrivers(gaod.getResult());
+			}
+		});
+		
+		final Global.GetEngines ge = new Global.GetEngines();
+		ge.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(!ge.doneWithErrors()) model.setEngines(ge.getResult());
+			}
+		});
+		
+		final Midi.GetDrivers gmid = new Midi.GetDrivers();
+		gmid.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(!gmid.doneWithErrors())
+					model.setMidiInputDrivers(gmid.getResult());
+			}
+		});
+		
+		final Global.GetVolume gv = new Global.GetVolume();
+		gv.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(!gv.doneWithErrors())
+					model.setVolume(gv.getResult());
+			}
+		});
+		
+		final Midi.GetInstrumentMaps mgim = new Midi.GetInstrumentMaps();
+		mgim.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(mgim.doneWithErrors()) return;
+				model.removeAllMidiInstrumentMaps();
+				
+				for(MidiInstrumentMap map : mgim.getResult()) {
+					model.addMidiInstrumentMap(map);
+				}
+			}
+		});
+		
+		final Global.GetEffects gfx = new Global.GetEffects();
+		gfx.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(!gfx.doneWithErrors()) model.getEffects().setEffects(gfx.getResult());
+			}
+		});
+		
+		final UpdateChannels uc = new UpdateChannels();
+		uc.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				for(SamplerChannelModel c : model.getChannels()) {
+					if(c.getChannelInfo().getEngine() == null) continue;
+					
+					Channel.GetFxSends gfs = new Channel.GetFxSends();
+					gfs.setChannel(c.getChannelId());
+					gfs.addTaskListener(new GetFxSendsListener());
+					taskQueue.add(gfs);
+				}
+				
+				// TODO: This should be done after the fx sends are set
+				//CC.getSamplerModel().setModified(false);
+			}
+		});
+		
+		// Don't change order!!!
+		taskQueue.add(gsi);
+		taskQueue.add(gaod);
+		taskQueue.add(gmid);
+		taskQueue.add(ge);
+		taskQueue.add(gv);
+		taskQueue.add(mgim);
+		taskQueue.add(gfx);
+		taskQueue.add(new Midi.UpdateDevices());
+		taskQueue.add(new Audio.UpdateDevices());
+		
+		Task[] tasks = taskQueue.getPendingTasks();
+		if(tasks.length == 0 || !tasks[tasks.length - 1].equals(uc)) taskQueue.add(uc);
+		taskQueue.add(new Global.UpdateSendEffectChains());
+		
+		int vl = CC.preferences().getIntProperty(JSPrefs.GLOBAL_VOICE_LIMIT);
+		int sl = CC.preferences().getIntProperty(JSPrefs.GLOBAL_STREAM_LIMIT);
+		
+		taskQueue.add(new Global.SetPolyphony(vl, sl));
+	}
+	
+	@Override
+	public String
+	toString() {
+		Server s = getServer();
+		return s == null ? "Default session" : s.getName();
+	}
+	
+	private class GetFxSendsListener implements TaskListener {
+		public void
+		taskPerformed(TaskEvent e) {
+			Channel.GetFxSends gfs = (Channel.GetFxSends)e.getSource();
+			if(gfs.doneWithErrors()) return;
+			SamplerChannelModel m = samplerModel.getChannelById(gfs.getChannel());
+			if(m == null) return;
+			m.removeAllFxSends();
+			
+			for(FxSend fxs : gfs.getResult()) m.addFxSend(fxs);
+		}
+	}
+	
+	/**
+	 * The task queue of a non-default session, which assigns the session
+	 * to the tasks added to it and binds the session to its thread.
+	 */
+	private class SessionTaskQueue extends TaskQueue {
+		SessionTaskQueue() {
+			setName("Session-Task-Queue-" + server.getName());
+			setDaemon(true);
+		}
+		
+		@Override
+		public void
+		add(Task t) {
+			if(t instanceof EnhancedTask) ((EnhancedTask)t).setSession(SamplerSession.this);
+			super.add(t);
+		}
+		
+		@Override
+		public void
+		run() {
+			bindCurrentThread();
+			super.run();
+		}
+	}
+	
+	/**
+	 * Logs the failed tasks of a non-default session, because
+	 * the errors of these tasks are not shown to the user.
+	 */
+	private class ErrorHandler implements TaskQueueListener {
+		@Override
+		public void
+		stateChanged(TaskQueueEvent e) {
+			switch(e.getEventID()) {
+			case TASK_DONE:
+				EnhancedTask t = (EnhancedTask)e.getSource();
+				if(!t.doneWithErrors() || t.isSilent()) break;
+				
+				if(t.getErrorCode() == EnhancedTask.SOCKET_ERROR) setConnected(false);
+				CC.getLogger().log(Level.INFO, SamplerSession.this + ": " + t.getErrorMessage());
+				break;
+			default:
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import com.grigoriliev.jsampler.jlscp.ScanJobInfo;
+
+import com.grigoriliev.jsampler.task.EnhancedTask;
+import com.grigoriliev.jsampler.task.InstrumentsDb;
+
+import static com.grigoriliev.jsampler.jlscp.Client.ScanMode;
+
+/**
+ * Represents a request for scanning a file system directory for instruments
+ * and adding them to the instruments database, which is managed by
+ * {@link ScanJobManager}. Besides the job information provided by the backend,
+ * the throughput of the scan and the estimated time of completion are tracked.
+ * @author Grigor Iliev
+ */
+public class ScanJob {
+	/** The state of a scan job. */
+	public static enum State {
+		/** The job is waiting for a free slot to be started. */
+		QUEUED,
+		
+		/** The job is being started. */
+		STARTING,
+		
+		/** The backend is scanning the directory. */
+		RUNNING,
+		
+		/** The scan is completed. */
+		FINISHED,
+		
+		/** The job couldn't be started or its information couldn't be retrieved. */
+		FAILED,
+		
+		/** The job was cancelled before being started. */
+		CANCELLED
+	}
+	
+	/** The weight of the last measurement in the current throughput. */
+	private static final double RATE_SMOOTHING = 0.3;
+	
+	private final String dbDir;
+	private final String fsDir;
+	private final ScanMode mode;
+	private final boolean insDir;
+	
+	private State state = State.QUEUED;
+	private int jobId = -1;
+	private ScanJobInfo info = null;
+	
+	private long startTime = 0;
+	private long endTime = 0;
+	private long lastUpdateTime = 0;
+	private int lastFilesScanned = 0;
+	private double rate = 0;
+	
+	/**
+	 * Creates a new instance of <code>ScanJob</code>.
+	 * @param dbDir The absolute path name of the database directory
+	 * in which the instruments will be added.
+	 * @param fsDir The absolute path name of the file system directory.
+	 * @param mode Determines whether the subdirectories should be scanned and
+	 * whether their structure should be re-created in the database directory.
+	 * @param insDir If <code>true</code>, a directory will be created for each 
+	 * instrument file.
+	 */
+	public
+	ScanJob(String dbDir, String fsDir, ScanMode mode, boolean insDir) {
+		this.dbDir = dbDir;
+		this.fsDir = fsDir;
+		this.mode = mode;
+		this.insDir = insDir;
+	}
+	
+	/** Creates the task which starts this job in the backend. */
+	EnhancedTask<Integer>
+	createStartTask() {
+		switch(mode) {
+		case NON_RECURSIVE:
+			return new InstrumentsDb.AddInstrumentsNonrecursive(dbDir, fsDir, insDir);
+		case FLAT:
+			return new InstrumentsDb.AddInstruments(dbDir, fsDir, true, insDir);
+		default:
+			return new InstrumentsDb.AddInstruments(dbDir, fsDir, false, insDir);
+		}
+	}
+	
+	/** Gets the absolute path name of the database directory. */
+	public String
+	getDbDirectory() { return dbDir; }
+	
+	/** Gets the absolute path name of the file system directory. */
+	public String
+	getFsDirectory() { return fsDir; }
+	
+	/** Gets the scan mode. */
+	public ScanMode
+	getScanMode() { return mode; }
+	
+	/** Determines whether a directory is created for each instrument file. */
+	public boolean
+	getInstrumentDirectories() { return insDir; }
+	
+	/** Gets the current state of this job. */
+	public State
+	getState() { return state; }
+	
+	void
+	setState(State state) {
+		this.state = state;
+		long now = System.currentTimeMillis();
+		if(state == State.STARTING) startTime = now;
+		if(isDone()) endTime = now;
+	}
+	
+	/** Determines whether this job is finished, failed or cancelled. */
+	public boolean
+	isDone() {
+		return state == State.FINISHED || state == State.FAILED || state == State.CANCELLED;
+	}
+	
+	/**
+	 * Gets the ID of the job in the backend.
+	 * @return The ID of the job or -1 if the job is not started yet.
+	 */
+	public int
+	getJobId() { return jobId; }
+	
+	void
+	setJobId(int id) { jobId = id; }
+	
+	/**
+	 * Gets the last retrieved job information.
+	 * @return The last retrieved job information or
+	 * <code>null</code> if not retrieved yet.
+	 */
+	public ScanJobInfo
+	getJobInfo() { return info; }
+	
+	/** Updates the job information and the throughput. */
+	void
+	setJobInfo(ScanJobInfo info) {
+		this.info = info;
+		long now = System.currentTimeMillis();
+		int scanned = info.getFilesScanned();
+		
+		if(lastUpdateTime > 0 && now > lastUpdateTime) {
+			double r = (scanned - lastFilesScanned) * 1000.0 / (now - lastUpdateTime);
+			rate = rate == 0 ? r : RATE_SMOOTHING * r + (1 - RATE_SMOOTHING) * rate;
+		}
+		
+		lastUpdateTime = now;
+		lastFilesScanned = scanned;
+		
+		if(info.isFinished()) setState(State.FINISHED);
+	}
+	
+	/** Gets the number of files scanned so far. */
+	public int
+	getFilesScanned() { return info == null ? 0 : info.getFilesScanned(); }
+	
+	/**
+	 * Gets the total number of files to be scanned.
+	 * @return The total number of files or 0 if not known yet.
+	 */
+	public int
+	getFilesTotal() { return info == null ? 0 : info.getFilesTotal(); }
+	
+	/** Gets the elapsed time (in milliseconds) since the job was started. */
+	public long
+	getElapsedTime() {
+		if(startTime == 0) return 0;
+		return (endTime != 0 ? endTime : System.currentTimeMillis()) - startTime;
+	}
+	
+	/** Gets the current throughput in files per second. */
+	public double
+	getFilesPerSecond() { return rate; }
+	
+	/** Gets the average throughput (since the job was started) in files per second. */
+	public double
+	getAverageFilesPerSecond() {
+		long t = getElapsedTime();
+		return t == 0 ? 0 : getFilesScanned() * 1000.0 / t;
+	}
+	
+	/**
+	 * Gets the estimated remaining time (in seconds) until the job is finished.
+	 * @return The estimated remaining time or -1 if it can't be estimated yet.
+	 */
+	public int
+	getEta() {
+		if(isDone()) return 0;
+		double r = rate > 0 ? rate : getAverageFilesPerSecond();
+		if(r <= 0 || getFilesTotal() == 0) return -1;
+		return (int)Math.ceil((getFilesTotal() - getFilesScanned()) / r);
+	}
+	
+	@Override
+	public String
+	toString() { return fsDir + " -> " + dbDir; }
+}
@@ -0,0 +1,339 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.HashSet;
+import java.util.Vector;
+
+import com.grigoriliev.jsampler.event.ScanJobEvent;
+import com.grigoriliev.jsampler.event.ScanJobListener;
+
+import com.grigoriliev.jsampler.jlscp.event.InstrumentsDbAdapter;
+import com.grigoriliev.jsampler.jlscp.event.InstrumentsDbEvent;
+
+import com.grigoriliev.jsampler.juife.TaskQueue;
+import com.grigoriliev.jsampler.juife.event.TaskEvent;
+import com.grigoriliev.jsampler.juife.event.TaskListener;
+
+import com.grigoriliev.jsampler.task.EnhancedTask;
+import com.grigoriliev.jsampler.task.InstrumentsDb;
+
+import static com.grigoriliev.jsampler.jlscp.Client.ScanMode;
+
+/**
+ * Manages the instruments scan jobs. The jobs are queued and started when
+ * the number of the running jobs is below the configured limit. The progress
+ * of the running jobs is updated on the instruments database job notification
+ * events, instead of polling the backend. The jobs are started and their
+ * information is retrieved using a separate task queue,
+ * so that the main task queue is not occupied. Each session has its own
+ * manager, which runs the jobs on the backend of the session.
+ * All methods of this class should be invoked from the UI thread.
+ * @author Grigor Iliev
+ */
+public class ScanJobManager {
+	/** The default maximum number of jobs running at the same time. */
+	public static final int DEFAULT_MAX_RUNNING_JOBS = 1;
+	
+	private final SamplerSession session;
+	
+	private final Vector<ScanJob> jobs = new Vector<ScanJob>();
+	private int maxRunningJobs = DEFAULT_MAX_RUNNING_JOBS;
+	
+	/** The IDs of the jobs, whose information is being retrieved. */
+	private final HashSet<Integer> pendingUpdates = new HashSet<Integer>();
+	
+	/**
+	 * The IDs of the jobs, whose status has changed while their information
+	 * was being retrieved. Their information is retrieved again.
+	 */
+	private final HashSet<Integer> dirtyJobs = new HashSet<Integer>();
+	
+	private TaskQueue taskQueue = null;
+	
+	private final Vector<ScanJobListener> listeners = new Vector<ScanJobListener>();
+	
+	private final InstrumentsDbAdapter dbListener = new EventHandler();
+	
+	/**
+	 * Creates a new instance of <code>ScanJobManager</code>.
+	 * @param session The session, on whose backend the jobs are run.
+	 */
+	public
+	ScanJobManager(SamplerSession session) { this.session = session; }
+	
+	/**
+	 * Gets the listener which should be registered to the LSCP client
+	 * to receive the job status notifications.
+	 */
+	public InstrumentsDbAdapter
+	getInstrumentsDbListener() { return dbListener; }
+	
+	/**
+	 * Registers the specified listener to be notified when
+	 * a job is added, removed or its state or progress has changed.
+	 * @param l The <code>ScanJobListener</code> to register.
+	 */
+	public void
+	addScanJobListener(ScanJobListener l) { listeners.add(l); }
+	
+	/**
+	 * Removes the specified listener.
+	 * @param l The <code>ScanJobListener</code> to remove.
+	 */
+	public void
+	removeScanJobListener(ScanJobListener l) { listeners.remove(l); }
+	
+	/** Gets the maximum number of jobs running at the same time. */
+	public int
+	getMaxRunningJobs() { return maxRunningJobs; }
+	
+	/** Sets the maximum number of jobs running at the same time. */
+	public void
+	setMaxRunningJobs(int n) {
+		if(n < 1) throw new IllegalArgumentException("n < 1");
+		maxRunningJobs = n;
+		startQueuedJobs();
+	}
+	
+	/** Gets the number of jobs (including the finished ones). */
+	public int
+	getJobCount() { return jobs.size(); }
+	
+	/** Gets the job at the specified position. */
+	public ScanJob
+	getJob(int index) { return jobs.get(index); }
+	
+	/** Gets all jobs (including the finished ones). */
+	public ScanJob[]
+	getJobs() { return jobs.toArray(new ScanJob[jobs.size()]); }
+	
+	/**
+	 * Queues a new job for adding the instruments in the specified
+	 * file system directory to the instruments database.
+	 * @param dbDir The absolute path name of the database directory
+	 * in which the instruments will be added.
+	 * @param fsDir The absolute path name of the file system directory.
+	 * @param mode Determines whether the subdirectories should be scanned and
+	 * whether their structure should be re-created in the database directory.
+	 * @param insDir If <code>true</code>, a directory will be created for each 
+	 * instrument file.
+	 * @return The newly created job.
+	 */
+	public ScanJob
+	addJob(String dbDir, String fsDir, ScanMode mode, boolean insDir) {
+		ScanJob job = new ScanJob(dbDir, fsDir, mode, insDir);
+		jobs.add(job);
+		fireJobAdded(job);
+		startQueuedJobs();
+		return job;
+	}
+	
+	/**
+	 * Cancels the specified job if it is not started yet.
+	 * The backend doesn't provide means to abort a running scan.
+	 * @return <code>true</code> if the job is cancelled,
+	 * <code>false</code> if the job is already started.
+	 */
+	public boolean
+	cancelJob(ScanJob job) {
+		if(job.getState() != ScanJob.State.QUEUED) return false;
+		job.setState(ScanJob.State.CANCELLED);
+		fireJobChanged(job);
+		return true;
+	}
+	
+	/** Removes the specified job if it is done. */
+	public void
+	removeJob(ScanJob job) {
+		if(!job.isDone() || !jobs.remove(job)) return;
+		fireJobRemoved(job);
+	}
+	
+	/** Removes all jobs, which are done. */
+	public void
+	removeDoneJobs() {
+		for(ScanJob job : getJobs()) removeJob(job);
+	}
+	
+	/**
+	 * Removes all jobs. Should be invoked when reconnecting,
+	 * because the jobs of the previous backend cannot be tracked anymore.
+	 */
+	public void
+	reset() {
+		pendingUpdates.clear();
+		dirtyJobs.clear();
+		if(taskQueue != null) taskQueue.removePendingTasks();
+		
+		for(ScanJob job : getJobs()) {
+			jobs.remove(job);
+			fireJobRemoved(job);
+		}
+	}
+	
+	/** Gets the number of jobs, which are started and not finished yet. */
+	public int
+	getRunningJobCount() {
+		int count = 0;
+		for(ScanJob job : jobs) {
+			ScanJob.State s = job.getState();
+			if(s == ScanJob.State.STARTING || s == ScanJob.State.RUNNING) count++;
+		}
+		
+		return count;
+	}
+	
+	private void
+	startQueuedJobs() {
+		int running = getRunningJobCount();
+		for(ScanJob job : getJobs()) {
+			if(running >= maxRunningJobs) break;
+			if(job.getState() != ScanJob.State.QUEUED) continue;
+			startJob(job);
+			running++;
+		}
+	}
+	
+	private void
+	startJob(final ScanJob job) {
+		job.setState(ScanJob.State.STARTING);
+		fireJobChanged(job);
+		
+		final EnhancedTask<Integer> t = job.createStartTask();
+		t.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(!jobs.contains(job)) return;
+				
+				if(t.doneWithErrors()) {
+					job.setState(ScanJob.State.FAILED);
+					fireJobChanged(job);
+					startQueuedJobs();
+					return;
+				}
+				
+				job.setJobId(t.getResult());
+				job.setState(ScanJob.State.RUNNING);
+				fireJobChanged(job);
+				
+				// The job may have progressed before its ID was known
+				updateJob(job);
+			}
+		});
+		
+		addTask(t);
+	}
+	
+	/** Retrieves the information about the specified job. */
+	private void
+	updateJob(final ScanJob job) {
+		final int id = job.getJobId();
+		if(pendingUpdates.contains(id)) {
+			// the retrieved information may be older than the change
+			dirtyJobs.add(id);
+			return;
+		}
+		
+		pendingUpdates.add(id);
+		
+		final InstrumentsDb.GetScanJobInfo t = new InstrumentsDb.GetScanJobInfo(id);
+		t.setSilent(true);
+		t.addTaskListener(new TaskListener() {
+			public void
+			taskPerformed(TaskEvent e) {
+				if(!pendingUpdates.remove(id)) return;
+				boolean dirty = dirtyJobs.remove(id);
+				if(!jobs.contains(job) || job.isDone()) return;
+				
+				if(t.doneWithErrors()) job.setState(ScanJob.State.FAILED);
+				else job.setJobInfo(t.getResult());
+				
+				fireJobChanged(job);
+				if(job.isDone()) startQueuedJobs();
+				else if(dirty) updateJob(job);
+			}
+		});
+		
+		addTask(t);
+	}
+	
+	private ScanJob
+	getJobById(int id) {
+		for(ScanJob job : jobs) {
+			if(job.getJobId() == id && !job.isDone()) return job;
+		}
+		
+		return null;
+	}
+	
+	/** Adds the specified task to the task queue, to be executed in the session. */
+	private void
+	addTask(EnhancedTask t) {
+		t.setSession(session);
+		getTaskQueue().add(t);
+	}
+	
+	/** Gets the task queue used for starting and tracking the jobs. */
+	private TaskQueue
+	getTaskQueue() {
+		if(taskQueue == null) {
+			taskQueue = new TaskQueue();
+			taskQueue.start();
+		}
+		
+		return taskQueue;
+	}
+	
+	private void
+	fireJobAdded(ScanJob job) {
+		ScanJobEvent e = new ScanJobEvent(this, job);
+		for(ScanJobListener l : listeners) l.jobAdded(e);
+	}
+	
+	private void
+	fireJobChanged(ScanJob job) {
+		ScanJobEvent e = new ScanJobEvent(this, job);
+		for(ScanJobListener l : listeners) l.jobChanged(e);
+	}
+	
+	private void
+	fireJobRemoved(ScanJob job) {
+		ScanJobEvent e = new ScanJobEvent(this, job);
+		for(ScanJobListener l : listeners) l.jobRemoved(e);
+	}
+	
+	private class EventHandler extends InstrumentsDbAdapter {
+		/** Invoked when the status of particular job has changed. */
+		@Override
+		public void
+		jobStatusChanged(final InstrumentsDbEvent e) {
+			session.runOnUiThread(new Runnable() {
+				public void
+				run() {
+					ScanJob job = getJobById(e.getJobId());
+					if(job != null) updateJob(job);
+				}
+			});
+		}
+	}
+}
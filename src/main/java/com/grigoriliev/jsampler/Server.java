@@ -23,6 +23,10 @@ package com.grigoriliev.jsampler;
 
 import java.io.Serializable;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -177,6 +181,65 @@ public class Server extends Resource implements Serializable {
 		node.appendChild(el);
 	}
 	
+	/**
+	 * Reads and sets the server information from the specified reader,
+	 * which should be positioned at the start tag of a server element.
+	 * The reader is positioned at the end tag of the element afterwards.
+	 * @param r The reader providing the server information.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the server information.
+	 * @throws XMLStreamException If the XML is malformed.
+	 */
+	public void
+	readObject(XMLStreamReader r) throws XMLStreamException {
+		XMLStreamUtils.requireStartElement(r, "server", "Not a server node!");
+		setName(XMLStreamUtils.getRequiredAttribute (
+			r, "name", "The server name is undefined!"
+		));
+		
+		while(XMLStreamUtils.nextChildElement(r)) {
+			String s = r.getLocalName();
+			if(s.equals("description")) {
+				String d = XMLStreamUtils.readText(r);
+				if(d.length() > 0) setDescription(d);
+			} else if(s.equals("address")) {
+				String a = XMLStreamUtils.readText(r);
+				if(a.length() > 0) setAddress(a);
+			} else if(s.equals("port")) {
+				String port = XMLStreamUtils.readText(r);
+				if(port.length() == 0) continue;
+				
+				int p;
+				try { p = Integer.parseInt(port); }
+				catch(Exception e) {
+					throw new IllegalArgumentException("Invalid port!");
+				}
+				
+				setPort(p);
+			} else {	// Unknown content
+				CC.getLogger().info ("Unknown field: " + s);
+				XMLStreamUtils.skipElement(r);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the server information to the specified writer.
+	 * @param w The writer where the server information should be written.
+	 * @throws XMLStreamException If an error occurs while writing.
+	 */
+	public void
+	writeObject(XMLStreamWriter w) throws XMLStreamException {
+		w.writeStartElement("server");
+		w.writeAttribute("name", getName());
+		
+		XMLStreamUtils.writeTextElement(w, "description", getDescription());
+		XMLStreamUtils.writeTextElement(w, "address", getAddress());
+		XMLStreamUtils.writeTextElement(w, "port", String.valueOf(getPort()));
+		
+		w.writeEndElement();
+	}
+	
 	@Override
 	public String
 	toString() { return getName(); }
@@ -26,6 +26,10 @@ import java.util.Vector;
 import com.grigoriliev.jsampler.juife.event.GenericEvent;
 import com.grigoriliev.jsampler.juife.event.GenericListener;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -261,4 +265,40 @@ public class ServerList {
 			getServer(i).writeObject(doc, node);
 		}
 	}
+	
+	/**
+	 * Reads and loads the content of this server list from the specified reader,
+	 * which should be positioned at the start tag of a server list element.
+	 * The reader is positioned at the end tag of the element afterwards.
+	 * @param r The reader providing the content of this server list.
+	 * @throws IllegalArgumentException If an error occurs while
+	 * reading the content of this server list.
+	 * @throws XMLStreamException If the XML is malformed.
+	 */
+	public void
+	readObject(XMLStreamReader r) throws XMLStreamException {
+		XMLStreamUtils.requireStartElement(r, "servers", "Not a server list node!");
+		
+		while(XMLStreamUtils.nextChildElement(r)) {
+			Server s = new Server();
+			s.readObject(r);
+			addServer(s);
+		}
+	}
+	
+	/**
+	 * Writes the content of this server list to the specified writer.
+	 * @param w The writer where the content of this server list should be written.
+	 * @throws XMLStreamException If an error occurs while writing.
+	 */
+	public void
+	writeObject(XMLStreamWriter w) throws XMLStreamException {
+		w.writeStartElement("servers");
+		
+		for(int i = 0; i < getServerCount(); i++) {
+			getServer(i).writeObject(w);
+		}
+		
+		w.writeEndElement();
+	}
 }
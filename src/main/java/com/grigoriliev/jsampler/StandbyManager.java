@@ -0,0 +1,327 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+
+package com.grigoriliev.jsampler;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.grigoriliev.jsampler.juife.event.GenericEvent;
+import com.grigoriliev.jsampler.juife.event.GenericListener;
+
+
+/**
+ * Implements the hot-standby mode, in which a standby server from the server list
+ * (specified by {@link JSPrefs#STANDBY_SERVER_INDEX}) is kept in sync with the
+ * active server and the frontend switches to the standby server when the active
+ * one fails.
+ *
+ * <p>The standby server is synchronized periodically by applying the changes of the
+ * session since the last synchronization (see {@link BackendStateSync}) and it is
+ * considered in sync only after it has finished loading the instruments. The active server
+ * is health-checked with lightweight probes (see {@link BackendProbe}) and after
+ * {@link JSPrefs#STANDBY_FAILURE_THRESHOLD} consecutive failed probes, or as soon as
+ * a task fails with a socket error, the frontend reconnects to the standby server.
+ * The failover time is therefore bounded by the probe interval multiplied by
+ * the failure threshold. After a failover the previous active server becomes
+ * the standby server and it is synchronized as soon as it is up again.</p>
+ * @author Grigor Iliev
+ */
+public class StandbyManager {
+	private Timer timer = null;
+	
+	/** Determines whether the active server is connected and its state is retrieved. */
+	private boolean activeConnected = false;
+	
+	/** The active server before the last failover. */
+	private Server previousActive = null;
+	
+	/** Synchronizes the standby server or <code>null</code> if not synchronized yet. */
+	private BackendStateSync sync = null;
+	
+	/** Determines whether the standby server is synchronized and its instruments are loaded. */
+	private boolean inSync = false;
+	
+	/** Determines whether the instruments loaded by the standby server should be checked. */
+	private boolean loading = false;
+	
+	/** Determines whether a failover is initiated and not completed yet. */
+	private boolean failingOver = false;
+	
+	private int failedProbes = 0;
+	private long lastSyncTime = 0;
+	
+	/** Creates a new instance of <code>StandbyManager</code>. */
+	public
+	StandbyManager() { }
+	
+	/**
+	 * Registers the connection listeners, which start and pause the standby mode.
+	 * Should be invoked once, when the application is initialized.
+	 */
+	void
+	init() {
+		CC.addReconnectListener(new GenericListener() {
+			public void
+			jobDone(GenericEvent e) { setActiveConnected(false); }
+		});
+		
+		CC.addConnectionEstablishedListener(new GenericListener() {
+			public void
+			jobDone(GenericEvent e) {
+				setActiveConnected(true);
+				start();
+			}
+		});
+	}
+	
+	/** Determines whether the hot-standby mode is enabled. */
+	public boolean
+	isEnabled() { return CC.preferences().getIntProperty(JSPrefs.STANDBY_SERVER_INDEX) >= 0; }
+	
+	/**
+	 * Gets the current standby server.
+	 * @return The current standby server or <code>null</code>
+	 * if the hot-standby mode is disabled.
+	 */
+	public synchronized Server
+	getStandbyServer() {
+		int i = CC.preferences().getIntProperty(JSPrefs.STANDBY_SERVER_INDEX);
+		if(i < 0 || i >= CC.getServerList().getServerCount()) return null;
+		
+		Server s = CC.getServerList().getServer(i);
+		if(s != CC.getCurrentServer()) return s;
+		
+		// after a failover to the configured standby server
+		return previousActive;
+	}
+	
+	/** Determines whether the standby server is in sync with the active server. */
+	public synchronized boolean
+	isStandbyInSync() {
+		Server s = getStandbyServer();
+		return s != null && sync != null && s == sync.getServer() && inSync;
+	}
+	
+	private synchronized void
+	setActiveConnected(boolean b) {
+		activeConnected = b;
+		failedProbes = 0;
+		if(b) failingOver = false;
+	}
+	
+	/**
+	 * Determines whether a failover is initiated and the connection
+	 * to the standby server is not established yet. The socket errors
+	 * of the tasks for the failed server should be ignored meanwhile.
+	 */
+	public synchronized boolean
+	isFailingOver() { return failingOver; }
+	
+	private synchronized boolean
+	isActiveConnected() { return activeConnected; }
+	
+	/** Starts the health checks and the synchronization, if the standby mode is enabled. */
+	public synchronized void
+	start() {
+		if(timer != null || !isEnabled()) return;
+		
+		int interval = CC.preferences().getIntProperty(JSPrefs.STANDBY_PROBE_INTERVAL);
+		interval = Math.max(interval, 100);
+		
+		timer = new Timer("Standby-Manager", true);
+		timer.schedule(new TimerTask() {
+			public void
+			run() { tick(); }
+		}, interval, interval);
+	}
+	
+	/** Stops the health checks and the synchronization. */
+	public synchronized void
+	stop() {
+		if(timer == null) return;
+		timer.cancel();
+		timer = null;
+	}
+	
+	/**
+	 * Switches to the standby server if it is in sync.
+	 * Should be invoked from the UI thread.
+	 * @return <code>true</code> if the failover is initiated, <code>false</code> otherwise.
+	 */
+	public boolean
+	failover() {
+		Server standby;
+		
+		synchronized(this) {
+			if(!isEnabled() || !isStandbyInSync()) {
+				failingOver = false;
+				return false;
+			}
+			
+			failingOver = true;
+			
+			standby = getStandbyServer();
+			previousActive = CC.getCurrentServer();
+			sync = null;
+			inSync = false;
+			loading = false;
+			activeConnected = false;
+			failedProbes = 0;
+		}
+		
+		CC.getLogger().warning (
+			"Failing over from " + previousActive.getName() + " to " + standby.getName()
+		);
+		
+		CC.switchToServer(standby);
+		return true;
+	}
+	
+	private void
+	tick() {
+		if(!isEnabled()) {
+			stop();
+			return;
+		}
+		
+		Server active = CC.getCurrentServer();
+		if(active == null || !isActiveConnected()) return;
+		
+		if(!BackendProbe.isReady(active, BackendProbe.DEFAULT_TIMEOUT)) {
+			int n;
+			synchronized(this) { n = ++failedProbes; }
+			CC.getLogger().info("Health check of " + active.getName() + " failed (" + n + ")");
+			
+			if(n >= CC.preferences().getIntProperty(JSPrefs.STANDBY_FAILURE_THRESHOLD)) {
+				CC.runOnUiThread(new Runnable() {
+					public void
+					run() { failover(); }
+				});
+			}
+			
+			return;
+		}
+		
+		synchronized(this) { failedProbes = 0; }
+		
+		if(isLoading()) {
+			checkLoaded();
+			return;
+		}
+		
+		long t = System.currentTimeMillis();
+		int syncInterval = CC.preferences().getIntProperty(JSPrefs.STANDBY_SYNC_INTERVAL);
+		if(t - lastSyncTime < syncInterval * 1000L) return;
+		lastSyncTime = t;
+		
+		synchronize();
+	}
+	
+	private synchronized boolean
+	isLoading() { return loading; }
+	
+	/** Marks the standby server in sync when it has finished loading the instruments. */
+	private void
+	checkLoaded() {
+		BackendStateSync s;
+		synchronized(this) { s = sync; }
+		if(s == null) return;
+		
+		boolean b;
+		
+		try { b = s.isLoaded(); }
+		catch(Exception x) {
+			CC.getLogger().info (
+				"Failed to check " + s.getServer().getName() + ": " + HF.getErrorMessage(x)
+			);
+			return;
+		}
+		
+		boolean wasInSync;
+		
+		synchronized(this) {
+			if(s != sync) return;
+			wasInSync = inSync;
+			loading = !b;
+			inSync = b;
+		}
+		
+		if(!b || wasInSync) return;
+		
+		CC.getLogger().fine("Standby server " + s.getServer().getName() + " synchronized");
+	}
+	
+	/** Applies the changes of the session to the standby server. */
+	private void
+	synchronize() {
+		final Server standby = getStandbyServer();
+		if(standby == null) return;
+		
+		BackendStateSync s;
+		
+		synchronized(this) {
+			if(sync == null || sync.getServer() != standby) {
+				sync = new BackendStateSync(standby) {
+					@Override
+					protected boolean
+					isPrimaryReady() { return isSessionReady(); }
+				};
+				
+				inSync = false;
+			}
+			
+			s = sync;
+		}
+		
+		boolean b;
+		
+		try { b = s.synchronize(); }
+		catch(Exception x) {
+			CC.getLogger().info (
+				"Failed to synchronize " + standby.getName() + ": " + HF.getErrorMessage(x)
+			);
+			
+			// the state of the standby server is unknown
+			s.invalidate();
+			synchronized(this) { if(s == sync) inSync = false; }
+			return;
+		}
+		
+		if(!b) return;
+		
+		// the changes may include instruments, which are loaded in background
+		checkLoaded();
+	}
+	
+	/**
+	 * Determines whether the state of the active server is retrieved and there
+	 * are no pending changes, so that the session can be exported.
+	 * Invoked from the UI thread.
+	 */
+	private boolean
+	isSessionReady() {
+		if(!isActiveConnected()) return false;
+		if(CC.getDefaultSession().getTaskQueue().getRunningTask() != null) return false;
+		return CC.getDefaultSession().getTaskQueue().getPendingTasks().length == 0;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.Vector;
+
+
+/**
+ * Records the duration of the startup phases of the application. The phases
+ * are recorded with {@link #mark} and the timeline is logged when
+ * {@link #finish} is invoked (when the first connection to the backend is
+ * established). The deferred phases, which end after that (like the loading
+ * of the orchestras), are still recorded and each of them is logged when marked.
+ * This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class StartupTimeline {
+	private static class Phase {
+		final String name;
+		final long time;
+		
+		Phase(String name, long time) {
+			this.name = name;
+			this.time = time;
+		}
+	}
+	
+	private final long startTime = System.nanoTime();
+	private final Vector<Phase> phases = new Vector<Phase>();
+	private boolean finished = false;
+	
+	/** Creates a new instance of <code>StartupTimeline</code>. */
+	public
+	StartupTimeline() { }
+	
+	/**
+	 * Marks the end of the specified startup phase, which is considered started
+	 * at the end of the previous phase. If the startup is already finished,
+	 * the phase is logged immediately.
+	 * @param phase The name of the phase.
+	 */
+	public void
+	mark(String phase) {
+		String s;
+		synchronized(this) {
+			long prev = phases.isEmpty() ? startTime : phases.lastElement().time;
+			Phase p = new Phase(phase, System.nanoTime());
+			phases.add(p);
+			if(!finished) return;
+			s = "Startup timeline (ms): " + format(p, prev).trim();
+		}
+		
+		CC.getLogger().info(s);
+	}
+	
+	/**
+	 * Marks the end of the last startup phase and logs the timeline.
+	 * Does nothing if the startup is already finished.
+	 * @param phase The name of the last phase.
+	 */
+	public void
+	finish(String phase) {
+		String s;
+		synchronized(this) {
+			if(finished) return;
+			mark(phase);
+			finished = true;
+			s = toString();
+		}
+		
+		CC.getLogger().info(s);
+	}
+	
+	/** Determines whether the startup is finished. */
+	public synchronized boolean
+	isFinished() { return finished; }
+	
+	/**
+	 * Gets the time (in milliseconds) elapsed from the creation of this
+	 * timeline to the end of the last recorded phase.
+	 */
+	public synchronized long
+	getTotalTime() {
+		if(phases.isEmpty()) return 0;
+		return (phases.lastElement().time - startTime) / 1000000;
+	}
+	
+	/** Returns the timeline as a multi-line string. */
+	@Override
+	public synchronized String
+	toString() {
+		StringBuilder sb = new StringBuilder("Startup timeline (ms):\n");
+		
+		long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+		long t = System.currentTimeMillis() - (System.nanoTime() - startTime) / 1000000;
+		sb.append(String.format("  %6d %6d  JVM%n", 0, t - jvmStart));
+		
+		long prev = startTime;
+		for(Phase p : phases) {
+			sb.append(format(p, prev));
+			prev = p.time;
+		}
+		
+		sb.append(String.format("  %6d         Total", getTotalTime()));
+		return sb.toString();
+	}
+	
+	/**
+	 * Formats the offset and the duration of the specified phase.
+	 * @param prev The end of the previous phase.
+	 */
+	private String
+	format(Phase p, long prev) {
+		long offset = (p.time - startTime) / 1000000;
+		long duration = (p.time - prev) / 1000000;
+		return String.format("  %6d %6d  %s%n", offset, duration, p.name);
+	}
+}
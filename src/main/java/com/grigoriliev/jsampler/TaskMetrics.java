@@ -0,0 +1,191 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the statistics of the executed tasks per task class: the time spent
+ * waiting in the task queue, the execution time, the number of backend round
+ * trips and the error rate (see {@link TaskStatistics}). The statistics are
+ * recorded by <code>EnhancedTask</code> and are collected only when enabled
+ * (see {@link JSPrefs#TASK_METRICS}); when disabled the instrumentation costs
+ * a single volatile read per task. The statistics can be exposed as JMX MBeans
+ * under the <code>com.grigoriliev.jsampler</code> domain (see {@link #registerMBeans}).
+ * This class is thread-safe.
+ * @author Grigor Iliev
+ */
+public class TaskMetrics implements TaskMetricsMXBean {
+	/** The JMX object name of the task metrics. */
+	public static final String OBJECT_NAME = "com.grigoriliev.jsampler:type=TaskMetrics";
+	
+	private volatile boolean enabled = false;
+	private boolean mbeansRegistered = false;
+	
+	/** The statistics mapped to the task classes. */
+	private final Map<Class<?>, TaskStatistics> stats =
+		new HashMap<Class<?>, TaskStatistics>();
+	
+	/** Creates a new instance of <code>TaskMetrics</code>. */
+	public
+	TaskMetrics() { }
+	
+	@Override
+	public boolean
+	isEnabled() { return enabled; }
+	
+	@Override
+	public void
+	setEnabled(boolean b) { enabled = b; }
+	
+	/**
+	 * Records an execution of a task. The execution is ignored if
+	 * the collecting of statistics is disabled.
+	 * @param taskClass The class of the executed task.
+	 * @param queueTime The time (in nanoseconds) spent waiting in the task queue.
+	 * @param executionTime The execution time in nanoseconds.
+	 * @param roundTrips The number of backend round trips made by the task.
+	 * @param failed Determines whether the task failed.
+	 */
+	public void
+	record(Class<?> taskClass, long queueTime, long executionTime, int roundTrips, boolean failed) {
+		if(!enabled) return;
+		getStatistics(taskClass).record(queueTime, executionTime, roundTrips, failed);
+	}
+	
+	/** Gets the statistics of the specified task class. */
+	public synchronized TaskStatistics
+	getStatistics(Class<?> taskClass) {
+		TaskStatistics s = stats.get(taskClass);
+		if(s == null) {
+			s = new TaskStatistics(getName(taskClass));
+			stats.put(taskClass, s);
+			if(mbeansRegistered) registerMBean(s, getObjectName(s));
+		}
+		
+		return s;
+	}
+	
+	/** Gets the statistics of all task classes, sorted by the name of the task class. */
+	public synchronized TaskStatistics[]
+	getStatistics() {
+		TreeMap<String, TaskStatistics> m = new TreeMap<String, TaskStatistics>();
+		for(TaskStatistics s : stats.values()) m.put(s.getTaskClass(), s);
+		return m.values().toArray(new TaskStatistics[m.size()]);
+	}
+	
+	@Override
+	public String[]
+	getTaskClasses() {
+		TaskStatistics[] s = getStatistics();
+		String[] names = new String[s.length];
+		for(int i = 0; i < s.length; i++) names[i] = s[i].getTaskClass();
+		return names;
+	}
+	
+	@Override
+	public long
+	getExecutionCount() {
+		long n = 0;
+		for(TaskStatistics s : getStatistics()) n += s.getExecutionCount();
+		return n;
+	}
+	
+	@Override
+	public int
+	getQueueLength() { return CC.getTaskQueue().getPendingTasks().length; }
+	
+	@Override
+	public synchronized void
+	reset() {
+		for(TaskStatistics s : stats.values()) s.reset();
+	}
+	
+	/**
+	 * Registers this object and the statistics of the task classes
+	 * (including the ones added later) to the platform MBean server.
+	 */
+	public synchronized void
+	registerMBeans() {
+		if(mbeansRegistered) return;
+		mbeansRegistered = true;
+		
+		registerMBean(this, OBJECT_NAME);
+		for(TaskStatistics s : stats.values()) registerMBean(s, getObjectName(s));
+	}
+	
+	/** Unregisters all MBeans registered by {@link #registerMBeans}. */
+	public synchronized void
+	unregisterMBeans() {
+		if(!mbeansRegistered) return;
+		mbeansRegistered = false;
+		
+		unregisterMBean(OBJECT_NAME);
+		for(TaskStatistics s : stats.values()) unregisterMBean(getObjectName(s));
+	}
+	
+	/** Gets a short name of the specified class, like <code>Channel.UpdateInfo</code>. */
+	private static String
+	getName(Class<?> c) {
+		String s = c.getName();
+		s = s.substring(s.lastIndexOf('.') + 1);
+		return s.replace('$', '.');
+	}
+	
+	private static String
+	getObjectName(TaskStatistics s) {
+		return OBJECT_NAME + ",task=" + ObjectName.quote(s.getTaskClass());
+	}
+	
+	/** Registers the specified MBean to the platform MBean server. */
+	static void
+	registerMBean(Object mbean, String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(name);
+			if(server.isRegistered(on)) server.unregisterMBean(on);
+			server.registerMBean(mbean, on);
+		} catch(Exception x) {
+			CC.getLogger().log(Level.INFO, "Failed to register MBean: " + name, x);
+		}
+	}
+	
+	/** Unregisters the specified MBean from the platform MBean server. */
+	static void
+	unregisterMBean(String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(name);
+			if(server.isRegistered(on)) server.unregisterMBean(on);
+		} catch(Exception x) {
+			CC.getLogger().log(Level.INFO, "Failed to unregister MBean: " + name, x);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+/**
+ * The management interface of the task instrumentation.
+ * @see TaskMetrics
+ * @author Grigor Iliev
+ */
+public interface TaskMetricsMXBean {
+	/** Determines whether the statistics of the executed tasks are collected. */
+	public boolean isEnabled();
+	
+	/** Sets whether the statistics of the executed tasks should be collected. */
+	public void setEnabled(boolean b);
+	
+	/** Gets the names of the task classes, for which statistics are collected. */
+	public String[] getTaskClasses();
+	
+	/** Gets the total number of executed tasks. */
+	public long getExecutionCount();
+	
+	/** Gets the number of tasks currently waiting in the task queue. */
+	public int getQueueLength();
+	
+	/** Discards all collected statistics. */
+	public void reset();
+}
@@ -0,0 +1,157 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+/**
+ * Provides the statistics of the executions of the tasks of a specific class:
+ * the time spent waiting in the task queue, the execution time, the number
+ * of backend round trips and the number of failed tasks.
+ * This class is thread-safe.
+ * @see TaskMetrics
+ * @author Grigor Iliev
+ */
+public class TaskStatistics implements TaskStatisticsMXBean {
+	private final String taskClass;
+	private final LatencyHistogram queueTime = new LatencyHistogram();
+	private final LatencyHistogram executionTime = new LatencyHistogram();
+	private long errorCount = 0;
+	private long roundTrips = 0;
+	
+	/**
+	 * Creates a new instance of <code>TaskStatistics</code>.
+	 * @param taskClass The name of the task class.
+	 */
+	public
+	TaskStatistics(String taskClass) { this.taskClass = taskClass; }
+	
+	/**
+	 * Records an execution of a task.
+	 * @param queueTime The time (in nanoseconds) spent waiting in the task queue.
+	 * @param executionTime The execution time in nanoseconds.
+	 * @param roundTrips The number of backend round trips made by the task.
+	 * @param failed Determines whether the task failed.
+	 */
+	public void
+	record(long queueTime, long executionTime, int roundTrips, boolean failed) {
+		this.queueTime.recordValue(queueTime);
+		this.executionTime.recordValue(executionTime);
+		
+		synchronized(this) {
+			this.roundTrips += roundTrips;
+			if(failed) errorCount++;
+		}
+	}
+	
+	@Override
+	public String
+	getTaskClass() { return taskClass; }
+	
+	/** Gets the histogram of the time (in nanoseconds) spent waiting in the task queue. */
+	public LatencyHistogram
+	getQueueTimeHistogram() { return queueTime.copy(); }
+	
+	/** Gets the histogram of the execution time in nanoseconds. */
+	public LatencyHistogram
+	getExecutionTimeHistogram() { return executionTime.copy(); }
+	
+	@Override
+	public long
+	getExecutionCount() { return executionTime.getTotalCount(); }
+	
+	@Override
+	public synchronized long
+	getErrorCount() { return errorCount; }
+	
+	@Override
+	public double
+	getErrorRate() {
+		long n = getExecutionCount();
+		return n == 0 ? 0 : (double)getErrorCount() / n;
+	}
+	
+	@Override
+	public synchronized long
+	getRoundTrips() { return roundTrips; }
+	
+	@Override
+	public double
+	getMeanQueueTime() { return queueTime.getMean() / 1000; }
+	
+	@Override
+	public long
+	getQueueTime50thPercentile() { return queueTime.getValueAtPercentile(50) / 1000; }
+	
+	@Override
+	public long
+	getQueueTime90thPercentile() { return queueTime.getValueAtPercentile(90) / 1000; }
+	
+	@Override
+	public long
+	getQueueTime99thPercentile() { return queueTime.getValueAtPercentile(99) / 1000; }
+	
+	@Override
+	public long
+	getMaxQueueTime() { return queueTime.getMax() / 1000; }
+	
+	@Override
+	public double
+	getMeanExecutionTime() { return executionTime.getMean() / 1000; }
+	
+	@Override
+	public long
+	getExecutionTime50thPercentile() { return executionTime.getValueAtPercentile(50) / 1000; }
+	
+	@Override
+	public long
+	getExecutionTime90thPercentile() { return executionTime.getValueAtPercentile(90) / 1000; }
+	
+	@Override
+	public long
+	getExecutionTime99thPercentile() { return executionTime.getValueAtPercentile(99) / 1000; }
+	
+	@Override
+	public long
+	getMaxExecutionTime() { return executionTime.getMax() / 1000; }
+	
+	@Override
+	public void
+	reset() {
+		queueTime.reset();
+		executionTime.reset();
+		
+		synchronized(this) {
+			errorCount = 0;
+			roundTrips = 0;
+		}
+	}
+	
+	@Override
+	public String
+	toString() {
+		return	taskClass + ": count=" + getExecutionCount() +
+			", errors=" + getErrorCount() + ", roundTrips=" + getRoundTrips() +
+			", queue(us) p50=" + getQueueTime50thPercentile() +
+			" p99=" + getQueueTime99thPercentile() + " max=" + getMaxQueueTime() +
+			", exec(us) p50=" + getExecutionTime50thPercentile() +
+			" p99=" + getExecutionTime99thPercentile() + " max=" + getMaxExecutionTime();
+	}
+}
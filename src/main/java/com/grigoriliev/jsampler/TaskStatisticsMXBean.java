@@ -0,0 +1,78 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+/**
+ * The management interface of the statistics of a task class.
+ * All times are in microseconds.
+ * @see TaskStatistics
+ * @author Grigor Iliev
+ */
+public interface TaskStatisticsMXBean {
+	/** Gets the name of the task class. */
+	public String getTaskClass();
+	
+	/** Gets the number of executed tasks. */
+	public long getExecutionCount();
+	
+	/** Gets the number of tasks which failed. */
+	public long getErrorCount();
+	
+	/** Gets the ratio of the failed tasks to all executed tasks. */
+	public double getErrorRate();
+	
+	/** Gets the total number of backend round trips made by the executed tasks. */
+	public long getRoundTrips();
+	
+	/** Gets the mean time spent waiting in the task queue. */
+	public double getMeanQueueTime();
+	
+	/** Gets the median time spent waiting in the task queue. */
+	public long getQueueTime50thPercentile();
+	
+	/** Gets the 90th percentile of the time spent waiting in the task queue. */
+	public long getQueueTime90thPercentile();
+	
+	/** Gets the 99th percentile of the time spent waiting in the task queue. */
+	public long getQueueTime99thPercentile();
+	
+	/** Gets the longest time spent waiting in the task queue. */
+	public long getMaxQueueTime();
+	
+	/** Gets the mean execution time. */
+	public double getMeanExecutionTime();
+	
+	/** Gets the median execution time. */
+	public long getExecutionTime50thPercentile();
+	
+	/** Gets the 90th percentile of the execution time. */
+	public long getExecutionTime90thPercentile();
+	
+	/** Gets the 99th percentile of the execution time. */
+	public long getExecutionTime99thPercentile();
+	
+	/** Gets the longest execution time. */
+	public long getMaxExecutionTime();
+	
+	/** Discards all collected statistics. */
+	public void reset();
+}
@@ -0,0 +1,173 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.TreeMap;
+import java.util.Vector;
+
+
+/**
+ * The base class of the in-memory inverted indexes. It keeps the documents,
+ * which are identified by their position in the document list, and a sorted
+ * term dictionary mapping each term to a list of postings. The meaning of
+ * a posting (a document ID, optionally combined with other data) is defined
+ * by the subclasses.
+ * <p>
+ * Removed and updated documents are only marked as deleted. When the deleted
+ * documents are at least 1024 and at least a half of all documents, the index
+ * is rebuilt from the live documents. This is checked whenever a document
+ * is added (so that updates, which delete the old version of a document, don't
+ * grow the index without bound), and should be checked by the subclasses with
+ * {@link #compactIfNeeded} after the documents are removed.
+ * </p>
+ * This class is not thread-safe; the subclasses synchronize the access.
+ * @author Grigor Iliev
+ */
+abstract class TermIndex<D> {
+	/** The minimum number of deleted documents, which triggers compaction. */
+	private static final int MIN_DELETED = 1024;
+	
+	/** A growable list of postings, sorted if they are added in ascending order. */
+	static class Postings {
+		int[] items = new int[2];
+		int size = 0;
+		
+		void
+		add(int item) {
+			if(size > 0 && items[size - 1] == item) return;
+			if(size == items.length) items = Arrays.copyOf(items, size * 2);
+			items[size++] = item;
+		}
+	}
+	
+	/** The documents, indexed by ID. */
+	protected final ArrayList<D> docs = new ArrayList<D>();
+	
+	/** The IDs of the deleted documents. */
+	protected final BitSet deleted = new BitSet();
+	private int deletedCount = 0;
+	
+	/** Maps the terms to their postings. */
+	protected final TreeMap<String, Postings> terms = new TreeMap<String, Postings>();
+	
+	/**
+	 * Invoked when a document is added, to index its content.
+	 * @param id The ID of the new document.
+	 * @param doc The new document.
+	 */
+	protected abstract void
+	documentAdded(int id, D doc);
+	
+	/**
+	 * Invoked when a new term is added to the dictionary,
+	 * or when the dictionary is cleared. Does nothing by default.
+	 */
+	protected void
+	termsChanged() { }
+	
+	/**
+	 * Adds the specified document to the index
+	 * and compacts the index if needed.
+	 */
+	protected void
+	addDocument(D doc) {
+		int id = docs.size();
+		docs.add(doc);
+		documentAdded(id, doc);
+		compactIfNeeded();
+	}
+	
+	/**
+	 * Adds the specified posting to each term in the specified text.
+	 * @param text The text to be indexed, may be <code>null</code>.
+	 * @param posting The posting to be added.
+	 */
+	protected void
+	indexText(String text, int posting) {
+		for(String t : tokenize(text)) {
+			Postings p = terms.get(t);
+			if(p == null) {
+				p = new Postings();
+				terms.put(t, p);
+				termsChanged();
+			}
+			p.add(posting);
+		}
+	}
+	
+	/**
+	 * Marks the document with the specified ID as deleted. The index is not
+	 * compacted, so this method can be invoked while iterating the documents.
+	 */
+	protected void
+	deleteDocument(int id) {
+		if(deleted.get(id)) return;
+		deleted.set(id);
+		deletedCount++;
+	}
+	
+	/** Removes all documents and terms. */
+	protected void
+	clear() {
+		docs.clear();
+		deleted.clear();
+		deletedCount = 0;
+		terms.clear();
+		termsChanged();
+	}
+	
+	/** Rebuilds the index when more than a half of the documents are deleted. */
+	protected void
+	compactIfNeeded() {
+		if(deletedCount < MIN_DELETED || deletedCount * 2 < docs.size()) return;
+		
+		ArrayList<D> live = new ArrayList<D>(docs.size() - deletedCount);
+		for(int i = 0; i < docs.size(); i++) {
+			if(!deleted.get(i)) live.add(docs.get(i));
+		}
+		
+		clear();
+		for(D d : live) addDocument(d);
+	}
+	
+	/** Splits the specified text into lower case terms. */
+	static String[]
+	tokenize(String s) {
+		if(s == null || s.length() == 0) return new String[0];
+		
+		Vector<String> v = new Vector<String>();
+		int start = -1;
+		for(int i = 0; i <= s.length(); i++) {
+			boolean b = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+			if(b && start == -1) start = i;
+			if(!b && start != -1) {
+				v.add(s.substring(start, i).toLowerCase());
+				start = -1;
+			}
+		}
+		
+		return v.toArray(new String[v.size()]);
+	}
+}
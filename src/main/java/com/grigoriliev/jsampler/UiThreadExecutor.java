@@ -0,0 +1,111 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import java.util.logging.Level;
+
+
+/**
+ * A plain executor, which runs the submitted tasks one at a time, in
+ * submission order, on a dedicated thread. Used as the UI thread when
+ * JSampler runs headless, so that the models are still accessed
+ * from a single thread, without initializing any UI toolkit.
+ * @author Grigor Iliev
+ */
+public class UiThreadExecutor implements Executor {
+	private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+	private final Thread thread;
+	private volatile boolean stopped = false;
+	
+	/**
+	 * Creates a new instance of <code>UiThreadExecutor</code>
+	 * and starts its thread.
+	 * @param name The name of the thread.
+	 */
+	public
+	UiThreadExecutor(String name) {
+		thread = new Thread(name) {
+			public void
+			run() { processTasks(); }
+		};
+		
+		thread.start();
+	}
+	
+	private void
+	processTasks() {
+		while(!stopped) {
+			Runnable r;
+			try { r = queue.take(); }
+			catch(InterruptedException x) { continue; }
+			
+			try { r.run(); }
+			catch(Throwable t) { CC.getLogger().log(Level.WARNING, t.toString(), t); }
+		}
+	}
+	
+	/**
+	 * Schedules the specified task for execution on the thread of this executor.
+	 * @param r The task to be executed.
+	 */
+	@Override
+	public void
+	execute(Runnable r) {
+		if(r == null) throw new NullPointerException("r should be non-null!");
+		queue.add(r);
+	}
+	
+	/**
+	 * Runs the specified task on the thread of this executor and waits
+	 * for its completion. If invoked from the thread of this executor,
+	 * the task is executed immediately.
+	 * @param r The task to be executed.
+	 * @throws Exception If the task has failed or the waiting is interrupted.
+	 */
+	public void
+	executeAndWait(Runnable r) throws Exception {
+		if(isExecutorThread()) {
+			r.run();
+			return;
+		}
+		
+		FutureTask<Object> f = new FutureTask<Object>(r, null);
+		execute(f);
+		f.get();
+	}
+	
+	/** Determines whether the current thread is the thread of this executor. */
+	public boolean
+	isExecutorThread() { return Thread.currentThread() == thread; }
+	
+	/** Stops the thread of this executor. The pending tasks are discarded. */
+	public void
+	shutdown() {
+		stopped = true;
+		thread.interrupt();
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+
+/**
+ * A collection of utility methods for reading and writing XML with StAX,
+ * used to stream large documents without building a DOM tree.
+ * The streaming readers and writers produce and accept the same XML
+ * as the respective DOM based <code>readObject</code>/<code>writeObject</code> methods.
+ * @author Grigor Iliev
+ */
+public class XMLStreamUtils {
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+	
+	static {
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+	}
+	
+	/** Forbids instantiation of this class. */
+	private XMLStreamUtils() { }
+	
+	/**
+	 * Creates a reader for the specified input stream,
+	 * positioned at the start tag of the root element.
+	 * @throws XMLStreamException If the document has no root element.
+	 */
+	public static XMLStreamReader
+	createReader(InputStream in) throws XMLStreamException {
+		XMLStreamReader r;
+		synchronized(inputFactory) { r = inputFactory.createXMLStreamReader(in); }
+		
+		while(r.getEventType() != XMLStreamConstants.START_ELEMENT) {
+			if(!r.hasNext()) throw new XMLStreamException("The root element is missing");
+			r.next();
+		}
+		
+		return r;
+	}
+	
+	/**
+	 * Creates a writer for the specified output stream
+	 * and writes the XML declaration.
+	 */
+	public static XMLStreamWriter
+	createWriter(OutputStream out) throws XMLStreamException {
+		XMLStreamWriter w;
+		synchronized(outputFactory) { w = outputFactory.createXMLStreamWriter(out, "UTF-8"); }
+		w.writeStartDocument("UTF-8", "1.0");
+		return w;
+	}
+	
+	/**
+	 * Checks that the reader is positioned at the start tag of the specified element.
+	 * @throws IllegalArgumentException with the specified message if the current
+	 * event is not a start tag of an element with the specified name.
+	 */
+	public static void
+	requireStartElement(XMLStreamReader r, String name, String message) {
+		if (
+			r.getEventType() != XMLStreamConstants.START_ELEMENT ||
+			!r.getLocalName().equals(name)
+		) { throw new IllegalArgumentException(message); }
+	}
+	
+	/**
+	 * Moves the reader to the start tag of the next child element
+	 * of the current element, skipping text and comments.
+	 * @return <code>true</code> if the reader is positioned at the start tag of a child
+	 * element, <code>false</code> if the end tag of the current element is reached.
+	 */
+	public static boolean
+	nextChildElement(XMLStreamReader r) throws XMLStreamException {
+		while(r.hasNext()) {
+			int event = r.next();
+			if(event == XMLStreamConstants.START_ELEMENT) return true;
+			if(event == XMLStreamConstants.END_ELEMENT) return false;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Reads the text content of the current element. The reader
+	 * is positioned at the end tag of the element afterwards.
+	 * @throws IllegalArgumentException If the element contains child elements.
+	 */
+	public static String
+	readText(XMLStreamReader r) throws XMLStreamException {
+		String name = r.getLocalName();
+		try { return r.getElementText(); }
+		catch(XMLStreamException x) {
+			throw new IllegalArgumentException(name + ": Not a text node", x);
+		}
+	}
+	
+	/**
+	 * Skips the current element, including all of its content. The reader
+	 * is positioned at the end tag of the element afterwards.
+	 */
+	public static void
+	skipElement(XMLStreamReader r) throws XMLStreamException {
+		int depth = 1;
+		while(depth > 0 && r.hasNext()) {
+			int event = r.next();
+			if(event == XMLStreamConstants.START_ELEMENT) depth++;
+			else if(event == XMLStreamConstants.END_ELEMENT) depth--;
+		}
+	}
+	
+	/**
+	 * Gets the value of the specified attribute of the current element.
+	 * @throws IllegalArgumentException If the attribute is missing.
+	 */
+	public static String
+	getRequiredAttribute(XMLStreamReader r, String name, String message) {
+		String s = r.getAttributeValue(null, name);
+		if(s == null) throw new IllegalArgumentException(message);
+		return s;
+	}
+	
+	/**
+	 * Writes an element with the specified text content.
+	 * @param text The text content or <code>null</code> for an empty element.
+	 */
+	public static void
+	writeTextElement(XMLStreamWriter w, String name, String text) throws XMLStreamException {
+		if(text == null || text.length() == 0) {
+			w.writeEmptyElement(name);
+			return;
+		}
+		
+		w.writeStartElement(name);
+		w.writeCharacters(text);
+		w.writeEndElement();
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.event;
+
+/**
+ * A semantic event which indicates that (a part of) the content
+ * of an instruments database directory listing has been loaded.
+ * @author Grigor Iliev
+ */
+public class DbDirectoryListingEvent extends java.util.EventObject {
+	private int firstIndex;
+	private int lastIndex;
+	
+	/**
+	 * Constructs a <code>DbDirectoryListingEvent</code> object.
+	 * @param source The object that originated the event.
+	 * @param firstIndex The index of the first entry in the affected range.
+	 * @param lastIndex The index of the last entry in the affected range.
+	 */
+	public
+	DbDirectoryListingEvent(Object source, int firstIndex, int lastIndex) {
+		super(source);
+		this.firstIndex = firstIndex;
+		this.lastIndex = lastIndex;
+	}
+	
+	/** Gets the index of the first entry in the affected range. */
+	public int
+	getFirstIndex() { return firstIndex; }
+	
+	/** Gets the index of the last entry in the affected range (inclusive). */
+	public int
+	getLastIndex() { return lastIndex; }
+}
@@ -0,0 +1,41 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.event;
+
+/**
+ * The listener interface for receiving events when the content
+ * of an instruments database directory listing is loaded.
+ * @author Grigor Iliev
+ */
+public interface DbDirectoryListingListener extends java.util.EventListener {
+	/**
+	 * Invoked when the names of the directories and instruments are (re)loaded.
+	 * The information about the entries is not available yet at this point.
+	 */
+	public void namesLoaded(DbDirectoryListingEvent e);
+	
+	/** Invoked when the information about a range of directories is loaded. */
+	public void directoriesLoaded(DbDirectoryListingEvent e);
+	
+	/** Invoked when the information about a range of instruments is loaded. */
+	public void instrumentsLoaded(DbDirectoryListingEvent e);
+}
@@ -0,0 +1,43 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.grigoriliev.jsampler.event;
+
+/**
+ *
+ * @author Grigor Iliev
+ */
+public class EffectChainAdapter implements EffectChainListener {
+	/** Invoked when the effect instance list is changed. */
+	@Override
+	public void effectInstanceListChanged(EffectChainEvent e) { }
+	
+	/** Invoked when a new effect instance is added to the chain. */
+	@Override
+	public void effectInstanceAdded(EffectChainEvent e) { }
+	
+	/** Invoked when an effect instance is removed from the chain. */
+	@Override
+	public void effectInstanceRemoved(EffectChainEvent e) { }
+	
+	/** Invoked when an effect instance is moved to another position in the chain. */
+	@Override
+	public void effectInstanceMoved(EffectChainEvent e) { }
+}
@@ -21,6 +21,7 @@
 package com.grigoriliev.jsampler.event;
 
 import com.grigoriliev.jsampler.EffectChain;
+import com.grigoriliev.jsampler.EffectInstance;
 
 /**
  *
@@ -28,6 +29,9 @@ import com.grigoriliev.jsampler.EffectChain;
  */
 public class EffectChainEvent extends java.util.EventObject {
 	private EffectChain chain;
+	private EffectInstance instance = null;
+	private int index = -1;
+	private int oldIndex = -1;
 	
 	/**
 	 * Constructs an <code>EffectChainEvent</code> object.
@@ -41,6 +45,27 @@ public class EffectChainEvent extends java.util.EventObject {
 		this.chain = chain;
 	}
 	
+	/**
+	 * Constructs an <code>EffectChainEvent</code> object.
+	 *
+	 * @param source The object that originated the event.
+	 * @param chain The effect chain.
+	 * @param instance The effect instance which is added, removed or moved.
+	 * @param index The position of the effect instance in the chain.
+	 * @param oldIndex The previous position of the effect instance
+	 * in the chain or -1 if not applicable.
+	 */
+	public
+	EffectChainEvent (
+		Object source, EffectChain chain, EffectInstance instance, int index, int oldIndex
+	) {
+		super(source);
+		this.chain = chain;
+		this.instance = instance;
+		this.index = index;
+		this.oldIndex = oldIndex;
+	}
+	
 	/**
 	 * Depending on the event provides the newly added effect chain when
 	 * a new chain is added, the removed effect chain when a chain is removed
@@ -48,4 +73,26 @@ public class EffectChainEvent extends java.util.EventObject {
 	 */
 	public EffectChain
 	getEffectChain() { return chain; }
+	
+	/**
+	 * Gets the effect instance which is added, removed or moved,
+	 * or <code>null</code> if the event is not related to a single instance.
+	 */
+	public EffectInstance
+	getEffectInstance() { return instance; }
+	
+	/**
+	 * Gets the position of the added or moved effect instance in the chain,
+	 * or the position from which the effect instance is removed.
+	 * @return The position of the effect instance or -1 if not applicable.
+	 */
+	public int
+	getIndex() { return index; }
+	
+	/**
+	 * Gets the previous position of the moved effect instance.
+	 * @return The previous position of the effect instance or -1 if not applicable.
+	 */
+	public int
+	getOldIndex() { return oldIndex; }
 }
@@ -25,5 +25,22 @@ package com.grigoriliev.jsampler.event;
  * @author Grigor Iliev
  */
 public interface EffectChainListener extends java.util.EventListener {
+	/**
+	 * Invoked when the effect instance list is changed. This event is fired
+	 * once per update of the chain, after the events about the individual
+	 * effect instances, and only if the list has actually changed.
+	 */
 	public void effectInstanceListChanged(EffectChainEvent e);
+	
+	/** Invoked when a new effect instance is added to the chain. Does nothing by default. */
+	public default void effectInstanceAdded(EffectChainEvent e) { }
+	
+	/** Invoked when an effect instance is removed from the chain. Does nothing by default. */
+	public default void effectInstanceRemoved(EffectChainEvent e) { }
+	
+	/**
+	 * Invoked when an effect instance is moved to another position
+	 * in the chain. Does nothing by default.
+	 */
+	public default void effectInstanceMoved(EffectChainEvent e) { }
 }
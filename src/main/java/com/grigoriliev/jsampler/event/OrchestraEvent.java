@@ -30,6 +30,8 @@ import com.grigoriliev.jsampler.OrchestraInstrument;
  */
 public class OrchestraEvent extends java.util.EventObject {
 	private OrchestraInstrument instrument;
+	private OrchestraInstrument[] instruments = null;
+	private int[] indices = null;
 	
 	/**
 	 * Constructs an <code>OrchestraEvent</code> object.
@@ -49,6 +51,21 @@ public class OrchestraEvent extends java.util.EventObject {
 		this.instrument = instrument;
 	}
 	
+	/**
+	 * Constructs an <code>OrchestraEvent</code> object
+	 * describing a change of multiple instruments.
+	 * @param source The object that originated the event.
+	 * @param instruments The instruments that have been added, removed or moved.
+	 * @param indices The positions of the instruments (in ascending order).
+	 * The positions of the removed instruments are the positions before the removal.
+	 */
+	public
+	OrchestraEvent(Object source, OrchestraInstrument[] instruments, int[] indices) {
+		super(source);
+		this.instruments = instruments;
+		this.indices = indices;
+	}
+	
 	/**
 	 * Returns the instrument that has been added, removed or changed.
 	 * @return The instrument that has been added, removed or changed;
@@ -56,4 +73,24 @@ public class OrchestraEvent extends java.util.EventObject {
 	 */
 	public OrchestraInstrument
 	getInstrument() { return instrument; }
+	
+	/**
+	 * Returns the instruments that have been added, removed or moved.
+	 * @return The instruments that have been added, removed or moved, a single
+	 * element array if the event concerns one instrument, or an empty array.
+	 */
+	public OrchestraInstrument[]
+	getInstruments() {
+		if(instruments != null) return instruments;
+		if(instrument != null) return new OrchestraInstrument[] { instrument };
+		return new OrchestraInstrument[0];
+	}
+	
+	/**
+	 * Returns the positions of the instruments that have been added, removed or moved.
+	 * @return The positions (in ascending order) of the instruments returned by
+	 * {@link #getInstruments}, or <code>null</code> if not provided.
+	 */
+	public int[]
+	getIndices() { return indices; }
 }
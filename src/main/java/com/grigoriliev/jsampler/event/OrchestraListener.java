@@ -21,6 +21,8 @@
 
 package com.grigoriliev.jsampler.event;
 
+import com.grigoriliev.jsampler.OrchestraInstrument;
+
 /**
  * The listener interface for receiving events about orchestra changes.
  * @author Grigor Iliev
@@ -40,4 +42,46 @@ public interface OrchestraListener extends java.util.EventListener {
 	
 	/** Invoked when the settings of an instrument are changed. */
 	public void instrumentChanged(OrchestraEvent e);
+	
+	/**
+	 * Invoked when multiple instruments are added (or inserted) to the orchestra.
+	 * By default {@link #instrumentAdded} is invoked for each instrument.
+	 */
+	public default void
+	instrumentsAdded(OrchestraEvent e) {
+		for(OrchestraInstrument instr : e.getInstruments()) {
+			instrumentAdded(new OrchestraEvent(e.getSource(), instr));
+		}
+	}
+	
+	/**
+	 * Invoked when multiple instruments are removed from the orchestra.
+	 * By default {@link #instrumentRemoved} is invoked for each instrument.
+	 */
+	public default void
+	instrumentsRemoved(OrchestraEvent e) {
+		for(OrchestraInstrument instr : e.getInstruments()) {
+			instrumentRemoved(new OrchestraEvent(e.getSource(), instr));
+		}
+	}
+	
+	/**
+	 * Invoked when multiple instruments are moved to another position
+	 * in the orchestra. The event provides the new positions of the instruments.
+	 * By default the move is reported as if the instruments were removed
+	 * and then inserted at their new positions: {@link #instrumentRemoved}
+	 * is invoked for each instrument, followed by {@link #instrumentAdded}
+	 * for each instrument.
+	 */
+	public default void
+	instrumentsMoved(OrchestraEvent e) {
+		OrchestraInstrument[] instrs = e.getInstruments();
+		for(OrchestraInstrument instr : instrs) {
+			instrumentRemoved(new OrchestraEvent(e.getSource(), instr));
+		}
+		
+		for(OrchestraInstrument instr : instrs) {
+			instrumentAdded(new OrchestraEvent(e.getSource(), instr));
+		}
+	}
 }
@@ -0,0 +1,48 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.event;
+
+import com.grigoriliev.jsampler.ScanJob;
+
+/**
+ * A semantic event which indicates that an instruments scan job
+ * has been added, has changed or has been removed.
+ * @author Grigor Iliev
+ */
+public class ScanJobEvent extends java.util.EventObject {
+	private ScanJob job;
+	
+	/**
+	 * Constructs a <code>ScanJobEvent</code> object.
+	 * @param source The object that originated the event.
+	 * @param job The scan job.
+	 */
+	public
+	ScanJobEvent(Object source, ScanJob job) {
+		super(source);
+		this.job = job;
+	}
+	
+	/** Gets the scan job. */
+	public ScanJob
+	getJob() { return job; }
+}
@@ -22,8 +22,12 @@
 package com.grigoriliev.jsampler.task;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 
+import com.grigoriliev.jsampler.BackendIdMap;
 import com.grigoriliev.jsampler.EffectChain;
+import com.grigoriliev.jsampler.EffectInstance;
 import com.grigoriliev.jsampler.JSI18n;
 import com.grigoriliev.jsampler.SamplerChannelModel;
 import com.grigoriliev.jsampler.SamplerModel;
@@ -182,6 +186,13 @@ public class Audio {
 			// Not needed, but eventually speeds up the change.
 			CC.getSamplerModel().getAudioDeviceById(dev).setActive(enable);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getAudioDeviceId(dev);
+			return id == -1 ? null : new EnableDevice(id, enable);
+		}
 	}
 
 	/**
@@ -211,6 +222,13 @@ public class Audio {
 		exec() throws Exception {
 			CC.getClient().setAudioOutputDeviceParameter(dev, prm);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getAudioDeviceId(dev);
+			return id == -1 ? null : new SetDeviceParameter(id, prm);
+		}
 	}
 
 	/**
@@ -243,6 +261,13 @@ public class Audio {
 		exec() throws Exception {
 			CC.getClient().setAudioOutputChannelParameter(dev, channel, prm);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getAudioDeviceId(dev);
+			return id == -1 ? null : new SetChannelParameter(id, channel, prm);
+		}
 	}
 	
 	/**
@@ -272,6 +297,13 @@ public class Audio {
 		exec() throws Exception {
 			CC.getClient().setAudioOutputChannelCount(deviceId, channels);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getAudioDeviceId(deviceId);
+			return id == -1 ? null : new SetChannelCount(id, channels);
+		}
 	}
 
 	/**
@@ -462,25 +494,20 @@ public class Audio {
 			
 			Integer[] idS = CC.getClient().getSendEffectChainIDs(devId);
 			
+			HashSet<Integer> ids = new HashSet<Integer>(Arrays.asList(idS));
 			ArrayList<Integer> removedChains = new ArrayList<Integer>();
 			
 			for(int i = 0; i < m.getSendEffectChainCount(); i++) {
-				boolean found = false;
-				for(int j = 0; j < idS.length; j++) {
-					if(idS[j] != null && m.getSendEffectChain(i).getChainId() == idS[j]) {
-						found = true;
-						idS[j] = null;
-					}
-				}
-				if(!found) removedChains.add(m.getSendEffectChain(i).getChainId());
+				int id = m.getSendEffectChain(i).getChainId();
+				if(!ids.contains(id)) removedChains.add(id);
 			}
 			
 			for(int i : removedChains) m.removeSendEffectChain(i);
 			
 			for(int i = 0; i < idS.length; i++) {
-				if(idS[i] != null)  {
+				if(m.getSendEffectChainById(idS[i]) == null)  {
 					m.addSendEffectChain (
-					new EffectChain(CC.getClient().getSendEffectChainInfo(devId, idS[i]))
+					new EffectChain(getSession(), CC.getClient().getSendEffectChainInfo(devId, idS[i]))
 					);
 				}
 			}
@@ -488,7 +515,9 @@ public class Audio {
 	}
 
 	/**
-	 * This task updates the list of effect instances.
+	 * This task updates the list of effect instances. Only the inserted,
+	 * removed and moved instances are recreated or notified.
+	 * @see EffectChain#setEffectInstances
 	 */
 	public static class UpdateEffectInstances extends EnhancedTask {
 		private int audioDeviceId;
@@ -518,7 +547,9 @@ public class Audio {
 				CC.getClient().getSendEffectChainInfo(audioDeviceId, chainId);
 			
 			AudioDeviceModel m = CC.getSamplerModel().getAudioDeviceById(audioDeviceId);
-			m.getSendEffectChainById(chainId).setEffectInstances(c);
+			if(m == null) return;
+			EffectChain chain = m.getSendEffectChainById(chainId);
+			if(chain != null) chain.setEffectInstances(c);
 		}
 	}
 
@@ -540,12 +571,21 @@ public class Audio {
 		
 			this.instanceId = instanceId;
 		}
+		
+		/** Gets the ID of the effect instance, which settings should be updated. */
+		public int
+		getInstanceId() { return instanceId; }
 	
 		/** The entry point of the task. */
 		@Override
 		public void
 		exec() throws Exception {
 			EffectInstanceInfo ei = CC.getClient().getEffectInstanceInfo(instanceId);
+			
+			/* Skip the changes caused by the values we have sent. */
+			EffectInstance inst = CC.getSamplerModel().getEffectInstanceById(instanceId);
+			if(inst != null && inst.getParameterStream().isEcho(inst.getInfo(), ei)) return;
+			
 			CC.getSamplerModel().updateEffectInstance(ei);
 		}
 	}
@@ -579,6 +619,46 @@ public class Audio {
 			CC.getClient().setEffectInstanceParameter(instanceId, prmIndex, newValue);
 		}
 	}
+	
+	
+	/**
+	 * This task changes the values of multiple parameters of an effect instance.
+	 * @see com.grigoriliev.jsampler.EffectParameterStream
+	 */
+	public static class SetEffectInstanceParameters extends EnhancedTask {
+		private int instanceId;
+		private int[] prmIndices;
+		private float[] newValues;
+		
+		/**
+		 * Creates new instance of <code>SetEffectInstanceParameters</code>.
+		 * @param instanceId The numerical ID of the effect instance.
+		 * @param prmIndices The indices of the parameters to change.
+		 * @param newValues The new values of the parameters.
+		 */
+		public
+		SetEffectInstanceParameters(int instanceId, int[] prmIndices, float[] newValues) {
+			setTitle("Audio.SetEffectInstanceParameters_task");
+			setDescription(JSI18n.i18n.getMessage("Audio.SetEffectInstanceParameter.desc"));
+			
+			this.instanceId = instanceId;
+			this.prmIndices = prmIndices;
+			this.newValues = newValues;
+		}
+		
+		/** The entry point of the task. */
+		@Override
+		public void
+		exec() throws Exception {
+			for(int i = 0; i < prmIndices.length; i++) {
+				CC.getClient().setEffectInstanceParameter (
+					instanceId, prmIndices[i], newValues[i]
+				);
+			}
+			
+			addRoundTrips(prmIndices.length);
+		}
+	}
 
 
 	/**
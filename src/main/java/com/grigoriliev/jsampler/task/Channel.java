@@ -21,14 +21,22 @@
 
 package com.grigoriliev.jsampler.task;
 
+import java.io.IOException;
+
+import java.util.logging.Level;
+
+import com.grigoriliev.jsampler.BackendIdMap;
+import com.grigoriliev.jsampler.ChannelTemplate;
 import com.grigoriliev.jsampler.JSI18n;
 import com.grigoriliev.jsampler.JSPrefs;
+import com.grigoriliev.jsampler.LscpPipeline;
 import com.grigoriliev.jsampler.SamplerChannelModel;
 import com.grigoriliev.jsampler.SamplerModel;
 import com.grigoriliev.jsampler.juife.Task;
 
 import com.grigoriliev.jsampler.CC;
 
+import com.grigoriliev.jsampler.jlscp.Client;
 import com.grigoriliev.jsampler.jlscp.FxSend;
 import com.grigoriliev.jsampler.jlscp.event.MidiDataEvent;
 
@@ -156,6 +164,163 @@ public class Channel {
 			CC.getClient().setChannelAudioOutputDevice(getResult(), id);
 		}
 	}
+	
+	/**
+	 * This task creates the specified number of sampler channels and applies
+	 * the settings of the specified channel template to them. The commands are
+	 * pipelined over a dedicated connection (see {@link LscpPipeline}), so that
+	 * the creation of N channels takes up to three round trips instead of
+	 * about 10 &times; N. The channel list is updated once, after all channels
+	 * are created. The result of the task is the IDs of the new channels.
+	 */
+	public static class AddFromTemplate extends EnhancedTask<Integer[]> {
+		private final int count;
+		private final ChannelTemplate template;
+		
+		/**
+		 * Creates a new instance of <code>AddFromTemplate</code>.
+		 * @param count The number of channels to create.
+		 * @param template The template whose settings should be applied.
+		 */
+		public
+		AddFromTemplate(int count, ChannelTemplate template) {
+			setTitle("Channel.AddFromTemplate_task");
+			setDescription(JSI18n.i18n.getMessage("Channel.AddFromTemplate.desc"));
+			
+			this.count = count;
+			this.template = template;
+		}
+		
+		/**
+		 * The entry point of the task. If any of the commands fails, the task
+		 * fails with a single error message summarizing all failed commands.
+		 */
+		@Override
+		public void
+		exec() throws Exception {
+			if(count < 1) {
+				setResult(new Integer[0]);
+				return;
+			}
+			
+			LscpPipeline p;
+			try { p = new LscpPipeline(getSession().getServer()); }
+			catch(IOException x) {
+				CC.getLogger().log(Level.INFO, "Pipelining is not available", x);
+				addSequentially();
+				return;
+			}
+			
+			try { add(p); }
+			finally {
+				p.close();
+				CC.scheduleTask(new UpdateChannels());
+			}
+		}
+		
+		private void
+		add(LscpPipeline p) throws Exception {
+			for(int i = 0; i < count; i++) p.add("ADD CHANNEL");
+			LscpPipeline.Reply[] replies = p.execute();
+			
+			Integer[] ids = new Integer[count];
+			String err = LscpPipeline.getErrorSummary(replies);
+			
+			ChannelTemplate.FxSend[] fxSends = template.getFxSends();
+			
+			/* The positions of the CREATE FX_SEND commands in the next batch. */
+			int[][] fxCmds = new int[count][fxSends.length];
+			
+			Client writer = p.getCommandWriter();
+			for(int i = 0; i < count; i++) {
+				ids[i] = replies[i].getResultIndex();
+				if(ids[i] == -1) continue;
+				writeSettings(writer, ids[i]);
+				
+				for(int j = 0; j < fxSends.length; j++) {
+					fxCmds[i][j] = p.getCommandCount();
+					ChannelTemplate.FxSend fs = fxSends[j];
+					writer.createFxSend(ids[i], fs.getMidiController(), fs.getName());
+				}
+			}
+			
+			replies = p.execute();
+			if(err == null) err = LscpPipeline.getErrorSummary(replies);
+			
+			for(int i = 0; i < count; i++) {
+				if(ids[i] == -1) continue;
+				
+				for(int j = 0; j < fxSends.length; j++) {
+					int fxId = replies[fxCmds[i][j]].getResultIndex();
+					if(fxId == -1) continue;
+					writer.setFxSendLevel(ids[i], fxId, fxSends[j].getLevel());
+				}
+			}
+			
+			if(p.getCommandCount() > 0) {
+				replies = p.execute();
+				if(err == null) err = LscpPipeline.getErrorSummary(replies);
+				addRoundTrips(3);
+			} else {
+				addRoundTrips(2);
+			}
+			
+			setResult(ids);
+			if(err != null) throw new Exception(err);
+		}
+		
+		/** Writes the commands applying the template settings, except the effect sends. */
+		private void
+		writeSettings(Client client, int chn) throws Exception {
+			ChannelTemplate t = template;
+			
+			if(t.getEngine() != null && t.getEngine().length() > 0) {
+				client.loadSamplerEngine(t.getEngine(), chn);
+			}
+			
+			if(t.getMidiInputDevice() >= 0) {
+				client.setChannelMidiInputDevice(chn, t.getMidiInputDevice());
+				client.setChannelMidiInputPort(chn, t.getMidiInputPort());
+				client.setChannelMidiInputChannel(chn, t.getMidiInputChannel());
+			}
+			
+			if(t.getAudioOutputDevice() >= 0) {
+				client.setChannelAudioOutputDevice(chn, t.getAudioOutputDevice());
+			}
+			
+			if(t.getMidiInstrumentMap() != ChannelTemplate.NO_MAP) {
+				client.setChannelMidiInstrumentMap(chn, t.getMidiInstrumentMap());
+			}
+			
+			client.setChannelVolume(chn, t.getVolume());
+			if(t.isSoloChannel()) client.setChannelSolo(chn, true);
+			if(t.isMuted()) client.setChannelMute(chn, true);
+		}
+		
+		private void
+		addSequentially() throws Exception {
+			Client client = CC.getClient();
+			Integer[] ids = new Integer[count];
+			
+			try {
+				for(int i = 0; i < count; i++) {
+					ids[i] = client.addSamplerChannel();
+					writeSettings(client, ids[i]);
+					
+					for(ChannelTemplate.FxSend fs : template.getFxSends()) {
+						int fxId = client.createFxSend (
+							ids[i], fs.getMidiController(), fs.getName()
+						);
+						client.setFxSendLevel(ids[i], fxId, fs.getLevel());
+					}
+				}
+			} finally {
+				CC.scheduleTask(new UpdateChannels());
+			}
+			
+			setResult(ids);
+		}
+	}
 
 	/**
 	 * This task removes the specified sampler channel.
@@ -238,6 +403,13 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().setChannelAudioOutputChannel(chn, audioOut, audioIn);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(chn);
+			return id == -1 ? null : new SetAudioOutputChannel(id, audioOut, audioIn);
+		}
 	}
 
 	/**
@@ -268,6 +440,15 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().setChannelAudioOutputDevice(channel, deviceID);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			int dev = ids.getAudioDeviceId(deviceID);
+			if(id == -1 || dev == -1) return null;
+			return new SetAudioOutputDevice(id, dev);
+		}
 	}
 	
 	/**
@@ -299,6 +480,13 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().setChannelMidiInputChannel(channel, midiChannel);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			return id == -1 ? null : new SetMidiInputChannel(id, midiChannel);
+		}
 	}
 
 	/**
@@ -329,6 +517,15 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().setChannelMidiInputDevice(channel, deviceID);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			int dev = ids.getMidiDeviceId(deviceID);
+			if(id == -1 || dev == -1) return null;
+			return new SetMidiInputDevice(id, dev);
+		}
 	}
 
 	/**
@@ -359,6 +556,13 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().setChannelMidiInputPort(channel, port);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			return id == -1 ? null : new SetMidiInputPort(id, port);
+		}
 	}
 	
 	/**
@@ -389,6 +593,13 @@ public class Channel {
 		@Override
 		public void
 		exec() throws Exception { CC.getClient().loadSamplerEngine(engine, channel); }
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			return id == -1 ? null : new LoadEngine(engine, id);
+		}
 	}
 	
 	/**
@@ -423,6 +634,13 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().loadInstrument(filename, instrIndex, channel, true);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			return id == -1 ? null : new LoadInstrument(filename, instrIndex, id);
+		}
 	}
 	
 	/**
@@ -456,6 +674,16 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().setChannelMidiInstrumentMap(channel, mapId);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			int map = ids.getMidiInstrumentMapId(mapId);
+			// the negative IDs (no map or the default map) are not mapped
+			if(id == -1 || (mapId >= 0 && map == -1)) return null;
+			return new SetMidiInstrumentMap(id, map);
+		}
 	}
 	
 	/**
@@ -484,6 +712,13 @@ public class Channel {
 		@Override
 		public void
 		exec() throws Exception { CC.getClient().setChannelMute(channel, mute); }
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			return id == -1 ? null : new SetMute(id, mute);
+		}
 	}
 	
 	/**
@@ -512,6 +747,13 @@ public class Channel {
 		@Override
 		public void
 		exec() throws Exception { CC.getClient().setChannelSolo(channel, solo); }
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			return id == -1 ? null : new SetSolo(id, solo);
+		}
 	}
 
 	/**
@@ -566,6 +808,13 @@ public class Channel {
 		 */
 		public int
 		getChannelId() { return channel; }
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			return id == -1 ? null : new SetVolume(id, volume);
+		}
 	}
 
 	/**
@@ -847,6 +1096,15 @@ public class Channel {
 		@Override
 		public void
 		exec() throws Exception { CC.getClient().setFxSendName(channel, fxSend, name); }
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			int fx = ids.getFxSendId(channel, fxSend);
+			if(id == -1 || fx == -1) return null;
+			return new SetFxSendName(id, fx, name);
+		}
 	}
 	
 	/**
@@ -921,6 +1179,15 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().setFxSendLevel(channel, fxSend, volume);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			int fx = ids.getFxSendId(channel, fxSend);
+			if(id == -1 || fx == -1) return null;
+			return new SetFxSendLevel(id, fx, volume);
+		}
 	}
 	
 	/**
@@ -996,6 +1263,15 @@ public class Channel {
 		exec() throws Exception {
 			CC.getClient().setFxSendMidiController(channel, fxSend, midiCtrl);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getChannelId(channel);
+			int fx = ids.getFxSendId(channel, fxSend);
+			if(id == -1 || fx == -1) return null;
+			return new SetFxSendMidiController(id, fx, midiCtrl);
+		}
 	}
 
 	/**
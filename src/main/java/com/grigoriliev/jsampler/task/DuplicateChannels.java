@@ -21,8 +21,13 @@
 
 package com.grigoriliev.jsampler.task;
 
+import java.io.IOException;
+
+import java.util.logging.Level;
+
 import com.grigoriliev.jsampler.JSI18n;
 import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.LscpPipeline;
 
 import com.grigoriliev.jsampler.view.JSChannel;
 
@@ -32,9 +37,14 @@ import com.grigoriliev.jsampler.jlscp.SamplerChannel;
 
 /**
  * This task duplicates the specified sampler channels.
+ * The commands are pipelined over a dedicated connection (see {@link LscpPipeline}):
+ * all channels are created first, then the settings of all channels are applied
+ * and finally the instruments are loaded in background, so that the duplication
+ * of N channels takes three round trips instead of up to 10 &times; N.
+ * The result of the task is the IDs of the new channels.
  * @author Grigor Iliev
  */
-public class DuplicateChannels extends EnhancedTask {
+public class DuplicateChannels extends EnhancedTask<Integer[]> {
 	SamplerChannel[] chnS;
 	
 	/**
@@ -68,13 +78,95 @@ public class DuplicateChannels extends EnhancedTask {
 		setDescription(JSI18n.i18n.getMessage("DuplicateChannels.description"));
 	}
 	
-	/** The entry point of the task. */
+	/**
+	 * The entry point of the task. If any of the commands fails, the task
+	 * fails with a single error message summarizing all failed commands.
+	 */
 	@Override
 	public void
 	exec() throws Exception {
-		for(SamplerChannel c : chnS) {
-			duplicateSettings(c, CC.getClient().addSamplerChannel());
+		LscpPipeline p;
+		try { p = new LscpPipeline(getSession().getServer()); }
+		catch(IOException x) {
+			CC.getLogger().log(Level.INFO, "Pipelining is not available", x);
+			duplicateSequentially();
+			return;
+		}
+		
+		try { duplicate(p); }
+		finally { p.close(); }
+	}
+	
+	private void
+	duplicate(LscpPipeline p) throws Exception {
+		for(int i = 0; i < chnS.length; i++) p.add("ADD CHANNEL");
+		LscpPipeline.Reply[] replies = p.execute();
+		
+		Integer[] ids = new Integer[chnS.length];
+		String err = LscpPipeline.getErrorSummary(replies);
+		
+		Client writer = p.getCommandWriter();
+		for(int i = 0; i < chnS.length; i++) {
+			ids[i] = replies[i].getResultIndex();
+			if(ids[i] != -1) writeSettings(writer, chnS[i], ids[i]);
+		}
+		
+		replies = p.execute();
+		if(err == null) err = LscpPipeline.getErrorSummary(replies);
+		
+		for(int i = 0; i < chnS.length; i++) {
+			SamplerChannel sc = chnS[i];
+			if(ids[i] == -1 || sc.getEngine() == null || sc.getInstrumentFile() == null) {
+				continue;
+			}
+			
+			writer.loadInstrument (
+				sc.getInstrumentFile(), sc.getInstrumentIndex(), ids[i], true
+			);
+		}
+		
+		if(p.getCommandCount() > 0) {
+			replies = p.execute();
+			if(err == null) err = LscpPipeline.getErrorSummary(replies);
+			addRoundTrips(3);
+		} else {
+			addRoundTrips(2);
+		}
+		
+		setResult(ids);
+		if(err != null) throw new Exception(err);
+	}
+	
+	/** Writes the commands applying the settings of <code>sc</code> to channel <code>c</code>. */
+	private static void
+	writeSettings(Client writer, SamplerChannel sc, int c) throws Exception {
+		if(sc.getMidiInputDevice() >= 0) {
+			writer.setChannelMidiInputDevice(c, sc.getMidiInputDevice());
+			writer.setChannelMidiInputPort(c, sc.getMidiInputPort());
+			writer.setChannelMidiInputChannel(c, sc.getMidiInputChannel());
+		}
+		
+		if(sc.getAudioOutputDevice() >= 0) {
+			writer.setChannelAudioOutputDevice(c, sc.getAudioOutputDevice());
 		}
+		
+		if(sc.getEngine() != null) {
+			writer.loadSamplerEngine(sc.getEngine().getName(), c);
+			writer.setChannelVolume(c, sc.getVolume());
+			if(sc.isSoloChannel()) writer.setChannelSolo(c, true);
+			if(sc.isMuted() && !sc.isMutedBySolo()) writer.setChannelMute(c, true);
+		}
+	}
+	
+	private void
+	duplicateSequentially() throws Exception {
+		Integer[] ids = new Integer[chnS.length];
+		for(int i = 0; i < chnS.length; i++) {
+			ids[i] = CC.getClient().addSamplerChannel();
+			duplicateSettings(chnS[i], ids[i]);
+		}
+		
+		setResult(ids);
 	}
 	
 	private void
@@ -21,14 +21,20 @@
 
 package com.grigoriliev.jsampler.task;
 
-import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.logging.Level;
 
+import com.grigoriliev.jsampler.BackendIdMap;
 import com.grigoriliev.jsampler.HF;
 import com.grigoriliev.jsampler.JSI18n;
+import com.grigoriliev.jsampler.TaskMetrics;
 import com.grigoriliev.jsampler.juife.AbstractTask;
+import com.grigoriliev.jsampler.juife.event.TaskEvent;
+import com.grigoriliev.jsampler.juife.event.TaskListener;
 
 import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.ConnectionManager.TrafficClass;
+import com.grigoriliev.jsampler.SamplerSession;
 
 import com.grigoriliev.jsampler.jlscp.LSException;
 
@@ -44,6 +50,27 @@ public abstract class EnhancedTask<R> extends AbstractTask<R> {
 	private boolean showErrorDetails;
 	private boolean calculateElapsedTime = false;
 	private long elapsedTime = -1;
+	private int roundTrips = -1;
+	private int cacheHits = 0;
+	private TrafficClass trafficClass = TrafficClass.CONTROL;
+	private boolean dependsOnBulkTasks = false;
+	
+	/**
+	 * The session this task belongs to. Initially the session bound to the thread
+	 * creating the task, replaced by the session of the task queue the task is added to.
+	 */
+	private volatile SamplerSession session = CC.getSession();
+	
+	/** Maps the registered listeners to their forwarders. */
+	private IdentityHashMap<TaskListener, TaskListener> forwarders = null;
+	
+	/**
+	 * The time (<code>System.nanoTime</code>) when this task is created, which is
+	 * used as the time when the task is added to the task queue. Zero if the
+	 * task metrics are disabled.
+	 */
+	private final long creationTime =
+		CC.getTaskMetrics().isEnabled() ? System.nanoTime() : 0;
 	
 	public
 	EnhancedTask() { this(false); }
@@ -53,19 +80,28 @@ public abstract class EnhancedTask<R> extends AbstractTask<R> {
 		this.showErrorDetails = showErrorDetails;
 	}
 
+	/**
+	 * Executes this task with its session bound to the current thread.
+	 * @see #getSession
+	 */
 	public void
 	run() {
+		getSession().run(new Runnable() {
+			public void
+			run() { runTask(); }
+		});
+	}
+	
+	private void
+	runTask() {
+		TaskMetrics metrics = CC.getTaskMetrics();
+		boolean timed = creationTime != 0 || getCalculateElapsedTime();
+		long startTime = timed ? System.nanoTime() : 0;
+		roundTrips = -1;
+		cacheHits = 0;
+		
 		try {
-			if(getCalculateElapsedTime()) {
-				elapsedTime = new Date().getTime();
-			}
-
 			exec();
-
-			if(getCalculateElapsedTime()) {
-				elapsedTime = new Date().getTime() - elapsedTime;
-			}
-			if(getCalculateElapsedTime()) System.out.println("time: " + getElapsedTime());
 		} catch(java.net.SocketException x) {
 			setErrorCode(SOCKET_ERROR);
 			setErrorMessage(JSI18n.i18n.getError("SOCKET_ERROR"));
@@ -76,10 +112,84 @@ public abstract class EnhancedTask<R> extends AbstractTask<R> {
 			CC.getLogger().log(Level.FINE, getErrorMessage(), x);
 			onError(x);
 		}
+		
+		if(!doneWithErrors()) CC.getMirrorGroup().taskExecuted(this);
+		
+		if(!timed) return;
+		long t = System.nanoTime() - startTime;
+		
+		if(getCalculateElapsedTime()) {
+			elapsedTime = t / 1000000;
+			CC.getLogger().fine(getDescription() + ": " + elapsedTime + "ms");
+		}
+		
+		if(creationTime != 0) {
+			int n = roundTrips < 0 ? 1 : roundTrips;
+			metrics.record(getClass(), startTime - creationTime, t, n, doneWithErrors());
+		}
 	}
 
 	public void
 	exec() throws Exception { }
+	
+	/**
+	 * Registers the specified listener for receiving event messages.
+	 * The listener is notified with the session of this task bound to the
+	 * current thread, and when JSampler runs headless, it is notified
+	 * on the headless executor instead of the thread of the UI toolkit.
+	 * @param l The <code>TaskListener</code> to register.
+	 */
+	public void
+	addTaskListener(final TaskListener l) {
+		TaskListener w = CC.uiThreadTaskListener(new TaskListener() {
+			public void
+			taskPerformed(final TaskEvent e) {
+				getSession().run(new Runnable() {
+					public void
+					run() { l.taskPerformed(e); }
+				});
+			}
+		});
+		
+		synchronized(this) {
+			if(forwarders == null) forwarders = new IdentityHashMap<TaskListener, TaskListener>();
+			forwarders.put(l, w);
+		}
+		
+		super.addTaskListener(w);
+	}
+	
+	/**
+	 * Removes the specified listener.
+	 * @param l The <code>TaskListener</code> to remove.
+	 */
+	public void
+	removeTaskListener(TaskListener l) {
+		TaskListener w = null;
+		synchronized(this) { if(forwarders != null) w = forwarders.remove(l); }
+		super.removeTaskListener(w == null ? l : w);
+	}
+	
+	/**
+	 * Gets the session this task belongs to, whose client, task queue and
+	 * sampler model are used by the task (through <code>CC</code>).
+	 */
+	public SamplerSession
+	getSession() {
+		// the tasks created during the initialization of CC have no session yet
+		SamplerSession s = session;
+		return s == null ? CC.getDefaultSession() : s;
+	}
+	
+	/**
+	 * Sets the session this task belongs to. Invoked by the task
+	 * queue of the session when the task is added to it.
+	 */
+	public void
+	setSession(SamplerSession session) {
+		if(session == null) throw new IllegalArgumentException("session must be non null");
+		this.session = session;
+	}
 
 	public void
 	onError(Exception e) { e.printStackTrace(); }
@@ -136,7 +246,83 @@ public abstract class EnhancedTask<R> extends AbstractTask<R> {
 	public void
 	setCalculateElapsedTime(boolean b) { calculateElapsedTime = b; }
 
-	/** Gets the elapsed time for this task. */
+	/** Gets the elapsed time (in milliseconds) for this task. */
 	public long
 	getElapsedTime() { return elapsedTime; }
+	
+	/**
+	 * Gets the traffic class of this task, which determines the
+	 * connection (and the task queue) used to execute the task.
+	 */
+	public TrafficClass
+	getTrafficClass() { return trafficClass; }
+	
+	/**
+	 * Sets the traffic class of this task. Should be set before adding
+	 * the task to the task queue. Long running operations should use
+	 * {@link TrafficClass#BULK} to not delay the interactive commands.
+	 * Note that the control tasks added after a bulk task are not
+	 * ordered after it (see {@link #setDependsOnBulkTasks}).
+	 */
+	public void
+	setTrafficClass(TrafficClass trafficClass) { this.trafficClass = trafficClass; }
+	
+	/**
+	 * Determines whether this control task depends on the bulk tasks
+	 * added to the task queue before it.
+	 * @see #setDependsOnBulkTasks
+	 */
+	public boolean
+	getDependsOnBulkTasks() { return dependsOnBulkTasks; }
+	
+	/**
+	 * Sets whether this control task depends on the bulk tasks added to the
+	 * task queue before it. Since the bulk tasks are executed on a separate
+	 * connection, a control task is not ordered after the bulk tasks added
+	 * before it, unless it depends on them. Should be set before adding
+	 * the task to the task queue.
+	 */
+	public void
+	setDependsOnBulkTasks(boolean b) { dependsOnBulkTasks = b; }
+
+	/**
+	 * Creates a new task, which makes the same change as this task on another
+	 * backend (see <code>MirrorGroup</code>). The IDs addressed by this task are
+	 * translated to the IDs on the other backend with the specified map.
+	 * @return The new task or <code>null</code> if this task can't be mirrored
+	 * or if an object addressed by this task is not created on the other backend.
+	 */
+	public EnhancedTask
+	createMirrorTask(BackendIdMap ids) { return null; }
+
+	/**
+	 * Adds the specified number of backend round trips to the ones made by this task.
+	 * Tasks which issue more (or less) than one LSCP command should report
+	 * the number of commands actually sent, which is recorded in the task metrics.
+	 * If not reported, a single round trip is assumed.
+	 */
+	public void
+	addRoundTrips(int n) { roundTrips = (roundTrips < 0 ? 0 : roundTrips) + n; }
+	
+	/**
+	 * Gets the number of backend round trips reported by this task
+	 * or -1 if not reported.
+	 */
+	public int
+	getRoundTrips() { return roundTrips; }
+	
+	/**
+	 * Marks that data needed by this task is retrieved from a cache instead of
+	 * the backend. The round trips of this task are then considered reported,
+	 * so a task served entirely from a cache is recorded with no round trips.
+	 */
+	public void
+	markCacheHit() {
+		cacheHits++;
+		if(roundTrips < 0) roundTrips = 0;
+	}
+	
+	/** Gets the number of times data needed by this task is retrieved from a cache. */
+	public int
+	getCacheHits() { return cacheHits; }
 }
@@ -371,7 +371,7 @@ public class Global {
 			adm.removeAllSendEffectChains();
 			
 			for(EffectChainInfo c : chains) {
-				adm.addSendEffectChain(new EffectChain(c));
+				adm.addSendEffectChain(new EffectChain(getSession(), c));
 			}
 		}
 	}
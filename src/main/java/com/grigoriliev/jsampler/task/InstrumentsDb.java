@@ -21,12 +21,17 @@
 
 package com.grigoriliev.jsampler.task;
 
+import java.util.logging.Level;
+
 import com.grigoriliev.jsampler.JSI18n;
 import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.ConnectionManager.TrafficClass;
 
 import com.grigoriliev.jsampler.jlscp.DbDirectoryInfo;
 import com.grigoriliev.jsampler.jlscp.DbInstrumentInfo;
 import com.grigoriliev.jsampler.jlscp.DbSearchQuery;
+import com.grigoriliev.jsampler.jlscp.LSException;
+import com.grigoriliev.jsampler.jlscp.Parser;
 import com.grigoriliev.jsampler.jlscp.ScanJobInfo;
 
 import static com.grigoriliev.jsampler.jlscp.Client.ScanMode;
@@ -40,6 +45,66 @@ public class InstrumentsDb {
 	/** Forbits the instantiation of this class. */
 	private InstrumentsDb() { }
 	
+	/**
+	 * Gets the absolute path name of the directory or instrument
+	 * with the specified name in the specified directory.
+	 * @param dir The absolute path name of the parent directory.
+	 * @param name The non-escaped name of the directory or instrument.
+	 */
+	public static String
+	getDbPath(String dir, String name) {
+		if(!dir.endsWith("/")) dir += "/";
+		return dir + Parser.toEscapedFileName(name);
+	}
+	
+	/** Gets the directory info from the cache or from the backend if not cached. */
+	private static DbDirectoryInfo
+	getDirectoryInfo(EnhancedTask<?> t, String dir) throws Exception {
+		DbDirectoryInfo info = CC.getInstrumentsDbCache().getDirectory(dir);
+		if(info != null) {
+			t.markCacheHit();
+		} else {
+			long v = CC.getInstrumentsDbCache().getVersion();
+			info = CC.getClient().getDbDirectoryInfo(dir);
+			t.addRoundTrips(1);
+			CC.getInstrumentsDbCache().putDirectory(dir, info, v);
+		}
+		
+		return info;
+	}
+	
+	/** Gets the instrument info from the cache or from the backend if not cached. */
+	private static DbInstrumentInfo
+	getInstrumentInfo(EnhancedTask<?> t, String instr) throws Exception {
+		DbInstrumentInfo info = CC.getInstrumentsDbCache().getInstrument(instr);
+		if(info != null) {
+			t.markCacheHit();
+		} else {
+			long v = CC.getInstrumentsDbCache().getVersion();
+			info = CC.getClient().getDbInstrumentInfo(instr);
+			t.addRoundTrips(1);
+			CC.getInstrumentsDbCache().putInstrument(instr, info, v);
+		}
+		
+		return info;
+	}
+	
+	private static void
+	invalidate(DbDirectoryInfo[] directories) {
+		if(directories == null) return;
+		for(DbDirectoryInfo d : directories) {
+			CC.getInstrumentsDbCache().invalidate(d.getDirectoryPath());
+		}
+	}
+	
+	private static void
+	invalidate(DbInstrumentInfo[] instruments) {
+		if(instruments == null) return;
+		for(DbInstrumentInfo i : instruments) {
+			CC.getInstrumentsDbCache().invalidate(i.getInstrumentPath());
+		}
+	}
+	
 	/**
 	 * This task retrieves the number of directories in the specified directory.
 	 */
@@ -118,7 +183,17 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { setResult(CC.getClient().getDbDirectories(dir)); }
+		exec() throws Exception {
+			DbDirectoryInfo[] dirs = CC.getInstrumentsDbCache().getDirectories(dir);
+			if(dirs == null) {
+				long v = CC.getInstrumentsDbCache().getVersion();
+				dirs = CC.getClient().getDbDirectories(dir);
+				CC.getInstrumentsDbCache().putDirectories(dir, dirs, v);
+			}
+			
+			CC.getInstrumentsDbIndex().setDirectories(dir, dirs);
+			setResult(dirs);
+		}
 		
 		public String
 		getDirectory() { return dir; }
@@ -144,6 +219,75 @@ public class InstrumentsDb {
 	}
 	
 	
+	/**
+	 * This task retrieves the names of the directories in the specified directory.
+	 */
+	public static class GetDirectoryNames extends EnhancedTask<String[]> {
+		private String dir;
+		
+		/**
+		 * Creates a new instance of <code>GetDirectoryNames</code>.
+		 * @param dir The absolute path name of the directory.
+		 */
+		public
+		GetDirectoryNames(String dir) {
+			setTitle("InstrumentsDb.GetDirectoryNames_task");
+			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.GetDrectories.desc"));
+			this.dir = dir;
+		}
+		
+		/** The entry point of the task. */
+		@Override
+		public void
+		exec() throws Exception { setResult(CC.getClient().getDbDirectoryNames(dir)); }
+		
+		public String
+		getDirectory() { return dir; }
+	}
+	
+	/**
+	 * This task retrieves information about the directories with the specified
+	 * names in the specified directory. Used to load a large directory listing
+	 * in windows, instead of all directories at once.
+	 */
+	public static class GetDirectoriesInfo extends EnhancedTask<DbDirectoryInfo[]> {
+		private String dir;
+		private String[] names;
+		
+		/**
+		 * Creates a new instance of <code>GetDirectoriesInfo</code>.
+		 * @param dir The absolute path name of the parent directory.
+		 * @param names The names of the directories.
+		 */
+		public
+		GetDirectoriesInfo(String dir, String[] names) {
+			setTitle("InstrumentsDb.GetDirectoriesInfo_task");
+			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.GetDrectories.desc"));
+			this.dir = dir;
+			this.names = names;
+		}
+		
+		/**
+		 * The entry point of the task. The info of a directory,
+		 * which is removed in the meantime, is set to <code>null</code>.
+		 */
+		@Override
+		public void
+		exec() throws Exception {
+			DbDirectoryInfo[] infos = new DbDirectoryInfo[names.length];
+			for(int i = 0; i < names.length; i++) {
+				try { infos[i] = getDirectoryInfo(this, getDbPath(dir, names[i])); }
+				catch(LSException x) { CC.getLogger().log(Level.FINE, names[i], x); }
+			}
+			
+			CC.getInstrumentsDbIndex().addDirectories(infos);
+			setResult(infos);
+		}
+		
+		public String
+		getDirectory() { return dir; }
+	}
+	
 	/**
 	 * This task retrieves information about a directory.
 	 */
@@ -164,7 +308,7 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { setResult(CC.getClient().getDbDirectoryInfo(dir)); }
+		exec() throws Exception { setResult(getDirectoryInfo(this, dir)); }
 	}
 	
 	/**
@@ -180,6 +324,7 @@ public class InstrumentsDb {
 		public
 		CreateDirectory(String dir) {
 			setTitle("InstrumentsDb.CreateDirectory_task");
+			setDependsOnBulkTasks(true);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.CreateDirectory.desc"));
 			this.dir = dir;
 		}
@@ -187,7 +332,10 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { CC.getClient().addDbDirectory(dir); }
+		exec() throws Exception {
+			CC.getClient().addDbDirectory(dir);
+			CC.getInstrumentsDbCache().invalidate(dir);
+		}
 	}
 	
 	/**
@@ -205,6 +353,7 @@ public class InstrumentsDb {
 		public
 		RenameDirectory(String dir, String newName) {
 			setTitle("InstrumentsDb.RenameDirectory_task");
+			setDependsOnBulkTasks(true);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.RenameDirectory.desc"));
 			this.dir = dir;
 			this.newName = newName;
@@ -213,7 +362,10 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { CC.getClient().renameDbDirectory(dir, newName); }
+		exec() throws Exception {
+			CC.getClient().renameDbDirectory(dir, newName);
+			CC.getInstrumentsDbCache().invalidate(dir);
+		}
 	}
 	
 	/**
@@ -231,6 +383,7 @@ public class InstrumentsDb {
 		public
 		SetDirectoryDescription(String dir, String desc) {
 			setTitle("InstrumentsDb.SetDirectoryDescription_task");
+			setDependsOnBulkTasks(true);
 			String s = JSI18n.i18n.getMessage("InstrumentsDb.SetDirectoryDescription.desc");
 			setDescription(s);
 			this.dir = dir;
@@ -242,6 +395,7 @@ public class InstrumentsDb {
 		public void
 		exec() throws Exception {
 			CC.getClient().setDbDirectoryDescription(dir, desc);
+			CC.getInstrumentsDbCache().invalidate(dir);
 		}
 	}
 	
@@ -259,6 +413,7 @@ public class InstrumentsDb {
 		RemoveDirectories(DbDirectoryInfo[] directories) {
 			super(true);
 			setTitle("InstrumentsDb.RemoveDirectories_task");
+			setTrafficClass(TrafficClass.BULK);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.RemoveDirectories.desc"));
 			this.directories = directories;
 		}
@@ -266,7 +421,10 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { removeDirectories(); }
+		exec() throws Exception {
+			try { removeDirectories(); }
+			finally { invalidate(directories); }
+		}
 		
 		private void
 		removeDirectories() throws Exception {
@@ -301,6 +459,7 @@ public class InstrumentsDb {
 		public
 		FindDirectories(String dir, DbSearchQuery query) {
 			setTitle("InstrumentsDb.FindDirectories_task");
+			setTrafficClass(TrafficClass.BULK);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.FindDirectories.desc"));
 			this.dir = dir;
 			this.query = query;
@@ -310,7 +469,9 @@ public class InstrumentsDb {
 		@Override
 		public void
 		exec() throws Exception {
-			setResult(CC.getClient().findDbDirectories(dir, query));
+			DbDirectoryInfo[] dirs = CC.getClient().findDbDirectories(dir, query);
+			CC.getInstrumentsDbIndex().addDirectories(dirs);
+			setResult(dirs);
 		}
 	}
 	
@@ -335,7 +496,17 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { setResult(CC.getClient().getDbInstruments(dir)); }
+		exec() throws Exception {
+			DbInstrumentInfo[] instrs = CC.getInstrumentsDbCache().getInstruments(dir);
+			if(instrs == null) {
+				long v = CC.getInstrumentsDbCache().getVersion();
+				instrs = CC.getClient().getDbInstruments(dir);
+				CC.getInstrumentsDbCache().putInstruments(dir, instrs, v);
+			}
+			
+			CC.getInstrumentsDbIndex().setInstruments(dir, instrs);
+			setResult(instrs);
+		}
 		
 		public String
 		getDirectory() { return dir; }
@@ -359,6 +530,75 @@ public class InstrumentsDb {
 		}
 	}
 	
+	/**
+	 * This task retrieves the names of the instruments in the specified directory.
+	 */
+	public static class GetInstrumentNames extends EnhancedTask<String[]> {
+		private String dir;
+		
+		/**
+		 * Creates a new instance of <code>GetInstrumentNames</code>.
+		 * @param dir The absolute path name of the directory.
+		 */
+		public
+		GetInstrumentNames(String dir) {
+			setTitle("InstrumentsDb.GetInstrumentNames_task");
+			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.GetInstruments.desc"));
+			this.dir = dir;
+		}
+		
+		/** The entry point of the task. */
+		@Override
+		public void
+		exec() throws Exception { setResult(CC.getClient().getDbInstrumentNames(dir)); }
+		
+		public String
+		getDirectory() { return dir; }
+	}
+	
+	/**
+	 * This task retrieves information about the instruments with the specified
+	 * names in the specified directory. Used to load a large directory listing
+	 * in windows, instead of all instruments at once.
+	 */
+	public static class GetInstrumentsInfo extends EnhancedTask<DbInstrumentInfo[]> {
+		private String dir;
+		private String[] names;
+		
+		/**
+		 * Creates a new instance of <code>GetInstrumentsInfo</code>.
+		 * @param dir The absolute path name of the directory.
+		 * @param names The names of the instruments.
+		 */
+		public
+		GetInstrumentsInfo(String dir, String[] names) {
+			setTitle("InstrumentsDb.GetInstrumentsInfo_task");
+			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.GetInstruments.desc"));
+			this.dir = dir;
+			this.names = names;
+		}
+		
+		/**
+		 * The entry point of the task. The info of an instrument,
+		 * which is removed in the meantime, is set to <code>null</code>.
+		 */
+		@Override
+		public void
+		exec() throws Exception {
+			DbInstrumentInfo[] infos = new DbInstrumentInfo[names.length];
+			for(int i = 0; i < names.length; i++) {
+				try { infos[i] = getInstrumentInfo(this, getDbPath(dir, names[i])); }
+				catch(LSException x) { CC.getLogger().log(Level.FINE, names[i], x); }
+			}
+			
+			CC.getInstrumentsDbIndex().addInstruments(infos);
+			setResult(infos);
+		}
+		
+		public String
+		getDirectory() { return dir; }
+	}
+	
 	/**
 	 * This task retrieves information about an instrument.
 	 */
@@ -379,9 +619,7 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception {
-			setResult(CC.getClient().getDbInstrumentInfo(instr));
-		}
+		exec() throws Exception { setResult(getInstrumentInfo(this, instr)); }
 	}
 	
 	/**
@@ -400,6 +638,7 @@ public class InstrumentsDb {
 		public
 		FindInstruments(String dir, DbSearchQuery query) {
 			setTitle("InstrumentsDb.FindInstruments_task");
+			setTrafficClass(TrafficClass.BULK);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.FindInstruments.desc"));
 			this.dir = dir;
 			this.query = query;
@@ -409,7 +648,9 @@ public class InstrumentsDb {
 		@Override
 		public void
 		exec() throws Exception {
-			setResult(CC.getClient().findDbInstruments(dir, query));
+			DbInstrumentInfo[] instrs = CC.getClient().findDbInstruments(dir, query);
+			CC.getInstrumentsDbIndex().addInstruments(instrs);
+			setResult(instrs);
 		}
 	}
 	
@@ -428,6 +669,7 @@ public class InstrumentsDb {
 		public
 		RenameInstrument(String instr, String newName) {
 			setTitle("InstrumentsDb.RenameInstrument_task");
+			setDependsOnBulkTasks(true);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.RenameInstrument.desc"));
 			this.instr = instr;
 			this.newName = newName;
@@ -436,7 +678,10 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { CC.getClient().renameDbInstrument(instr, newName); }
+		exec() throws Exception {
+			CC.getClient().renameDbInstrument(instr, newName);
+			CC.getInstrumentsDbCache().invalidate(instr);
+		}
 	}
 	
 	/**
@@ -454,6 +699,7 @@ public class InstrumentsDb {
 		public
 		SetInstrumentDescription(String instr, String desc) {
 			setTitle("InstrumentsDb.SetInstrumentDescription_task");
+			setDependsOnBulkTasks(true);
 			String s = JSI18n.i18n.getMessage("InstrumentsDb.SetInstrumentDescription.desc");
 			setDescription(s);
 			this.instr = instr;
@@ -465,6 +711,7 @@ public class InstrumentsDb {
 		public void
 		exec() throws Exception {
 			CC.getClient().setDbInstrumentDescription(instr, desc);
+			CC.getInstrumentsDbCache().invalidate(instr);
 		}
 	}
 	
@@ -482,6 +729,7 @@ public class InstrumentsDb {
 		RemoveInstruments(DbInstrumentInfo[] instruments) {
 			super(true);
 			setTitle("InstrumentsDb.RemoveInstruments_task");
+			setTrafficClass(TrafficClass.BULK);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.RemoveInstruments.desc"));
 			this.instruments = instruments;
 		}
@@ -489,7 +737,10 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { removeInstruments(); }
+		exec() throws Exception {
+			try { removeInstruments(); }
+			finally { invalidate(instruments); }
+		}
 		
 		private void
 		removeInstruments() throws Exception {
@@ -539,6 +790,7 @@ public class InstrumentsDb {
 		public
 		AddInstrumentsFromFile(String dbDir, String filePath, int instrIndex) {
 			setTitle("InstrumentsDb.AddInstrumentsFromFile_task");
+			setTrafficClass(TrafficClass.BULK);
 			String s = JSI18n.i18n.getMessage("InstrumentsDb.AddInstrumentsFromFile.desc");
 			setDescription(s);
 			this.dbDir = dbDir;
@@ -609,6 +861,7 @@ public class InstrumentsDb {
 		public
 		AddInstruments(String dbDir, String fsDir, boolean flat, boolean insDir) {
 			setTitle("InstrumentsDb.AddInstruments_task");
+			setTrafficClass(TrafficClass.BULK);
 			String s = JSI18n.i18n.getMessage("InstrumentsDb.AddInstruments.desc");
 			setDescription(s);
 			this.dbDir = dbDir;
@@ -663,6 +916,7 @@ public class InstrumentsDb {
 		public
 		AddInstrumentsNonrecursive(String dbDir, String fsDir, boolean insDir) {
 			setTitle("InstrumentsDb.AddInstrumentsNonrecursive_task");
+			setTrafficClass(TrafficClass.BULK);
 			String s = JSI18n.i18n.getMessage("InstrumentsDb.AddInstrumentsNonrecursive.desc");
 			setDescription(s);
 			this.dbDir = dbDir;
@@ -701,6 +955,7 @@ public class InstrumentsDb {
 		Move(DbDirectoryInfo[] directories, DbInstrumentInfo[] instruments, String dest) {
 			super(true);
 			setTitle("InstrumentsDb.Move_task");
+			setTrafficClass(TrafficClass.BULK);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.Move.desc"));
 			this.directories = directories;
 			this.instruments = instruments;
@@ -711,8 +966,14 @@ public class InstrumentsDb {
 		@Override
 		public void
 		exec() throws Exception {
-			moveInstruments();
-			moveDirectories();
+			try {
+				moveInstruments();
+				moveDirectories();
+			} finally {
+				invalidate(instruments);
+				invalidate(directories);
+				CC.getInstrumentsDbCache().invalidate(dest);
+			}
 		}
 		
 		private void
@@ -768,6 +1029,7 @@ public class InstrumentsDb {
 		Copy(DbDirectoryInfo[] directories, DbInstrumentInfo[] instruments, String dest) {
 			super(true);
 			setTitle("InstrumentsDb.Copy_task");
+			setTrafficClass(TrafficClass.BULK);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.Copy.desc"));
 			this.directories = directories;
 			this.instruments = instruments;
@@ -778,8 +1040,10 @@ public class InstrumentsDb {
 		@Override
 		public void
 		exec() throws Exception {
-			copyInstruments();
-			copyDirectories();
+			try {
+				copyInstruments();
+				copyDirectories();
+			} finally { CC.getInstrumentsDbCache().invalidate(dest); }
 		}
 		
 		private void
@@ -827,6 +1091,7 @@ public class InstrumentsDb {
 		public
 		FindLostInstrumentFiles() {
 			setTitle("InstrumentsDb.FindLostInstrumentFiles_task");
+			setTrafficClass(TrafficClass.BULK);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.FindLostInstrumentFiles.desc"));
 		}
 	
@@ -854,6 +1119,7 @@ public class InstrumentsDb {
 		public
 		SetInstrumentFilePath(String oldPath, String newPath) {
 			setTitle("InstrumentsDb.SetInstrumentFilePath_task");
+			setDependsOnBulkTasks(true);
 			setDescription(JSI18n.i18n.getMessage("InstrumentsDb.SetInstrumentFilePath.desc"));
 			this.oldPath = oldPath;
 			this.newPath = newPath;
@@ -864,6 +1130,7 @@ public class InstrumentsDb {
 		public void
 		exec() throws Exception {
 			CC.getClient().setDbInstrumentFilePath(oldPath, newPath);
+			CC.getInstrumentsDbCache().clear();
 		}
 	}
 	
@@ -920,6 +1187,7 @@ public class InstrumentsDb {
 		public
 		Format() {
 			setTitle("InstrumentsDb.Format_task");
+			setTrafficClass(TrafficClass.BULK);
 			String s = JSI18n.i18n.getMessage("InstrumentsDb.Format.desc");
 			setDescription(s);
 		}
@@ -927,6 +1195,9 @@ public class InstrumentsDb {
 		/** The entry point of the task. */
 		@Override
 		public void
-		exec() throws Exception { CC.getClient().formatInstrumentsDb(); }
+		exec() throws Exception {
+			CC.getClient().formatInstrumentsDb();
+			CC.getInstrumentsDbCache().clear();
+		}
 	}
 }
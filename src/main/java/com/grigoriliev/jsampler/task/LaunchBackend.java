@@ -21,29 +21,47 @@
 
 package com.grigoriliev.jsampler.task;
 
+import com.grigoriliev.jsampler.BackendProbe;
 import com.grigoriliev.jsampler.JSI18n;
-import com.grigoriliev.jsampler.juife.PDUtils;
 
 import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.Server;
 
 /**
- *
+ * Waits for a launched backend to become ready and reconnects to it.
+ * The LSCP port is polled with a short (exponential) backoff and a cheap
+ * LSCP handshake, so that the connection is established as soon as the
+ * backend accepts commands, instead of waiting a fixed delay.
  * @author Grigor Iliev
  */
 public class LaunchBackend extends EnhancedTask {
-	private final int delay;
+	/** The initial interval (in milliseconds) between two probes. */
+	private static final int MIN_PROBE_INTERVAL = 50;
+	
+	/** The maximum interval (in milliseconds) between two probes. */
+	private static final int MAX_PROBE_INTERVAL = 500;
+	
+	private final Server server;
+	private final Process process;
+	private final int timeout;
 	private final Object monitor;
 	
 	/**
 	 * Creates new instance of <code>LaunchBackend</code>.
-	 * @param delay Specifies the delay in seconds.
+	 * @param server The server of the launched backend.
+	 * @param process The backend process.
+	 * @param timeout Specifies the maximum time (in seconds)
+	 * to wait for the backend to become ready.
+	 * @param monitor Notifying this monitor interrupts the waiting.
 	 */
 	public
-	LaunchBackend(int delay, Object monitor) {
+	LaunchBackend(Server server, Process process, int timeout, Object monitor) {
 		setSilent(true);
 		setTitle("LaunchBackend_task");
 		setDescription(JSI18n.i18n.getMessage("LaunchBackend.desc"));
-		this.delay = delay;
+		this.server = server;
+		this.process = process;
+		this.timeout = timeout;
 		this.monitor = monitor;
 	}
 	
@@ -51,11 +69,45 @@ public class LaunchBackend extends EnhancedTask {
 	@Override
 	public void
 	exec() throws Exception {
-		synchronized(monitor) { monitor.wait(delay * 1000); }
+		long start = System.currentTimeMillis();
+		long deadline = start + timeout * 1000L;
+		int interval = MIN_PROBE_INTERVAL;
+		
+		while(!BackendProbe.isReady(server, BackendProbe.DEFAULT_TIMEOUT)) {
+			if(!isAlive()) {
+				CC.getLogger().info (
+					"Backend exited with exit value " + process.exitValue() +
+					"\n" + CC.getBackendOutput()
+				);
+				break;
+			}
+			
+			long t = deadline - System.currentTimeMillis();
+			if(t <= 0) {
+				CC.getLogger().info("Timeout waiting the backend to start");
+				break;
+			}
+			
+			synchronized(monitor) { monitor.wait(Math.min(interval, t)); }
+			if(isStopped()) break;
+			interval = Math.min(interval * 2, MAX_PROBE_INTERVAL);
+		}
 		
-		PDUtils.runOnUiThread(new Runnable() {
+		CC.getLogger().fine("Backend probed in " + (System.currentTimeMillis() - start) + "ms");
+		
+		CC.runOnUiThread(new Runnable() {
 			public void
 			run() { CC.reconnect(); }
 		});
 	}
+	
+	private boolean
+	isAlive() {
+		try {
+			process.exitValue();
+			return false;
+		} catch(IllegalThreadStateException x) {
+			return true;
+		}
+	}
 }
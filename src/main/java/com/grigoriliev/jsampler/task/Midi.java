@@ -20,6 +20,7 @@
  */
 package com.grigoriliev.jsampler.task;
 
+import com.grigoriliev.jsampler.BackendIdMap;
 import com.grigoriliev.jsampler.JSI18n;
 import com.grigoriliev.jsampler.SamplerModel;
 import com.grigoriliev.jsampler.jlscp.BoolParameter;
@@ -182,6 +183,13 @@ public class Midi {
 			// Not needed, but eventually speeds up the change.
 			CC.getSamplerModel().getMidiDeviceById(dev).setActive(enable);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getMidiDeviceId(dev);
+			return id == -1 ? null : new EnableDevice(id, enable);
+		}
 	}
 
 	/**
@@ -223,6 +231,13 @@ public class Midi {
 			CC.getClient().setMidiInputDeviceParameter(dev, prm);
 			CC.getSamplerModel().getMidiDeviceById(dev);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getMidiDeviceId(dev);
+			return id == -1 ? null : new SetDeviceParameter(id, prm);
+		}
 	}
 
 	/**
@@ -252,6 +267,13 @@ public class Midi {
 		exec() throws Exception {
 			CC.getClient().setMidiInputPortCount(deviceId, ports);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getMidiDeviceId(deviceId);
+			return id == -1 ? null : new SetPortCount(id, ports);
+		}
 	}
 	
 	/**
@@ -284,6 +306,13 @@ public class Midi {
 		exec() throws Exception {
 			CC.getClient().setMidiInputPortParameter(dev, port, prm);
 		}
+		
+		@Override
+		public EnhancedTask
+		createMirrorTask(BackendIdMap ids) {
+			int id = ids.getMidiDeviceId(dev);
+			return id == -1 ? null : new SetPortParameter(id, port, prm);
+		}
 	}
 
 	/**
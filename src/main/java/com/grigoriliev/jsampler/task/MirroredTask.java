@@ -0,0 +1,65 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+
+package com.grigoriliev.jsampler.task;
+
+
+/**
+ * This task makes the change of a task, already executed by the default session,
+ * in the session of a mirror backend (see <code>MirrorGroup</code>). The change
+ * is made by a new task, created by the mirrored task with the IDs of the mirror
+ * (see {@link EnhancedTask#createMirrorTask}), so the mirrored task itself is
+ * not executed again.
+ * @author Grigor Iliev
+ */
+public class MirroredTask extends EnhancedTask {
+	private final EnhancedTask task;
+	private final EnhancedTask mirrorTask;
+	
+	/**
+	 * Creates new instance of <code>MirroredTask</code>.
+	 * @param task The mirrored task.
+	 * @param mirrorTask The task, which makes the change of <code>task</code> on the mirror.
+	 */
+	public
+	MirroredTask(EnhancedTask task, EnhancedTask mirrorTask) {
+		setSilent(true);
+		setTitle("");
+		setDescription(task.getDescription());
+		this.task = task;
+		this.mirrorTask = mirrorTask;
+	}
+	
+	/** Gets the mirrored task. */
+	public EnhancedTask
+	getTask() { return task; }
+	
+	/** The entry point of the task. */
+	@Override
+	public void
+	exec() throws Exception { mirrorTask.exec(); }
+	
+	/** The errors are handled by the mirror group. */
+	@Override
+	public void
+	onError(Exception e) { }
+}
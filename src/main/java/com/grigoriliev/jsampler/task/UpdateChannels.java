@@ -28,7 +28,6 @@ import com.grigoriliev.jsampler.CC;
 
 import com.grigoriliev.jsampler.jlscp.SamplerChannel;
 
-import com.grigoriliev.jsampler.juife.PDUtils;
 import com.grigoriliev.jsampler.juife.Task;
 
 
@@ -56,7 +55,7 @@ public class UpdateChannels extends EnhancedTask {
 		
 		boolean isAdjustingOld = CC.getSamplerModel().getChannelListIsAdjusting();
 		
-		PDUtils.runOnUiThreadAndWait(new Runnable() {
+		CC.runOnUiThreadAndWait(new Runnable() {
 			public void
 			run() {
 				CC.getSamplerModel().setChannelListIsAdjusting(true);
@@ -106,7 +105,7 @@ public class UpdateChannels extends EnhancedTask {
 		}
 		
 		try {
-			PDUtils.runOnUiThreadAndWait(new Runnable() {
+			CC.runOnUiThreadAndWait(new Runnable() {
 				public void
 				run() {
 					CC.getSamplerModel().setChannelListIsAdjusting(false);
@@ -0,0 +1,261 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.view;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.Vector;
+
+import java.util.logging.Level;
+
+import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.DefaultLSConsoleModel;
+import com.grigoriliev.jsampler.HF;
+import com.grigoriliev.jsampler.JSPrefs;
+import com.grigoriliev.jsampler.JSUtils;
+import com.grigoriliev.jsampler.LSConsoleModel;
+import com.grigoriliev.jsampler.SamplerChannelModel;
+import com.grigoriliev.jsampler.Server;
+import com.grigoriliev.jsampler.event.LSConsoleEvent;
+import com.grigoriliev.jsampler.event.LSConsoleListener;
+import com.grigoriliev.jsampler.event.ListSelectionListener;
+
+
+/**
+ * The main frame used when JSampler runs headless. There are no channel panes.
+ * The server to connect is specified with the system property
+ * <code>jsampler.server</code> (<code>host:port</code>) or, if not specified,
+ * by the {@link JSPrefs#SERVER_INDEX} preference. The LSCP scripts are executed
+ * through an LS Console model, whose responses are written to the standard output.
+ * @author Grigor Iliev
+ */
+public class HeadlessMainFrame implements JSMainFrame<JSChannelsPane> {
+	/** The delay (in milliseconds) before reconnecting after a connection failure. */
+	public static final int RECONNECT_DELAY = 5000;
+	
+	private final Vector<JSChannelsPane> channelsPanes = new Vector<JSChannelsPane>();
+	private final Timer timer = new Timer("Headless reconnect timer", true);
+	private final LSConsoleModel lsConsoleModel = new DefaultLSConsoleModel();
+	private boolean autoUpdateChannelListUI = true;
+	
+	/** Creates a new instance of <code>HeadlessMainFrame</code>. */
+	public
+	HeadlessMainFrame() {
+		lsConsoleModel.addLSConsoleListener(new LSConsoleListener() {
+			public void
+			commandLineTextChanged(LSConsoleEvent e) { }
+			
+			public void
+			commandExecuted(LSConsoleEvent e) { }
+			
+			public void
+			responseReceived(LSConsoleEvent e) { System.out.println(e.getResponse()); }
+		});
+	}
+	
+	@Override
+	public void
+	onWindowClose() { CC.cleanExit(); }
+	
+	/** Uses <code>~/.jsampler</code> as JSampler's home directory. */
+	@Override
+	public void
+	installJSamplerHome() {
+		String s = System.getProperty("user.home") + File.separator + ".jsampler";
+		CC.getLogger().info("Using JSampler home: " + s);
+		JSUtils.changeJSamplerHome(s);
+	}
+	
+	@Override
+	public void
+	showDetailedErrorMessage(String err, String details) {
+		CC.getViewConfig().showErrorMessage(err + "\n" + details);
+	}
+	
+	/** Schedules a reconnection after {@link #RECONNECT_DELAY} milliseconds. */
+	@Override
+	public void
+	handleConnectionFailure() {
+		CC.getLogger().warning("Connection failure, reconnecting...");
+		
+		timer.schedule(new TimerTask() {
+			public void
+			run() {
+				CC.runOnUiThread(new Runnable() {
+					public void
+					run() { CC.reconnect(); }
+				});
+			}
+		}, RECONNECT_DELAY);
+	}
+	
+	@Override
+	public void
+	addChannelsPaneSelectionListener(ListSelectionListener l) { }
+	
+	@Override
+	public void
+	removeChannelsPaneSelectionListener(ListSelectionListener l) { }
+	
+	@Override
+	public Vector<JSChannelsPane>
+	getChannelsPaneList() { return channelsPanes; }
+	
+	@Override
+	public JSChannelsPane
+	getChannelsPane(int idx) { return channelsPanes.get(idx); }
+	
+	@Override
+	public void
+	addChannelsPane(JSChannelsPane chnPane) { channelsPanes.add(chnPane); }
+	
+	@Override
+	public boolean
+	removeChannelsPane(JSChannelsPane chnPane) { return channelsPanes.remove(chnPane); }
+	
+	@Override
+	public int
+	getChannelsPaneCount() { return channelsPanes.size(); }
+	
+	@Override
+	public int
+	getChannelsPaneIndex(JSChannelsPane chnPane) { return channelsPanes.indexOf(chnPane); }
+	
+	@Override
+	public void
+	setVisible(boolean b) { }
+	
+	@Override
+	public void
+	insertChannelsPane(JSChannelsPane pane, int idx) { channelsPanes.insertElementAt(pane, idx); }
+	
+	@Override
+	public JSChannelsPane
+	getSelectedChannelsPane() { return null; }
+	
+	@Override
+	public void
+	getServer(CC.Run<Server> r) { r.run(getServer()); }
+	
+	@Override
+	public void
+	getServer(CC.Run<Server> r, boolean manualSelect) { r.run(getServer()); }
+	
+	/**
+	 * Gets the server specified by the <code>jsampler.server</code> system
+	 * property or by the {@link JSPrefs#SERVER_INDEX} preference.
+	 */
+	@Override
+	public Server
+	getServer() {
+		String s = System.getProperty("jsampler.server");
+		if(s != null) {
+			Server srv = new Server();
+			srv.setName(s);
+			int i = s.lastIndexOf(':');
+			srv.setAddress(i == -1 ? s : s.substring(0, i));
+			if(i != -1) {
+				try { srv.setPort(Integer.parseInt(s.substring(i + 1))); }
+				catch(NumberFormatException x) {
+					CC.getLogger().warning("Invalid server: " + s);
+					return null;
+				}
+			}
+			
+			return srv;
+		}
+		
+		int i = CC.preferences().getIntProperty(JSPrefs.SERVER_INDEX);
+		if(i < 0 || i >= CC.getServerList().getServerCount()) i = 0;
+		if(CC.getServerList().getServerCount() == 0) return null;
+		return CC.getServerList().getServer(i);
+	}
+	
+	@Override
+	public Server
+	getServer(boolean manualSelect) { return getServer(); }
+	
+	/** Gets the LS Console model used to execute LSCP scripts. */
+	@Override
+	public LSConsoleModel
+	getLSConsoleModel() { return lsConsoleModel; }
+	
+	@Override
+	public void
+	setSelectedChannelsPane(JSChannelsPane pane) { }
+	
+	@Override
+	public JSChannel
+	findChannel(int id) { return null; }
+	
+	@Override
+	public JSChannel
+	removeChannel(int id) { return null; }
+	
+	@Override
+	public int
+	getChannelNumber(SamplerChannelModel channel) { return -1; }
+	
+	@Override
+	public String
+	getChannelPath(SamplerChannelModel channel) { return null; }
+	
+	@Override
+	public int
+	getChannelsPaneNumber(SamplerChannelModel channel) { return -1; }
+	
+	/**
+	 * Executes the LSCP commands in the specified file line by line.
+	 * @param script The path name of the LSCP script.
+	 */
+	@Override
+	public void
+	runScript(String script) {
+		LSConsoleModel console = getLSConsoleModel();
+		try(BufferedReader br = new BufferedReader(new FileReader(script))) {
+			for(String s = br.readLine(); s != null; s = br.readLine()) {
+				console.setCommandLineText(s);
+				console.execCommand();
+			}
+		} catch(IOException x) {
+			CC.getLogger().log(Level.INFO, HF.getErrorMessage(x), x);
+			CC.getViewConfig().showErrorMessage(x, script + ": ");
+		}
+	}
+	
+	@Override
+	public boolean
+	getAutoUpdateChannelListUI() { return autoUpdateChannelListUI; }
+	
+	@Override
+	public void
+	setAutoUpdateChannelListUI(boolean b) { autoUpdateChannelListUI = b; }
+	
+	@Override
+	public void
+	updateChannelListUI() { }
+}
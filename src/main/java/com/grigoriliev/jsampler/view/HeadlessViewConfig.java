@@ -0,0 +1,101 @@
+/*
+ *   JSampler - a front-end for LinuxSampler
+ *
+ *   Copyright (C) 2005-2023 Grigor Iliev <grigor@grigoriliev.com>
+ *
+ *   This file is part of JSampler.
+ *
+ *   JSampler is free software: you can redistribute it and/or modify it under
+ *   the terms of the GNU General Public License as published by the Free
+ *   Software Foundation, either version 3 of the License, or (at your option)
+ *   any later version.
+ *
+ *   JSampler is distributed in the hope that it will be useful, but WITHOUT
+ *   ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *   FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ *   more details.
+ *
+ *   You should have received a copy of the GNU General Public License along
+ *   with JSampler. If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package com.grigoriliev.jsampler.view;
+
+import com.grigoriliev.jsampler.CC;
+import com.grigoriliev.jsampler.HF;
+import com.grigoriliev.jsampler.JSPrefs;
+
+
+/**
+ * The view configuration used when JSampler runs headless.
+ * No views are provided and the error messages are written
+ * to the log and to the standard error stream.
+ * @author Grigor Iliev
+ */
+public class HeadlessViewConfig extends JSViewConfig<Object> {
+	private JSPrefs prefs = null;
+	
+	/** Creates a new instance of <code>HeadlessViewConfig</code>. */
+	public
+	HeadlessViewConfig() { }
+	
+	@Override
+	public InstrumentsDbTreeView<Object>
+	getInstrumentsDbTreeView() { return null; }
+	
+	@Override
+	public InstrumentsDbTableView<Object>
+	getInstrumentsDbTableView() { return null; }
+	
+	@Override
+	public SamplerBrowserView<Object>
+	getSamplerBrowserView() { return null; }
+	
+	@Override
+	public BasicIconSet<Object>
+	getBasicIconSet() { return null; }
+	
+	/**
+	 * Gets the preferences of the headless mode.
+	 * Invoked by the constructor of the superclass.
+	 */
+	@Override
+	public synchronized JSPrefs
+	preferences() {
+		if(prefs == null) prefs = new JSPrefs("com/grigoriliev/jsampler/headless");
+		return prefs;
+	}
+	
+	@Override
+	public void
+	initInstrumentsDbTreeModel() { }
+	
+	@Override
+	public void
+	resetInstrumentsDbTreeModel() { }
+	
+	@Override
+	public int
+	getDefaultModKey() { return 0; }
+	
+	@Override
+	public void
+	showErrorMessage(String msg) {
+		CC.getLogger().warning(msg);
+		System.err.println(msg);
+	}
+	
+	@Override
+	public void
+	showErrorMessage(Exception e) { showErrorMessage(HF.getErrorMessage(e)); }
+	
+	@Override
+	public void
+	showErrorMessage(Exception e, String prefix) {
+		showErrorMessage(prefix + HF.getErrorMessage(e));
+	}
+	
+	@Override
+	public void
+	setUIDefaultFont(String fontName) { }
+}
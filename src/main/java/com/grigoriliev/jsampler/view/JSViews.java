@@ -34,7 +34,6 @@ import java.util.logging.Level;
 import com.grigoriliev.jsampler.CC;
 import com.grigoriliev.jsampler.HF;
 import com.grigoriliev.jsampler.Prefs;
-import com.grigoriliev.jsampler.juife.PDUtils;
 
 /**
  * This class provides information about the available views in the current distribution.
@@ -100,7 +99,7 @@ public class JSViews {
 			return;
 		}
 		if(CC.getMainFrame() != null) {
-			PDUtils.runOnUiThread(new Runnable() {
+			CC.runOnUiThread(new Runnable() {
 				public void
 				run() { CC.getMainFrame().setVisible(false); }
 			});
@@ -4,8 +4,10 @@ module com.grigoriliev.jsampler {
 
 	requires java.desktop;
 	requires java.logging;
+	requires java.management;
 	requires java.prefs;
 	requires java.xml;
+	requires jdk.httpserver;
 
 	exports com.grigoriliev.jsampler;
 	exports com.grigoriliev.jsampler.event;